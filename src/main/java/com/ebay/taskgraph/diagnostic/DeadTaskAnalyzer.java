@@ -0,0 +1,131 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.diagnostic;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.ebay.taskgraph.executor.RequestScope;
+import com.ebay.taskgraph.executor.Task;
+
+/**
+ * Aggregates profiler data of sampled requests to find tasks whose results are never consumed.
+ *
+ * A task is consumed if any other task requested its result, which is recorded in the task's dependencies data.
+ * Tasks that run for a class of requests but are never consumed are candidates for deferral, see RequestScope.
+ * Tasks are identified by their path in the profiler data, see RequestScope.getTaskPath(), so tasks with the same name in
+ * different nested workflows are counted separately.
+ * Thread safe so samples can be added from request threads.
+ */
+public class DeadTaskAnalyzer {
+
+    /**
+     * Task statistics keyed by request class then task path.
+     */
+    private final Map<String, Map<String, TaskStats>> requestClasses = new HashMap<>();
+
+    /**
+     * Add the profiler data of a sampled request.
+     * The root of the profiler model is the task that ran the request, its result is consumed by the caller so it's ignored.
+     */
+    public synchronized void add(String requestClass, ProfilerModel model) {
+        Map<String, TaskStats> tasks = this.requestClasses.get(requestClass);
+        if (null == tasks) {
+            tasks = new HashMap<>();
+            this.requestClasses.put(requestClass, tasks);
+        }
+        if (model.getChildren() != null) {
+            for (ProfilerModel child : model.getChildren()) {
+                collect(tasks, "", child);
+            }
+        }
+    }
+
+    // the tasks of a nested workflow are profiled under the workflow task
+    private static void collect(Map<String, TaskStats> tasks, String workflowPath, ProfilerModel model) {
+        String path = workflowPath;
+        String taskName = ProfilerValidator.getTaskName(model);
+        if (taskName != null) {
+            path = RequestScope.getTaskPath(workflowPath, taskName);
+            TaskStats stats = tasks.get(path);
+            if (null == stats) {
+                stats = new TaskStats();
+                tasks.put(path, stats);
+            }
+            ++stats.samples;
+            if (isConsumed(model)) {
+                ++stats.consumed;
+            }
+        }
+        if (model.getChildren() != null) {
+            for (ProfilerModel child : model.getChildren()) {
+                collect(tasks, path, child);
+            }
+        }
+    }
+
+    private static boolean isConsumed(ProfilerModel model) {
+        if (model.getData() != null) {
+            for (ProfilerProperty prop : model.getData()) {
+                if (Task.DEPENDENCIES_META_DATA_KEY.equals(prop.getName()) && prop.getValue() != null) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param minSamples minimum number of sampled requests a task must have run in before it's reported
+     * @return paths of tasks that ran in at least minSamples requests of the class and were never consumed
+     */
+    public synchronized Set<String> getDeadTasks(String requestClass, int minSamples) {
+        Set<String> rval = new TreeSet<>();
+        Map<String, TaskStats> tasks = this.requestClasses.get(requestClass);
+        if (tasks != null) {
+            for (Map.Entry<String, TaskStats> entry : tasks.entrySet()) {
+                if (entry.getValue().samples >= minSamples && 0 == entry.getValue().consumed) {
+                    rval.add(entry.getKey());
+                }
+            }
+        }
+        return rval;
+    }
+
+    /**
+     * @param taskPath see RequestScope.getTaskPath()
+     * @return number of sampled requests the task ran in for the request class
+     */
+    public synchronized int getSamples(String requestClass, String taskPath) {
+        Map<String, TaskStats> tasks = this.requestClasses.get(requestClass);
+        TaskStats stats = tasks != null ? tasks.get(taskPath) : null;
+        return stats != null ? stats.samples : 0;
+    }
+
+    private static class TaskStats {
+
+        int samples = 0;
+
+        int consumed = 0;
+
+    }
+
+}
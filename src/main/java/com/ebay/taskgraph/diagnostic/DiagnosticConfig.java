@@ -39,6 +39,7 @@ public class DiagnosticConfig {
     public static final String PROFILE = "profile";
     public static final String TASKDIAG = "taskdiag";
     public static final String TASKMOCKS = "taskmocks";
+    public static final String REQUESTCLASS = "requestclass";
 
     public static final DiagnosticConfig NONE;
 
@@ -131,6 +132,14 @@ public class DiagnosticConfig {
         }
     }
 
+    /**
+     * @return class of request from the request class header, null if the header isn't set
+     */
+    public static String getRequestClass(HttpHeaders headers) {
+        String val = getHeaderValue(headers, REQUESTCLASS);
+        return val != null && !val.trim().isEmpty() ? val.trim() : null;
+    }
+
     private static boolean isTrue(HttpHeaders headers, String headerName) {
 
         String val = getHeaderValue(headers, headerName);
@@ -174,6 +183,20 @@ public class DiagnosticConfig {
         return this.showDiagnostics || this.serviceDiagnostics || this.profile;
     }
 
+    /**
+     * @return true if the result of any task is added to the diagnostics
+     */
+    public boolean hasTaskDiagnostics() {
+        return !this.taskDiagnostics.isEmpty();
+    }
+
+    /**
+     * @return true if the result of any task is mocked
+     */
+    public boolean hasTaskMocks() {
+        return !this.taskMocks.isEmpty();
+    }
+
     public boolean taskDiagnosticEnabled(String name) {
         return this.taskDiagnostics.contains(name);
     }
@@ -19,13 +19,18 @@
 package com.ebay.taskgraph.diagnostic;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import com.ebay.taskgraph.executor.RequestScope;
 import com.ebay.taskgraph.executor.Task;
 
 /**
  * Validates profiler data.  Ensures all dependencies specified have entries and that there are no duplicate tasks.
+ * Task names only need to be unique within their workflow, tasks are identified by their path as for DeadTaskAnalyzer.
+ * Dependencies are recorded by task name and may be tasks of an enclosing or nested workflow, so only the name is checked.
  */
 public class ProfilerValidator {
 
@@ -37,26 +42,28 @@ public class ProfilerValidator {
     public static void validate(ProfilerModel profiler) {
         // verify we can find all the dependencies
         Map<String, Boolean> entries = new HashMap<>();
-        collectEntries(entries, profiler);
+        collectEntries(entries, new HashSet<String>(), "", profiler);
         validateDependencies(entries, profiler);
     }
 
-    private static void collectEntries(Map<String, Boolean> entries, ProfilerModel profiler) {
+    private static void collectEntries(Map<String, Boolean> entries, Set<String> paths, String workflowPath, ProfilerModel profiler) {
+        String path = workflowPath;
         String taskName = getTaskName(profiler);
         if (taskName != null) {
-            if (entries.containsKey(taskName)) {
-                throw new RuntimeException("Duplicate task name: " + taskName);
+            path = RequestScope.getTaskPath(workflowPath, taskName);
+            if (!paths.add(path)) {
+                throw new RuntimeException("Duplicate task name: " + path);
             }
             entries.put(taskName, Boolean.TRUE);
         }
         if (profiler.getChildren() != null) {
             for (ProfilerModel child : profiler.getChildren()) {
-                collectEntries(entries, child);
+                collectEntries(entries, paths, path, child);
             }
         }
     }
 
-    private static String getTaskName(ProfilerModel profiler) {
+    static String getTaskName(ProfilerModel profiler) {
         String taskName = null;
         boolean isTask = false;
 
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Derives the timeout of tasks from their observed execution time, instead of hand picked constants that go stale as
+ * backends change.  Shared by all requests, see CallableTaskConfig.withAdaptiveTimeout(), thread safe.
+ *
+ * The execution times of each task's last calls, failed or not, are kept in a rolling window, excluding the time waiting
+ * for dependencies.  Once enough samples have been observed the task's timeout is the given percentile of the window
+ * times the multiplier, bounded by the floor and ceiling, and is recomputed as every tenth of the window is replaced.
+ * Until then the timeout configured for the task is used.  Timeout changes are logged, and getStats() exports the
+ * current timeout and latency of each task so operators can see the timeouts tracking reality.
+ *
+ * Only ExecType.ASYNC_TIMEOUT tasks can have an adaptive timeout, since that's where the timeout only covers the
+ * task's own execution, the same as the samples.  Each attempt of a retried task is a separate sample.
+ */
+public class AdaptiveTimeout {
+
+    public static final int DEFAULT_WINDOW = 1000;
+    public static final int DEFAULT_MIN_SAMPLES = 100;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveTimeout.class);
+
+    private final double percentile;
+    private final double multiplier;
+    private final long floor;
+    private final long ceiling;
+    private final int window;
+    private final int minSamples;
+
+    private final ConcurrentMap<String, Samples> tasks = new ConcurrentHashMap<>();
+
+    /**
+     * @param percentile percentile of the execution times, e.g. 99.5
+     * @param multiplier applied to the percentile to allow for variance
+     * @param floor minimum timeout in milliseconds
+     * @param ceiling maximum timeout in milliseconds
+     */
+    public AdaptiveTimeout(double percentile, double multiplier, long floor, long ceiling) {
+        this(percentile, multiplier, floor, ceiling, DEFAULT_WINDOW, DEFAULT_MIN_SAMPLES);
+    }
+
+    /**
+     * @param window number of recent execution times kept for each task
+     * @param minSamples execution times observed before the configured timeout is replaced
+     */
+    public AdaptiveTimeout(double percentile, double multiplier, long floor, long ceiling, int window, int minSamples) {
+        if (percentile <= 0 || percentile > 100 || multiplier <= 0 || floor < 0 || ceiling < floor || window < 1
+                || minSamples < 1 || minSamples > window) {
+            throw new IllegalArgumentException("Invalid adaptive timeout: p" + percentile + " x" + multiplier + ", " + floor + "-" + ceiling
+                    + "ms, window " + window + ", min samples " + minSamples);
+        }
+        this.percentile = percentile;
+        this.multiplier = multiplier;
+        this.floor = floor;
+        this.ceiling = ceiling;
+        this.window = window;
+        this.minSamples = minSamples;
+    }
+
+    /**
+     * @param configured timeout of the task's configuration, used until enough samples have been observed
+     * @return current timeout of the task in milliseconds
+     */
+    public long getTimeout(String taskName, long configured) {
+        Samples samples = this.tasks.get(taskName);
+        if (null == samples) {
+            return configured;
+        }
+        long timeout = samples.timeout;
+        return timeout > 0 ? timeout : configured;
+    }
+
+    /**
+     * Record the execution time of a call of the task, whether it succeeded or not.
+     */
+    public void record(String taskName, long executionNanos) {
+        Samples samples = this.tasks.get(taskName);
+        if (null == samples) {
+            samples = this.tasks.computeIfAbsent(taskName, name -> new Samples(this.window));
+        }
+        long[] sorted = samples.add(executionNanos, Math.max(1, this.window / 10), this.minSamples);
+        if (sorted != null) {
+            update(taskName, samples, sorted);
+        }
+    }
+
+    private void update(String taskName, Samples samples, long[] sorted) {
+        Arrays.sort(sorted);
+        // nearest rank
+        int rank = (int) Math.ceil(this.percentile / 100d * sorted.length);
+        long latency = sorted[Math.max(0, rank - 1)];
+        long timeout = (long) Math.ceil(latency * this.multiplier / 1e6);
+        timeout = Math.min(this.ceiling, Math.max(this.floor, timeout));
+        long previous = samples.set(latency, timeout);
+        if (timeout != previous) {
+            LOGGER.info("Adaptive timeout of {} changed from {}ms to {}ms, p{} {}ms", taskName, previous, timeout, this.percentile,
+                    latency / 1e6);
+        }
+    }
+
+    /**
+     * @return current timeout and latency of each task observed so far
+     */
+    public Map<String, TaskStats> getStats() {
+        Map<String, TaskStats> stats = new HashMap<>();
+        for (Map.Entry<String, Samples> entry : this.tasks.entrySet()) {
+            stats.put(entry.getKey(), new TaskStats(entry.getKey(), entry.getValue()));
+        }
+        return stats;
+    }
+
+    public double getPercentile() {
+        return this.percentile;
+    }
+
+    public double getMultiplier() {
+        return this.multiplier;
+    }
+
+    public long getFloor() {
+        return this.floor;
+    }
+
+    public long getCeiling() {
+        return this.ceiling;
+    }
+
+    /**
+     * Rolling window of a task's execution times.
+     */
+    private static final class Samples {
+
+        // guarded by this
+        private final long[] samples;
+        private int next = 0;
+        private long count = 0;
+
+        // 0 until enough samples have been observed
+        private volatile long timeout = 0;
+        private volatile long latency = 0;
+        private long updates = 0;
+
+        Samples(int window) {
+            this.samples = new long[window];
+        }
+
+        /**
+         * @return copy of the window if the timeout should be recomputed, otherwise null
+         */
+        synchronized long[] add(long sample, int interval, int minSamples) {
+            this.samples[this.next] = sample;
+            this.next = (this.next + 1) % this.samples.length;
+            ++this.count;
+            if (this.count < minSamples || (this.count - minSamples) % interval != 0) {
+                return null;
+            }
+            ++this.updates;
+            return Arrays.copyOf(this.samples, (int) Math.min(this.count, this.samples.length));
+        }
+
+        /**
+         * @return the previous timeout
+         */
+        synchronized long set(long latency, long timeout) {
+            long previous = this.timeout;
+            this.latency = latency;
+            this.timeout = timeout;
+            return previous;
+        }
+
+        synchronized long getCount() {
+            return this.count;
+        }
+
+        synchronized long getUpdates() {
+            return this.updates;
+        }
+
+    }
+
+    /**
+     * Snapshot of a task's adaptive timeout.
+     */
+    public static final class TaskStats {
+
+        private final String taskName;
+        private final long samples;
+        private final long timeout;
+        private final double latency;
+        private final long updates;
+
+        TaskStats(String taskName, Samples samples) {
+            this.taskName = taskName;
+            this.samples = samples.getCount();
+            this.timeout = samples.timeout;
+            this.latency = samples.latency / 1e6;
+            this.updates = samples.getUpdates();
+        }
+
+        public String getTaskName() {
+            return this.taskName;
+        }
+
+        /**
+         * @return number of execution times observed
+         */
+        public long getSamples() {
+            return this.samples;
+        }
+
+        /**
+         * @return current timeout in milliseconds, 0 until enough samples have been observed
+         */
+        public long getTimeout() {
+            return this.timeout;
+        }
+
+        /**
+         * @return execution time at the percentile in milliseconds when the timeout was last computed
+         */
+        public double getLatency() {
+            return this.latency;
+        }
+
+        /**
+         * @return number of times the timeout has been computed
+         */
+        public long getUpdates() {
+            return this.updates;
+        }
+
+    }
+
+}
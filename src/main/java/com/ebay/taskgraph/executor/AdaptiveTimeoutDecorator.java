@@ -0,0 +1,88 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.concurrent.TimeUnit;
+
+import com.ebay.taskgraph.context.ResponseContext;
+
+/**
+ * Decorator that records the execution time of every call of the task in its configured AdaptiveTimeout, whether it
+ * returns or throws.  Applied inside the profile, timeout and retry decorators so the time waiting for dependencies
+ * and for earlier attempts isn't included.
+ *
+ * Only sampling the calls that return would leave out the slow tail that fails or is interrupted, so the timeout
+ * derived from the survivors ratchets down until most calls time out.  An interrupted call is recorded as taking at
+ * least the timeout applied to it, since it would have run for at least that long.
+ */
+class AdaptiveTimeoutDecorator<T> implements ICallableTask<T> {
+
+    private final ICallableTask<T> task;
+    // the timeout decorator reads the timeout when it's created along with this decorator
+    private final long timeoutNanos;
+
+    AdaptiveTimeoutDecorator(ICallableTask<T> task) {
+        this.task = task;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(task.getTaskConfig().getTimeout(task.getName()));
+    }
+
+    @Override
+    public T call() throws Exception {
+        long start = System.nanoTime();
+        boolean interrupted = false;
+        try {
+            return this.task.call();
+        } catch (InterruptedException e) {
+            interrupted = true;
+            throw e;
+        } finally {
+            long executionNanos = System.nanoTime() - start;
+            if (interrupted || Thread.currentThread().isInterrupted()) {
+                executionNanos = Math.max(executionNanos, this.timeoutNanos);
+            }
+            this.task.getTaskConfig().adaptiveTimeout.record(this.task.getName(), executionNanos);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return this.task.getName();
+    }
+
+    @Override
+    public ResponseContext getContext() {
+        return this.task.getContext();
+    }
+
+    @Override
+    public CallableTaskConfig getTaskConfig() {
+        return this.task.getTaskConfig();
+    }
+
+    @Override
+    public void waitForDependencies() {
+        this.task.waitForDependencies();
+    }
+
+    @Override
+    public ICallableTaskFuture<?>[] getDependencies() {
+        return this.task.getDependencies();
+    }
+
+}
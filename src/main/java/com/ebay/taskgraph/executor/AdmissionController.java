@@ -0,0 +1,141 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rejects new requests while the executor service is overloaded so requests already admitted complete in time.
+ * Shared by all requests, thread safe.
+ *
+ * Overload is detected from the time asynchronous tasks wait to start, in the style of CoDel: a short burst of queueing
+ * is tolerated, the executor is only overloaded once the queueing delay has stayed above the target for a whole interval.
+ * It's only no longer overloaded once a task starts within the target.  If no task has started for an interval, e.g. because
+ * every request is being rejected, one request per interval is admitted as a probe so its tasks measure the delay again.
+ * Queueing delay is measured by adding the controller to the request scope with RequestScope.withAsyncTaskListener().
+ */
+public class AdmissionController implements IAsyncTaskListener {
+
+    public static final String ADMISSION_REJECTED = "admission_rejected";
+    public static final String QUEUE_DELAY_MS = "queue_delay_ms";
+
+    public static final long DEFAULT_TARGET = 5L;
+    public static final long DEFAULT_INTERVAL = 100L;
+
+    private final long target;
+    private final long interval;
+
+    // guarded by this
+    private long lastDelay = 0L;
+    private long lastSample = 0L;
+    private long aboveSince = 0L;
+    private boolean above = false;
+    private boolean overloaded = false;
+    private long lastProbe = 0L;
+
+    private final AtomicLong admitted = new AtomicLong(0L);
+    private final AtomicLong rejected = new AtomicLong(0L);
+
+    public AdmissionController() {
+        this(DEFAULT_TARGET, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * @param target acceptable queueing delay in milliseconds
+     * @param interval milliseconds the queueing delay must stay above the target before new requests are rejected
+     */
+    public AdmissionController(long target, long interval) {
+        this.target = TimeUnit.MILLISECONDS.toNanos(target);
+        this.interval = TimeUnit.MILLISECONDS.toNanos(interval);
+    }
+
+    /**
+     * Admit the request run by the task or throw if the executor service is overloaded.
+     */
+    public void admit(ICallableTask<?> task) {
+        if (!isOverloaded() || probe()) {
+            this.admitted.incrementAndGet();
+            return;
+        }
+        this.rejected.incrementAndGet();
+        long queueDelay = getQueueDelay();
+        if (task.getContext().getDiagnosticConfig().profile || task.getContext().getDiagnosticConfig().showDiagnostics) {
+            task.getContext().getProfiler().addData(ADMISSION_REJECTED, Boolean.TRUE.toString());
+            task.getContext().getProfiler().addData(QUEUE_DELAY_MS, Long.toString(queueDelay));
+        }
+        throw new AdmissionRejectedException(task.getName(), queueDelay);
+    }
+
+    public synchronized boolean isOverloaded() {
+        return this.overloaded;
+    }
+
+    // nothing has started for an interval so no sample can end the overload, admit a request to measure again
+    private synchronized boolean probe() {
+        long now = System.nanoTime();
+        if (now - this.lastSample >= this.interval && now - this.lastProbe >= this.interval) {
+            this.lastProbe = now;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void onSubmit() {
+        // only the queueing delay is used
+    }
+
+    @Override
+    public synchronized void onStart(long queueTime) {
+        long now = System.nanoTime();
+        this.lastDelay = queueTime;
+        this.lastSample = now;
+        if (queueTime < this.target) {
+            this.above = false;
+            this.overloaded = false;
+        } else if (!this.above) {
+            this.above = true;
+            this.aboveSince = now;
+        } else if (now - this.aboveSince >= this.interval) {
+            this.overloaded = true;
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        // only the queueing delay is used
+    }
+
+    /**
+     * @return queueing delay in milliseconds of the task that started most recently
+     */
+    public synchronized long getQueueDelay() {
+        return TimeUnit.NANOSECONDS.toMillis(this.lastDelay);
+    }
+
+    public long getAdmittedCount() {
+        return this.admitted.get();
+    }
+
+    public long getRejectedCount() {
+        return this.rejected.get();
+    }
+
+}
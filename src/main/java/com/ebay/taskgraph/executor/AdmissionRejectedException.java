@@ -0,0 +1,41 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import javax.ws.rs.core.Response.Status;
+
+/**
+ * Thrown when a request is rejected by the AdmissionController because the executor service is overloaded.
+ * Maps to SERVICE_UNAVAILABLE so clients can retry elsewhere or back off.
+ */
+public class AdmissionRejectedException extends ApplicationException {
+
+    private static final long serialVersionUID = 6012418862317543261L;
+
+    /**
+     * Queueing delay in milliseconds of the executor service when the request was rejected.
+     */
+    public final long queueDelay;
+
+    public AdmissionRejectedException(String taskName, long queueDelay) {
+        super(Status.SERVICE_UNAVAILABLE, "Request rejected, executor overloaded: " + taskName);
+        this.queueDelay = queueDelay;
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Adapts the future of a primitive task executed through the generic decorators to the primitive future interfaces.
+ * Used when the result needs to be boxed anyway, e.g. the task result is mocked or logged to the diagnostics.
+ */
+public class BoxedCallableTaskFuture<T> implements ICallableTaskFuture<T> {
+
+    private final ICallableTaskFuture<T> future;
+
+    protected BoxedCallableTaskFuture(ICallableTaskFuture<T> future) {
+        this.future = future;
+    }
+
+    @Override
+    public T getNoThrow(ICallableTask<?> caller) {
+        return this.future.getNoThrow(caller);
+    }
+
+    @Override
+    public ICallableTask<T> getTask() {
+        return this.future.getTask();
+    }
+
+    @Override
+    public void prefetch() {
+        this.future.prefetch();
+    }
+
+    @Override
+    public void prefetchOnBlock() {
+        this.future.prefetchOnBlock();
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        return this.future.get();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        return this.future.get(timeout, unit);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return this.future.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return this.future.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return this.future.isDone();
+    }
+
+    public static class IntFuture extends BoxedCallableTaskFuture<Integer> implements IIntCallableTaskFuture {
+
+        public IntFuture(ICallableTaskFuture<Integer> future) {
+            super(future);
+        }
+
+        @Override
+        public int getIntNoThrow(ICallableTask<?> caller, int defaultValue) {
+            Integer rval = getNoThrow(caller);
+            return rval != null ? rval : defaultValue;
+        }
+
+    }
+
+    public static class LongFuture extends BoxedCallableTaskFuture<Long> implements ILongCallableTaskFuture {
+
+        public LongFuture(ICallableTaskFuture<Long> future) {
+            super(future);
+        }
+
+        @Override
+        public long getLongNoThrow(ICallableTask<?> caller, long defaultValue) {
+            Long rval = getNoThrow(caller);
+            return rval != null ? rval : defaultValue;
+        }
+
+    }
+
+    public static class DoubleFuture extends BoxedCallableTaskFuture<Double> implements IDoubleCallableTaskFuture {
+
+        public DoubleFuture(ICallableTaskFuture<Double> future) {
+            super(future);
+        }
+
+        @Override
+        public double getDoubleNoThrow(ICallableTask<?> caller, double defaultValue) {
+            Double rval = getNoThrow(caller);
+            return rval != null ? rval : defaultValue;
+        }
+
+    }
+
+}
@@ -30,16 +30,46 @@ public class CallableTaskConfig {
         ASYNC,          // task submitted to the executor service
         ASYNC_TIMEOUT,  // task submitted to the executor service with an additional task to timeout the execution
         SIMPLE,         // simple synchronous task that doesn't require platform specific logging decorator
+        LAZY,           // task only submitted to the executor service when prefetched or its result is first requested
+    }
+
+    public enum Priority {
+        NORMAL,         // task always runs
+        OPTIONAL,       // task may be skipped by the request's load shedder, its result is null when skipped
+        CRITICAL,       // an ApplicationException from the task immediately fails all the tasks that depend on it
     }
 
     public final DiagnosticConfig diagnosticConfig;
     public final long timeout;
     public final ExecType execType;
-    
-    public CallableTaskConfig(DiagnosticConfig diagnosticConfig, long timeout, ExecType execType) {
+    public final Priority priority;
+    public final RetryPolicy retryPolicy;           // null if the task isn't retried
+    public final AdaptiveTimeout adaptiveTimeout;   // null if the timeout is fixed
+
+    public CallableTaskConfig(DiagnosticConfig diagnosticConfig, long timeout, ExecType execType, Priority priority, RetryPolicy retryPolicy,
+            AdaptiveTimeout adaptiveTimeout) {
+        if (adaptiveTimeout != null && !ExecType.ASYNC_TIMEOUT.equals(execType)) {
+            // other tasks' timeouts include the time waiting for dependencies, which isn't sampled
+            throw new IllegalArgumentException("Adaptive timeouts require ExecType.ASYNC_TIMEOUT: " + execType);
+        }
         this.diagnosticConfig = diagnosticConfig;
         this.timeout = timeout;
         this.execType = execType;
+        this.priority = priority;
+        this.retryPolicy = retryPolicy;
+        this.adaptiveTimeout = adaptiveTimeout;
+    }
+
+    public CallableTaskConfig(DiagnosticConfig diagnosticConfig, long timeout, ExecType execType, Priority priority, RetryPolicy retryPolicy) {
+        this(diagnosticConfig, timeout, execType, priority, retryPolicy, null);
+    }
+
+    public CallableTaskConfig(DiagnosticConfig diagnosticConfig, long timeout, ExecType execType, Priority priority) {
+        this(diagnosticConfig, timeout, execType, priority, null);
+    }
+
+    public CallableTaskConfig(DiagnosticConfig diagnosticConfig, long timeout, ExecType execType) {
+        this(diagnosticConfig, timeout, execType, Priority.NORMAL);
     }
     
     // tasks configured with a timeout are assumed to be asynchronous
@@ -51,6 +81,40 @@ public class CallableTaskConfig {
         this(diagnosticConfig, Long.MAX_VALUE, execType);
     }
     
+    public CallableTaskConfig withPriority(Priority priority) {
+        return new CallableTaskConfig(this.diagnosticConfig, this.timeout, this.execType, priority, this.retryPolicy, this.adaptiveTimeout);
+    }
+
+    /**
+     * Retry the task's call() when it throws, see RetryPolicy.
+     */
+    public CallableTaskConfig withRetryPolicy(RetryPolicy retryPolicy) {
+        return new CallableTaskConfig(this.diagnosticConfig, this.timeout, this.execType, this.priority, retryPolicy, this.adaptiveTimeout);
+    }
+
+    /**
+     * Derive the task's timeout from its observed execution time, the configured timeout is used until enough
+     * samples have been observed.  Only for ExecType.ASYNC_TIMEOUT tasks.  See AdaptiveTimeout.
+     */
+    public CallableTaskConfig withAdaptiveTimeout(AdaptiveTimeout adaptiveTimeout) {
+        return new CallableTaskConfig(this.diagnosticConfig, this.timeout, this.execType, this.priority, this.retryPolicy, adaptiveTimeout);
+    }
+
+    /**
+     * @return timeout in milliseconds, adapted to the task's observed execution time if an adaptive timeout is configured
+     */
+    public long getTimeout(String taskName) {
+        return this.adaptiveTimeout != null ? this.adaptiveTimeout.getTimeout(taskName, this.timeout) : this.timeout;
+    }
+
+    public boolean isOptional() {
+        return Priority.OPTIONAL.equals(this.priority);
+    }
+
+    public boolean isCritical() {
+        return Priority.CRITICAL.equals(this.priority);
+    }
+
     // create helpers
     public static CallableTaskConfig synch(DiagnosticConfig diagnosticConfig) {
         return new CallableTaskConfig(diagnosticConfig, ExecType.SYNC);
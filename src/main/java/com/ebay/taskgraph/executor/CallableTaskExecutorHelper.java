@@ -18,6 +18,7 @@
 
 package com.ebay.taskgraph.executor;
 
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
 import com.ebay.taskgraph.executor.CallableTaskConfig.ExecType;
 import com.ebay.taskgraph.executor.workflow.WorkflowException;
 
@@ -26,6 +27,7 @@ public class CallableTaskExecutorHelper {
     // add profiling decorators
     public static <T> ICallableTask<T> getDecoratedTask(ICallableTaskExecutor executor, ICallableTask<T> task) {
 
+        // fail fast before decorating, executors must still check atomically when the task is registered
         if (executor.getTask(task.getName()) != null) {
             throw new WorkflowException("Attempted to add a duplicate key: " + task.getName());
         }
@@ -51,4 +53,65 @@ public class CallableTaskExecutorHelper {
                 || ExecType.ASYNC_TIMEOUT.equals(task.getTaskConfig().execType);
     }
 
+    // return true if the task is asynchronous but deferred by the request scope
+    public static boolean isDeferred(RequestScope scope, ICallableTask<?> task) {
+        if (ExecType.ASYNC.equals(task.getTaskConfig().execType) && scope.isDeferred(task.getName())) {
+            if (task.getContext().getDiagnosticConfig().profile || task.getContext().getDiagnosticConfig().showDiagnostics) {
+                task.getContext().getProfiler().addData(Task.DEFERRED, Boolean.TRUE.toString());
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // return the reason the task should be skipped by the request's load shedder, or null if the task should run
+    public static LoadShedder.Reason isShed(RequestScope scope, ICallableTask<?> task) {
+        LoadShedder loadShedder = scope.getLoadShedder();
+        if (null == loadShedder) {
+            return null;
+        }
+        LoadShedder.Reason reason = loadShedder.check(scope, task);
+        if (reason != null && (task.getContext().getDiagnosticConfig().profile || task.getContext().getDiagnosticConfig().showDiagnostics)) {
+            task.getContext().getProfiler().addData(Task.SHED, reason.toString());
+        }
+        return reason;
+    }
+
+    // return true if the task should release its dependencies when it completes
+    public static boolean isEarlyRelease(RequestScope scope, ICallableTask<?> task) {
+        DiagnosticConfig diagnosticConfig = task.getTaskConfig().diagnosticConfig;
+        return scope.isEarlyRelease()
+                && task.getDependencies() != null
+                && task.getDependencies().length > 0
+                && !diagnosticConfig.publishDiagnostics()
+                && !diagnosticConfig.hasTaskDiagnostics();
+    }
+
+    // return true if the task needs none of the request scope's policies or the executor's optional decorators,
+    // e.g. shedding, deferral, early release, fail fast, retries and adaptive timeouts
+    public static boolean isSimple(RequestScope scope, ICallableTask<?> task) {
+        return !scope.isDeferred(task.getName())
+                && !(scope.getLoadShedder() != null && task.getTaskConfig().isOptional())
+                && !task.getTaskConfig().isCritical()
+                && null == task.getTaskConfig().retryPolicy
+                && null == task.getTaskConfig().adaptiveTimeout
+                && !isEarlyRelease(scope, task)
+                && !(task instanceof StreamingTask);
+    }
+
+    // return true if a task with a primitive result can be executed without boxing its result
+    public static boolean isUnboxed(RequestScope scope, ICallableTask<?> task) {
+        ExecType execType = task.getTaskConfig().execType;
+        DiagnosticConfig diagnosticConfig = task.getTaskConfig().diagnosticConfig;
+        return (ExecType.SYNC.equals(execType) || ExecType.SIMPLE.equals(execType) || ExecType.ASYNC.equals(execType))
+                && isSimple(scope, task)
+                && !diagnosticConfig.hasTaskMocks()
+                && !diagnosticConfig.taskDiagnosticEnabled(task.getName());
+    }
+
+    // return true if task only executes on demand
+    public static boolean isLazy(ICallableTask<?> task) {
+        return ExecType.LAZY.equals(task.getTaskConfig().execType);
+    }
+
 }
@@ -18,10 +18,17 @@
 
 package com.ebay.taskgraph.executor;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.ebay.taskgraph.executor.workflow.WorkflowException;
 
 /**
  * Future wrapper that ensures synchronous tasks are executed once only.
@@ -33,7 +40,12 @@ public class CallableTaskFuture<RESULT> implements ICallableTaskFuture<RESULT> {
 
     public static final TimeUnit TIMEOUT_UNIT = TimeUnit.MILLISECONDS;
 
-    private final Future<RESULT> future;
+    private static final Object COMPLETED = new Object();
+
+    /**
+     * Cleared when the result is released so the result isn't reachable from the executor.
+     */
+    private volatile Future<RESULT> future;
 
     private final ICallableTask<RESULT> task;
 
@@ -47,6 +59,28 @@ public class CallableTaskFuture<RESULT> implements ICallableTaskFuture<RESULT> {
      */
     private volatile ApplicationException applicationException = null;
 
+    /**
+     * Number of declared consumers that haven't completed yet, only tracked when early release is enabled.
+     */
+    private final AtomicInteger consumers = new AtomicInteger(0);
+
+    /**
+     * Only results that have declared consumers are released.
+     */
+    private volatile boolean retained = false;
+
+    private volatile boolean released = false;
+
+    /**
+     * Null until the result is first obtained, or the failure of a critical task if the future is failed fast first.
+     */
+    private final AtomicReference<Object> state = new AtomicReference<>();
+
+    /**
+     * Notified if the future is cancelled or skipped, added before the future is published.
+     */
+    private List<ICancellationListener> cancellationListeners = Collections.emptyList();
+
     public CallableTaskFuture(Future<RESULT> future, ICallableTask<RESULT> task) {
         this.future = future;
         this.task = task;
@@ -62,40 +96,64 @@ public class CallableTaskFuture<RESULT> implements ICallableTaskFuture<RESULT> {
 
         Task.addDependency(this.task, caller);
         
+        ApplicationException failure = getFailure();
+        if (failure != null) {
+            // failed fast by a critical task this task depends on
+            throw failure;
+        }
+
         if (this.applicationException != null) {
             // first off, propagate application exception so we don't execute synchronous tasks again
             throw this.applicationException;
         }
 
+        if (this.released) {
+            throw new WorkflowException("Result released after all declared consumers completed: " + this.task.getName());
+        }
+
         if (null == this.result) {
             RESULT result = null;
+            Throwable thrown = null;
+            if (!(this.future instanceof LazyFuture) && !this.future.isDone()) {
+                // about to block so start the lazy tasks this thread deferred, a lazy future does this itself if it blocks
+                LazyFuture.prefetchDeferred();
+            }
+            // don't count against the request's concurrency budget while blocked
+            ConcurrencyBudget.Permit permit = this.future.isDone() ? null : ConcurrencyBudget.release();
             try {
                 // Note: the time out for tasks associated with the future need to account for the time
                 // the task blocks waiting for its dependencies.
                 // To accurately define a time out for the processing of the task itself use ExecType.AYNC_TIMOUT
                 // task type.  Or, if a task is making an external service call, it's usual to allow the read timeout
                 // of the service call to limit the time a task takes.
-                result = this.future.get(this.task.getTaskConfig().timeout, TIMEOUT_UNIT);
+                result = this.future.get(this.task.getTaskConfig().getTimeout(this.task.getName()), TIMEOUT_UNIT);
             } catch (TimeoutException e) {
                 // mark the task's execution as having stopped even though the thread of execution continues to run 
                 // an exception will unblock any dependent tasks so stopping the task will indicate this in the profiler tool
                 this.task.getContext().getProfiler().stop();
-                logException(e);
+                thrown = e;
             } catch (ExecutionException e) {
                 // unwrap the execution exception to get the true cause of the exception can be logged
-                logException(e.getCause());
+                thrown = e.getCause();
+            } catch (InterruptedException e) {
+                // the caller was cancelled, leave the result for other consumers
+                Thread.currentThread().interrupt();
+                throw new WorkflowException("Interrupted waiting for task: " + this.task.getName(), e);
             } catch (Throwable t) {
-                logException(t);
-            }
-            
-            // log the result of the task if diagnostics is enabled specifically for the task
-            if (this.task.getTaskConfig().diagnosticConfig.taskDiagnosticEnabled(this.task.getName())) {
-                Task.addTaskResponseDiagnostic(this.task, result);
+                thrown = t;
+            } finally {
+                ConcurrencyBudget.reacquire(permit);
             }
 
-            // check if a result has been pre configured for the task
-            // type safe cast as we're passing in the specific class to be deserialized to
-            result = this.task.getTaskConfig().diagnosticConfig.getTaskData(this.task.getName(), result);
+            if (!this.state.compareAndSet(null, COMPLETED)) {
+                // failed fast while waiting
+                throw getFailure();
+            }
+            if (thrown != null) {
+                logException(thrown);
+            }
+            
+            result = applyTaskDiagnostics(this.task, result);
 
             // only create a result if task completes normally or an exception was handled
             // previously this was done in a finally block but this prevented
@@ -105,6 +163,21 @@ public class CallableTaskFuture<RESULT> implements ICallableTaskFuture<RESULT> {
         return this.result.result;
     }
 
+    /**
+     * Log the task result to diagnostics if enabled for the task and apply any mock result configured for the task.
+     */
+    static <RESULT> RESULT applyTaskDiagnostics(ICallableTask<RESULT> task, RESULT result) {
+
+        // log the result of the task if diagnostics is enabled specifically for the task
+        if (task.getTaskConfig().diagnosticConfig.taskDiagnosticEnabled(task.getName())) {
+            Task.addTaskResponseDiagnostic(task, result);
+        }
+
+        // check if a result has been pre configured for the task
+        // type safe cast as we're passing in the specific class to be deserialized to
+        return task.getTaskConfig().diagnosticConfig.getTaskData(task.getName(), result);
+    }
+
     /**
      * Force clients to use getNoThrow so that dependencies are reliably tracked.
      */
@@ -151,19 +224,131 @@ public class CallableTaskFuture<RESULT> implements ICallableTaskFuture<RESULT> {
         return this.task;
     }
 
+    @Override
+    public void prefetch() {
+        Future<RESULT> f = this.future;
+        if (f instanceof LazyFuture) {
+            ((LazyFuture<RESULT>) f).prefetch();
+        }
+    }
+
+    @Override
+    public void prefetchOnBlock() {
+        Future<RESULT> f = this.future;
+        if (f instanceof LazyFuture) {
+            ((LazyFuture<RESULT>) f).prefetchOnBlock();
+        }
+    }
+
+    /**
+     * Add a listener notified if the future is cancelled or skipped, must be called before the future is published.
+     */
+    void addCancellationListener(ICancellationListener listener) {
+        if (this.cancellationListeners.isEmpty()) {
+            this.cancellationListeners = new ArrayList<>(1);
+        }
+        this.cancellationListeners.add(listener);
+    }
+
+    /**
+     * Register a consumer that will read the result, the result is kept until all consumers have been released.
+     */
+    void retain() {
+        if (this.released) {
+            throw new WorkflowException("Consumer added after result was released: " + this.task.getName());
+        }
+        this.retained = true;
+        this.consumers.incrementAndGet();
+    }
+
+    /**
+     * Called when a consumer completes, drops the result once the last consumer completes.
+     * @param sealed if false more consumers may still be added so the result is kept until the executor is sealed
+     */
+    void release(boolean sealed) {
+        if (0 == this.consumers.decrementAndGet() && sealed) {
+            releaseResult();
+        }
+    }
+
+    /**
+     * Called when the executor is sealed, drops the result if all its consumers have already completed.
+     */
+    void releaseIfConsumed() {
+        if (this.retained && 0 == this.consumers.get()) {
+            releaseResult();
+        }
+    }
+
+    private synchronized void releaseResult() {
+        this.released = true;
+        this.result = null;
+        this.future = null;
+    }
+
+    /**
+     * Complete the future with the failure of a critical task it depends on, unless the task has already completed.
+     * Atomic with respect to getNoThrow() completing the future, the caller then cancels the task.
+     * @return false if the task had already completed
+     */
+    boolean fail(ApplicationException failure) {
+        Future<RESULT> f = this.future;
+        if (null == f || this.applicationException != null) {
+            return false;
+        }
+        if (!(f instanceof SynchronousFuture) && f.isDone()) {
+            // synchronous futures are always done, they only run when their result is first requested
+            return false;
+        }
+        return this.state.compareAndSet(null, failure);
+    }
+
+    private ApplicationException getFailure() {
+        Object s = this.state.get();
+        return s instanceof ApplicationException ? (ApplicationException) s : null;
+    }
+
+    /**
+     * @return true if this is a lazy task that hadn't been started and now never will be
+     */
+    boolean skipLazy() {
+        Future<RESULT> f = this.future;
+        if (f instanceof LazyFuture && ((LazyFuture<RESULT>) f).skip()) {
+            cancelled();
+            return true;
+        }
+        return false;
+    }
+
     @Override
     public boolean cancel(boolean mayInterruptIfRunning) {
-        return this.future.cancel(mayInterruptIfRunning);
+        Future<RESULT> f = this.future;
+        if (f != null && f.cancel(mayInterruptIfRunning)) {
+            cancelled();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * A cancelled task may never run, e.g. a streaming task's subscriber would otherwise wait for the end of the stream.
+     */
+    private void cancelled() {
+        for (ICancellationListener listener : this.cancellationListeners) {
+            listener.cancelled();
+        }
     }
 
     @Override
     public boolean isCancelled() {
-        return this.future.isCancelled();
+        Future<RESULT> f = this.future;
+        return f != null && f.isCancelled();
     }
 
     @Override
     public boolean isDone() {
-        return this.result != null || this.applicationException != null || this.future.isDone();
+        Future<RESULT> f = this.future;
+        return this.result != null || this.applicationException != null || this.released || getFailure() != null || f.isDone();
     }
 
 }
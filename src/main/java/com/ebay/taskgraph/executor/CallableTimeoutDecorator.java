@@ -89,7 +89,8 @@ public class CallableTimeoutDecorator<T> implements ICallableTask<T> {
         public CallableTaskInvoker(ICallableTask<T> task) {
             super(task.getName() + TASK_SUFFIX,
                     new ResponseContext(task.getTaskConfig().diagnosticConfig, task.getContext().getName() + TASK_SUFFIX),
-                    new CallableTaskConfig(task.getTaskConfig().diagnosticConfig, task.getTaskConfig().timeout),
+                    new CallableTaskConfig(task.getTaskConfig().diagnosticConfig, task.getTaskConfig().getTimeout(task.getName()))
+                            .withPriority(task.getTaskConfig().priority),
                     task.getDependencies());
 
             // use same name for all timeout tasks, the dependency graph indicates which task it's associated with
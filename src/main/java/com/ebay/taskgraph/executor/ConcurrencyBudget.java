@@ -0,0 +1,233 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+import com.ebay.taskgraph.diagnostic.IProfilerEntry;
+
+/**
+ * Limits the number of asynchronous tasks of a request executing at once, so a request with a wide fan out can't take
+ * most of the shared pool.  Created per request by RequestScope.withConcurrencyLimit() and shared by the executors of
+ * the request's nested workflows.  Thread safe.
+ *
+ * Tasks beyond the limit are queued in submission order until a running task completes.  A task only counts against the
+ * budget while it's executing, so it gives up its permit while blocked waiting for another task, e.g. in getNoThrow(),
+ * and gets it back before continuing.  Otherwise a task waiting for a task queued behind it could deadlock the request.
+ * The task's WeightedFairScheduler slot, if any, is given up and got back along with the permit for the same reason.
+ * Time spent queued or getting the permit back is recorded as a wait_budget profiler entry of the task, separately from
+ * the wait_deps entry for dependencies.
+ */
+public class ConcurrencyBudget {
+
+    public static final String WAIT_BUDGET = "wait_budget";
+
+    // permit held by the task executing on the current thread
+    private static final ThreadLocal<Permit> CURRENT = new ThreadLocal<>();
+
+    private final int limit;
+
+    // guarded by this
+    private int available;
+    private int reacquiring = 0;
+    private int maxQueued = 0;
+    private final ArrayDeque<Queued> queue = new ArrayDeque<>();
+
+    public ConcurrencyBudget(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Concurrency limit must be positive: " + limit);
+        }
+        this.limit = limit;
+        this.available = limit;
+    }
+
+    /**
+     * Run an asynchronous task on the executor once the budget allows.
+     * @param task task whose profiler records the time waiting for the budget
+     */
+    public void execute(ICallableTask<?> task, Runnable asyncTask, Executor executor) {
+        Queued queued = new Queued(task, asyncTask, executor);
+        synchronized (this) {
+            if (this.available <= 0 || !this.queue.isEmpty()) {
+                queued.waiting = task.getContext().getProfiler().newEntry(WAIT_BUDGET);
+                this.queue.add(queued);
+                this.maxQueued = Math.max(this.maxQueued, this.queue.size());
+                return;
+            }
+            --this.available;
+        }
+        queued.dispatch();
+    }
+
+    /**
+     * Give up the permit and scheduler slot of the task executing on the current thread before it blocks waiting for
+     * other tasks.
+     * @return the permit to reacquire once unblocked, null if the thread holds neither a permit nor a slot
+     */
+    public static Permit release() {
+        Permit permit = CURRENT.get();
+        if (permit != null && permit.released) {
+            // already released by an enclosing wait
+            return null;
+        }
+        WeightedFairScheduler.Entry slot = WeightedFairScheduler.release();
+        if (null == permit) {
+            return slot != null ? new Permit(null, null, slot) : null;
+        }
+        permit.released = true;
+        permit.slot = slot;
+        permit.budget.releasePermit();
+        return permit;
+    }
+
+    /**
+     * Get back a permit given up by release(), a no-op for null.
+     */
+    public static void reacquire(Permit permit) {
+        if (permit != null) {
+            // the scheduler slot is taken before the permit so get it back first
+            WeightedFairScheduler.reacquire(permit.slot);
+            permit.slot = null;
+            if (permit.budget != null) {
+                permit.budget.acquire(permit.task);
+                permit.released = false;
+            }
+        }
+    }
+
+    private void releasePermit() {
+        Queued next = null;
+        synchronized (this) {
+            if (this.reacquiring > 0 || this.queue.isEmpty()) {
+                // tasks that were already running take priority over queued tasks
+                ++this.available;
+                this.notifyAll();
+            } else {
+                next = this.queue.poll();
+            }
+        }
+        if (next != null) {
+            // the permit passes to the queued task
+            next.task.getContext().getProfiler().add(next.waiting);
+            next.dispatch();
+        }
+    }
+
+    private void acquire(ICallableTask<?> task) {
+        IProfilerEntry waiting = null;
+        boolean interrupted = false;
+        synchronized (this) {
+            if (this.available <= 0) {
+                waiting = task.getContext().getProfiler().newEntry(WAIT_BUDGET);
+                ++this.reacquiring;
+                while (this.available <= 0) {
+                    try {
+                        this.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                --this.reacquiring;
+            }
+            --this.available;
+        }
+        if (waiting != null) {
+            task.getContext().getProfiler().add(waiting);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getLimit() {
+        return this.limit;
+    }
+
+    /**
+     * @return number of tasks currently holding a permit
+     */
+    public synchronized int getRunning() {
+        return this.limit - this.available;
+    }
+
+    public synchronized int getQueued() {
+        return this.queue.size();
+    }
+
+    public synchronized int getMaxQueued() {
+        return this.maxQueued;
+    }
+
+    /**
+     * Permit held by a task while it's executing.
+     */
+    public static final class Permit {
+
+        private final ConcurrencyBudget budget;     // null if only a scheduler slot was released
+        private final ICallableTask<?> task;
+        private boolean released = false;
+        private WeightedFairScheduler.Entry slot;   // scheduler slot released along with the permit
+
+        private Permit(ConcurrencyBudget budget, ICallableTask<?> task, WeightedFairScheduler.Entry slot) {
+            this.budget = budget;
+            this.task = task;
+            this.slot = slot;
+        }
+
+    }
+
+    private class Queued implements Runnable {
+
+        private final ICallableTask<?> task;
+        private final Runnable asyncTask;
+        private final Executor executor;
+        private IProfilerEntry waiting = null;
+
+        Queued(ICallableTask<?> task, Runnable asyncTask, Executor executor) {
+            this.task = task;
+            this.asyncTask = asyncTask;
+            this.executor = executor;
+        }
+
+        void dispatch() {
+            if (this.asyncTask instanceof TrackedFutureTask) {
+                // queue time of the executor service shouldn't include time queued for the request's budget
+                ((TrackedFutureTask<?>) this.asyncTask).resubmit();
+            }
+            this.executor.execute(this);
+        }
+
+        @Override
+        public void run() {
+            Permit permit = new Permit(ConcurrencyBudget.this, this.task, null);
+            CURRENT.set(permit);
+            try {
+                this.asyncTask.run();
+            } finally {
+                CURRENT.remove();
+                if (!permit.released) {
+                    releasePermit();
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import com.ebay.taskgraph.context.ResponseContext;
+
+/**
+ * Decorator for critical tasks that fails the tasks depending on the task as soon as it throws an ApplicationException,
+ * instead of when each consumer eventually asks for the result.  See CallableTaskConfig.Priority.CRITICAL.
+ */
+class FailFastDecorator<T> implements ICallableTask<T> {
+
+    private final ICallableTask<T> task;
+    private final JavaCallableTaskExecutor executor;
+
+    FailFastDecorator(ICallableTask<T> task, JavaCallableTaskExecutor executor) {
+        this.task = task;
+        this.executor = executor;
+    }
+
+    @Override
+    public T call() throws Exception {
+        try {
+            return this.task.call();
+        } catch (ApplicationException e) {
+            this.executor.failDependents(this.task, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return this.task.getName();
+    }
+
+    @Override
+    public ResponseContext getContext() {
+        return this.task.getContext();
+    }
+
+    @Override
+    public CallableTaskConfig getTaskConfig() {
+        return this.task.getTaskConfig();
+    }
+
+    @Override
+    public void waitForDependencies() {
+        this.task.waitForDependencies();
+    }
+
+    @Override
+    public ICallableTaskFuture<?>[] getDependencies() {
+        return this.task.getDependencies();
+    }
+
+}
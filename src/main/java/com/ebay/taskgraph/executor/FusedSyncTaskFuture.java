@@ -0,0 +1,223 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+
+/**
+ * Future for a synchronous task that has been fused with the chain of synchronous tasks it depends on.
+ *
+ * Replaces the ProfileDecorator, TaskThreadLoggingDecorator, SynchronousFuture and CallableTaskFuture
+ * stack of a regular synchronous task.  When the result is first requested, the chain of fused
+ * dependencies that haven't run yet is resolved iteratively and each task is executed in dependency
+ * order as a single unit, so a long chain doesn't recurse through the decorators of every task.
+ *
+ * Each task still records its own profiler data but in a flat form, i.e. the task timing only with no
+ * separate entry for the time spent waiting on dependencies.
+ */
+class FusedSyncTaskFuture<T> implements ICallableTaskFuture<T> {
+
+    private final ICallableTask<T> task;
+
+    /**
+     * Task that was running on the thread that added this task, only recorded when profiling.
+     */
+    private final String parentTask;
+
+    private volatile boolean done = false;
+
+    private T result;
+
+    private volatile ApplicationException applicationException = null;
+
+    FusedSyncTaskFuture(ICallableTask<T> task) {
+        this.task = task;
+        DiagnosticConfig diagnosticConfig = task.getContext().getDiagnosticConfig();
+        if (diagnosticConfig.profile || diagnosticConfig.showDiagnostics) {
+            this.parentTask = TaskThreadLoggingDecorator.getCurrentTask();
+            task.getContext().getProfiler().addData(Task.FUSED, Boolean.TRUE.toString());
+        } else {
+            this.parentTask = null;
+        }
+    }
+
+    @Override
+    public T getNoThrow(ICallableTask<?> caller) {
+
+        Task.addDependency(this.task, caller);
+
+        if (!this.done) {
+            for (FusedSyncTaskFuture<?> future : getPendingChain()) {
+                future.run();
+            }
+        }
+        return getResult();
+    }
+
+    private synchronized T getResult() {
+        if (this.applicationException != null) {
+            throw this.applicationException;
+        }
+        return this.result;
+    }
+
+    /**
+     * @return this future and the fused dependencies that haven't run yet, in the order they need to run
+     */
+    private List<FusedSyncTaskFuture<?>> getPendingChain() {
+
+        List<FusedSyncTaskFuture<?>> chain = new ArrayList<>();
+        Set<FusedSyncTaskFuture<?>> visited = Collections.newSetFromMap(new IdentityHashMap<FusedSyncTaskFuture<?>, Boolean>());
+
+        // iterative depth first traversal so long chains don't grow the stack
+        // a future is added to the chain once all its pending dependencies have been added
+        Deque<FusedSyncTaskFuture<?>> stack = new ArrayDeque<>();
+        Deque<Boolean> expanded = new ArrayDeque<>();
+        stack.push(this);
+        expanded.push(Boolean.FALSE);
+        visited.add(this);
+        while (!stack.isEmpty()) {
+            FusedSyncTaskFuture<?> future = stack.pop();
+            if (expanded.pop()) {
+                chain.add(future);
+                continue;
+            }
+            stack.push(future);
+            expanded.push(Boolean.TRUE);
+            ICallableTaskFuture<?>[] dependencies = future.task.getDependencies();
+            if (dependencies != null) {
+                for (ICallableTaskFuture<?> dep : dependencies) {
+                    if (dep instanceof FusedSyncTaskFuture) {
+                        FusedSyncTaskFuture<?> fused = (FusedSyncTaskFuture<?>) dep;
+                        if (!fused.done && visited.add(fused)) {
+                            stack.push(fused);
+                            expanded.push(Boolean.FALSE);
+                        }
+                    }
+                }
+            }
+        }
+        return chain;
+    }
+
+    /**
+     * Execute the task once only.
+     * Synchronized in case there are multiple dependent tasks on different threads that may call this concurrently.
+     */
+    private synchronized void run() {
+
+        if (this.done) {
+            return;
+        }
+
+        String previousTask = null;
+        if (this.parentTask != null) {
+            Task.logParentTaskAndThread(this.task, this.parentTask);
+            previousTask = TaskThreadLoggingDecorator.setCurrentTask(this.task.getName());
+        }
+
+        T rval = null;
+        try {
+            // fused dependencies have already run so this only blocks on asynchronous dependencies
+            this.task.waitForDependencies();
+
+            this.task.getContext().getProfiler().start();
+            try {
+                rval = this.task.call();
+            } finally {
+                this.task.getContext().getProfiler().stop();
+            }
+        } catch (Throwable t) {
+            logException(t);
+        } finally {
+            if (this.parentTask != null) {
+                TaskThreadLoggingDecorator.setCurrentTask(previousTask);
+            }
+        }
+
+        if (null == this.applicationException) {
+            try {
+                this.result = CallableTaskFuture.applyTaskDiagnostics(this.task, rval);
+            } catch (ApplicationException e) {
+                this.applicationException = e;
+            }
+        }
+        this.done = true;
+    }
+
+    private void logException(Throwable t) {
+        try {
+            Task.logTaskException(this.task, t);
+        } catch (ApplicationException e) {
+            // save application exceptions so it can be rethrown for other tasks with this dependency
+            this.applicationException = e;
+        }
+    }
+
+    @Override
+    public ICallableTask<T> getTask() {
+        return this.task;
+    }
+
+    /**
+     * Force clients to use getNoThrow so that dependencies are reliably tracked.
+     */
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        throw new UnsupportedOperationException("use getNoThrow() so that task dependencies are tracked");
+    }
+
+    /**
+     * Force clients to use getNoThrow so that dependencies are reliably tracked.
+     */
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        throw new UnsupportedOperationException("use getNoThrow() so that task dependencies are tracked");
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    /**
+     * Same as other synchronous tasks, the result is always available to the caller without waiting on another thread.
+     */
+    @Override
+    public boolean isDone() {
+        return true;
+    }
+
+}
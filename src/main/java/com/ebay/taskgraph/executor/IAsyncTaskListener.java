@@ -0,0 +1,43 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+/**
+ * Observes asynchronous tasks submitted to the executor service, e.g. to measure how long tasks wait for a thread.
+ * Set on the RequestScope, shared by all requests so must be thread safe.
+ */
+public interface IAsyncTaskListener {
+
+    /**
+     * Called on the submitting thread before the task is submitted to the executor service.
+     */
+    void onSubmit();
+
+    /**
+     * Called on the executor thread as the task starts.
+     * @param queueTime nanoseconds the task waited between submission and starting
+     */
+    void onStart(long queueTime);
+
+    /**
+     * Called once the task has completed or been cancelled.
+     */
+    void onComplete();
+
+}
@@ -27,6 +27,22 @@ public interface ICallableTaskExecutor {
      * Submits a task to the executor.  Wraps the task in a profile decorator.
      */
     <T> ICallableTaskFuture<T> addTask(ICallableTask<T> task);
+
+    /**
+     * Submits a task with a primitive result.
+     * Default implementation executes the task as a generic task and unboxes the result.
+     */
+    default IIntCallableTaskFuture addTask(IIntCallableTask task) {
+        return new BoxedCallableTaskFuture.IntFuture(addTask((ICallableTask<Integer>) task));
+    }
+
+    default ILongCallableTaskFuture addTask(ILongCallableTask task) {
+        return new BoxedCallableTaskFuture.LongFuture(addTask((ICallableTask<Long>) task));
+    }
+
+    default IDoubleCallableTaskFuture addTask(IDoubleCallableTask task) {
+        return new BoxedCallableTaskFuture.DoubleFuture(addTask((ICallableTask<Double>) task));
+    }
     
     /**
      * Fetch a task by name.
@@ -38,4 +54,11 @@ public interface ICallableTaskExecutor {
      */
     void collectResponseContext(ICallableTask<?> parentTask);
 
+    /**
+     * Indicates no more tasks consuming the results of tasks already added will be added.
+     * Allows executors that release results early to drop results whose consumers have all completed.
+     */
+    default void seal() {
+    }
+
 }
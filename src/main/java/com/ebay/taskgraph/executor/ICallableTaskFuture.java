@@ -34,4 +34,27 @@ public interface ICallableTaskFuture<T> extends Future<T> {
      */
     T getNoThrow(ICallableTask<?> caller);
 
+    /**
+     * Same as getNoThrow() without returning the result, e.g. to wait for a dependency.
+     * Futures of primitive tasks override this so the result isn't boxed.
+     */
+    default void awaitResult(ICallableTask<?> caller) {
+        getNoThrow(caller);
+    }
+
+    /**
+     * Hint that the result will be needed so a lazy task can start executing ahead of time.
+     * No op for tasks that are not lazy.
+     */
+    default void prefetch() {
+    }
+
+    /**
+     * Hint that the result will be needed, by the calling thread if it gets to it first.  A lazy task runs on the calling
+     * thread if it asks for the result before blocking on another task, and is prefetched once it blocks otherwise.
+     * No op for tasks that are not lazy.
+     */
+    default void prefetchOnBlock() {
+    }
+
 }
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+/**
+ * Implemented by tasks that need to know when their future is cancelled, skipped or shed, as the task may then never be
+ * called, e.g. to release resources the task would otherwise release once it completes.
+ * Called at most once, possibly while the task is running if it's cancelled once it's started.
+ */
+public interface ICancellationListener {
+
+    void cancelled();
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+/**
+ * Future of an ILongCallableTask, allows the result to be consumed without boxing.
+ */
+public interface ILongCallableTaskFuture extends ICallableTaskFuture<Long> {
+
+    /**
+     * Same as getNoThrow() without boxing the result.
+     * @return defaultValue if the task failed or returned null
+     */
+    long getLongNoThrow(ICallableTask<?> caller, long defaultValue);
+
+    default long getLongNoThrow(ICallableTask<?> caller) {
+        return getLongNoThrow(caller, 0);
+    }
+
+}
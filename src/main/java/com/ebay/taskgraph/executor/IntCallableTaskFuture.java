@@ -0,0 +1,55 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.List;
+
+/**
+ * Future that stores the result of an IIntCallableTask as a primitive.
+ */
+class IntCallableTaskFuture extends PrimitiveCallableTaskFuture<Integer> implements IIntCallableTaskFuture {
+
+    private final IIntCallableTask task;
+
+    /**
+     * Safely published by the happens before relationship of completing the task and waiting on its result.
+     */
+    private int value;
+
+    IntCallableTaskFuture(IIntCallableTask task, boolean async, List<IAsyncTaskListener> listeners) {
+        super(task, async, listeners);
+        this.task = task;
+    }
+
+    @Override
+    protected void compute() throws Exception {
+        this.value = this.task.callInt();
+    }
+
+    @Override
+    protected Integer box() {
+        return this.value;
+    }
+
+    @Override
+    public int getIntNoThrow(ICallableTask<?> caller, int defaultValue) {
+        return awaitValue(caller) ? this.value : defaultValue;
+    }
+
+}
@@ -18,41 +18,327 @@
 
 package com.ebay.taskgraph.executor;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ebay.taskgraph.executor.workflow.WorkflowException;
 
 /**
  * Simple orchestrator that used Java executor service.
+ * Thread safe, tasks may be added from any thread including the executor's own threads.
  */
 public class JavaCallableTaskExecutor implements ICallableTaskExecutor {
 
     private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool();
 
-    private final Map<String, ICallableTaskFuture<?>> tasks = new HashMap<>();
+    private final TaskRegistry tasks = new TaskRegistry();
+
+    private final RequestScope scope;
+
+    /**
+     * Runs asynchronous tasks, the request class queue of the scope's scheduler if set.
+     */
+    private final Executor executorService;
+
+    /**
+     * Set once no more consumers of existing results will be added, only used for early release of results.
+     */
+    private final AtomicBoolean sealed = new AtomicBoolean(false);
+
+    /**
+     * Number of optional tasks skipped by the load shedder.
+     */
+    private final AtomicInteger shed = new AtomicInteger(0);
+
+    /**
+     * Failure of each critical task that failed and of each task failed fast because it depends on one, guarded by itself.
+     */
+    private final Map<String, Failure> failures = new HashMap<>();
+
+    /**
+     * Tasks failed fast and the critical task they depend on, guarded by failures.
+     */
+    private final Map<String, String> failedFast = new HashMap<>();
+
+    /**
+     * Set once a critical task has failed so tasks added afterwards are checked against the failures.
+     */
+    private volatile boolean criticalFailure = false;
+
+    public JavaCallableTaskExecutor() {
+        this(RequestScope.DEFAULT);
+    }
+
+    public JavaCallableTaskExecutor(RequestScope scope) {
+        this.scope = scope;
+        WeightedFairScheduler scheduler = scope.getScheduler();
+        this.executorService = scheduler != null ? scheduler.forRequestClass(scope.getRequestClass()) : EXECUTOR;
+    }
 
     @Override
     public <T> ICallableTaskFuture<T> addTask(ICallableTask<T> task) {
 
+        if (CallableTaskExecutorHelper.isShed(this.scope, task) != null) {
+            // optional task skipped under load, resolves to null without running
+            return addShedTask(task);
+        }
+
+        final TaskStream<?> stream = task instanceof StreamingTask ? ((StreamingTask<?>) task).getStream() : null;
+        final ICancellationListener cancellationListener = task instanceof ICancellationListener ? (ICancellationListener) task : null;
+
         // do this before decorating because ASYNC_TIMEOUT tasks have a decorator that changes the original task config
         boolean isAsync = CallableTaskExecutorHelper.isAsync(task);
+        boolean isLazy = CallableTaskExecutorHelper.isLazy(task);
+        if (CallableTaskExecutorHelper.isDeferred(this.scope, task)) {
+            // the task isn't expected to be consumed for this class of request so only run it on demand
+            isAsync = false;
+            isLazy = true;
+        }
+
+        if (task.getTaskConfig().adaptiveTimeout != null) {
+            // record the effective timeout before the task can run since profiler data isn't thread safe
+            if (task.getContext().getDiagnosticConfig().profile || task.getContext().getDiagnosticConfig().showDiagnostics) {
+                task.getContext().getProfiler().addData(Task.ADAPTIVE_TIMEOUT, Long.toString(task.getTaskConfig().getTimeout(task.getName())));
+            }
+            // inside the retries so each attempt is a sample
+            task = new AdaptiveTimeoutDecorator<>(task);
+        }
+        if (task.getTaskConfig().retryPolicy != null) {
+            // retry only the task's own execution, inside the profile and timeout decorators
+            task = new RetryDecorator<>(task, this.scope);
+        }
 
         task = CallableTaskExecutorHelper.getDecoratedTask(this, task);
+
+        if (task.getTaskConfig().isCritical()) {
+            task = new FailFastDecorator<>(task, this);
+        }
+
+        ReleaseDependenciesDecorator<T> releaseTask = null;
+        if (CallableTaskExecutorHelper.isEarlyRelease(this.scope, task)) {
+            releaseTask = new ReleaseDependenciesDecorator<>(task, this.sealed);
+            task = releaseTask;
+        }
+
+        StreamingDecorator<T> streamingTask = null;
+        if (stream != null) {
+            // end the stream even if the task never gets to run
+            streamingTask = new StreamingDecorator<>(task, stream);
+            task = streamingTask;
+        }
         
+        FutureTask<T> asyncTask = null;
         Future<T> future;
         if (isAsync) {
-            future = EXECUTOR.submit(task);
+            List<IAsyncTaskListener> listeners = this.scope.getAsyncTaskListeners();
+            asyncTask = listeners.isEmpty() ? new FutureTask<T>(task) : new TrackedFutureTask<T>(task, listeners);
+            future = asyncTask;
+        } else if (isLazy) {
+            // once prefetched the task is subject to the request's concurrency budget and scheduler like other async tasks,
+            // and is reported to the listeners
+            final ICallableTask<T> lazyTask = task;
+            future = new LazyFuture<T>(task, runnable -> execute(lazyTask, runnable), this.scope.getAsyncTaskListeners());
         } else {
             future = new SynchronousFuture<T>(task);
         }
         CallableTaskFuture<T> result = new CallableTaskFuture<T>(future, task);
-        this.tasks.put(task.getName(), result);
+        if (streamingTask != null) {
+            stream.setFuture(result);
+            result.addCancellationListener(streamingTask);
+        }
+        if (cancellationListener != null) {
+            result.addCancellationListener(cancellationListener);
+        }
+
+        if (releaseTask != null) {
+            // before the task is registered, so a task whose dependency has already been released is never added
+            releaseTask.retainDependencies();
+            result.addCancellationListener(releaseTask);
+        }
+        try {
+            // register before submitting so a duplicate task is never executed
+            register(result);
+        } catch (RuntimeException e) {
+            if (releaseTask != null) {
+                releaseTask.releaseDependencies();
+            }
+            throw e;
+        }
+        if (this.criticalFailure && failIfDependent(result)) {
+            // depends on a critical task that has already failed so never runs
+            return result;
+        }
+        if (asyncTask != null) {
+            execute(task, asyncTask);
+        }
         return result;
     }
 
+    /**
+     * Tasks with primitive results are executed without boxing unless the result needs to be boxed anyway,
+     * e.g. for mocks and diagnostics, or the task requires the generic decorators.
+     */
+    @Override
+    public IIntCallableTaskFuture addTask(IIntCallableTask task) {
+        if (!CallableTaskExecutorHelper.isUnboxed(this.scope, task)) {
+            return new BoxedCallableTaskFuture.IntFuture(addTask((ICallableTask<Integer>) task));
+        }
+        IntCallableTaskFuture future = new IntCallableTaskFuture(task, CallableTaskExecutorHelper.isAsync(task),
+                this.scope.getAsyncTaskListeners());
+        submit(future);
+        return future;
+    }
+
+    @Override
+    public ILongCallableTaskFuture addTask(ILongCallableTask task) {
+        if (!CallableTaskExecutorHelper.isUnboxed(this.scope, task)) {
+            return new BoxedCallableTaskFuture.LongFuture(addTask((ICallableTask<Long>) task));
+        }
+        LongCallableTaskFuture future = new LongCallableTaskFuture(task, CallableTaskExecutorHelper.isAsync(task),
+                this.scope.getAsyncTaskListeners());
+        submit(future);
+        return future;
+    }
+
+    @Override
+    public IDoubleCallableTaskFuture addTask(IDoubleCallableTask task) {
+        if (!CallableTaskExecutorHelper.isUnboxed(this.scope, task)) {
+            return new BoxedCallableTaskFuture.DoubleFuture(addTask((ICallableTask<Double>) task));
+        }
+        DoubleCallableTaskFuture future = new DoubleCallableTaskFuture(task, CallableTaskExecutorHelper.isAsync(task),
+                this.scope.getAsyncTaskListeners());
+        submit(future);
+        return future;
+    }
+
+    private <T> ICallableTaskFuture<T> addShedTask(ICallableTask<T> task) {
+        CallableTaskFuture<T> result = new CallableTaskFuture<T>(new SynchronousFuture<T>(new CallableTaskNull<T>()), task);
+        register(result);
+        this.shed.incrementAndGet();
+        if (task instanceof StreamingTask) {
+            // the subscriber sees an empty stream, as other consumers see a null result
+            ((StreamingTask<?>) task).getStream().close();
+        }
+        if (task instanceof ICancellationListener) {
+            ((ICancellationListener) task).cancelled();
+        }
+        return result;
+    }
+
+    void submit(PrimitiveCallableTaskFuture<?> future) {
+        if (getTask(future.getTask().getName()) != null) {
+            throw new WorkflowException("Attempted to add a duplicate key: " + future.getTask().getName());
+        }
+        register(future);
+        if (future.getAsyncTask() != null) {
+            execute(future.getTask(), future.getAsyncTask());
+        }
+    }
+
+    private void execute(ICallableTask<?> task, Runnable asyncTask) {
+        ConcurrencyBudget budget = this.scope.getBudget();
+        if (budget != null) {
+            budget.execute(task, asyncTask, this.executorService);
+        } else {
+            this.executorService.execute(asyncTask);
+        }
+    }
+
+    /**
+     * Fail all the tasks that transitively depend on a critical task that threw an ApplicationException,
+     * cancelling those still running or waiting to run.  Consumers blocked on the results are released immediately
+     * rather than when their own dependencies complete or time out.  Tasks that have already completed keep their result.
+     * Only tasks with generic results are failed, primitive task futures fail when they consume the result as usual.
+     */
+    void failDependents(ICallableTask<?> critical, ApplicationException exception) {
+        synchronized (this.failures) {
+            this.criticalFailure = true;
+            Failure failure = new Failure(critical.getName(), exception);
+            this.failures.put(critical.getName(), failure);
+            // tasks are registered after their dependencies so a single pass finds all the transitive dependents
+            // all are failed before any is cancelled, otherwise cancelling one could complete its consumers first
+            List<ICallableTaskFuture<?>> failed = new ArrayList<>();
+            for (ICallableTaskFuture<?> future : this.tasks.snapshot()) {
+                if (!this.failures.containsKey(future.getTask().getName()) && dependsOn(future, failure) && fail(future, failure)) {
+                    failed.add(future);
+                }
+            }
+            for (ICallableTaskFuture<?> future : failed) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private boolean failIfDependent(ICallableTaskFuture<?> future) {
+        synchronized (this.failures) {
+            for (ICallableTaskFuture<?> dep : getDependencies(future)) {
+                Failure failure = this.failures.get(dep.getTask().getName());
+                if (failure != null && fail(future, failure)) {
+                    future.cancel(true);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // caller must hold the failures lock
+    private boolean dependsOn(ICallableTaskFuture<?> future, Failure failure) {
+        for (ICallableTaskFuture<?> dep : getDependencies(future)) {
+            if (failure == this.failures.get(dep.getTask().getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // caller must hold the failures lock
+    private boolean fail(ICallableTaskFuture<?> future, Failure failure) {
+        if (future instanceof CallableTaskFuture && ((CallableTaskFuture<?>) future).fail(failure.exception)) {
+            String name = future.getTask().getName();
+            this.failures.put(name, failure);
+            this.failedFast.put(name, failure.critical);
+            return true;
+        }
+        return false;
+    }
+
+    private static ICallableTaskFuture<?>[] getDependencies(ICallableTaskFuture<?> future) {
+        ICallableTaskFuture<?>[] dependencies = future.getTask().getDependencies();
+        return dependencies != null ? dependencies : new ICallableTaskFuture<?>[0];
+    }
+
+    /**
+     * Atomically add a task future to the executor, throws if a task with the same name has already been added.
+     */
+    protected void register(ICallableTaskFuture<?> future) {
+        this.tasks.add(future);
+    }
+
+    /**
+     * Release results of tasks whose consumers have already completed.
+     * Results of tasks with consumers still running are released as the last consumer completes.
+     */
+    @Override
+    public void seal() {
+        if (this.scope.isEarlyRelease() && this.sealed.compareAndSet(false, true)) {
+            for (ICallableTaskFuture<?> task : this.tasks.snapshot()) {
+                if (task instanceof CallableTaskFuture) {
+                    ((CallableTaskFuture<?>) task).releaseIfConsumed();
+                }
+            }
+        }
+    }
+
     /**
      * Add all task response contexts to the workflow instance. 
      * Make sure to call this ONCE AND ONLY ONCE after the workflow execution is done. 
@@ -60,11 +346,44 @@ public class JavaCallableTaskExecutor implements ICallableTaskExecutor {
      */
     @Override
     public void collectResponseContext(ICallableTask<?> parentTask) {
-        for (Entry<String, ICallableTaskFuture<?>> task : this.tasks.entrySet()) {
-            parentTask.getContext().add(task.getValue().getTask().getContext());
+        int skipped = 0;
+        Map<String, String> failed = getFailedFast();
+        for (ICallableTaskFuture<?> task : this.tasks.snapshot()) {
+            // the workflow is complete so lazy tasks nobody asked for never need to run
+            if (task instanceof CallableTaskFuture && ((CallableTaskFuture<?>) task).skipLazy()) {
+                task.getTask().getContext().getProfiler().addData(Task.LAZY_SKIPPED, Boolean.TRUE.toString());
+                ++skipped;
+            }
+            String critical = failed.get(task.getTask().getName());
+            if (critical != null) {
+                task.getTask().getContext().getProfiler().addData(Task.FAILED_FAST, critical);
+            }
+            parentTask.getContext().add(task.getTask().getContext());
+        }
+        if (skipped > 0) {
+            parentTask.getContext().getProfiler().addData(Task.LAZY_SKIPPED_COUNT, Integer.toString(skipped));
+        }
+        if (this.shed.get() > 0) {
+            parentTask.getContext().getProfiler().addData(Task.SHED_COUNT, Integer.toString(this.shed.get()));
+        }
+        if (!failed.isEmpty()) {
+            parentTask.getContext().getProfiler().addData(Task.FAILED_FAST_COUNT, Integer.toString(failed.size()));
+        }
+    }
+
+    /**
+     * @return tasks failed fast and the critical task they depend on
+     */
+    public Map<String, String> getFailedFast() {
+        synchronized (this.failures) {
+            return new HashMap<>(this.failedFast);
         }
     }
 
+    public RequestScope getScope() {
+        return this.scope;
+    }
+
     public static void shutdown() {
         EXECUTOR.shutdown();
     }
@@ -75,4 +394,19 @@ public class JavaCallableTaskExecutor implements ICallableTaskExecutor {
         return (ICallableTaskFuture<T>) this.tasks.get(name);
     }
 
+    /**
+     * Failure of a critical task.
+     */
+    private static final class Failure {
+
+        private final String critical;
+        private final ApplicationException exception;
+
+        private Failure(String critical, ApplicationException exception) {
+            this.critical = critical;
+            this.exception = exception;
+        }
+
+    }
+
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Future for a lazy task that is only executed once its result is needed.
+ *
+ * The task is submitted to the executor service when prefetched, or run on the calling thread if the result
+ * is requested before the task was prefetched.  A task that hasn't started by the time the workflow completes
+ * can be skipped so it never runs.
+ *
+ * A task run on the calling thread runs to completion, the timeout passed to get() only applies to a task that
+ * was already prefetched.  Prefetch lazy tasks whose timeout must be enforced, as Task.waitForDependencies() does.
+ *
+ * A task can also be prefetched once the thread that added it blocks, see prefetchOnBlock(), so it runs on its consumer's
+ * thread if that thread asks for it first and on the executor service otherwise.
+ */
+public class LazyFuture<T> implements Future<T> {
+
+    // lazy tasks to prefetch once the current thread blocks waiting for another task
+    private static final ThreadLocal<List<LazyFuture<?>>> DEFERRED = new ThreadLocal<>();
+
+    private final FutureTask<T> future;
+
+    private final Executor executor;
+
+    /**
+     * Set once by whichever of prefetch, get or skip gets there first.
+     */
+    private final AtomicBoolean started = new AtomicBoolean(false);
+
+    public LazyFuture(ICallableTask<T> task, Executor executor) {
+        this(task, executor, Collections.<IAsyncTaskListener>emptyList());
+    }
+
+    /**
+     * @param listeners notified if the task is submitted to the executor service, see RequestScope.getAsyncTaskListeners()
+     */
+    public LazyFuture(ICallableTask<T> task, Executor executor, List<IAsyncTaskListener> listeners) {
+        this.future = listeners.isEmpty() ? new FutureTask<>(task) : new TrackedFutureTask<>(task, listeners, false);
+        this.executor = executor;
+    }
+
+    /**
+     * Submit the task to the executor service if it hasn't already started.
+     */
+    public void prefetch() {
+        if (this.started.compareAndSet(false, true)) {
+            if (this.future instanceof TrackedFutureTask) {
+                ((TrackedFutureTask<T>) this.future).submit();
+            }
+            this.executor.execute(this.future);
+        }
+    }
+
+    /**
+     * Prefetch the task once the current thread blocks waiting for another task, or calls prefetchDeferred(), unless it
+     * has already started by then.  The current thread runs the task itself if it asks for the result first.
+     */
+    public void prefetchOnBlock() {
+        List<LazyFuture<?>> deferred = DEFERRED.get();
+        if (null == deferred) {
+            deferred = new ArrayList<>();
+            DEFERRED.set(deferred);
+        }
+        deferred.add(this);
+    }
+
+    /**
+     * Prefetch the tasks deferred by the current thread with prefetchOnBlock(), called before the thread blocks.
+     */
+    public static void prefetchDeferred() {
+        List<LazyFuture<?>> deferred = DEFERRED.get();
+        if (deferred != null && !deferred.isEmpty()) {
+            // copy first as a prefetched task may run on the current thread, e.g. if the executor service rejects it, and defer more
+            List<LazyFuture<?>> prefetch = new ArrayList<>(deferred);
+            deferred.clear();
+            for (LazyFuture<?> future : prefetch) {
+                future.prefetch();
+            }
+        }
+    }
+
+    /**
+     * Prevent the task from running if it hasn't already started.
+     * @return true if the task was skipped
+     */
+    public boolean skip() {
+        if (this.started.compareAndSet(false, true)) {
+            this.future.cancel(false);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        if (!runIfNotStarted() && !this.future.isDone()) {
+            prefetchDeferred();
+        }
+        return this.future.get();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!runIfNotStarted() && !this.future.isDone()) {
+            prefetchDeferred();
+        }
+        return this.future.get(timeout, unit);
+    }
+
+    /**
+     * Nothing has asked for the task ahead of time so run it on the calling thread, which would block on it anyway.
+     * The caller's timeout isn't applied as the task can't be stopped from the thread running it.
+     * @return false if the task had already started elsewhere, so the caller may block
+     */
+    private boolean runIfNotStarted() {
+        if (this.started.compareAndSet(false, true)) {
+            this.future.run();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return this.future.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return this.future.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return this.future.isDone();
+    }
+
+}
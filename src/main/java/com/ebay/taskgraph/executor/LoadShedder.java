@@ -0,0 +1,153 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Skips optional tasks when the service is under pressure so critical tasks still complete within the request's budget.
+ * Shared by all requests, thread safe.
+ *
+ * An optional task, see CallableTaskConfig.Priority.OPTIONAL, is shed when it's added to an executor while any of:
+ * - the number of asynchronous tasks submitted and not yet completed reaches the in flight limit
+ * - the recent time asynchronous tasks wait before they start reaches the queue time limit
+ * - the time remaining until the request deadline, see RequestScope.withDeadline(), is below the minimum remaining time
+ *
+ * A shed task is never run and its future resolves to null immediately.  The reason is recorded as shed profiler data of
+ * the task, and counts of shed and admitted optional tasks are kept for reporting.
+ */
+public class LoadShedder implements IAsyncTaskListener {
+
+    public enum Reason {
+        SATURATED,      // too many asynchronous tasks in flight
+        QUEUE_TIME,     // asynchronous tasks are waiting too long to start
+        BUDGET,         // not enough time left in the request
+    }
+
+    public static final int NO_IN_FLIGHT_LIMIT = Integer.MAX_VALUE;
+    public static final long NO_QUEUE_TIME_LIMIT = Long.MAX_VALUE;
+    public static final long NO_REMAINING_TIME_LIMIT = 0L;
+
+    // weight of the latest sample in the moving average of the queue time, as a shift
+    private static final int QUEUE_TIME_WEIGHT_SHIFT = 3;
+
+    private final int maxInFlight;
+    private final long maxQueueTime;
+    private final long minRemainingTime;
+
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+
+    // exponentially weighted moving average of the queue time in nanoseconds, updates may race which only affects accuracy
+    private volatile long queueTime = 0L;
+
+    private final AtomicLong admitted = new AtomicLong(0L);
+    private final Map<Reason, AtomicLong> shed = new EnumMap<>(Reason.class);
+
+    /**
+     * @param maxInFlight optional tasks are shed once this many asynchronous tasks are in flight
+     * @param maxQueueTime optional tasks are shed once asynchronous tasks wait this many milliseconds to start
+     * @param minRemainingTime optional tasks are shed once less than this many milliseconds remain until the request deadline
+     */
+    public LoadShedder(int maxInFlight, long maxQueueTime, long minRemainingTime) {
+        this.maxInFlight = maxInFlight;
+        this.maxQueueTime = maxQueueTime;
+        this.minRemainingTime = minRemainingTime;
+        for (Reason reason : Reason.values()) {
+            this.shed.put(reason, new AtomicLong(0L));
+        }
+    }
+
+    /**
+     * Decide whether to skip a task, only optional tasks are ever shed.
+     * @return reason the task should be shed, or null to run the task
+     */
+    public Reason check(RequestScope scope, ICallableTask<?> task) {
+        if (!task.getTaskConfig().isOptional()) {
+            return null;
+        }
+        Reason reason = getReason(scope);
+        if (null == reason) {
+            this.admitted.incrementAndGet();
+        } else {
+            this.shed.get(reason).incrementAndGet();
+        }
+        return reason;
+    }
+
+    private Reason getReason(RequestScope scope) {
+        if (this.inFlight.get() >= this.maxInFlight) {
+            return Reason.SATURATED;
+        }
+        if (getQueueTime() >= this.maxQueueTime) {
+            return Reason.QUEUE_TIME;
+        }
+        if (scope.getRemainingTime() < this.minRemainingTime) {
+            return Reason.BUDGET;
+        }
+        return null;
+    }
+
+    @Override
+    public void onSubmit() {
+        this.inFlight.incrementAndGet();
+    }
+
+    @Override
+    public void onStart(long sample) {
+        long average = this.queueTime;
+        this.queueTime = average + ((sample - average) >> QUEUE_TIME_WEIGHT_SHIFT);
+    }
+
+    @Override
+    public void onComplete() {
+        this.inFlight.decrementAndGet();
+    }
+
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    /**
+     * @return recent time in milliseconds asynchronous tasks waited before they started
+     */
+    public long getQueueTime() {
+        return TimeUnit.NANOSECONDS.toMillis(this.queueTime);
+    }
+
+    public long getAdmittedCount() {
+        return this.admitted.get();
+    }
+
+    public long getShedCount(Reason reason) {
+        return this.shed.get(reason).get();
+    }
+
+    public long getShedCount() {
+        long count = 0L;
+        for (AtomicLong c : this.shed.values()) {
+            count += c.get();
+        }
+        return count;
+    }
+
+}
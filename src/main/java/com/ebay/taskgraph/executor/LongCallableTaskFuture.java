@@ -0,0 +1,55 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.List;
+
+/**
+ * Future that stores the result of an ILongCallableTask as a primitive.
+ */
+class LongCallableTaskFuture extends PrimitiveCallableTaskFuture<Long> implements ILongCallableTaskFuture {
+
+    private final ILongCallableTask task;
+
+    /**
+     * Safely published by the happens before relationship of completing the task and waiting on its result.
+     */
+    private long value;
+
+    LongCallableTaskFuture(ILongCallableTask task, boolean async, List<IAsyncTaskListener> listeners) {
+        super(task, async, listeners);
+        this.task = task;
+    }
+
+    @Override
+    protected void compute() throws Exception {
+        this.value = this.task.callLong();
+    }
+
+    @Override
+    protected Long box() {
+        return this.value;
+    }
+
+    @Override
+    public long getLongNoThrow(ICallableTask<?> caller, long defaultValue) {
+        return awaitValue(caller) ? this.value : defaultValue;
+    }
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+import com.ebay.taskgraph.diagnostic.IProfilerEntry;
+
+/**
+ * Base class for futures of tasks with primitive results.
+ *
+ * Executes the task itself rather than through the generic decorators so the result is never boxed, but records
+ * the same profiler data, i.e. parent task and thread, time waiting for dependencies and task execution time.
+ * Exceptions are logged to the task and application exceptions are propagated to consumers as usual.
+ */
+abstract class PrimitiveCallableTaskFuture<T> implements ICallableTaskFuture<T> {
+
+    private final ICallableTask<T> task;
+
+    /**
+     * Task that was running on the thread that added this task, only recorded when profiling.
+     */
+    private final String parentTask;
+
+    /**
+     * Submitted to the executor service for asynchronous tasks, null for synchronous tasks.
+     */
+    private final FutureTask<Void> asyncTask;
+
+    private boolean done = false;
+
+    private volatile boolean failed = false;
+
+    private volatile ApplicationException applicationException = null;
+
+    /**
+     * @param listeners the request's async task listeners, see RequestScope.getAsyncTaskListeners()
+     */
+    PrimitiveCallableTaskFuture(ICallableTask<T> task, boolean async, List<IAsyncTaskListener> listeners) {
+        this.task = task;
+        DiagnosticConfig diagnosticConfig = task.getContext().getDiagnosticConfig();
+        this.parentTask = diagnosticConfig.profile || diagnosticConfig.showDiagnostics ? TaskThreadLoggingDecorator.getCurrentTask() : null;
+        if (async) {
+            Callable<Void> execution = new Callable<Void>() {
+
+                @Override
+                public Void call() {
+                    execute();
+                    return null;
+                }
+
+            };
+            this.asyncTask = listeners.isEmpty() ? new FutureTask<Void>(execution) : new TrackedFutureTask<Void>(execution, listeners);
+        } else {
+            this.asyncTask = null;
+        }
+    }
+
+    /**
+     * @return task to submit to the executor service, null if the task is synchronous
+     */
+    FutureTask<Void> getAsyncTask() {
+        return this.asyncTask;
+    }
+
+    /**
+     * Execute the task and store its primitive result.
+     */
+    protected abstract void compute() throws Exception;
+
+    /**
+     * @return boxed result for consumers using the generic interface
+     */
+    protected abstract T box();
+
+    private void execute() {
+
+        String previousTask = null;
+        if (this.parentTask != null) {
+            Task.logParentTaskAndThread(this.task, this.parentTask);
+            previousTask = TaskThreadLoggingDecorator.setCurrentTask(this.task.getName());
+        }
+        try {
+            // block for dependencies so profiling of the task shows only time spent in this task's execution
+            IProfilerEntry pe = this.task.getContext().getProfiler().newEntry(ProfileDecorator.WAIT_DEPS);
+            try {
+                this.task.waitForDependencies();
+            } finally {
+                this.task.getContext().getProfiler().add(pe);
+            }
+
+            this.task.getContext().getProfiler().start();
+            try {
+                compute();
+            } finally {
+                this.task.getContext().getProfiler().stop();
+            }
+        } catch (Throwable t) {
+            logException(t);
+        } finally {
+            if (this.parentTask != null) {
+                TaskThreadLoggingDecorator.setCurrentTask(previousTask);
+            }
+        }
+    }
+
+    /**
+     * Block until the result is available, running the task on the calling thread if it's synchronous.
+     * Synchronized in case there are multiple dependent tasks that may call this concurrently.
+     * @return true if the primitive result is valid, false if the task failed
+     */
+    protected synchronized boolean awaitValue(ICallableTask<?> caller) {
+
+        Task.addDependency(this.task, caller);
+
+        if (!this.done) {
+            if (null == this.asyncTask) {
+                execute();
+            } else {
+                // don't count against the request's concurrency budget while blocked
+                ConcurrencyBudget.Permit permit = this.asyncTask.isDone() ? null : ConcurrencyBudget.release();
+                try {
+                    this.asyncTask.get(this.task.getTaskConfig().timeout, CallableTaskFuture.TIMEOUT_UNIT);
+                } catch (TimeoutException e) {
+                    // mark the task's execution as having stopped even though the thread of execution continues to run
+                    this.task.getContext().getProfiler().stop();
+                    logException(e);
+                } catch (ExecutionException e) {
+                    logException(e.getCause());
+                } catch (Throwable t) {
+                    logException(t);
+                } finally {
+                    ConcurrencyBudget.reacquire(permit);
+                }
+            }
+            this.done = true;
+        }
+
+        if (this.applicationException != null) {
+            throw this.applicationException;
+        }
+        return !this.failed;
+    }
+
+    private void logException(Throwable t) {
+        this.failed = true;
+        try {
+            Task.logTaskException(this.task, t);
+        } catch (ApplicationException e) {
+            // save application exceptions so it can be rethrown for other tasks with this dependency
+            this.applicationException = e;
+        }
+    }
+
+    @Override
+    public T getNoThrow(ICallableTask<?> caller) {
+        return awaitValue(caller) ? box() : null;
+    }
+
+    @Override
+    public void awaitResult(ICallableTask<?> caller) {
+        awaitValue(caller);
+    }
+
+    @Override
+    public ICallableTask<T> getTask() {
+        return this.task;
+    }
+
+    /**
+     * Force clients to use getNoThrow so that dependencies are reliably tracked.
+     */
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        throw new UnsupportedOperationException("use getNoThrow() so that task dependencies are tracked");
+    }
+
+    /**
+     * Force clients to use getNoThrow so that dependencies are reliably tracked.
+     */
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        throw new UnsupportedOperationException("use getNoThrow() so that task dependencies are tracked");
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return this.asyncTask != null && this.asyncTask.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return this.asyncTask != null && this.asyncTask.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return null == this.asyncTask || this.asyncTask.isDone();
+    }
+
+}
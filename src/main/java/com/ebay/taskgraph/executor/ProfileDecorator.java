@@ -27,7 +27,7 @@ import com.ebay.taskgraph.diagnostic.IProfilerEntry;
  */
 public class ProfileDecorator<T> implements ICallableTask<T> {
 
-    private static final String WAIT_DEPS = "wait_deps";
+    static final String WAIT_DEPS = "wait_deps";
 
     private final ICallableTask<T> task;
 
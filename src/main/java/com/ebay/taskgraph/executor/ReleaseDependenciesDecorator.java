@@ -0,0 +1,131 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.ebay.taskgraph.context.ResponseContext;
+
+/**
+ * Decorator that releases the task's hold on the results of its dependencies once the task completes.
+ * Dependencies drop their result when the last of their declared consumers completes and the executor has been sealed,
+ * see RequestScope.withEarlyRelease().  The hold is also released if the task's future is cancelled or skipped, as the
+ * task may then never run.
+ */
+class ReleaseDependenciesDecorator<T> implements ICallableTask<T>, ICancellationListener {
+
+    private final ICallableTask<T> task;
+
+    /**
+     * Whether the executor has been sealed, i.e. no more consumers will be added.
+     */
+    private final AtomicBoolean sealed;
+
+    /**
+     * Set once the dependencies have been released, whichever of completing or being cancelled happens first.
+     */
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    ReleaseDependenciesDecorator(ICallableTask<T> task, AtomicBoolean sealed) {
+        this.task = task;
+        this.sealed = sealed;
+    }
+
+    /**
+     * Register this task as a consumer of its dependencies, must be called before the task is registered.
+     * If a dependency has already been released, those already retained are released again before throwing.
+     */
+    void retainDependencies() {
+        ICallableTaskFuture<?>[] dependencies = this.task.getDependencies();
+        int retained = 0;
+        try {
+            for (; retained < dependencies.length; ++retained) {
+                if (dependencies[retained] instanceof CallableTaskFuture) {
+                    ((CallableTaskFuture<?>) dependencies[retained]).retain();
+                }
+            }
+        } catch (RuntimeException e) {
+            this.released.set(true);
+            release(dependencies, retained);
+            throw e;
+        }
+    }
+
+    /**
+     * Release the task's hold on its dependencies, once only.
+     */
+    void releaseDependencies() {
+        if (this.released.compareAndSet(false, true)) {
+            ICallableTaskFuture<?>[] dependencies = this.task.getDependencies();
+            release(dependencies, dependencies.length);
+        }
+    }
+
+    private void release(ICallableTaskFuture<?>[] dependencies, int count) {
+        boolean isSealed = this.sealed.get();
+        for (int i = 0; i < count; ++i) {
+            if (dependencies[i] instanceof CallableTaskFuture) {
+                ((CallableTaskFuture<?>) dependencies[i]).release(isSealed);
+            }
+        }
+    }
+
+    @Override
+    public T call() throws Exception {
+        try {
+            return this.task.call();
+        } finally {
+            releaseDependencies();
+        }
+    }
+
+    /**
+     * The task may never run, or is abandoned while running.
+     */
+    @Override
+    public void cancelled() {
+        releaseDependencies();
+    }
+
+    @Override
+    public String getName() {
+        return this.task.getName();
+    }
+
+    @Override
+    public ResponseContext getContext() {
+        return this.task.getContext();
+    }
+
+    @Override
+    public CallableTaskConfig getTaskConfig() {
+        return this.task.getTaskConfig();
+    }
+
+    @Override
+    public void waitForDependencies() {
+        this.task.waitForDependencies();
+    }
+
+    @Override
+    public ICallableTaskFuture<?>[] getDependencies() {
+        return this.task.getDependencies();
+    }
+
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.ws.rs.core.HttpHeaders;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+
+/**
+ * Immutable per request settings shared by the executors of a request's workflows.
+ * Created once per request and passed to the executor of the top level workflow and any nested workflows.
+ */
+public final class RequestScope {
+
+    public static final String DEFAULT_REQUEST_CLASS = "default";
+
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /**
+     * Separates the names of the nested workflow tasks in a task path, see getTaskPath().
+     */
+    public static final String PATH_SEPARATOR = "/";
+
+    public static final RequestScope DEFAULT = new RequestScope(DEFAULT_REQUEST_CLASS, Collections.<String>emptySet(), "", false,
+            NO_DEADLINE, null, Collections.<IAsyncTaskListener>emptyList(), null, null);
+
+    /**
+     * Class of request used to select per request class policies, e.g. the workflow path taken for the request.
+     */
+    private final String requestClass;
+
+    /**
+     * Asynchronous tasks that are deferred until their result is needed, see ExecType.LAZY.
+     */
+    private final Set<String> deferredTasks;
+
+    /**
+     * Path of the workflow the executor's tasks belong to, empty for the top level workflow of the request.
+     */
+    private final String workflowPath;
+
+    /**
+     * Drop task results once all the consumers declared as dependencies have completed.
+     */
+    private final boolean earlyRelease;
+
+    /**
+     * Time in milliseconds since the epoch by which the request should complete.
+     */
+    private final long deadline;
+
+    /**
+     * Skips optional tasks under pressure, shared by all requests.
+     */
+    private final LoadShedder loadShedder;
+
+    /**
+     * Observe asynchronous tasks, e.g. to measure the queueing delay of the executor service for admission control.
+     */
+    private final List<IAsyncTaskListener> listeners;
+
+    // listeners including the load shedder, which tracks tasks in flight
+    private final List<IAsyncTaskListener> asyncTaskListeners;
+
+    /**
+     * Queues asynchronous tasks by request class, shared by all requests.
+     */
+    private final WeightedFairScheduler scheduler;
+
+    /**
+     * Limits the asynchronous tasks of this request executing at once.
+     */
+    private final ConcurrencyBudget budget;
+
+    private RequestScope(
+            String requestClass,
+            Set<String> deferredTasks,
+            String workflowPath,
+            boolean earlyRelease,
+            long deadline,
+            LoadShedder loadShedder,
+            List<IAsyncTaskListener> listeners,
+            WeightedFairScheduler scheduler,
+            ConcurrencyBudget budget) {
+        this.requestClass = requestClass;
+        this.deferredTasks = deferredTasks;
+        this.workflowPath = workflowPath;
+        this.earlyRelease = earlyRelease;
+        this.deadline = deadline;
+        this.loadShedder = loadShedder;
+        this.listeners = listeners;
+        List<IAsyncTaskListener> all = new ArrayList<>(listeners);
+        if (loadShedder != null) {
+            all.add(loadShedder);
+        }
+        this.asyncTaskListeners = Collections.unmodifiableList(all);
+        this.scheduler = scheduler;
+        this.budget = budget;
+    }
+
+    public RequestScope withRequestClass(String requestClass) {
+        return new RequestScope(requestClass, this.deferredTasks, this.workflowPath, this.earlyRelease, this.deadline, this.loadShedder,
+                this.listeners, this.scheduler, this.budget);
+    }
+
+    /**
+     * Take the request class from the request class header, see DiagnosticConfig.REQUESTCLASS, if present.
+     */
+    public RequestScope withRequestClass(HttpHeaders headers) {
+        String requestClass = DiagnosticConfig.getRequestClass(headers);
+        return null == requestClass ? this : withRequestClass(requestClass);
+    }
+
+    /**
+     * Queue asynchronous tasks under the request class with weighted fair queuing instead of running them straight away.
+     * Lazy tasks are started by a consumer waiting for them so aren't queued.
+     */
+    public RequestScope withScheduler(WeightedFairScheduler scheduler) {
+        return new RequestScope(this.requestClass, this.deferredTasks, this.workflowPath, this.earlyRelease, this.deadline, this.loadShedder,
+                this.listeners, scheduler, this.budget);
+    }
+
+    /**
+     * Limit the number of asynchronous tasks of the request executing at once, see ConcurrencyBudget.
+     * Creates the budget so the scope must be created per request, nested workflows share the budget through the scope.
+     */
+    public RequestScope withConcurrencyLimit(int limit) {
+        return new RequestScope(this.requestClass, this.deferredTasks, this.workflowPath, this.earlyRelease, this.deadline, this.loadShedder,
+                this.listeners, this.scheduler, new ConcurrencyBudget(limit));
+    }
+
+    /**
+     * Defer the asynchronous tasks with the given paths, e.g. the tasks DeadTaskAnalyzer found are never consumed for this
+     * request class.  Tasks are identified by their path, see getTaskPath(), so a task name reused in different nested
+     * workflows is deferred separately.  Deferred tasks only run if their result is requested before the workflow completes.
+     */
+    public RequestScope withDeferredTasks(Set<String> deferredTasks) {
+        return new RequestScope(this.requestClass, Collections.unmodifiableSet(new HashSet<>(deferredTasks)), this.workflowPath,
+                this.earlyRelease, this.deadline, this.loadShedder, this.listeners, this.scheduler, this.budget);
+    }
+
+    /**
+     * Scope for the executor of a nested workflow owned by the named task, see RequestScopeWorkflowFactory.
+     */
+    public RequestScope withNestedWorkflow(String ownerTaskName) {
+        return new RequestScope(this.requestClass, this.deferredTasks, getTaskPath(ownerTaskName), this.earlyRelease,
+                this.deadline, this.loadShedder, this.listeners, this.scheduler, this.budget);
+    }
+
+    /**
+     * Release task results as soon as the last consumer declared via the task dependencies has completed,
+     * so large intermediate results aren't reachable for the whole request.
+     * Results are only released once the executor has been sealed, see IWorkflow.seal(), and every task that reads a
+     * result must declare it as a dependency.  Ignored for requests with diagnostics enabled because diagnostics read
+     * results late.
+     */
+    public RequestScope withEarlyRelease(boolean earlyRelease) {
+        return new RequestScope(this.requestClass, this.deferredTasks, this.workflowPath, earlyRelease, this.deadline, this.loadShedder,
+                this.listeners, this.scheduler, this.budget);
+    }
+
+    /**
+     * Set the time the request should complete by, in milliseconds since the epoch.
+     * Used by the load shedder to skip optional tasks when the remaining time is short.
+     */
+    public RequestScope withDeadline(long deadline) {
+        return new RequestScope(this.requestClass, this.deferredTasks, this.workflowPath, this.earlyRelease, deadline, this.loadShedder,
+                this.listeners, this.scheduler, this.budget);
+    }
+
+    /**
+     * Skip optional tasks, see CallableTaskConfig.Priority, when the load shedder's thresholds are crossed.
+     */
+    public RequestScope withLoadShedder(LoadShedder loadShedder) {
+        return new RequestScope(this.requestClass, this.deferredTasks, this.workflowPath, this.earlyRelease, this.deadline, loadShedder,
+                this.listeners, this.scheduler, this.budget);
+    }
+
+    /**
+     * Add a listener notified as asynchronous tasks are submitted, start and complete, e.g. an AdmissionController.
+     */
+    public RequestScope withAsyncTaskListener(IAsyncTaskListener listener) {
+        List<IAsyncTaskListener> added = new ArrayList<>(this.listeners);
+        added.add(listener);
+        return new RequestScope(this.requestClass, this.deferredTasks, this.workflowPath, this.earlyRelease, this.deadline, this.loadShedder,
+                Collections.unmodifiableList(added), this.scheduler, this.budget);
+    }
+
+    public String getRequestClass() {
+        return this.requestClass;
+    }
+
+    public Set<String> getDeferredTasks() {
+        return this.deferredTasks;
+    }
+
+    public String getWorkflowPath() {
+        return this.workflowPath;
+    }
+
+    /**
+     * @return path of the task in the workflow of this scope, the names of the enclosing nested workflow tasks and the
+     * task name separated by PATH_SEPARATOR
+     */
+    public String getTaskPath(String taskName) {
+        return getTaskPath(this.workflowPath, taskName);
+    }
+
+    public static String getTaskPath(String workflowPath, String taskName) {
+        return workflowPath.isEmpty() ? taskName : workflowPath + PATH_SEPARATOR + taskName;
+    }
+
+    public boolean isEarlyRelease() {
+        return this.earlyRelease;
+    }
+
+    public long getDeadline() {
+        return this.deadline;
+    }
+
+    /**
+     * @return milliseconds until the deadline, Long.MAX_VALUE if the request has no deadline
+     */
+    public long getRemainingTime() {
+        if (NO_DEADLINE == this.deadline) {
+            return Long.MAX_VALUE;
+        }
+        return this.deadline - System.currentTimeMillis();
+    }
+
+    public LoadShedder getLoadShedder() {
+        return this.loadShedder;
+    }
+
+    public List<IAsyncTaskListener> getAsyncTaskListeners() {
+        return this.asyncTaskListeners;
+    }
+
+    public WeightedFairScheduler getScheduler() {
+        return this.scheduler;
+    }
+
+    public ConcurrencyBudget getBudget() {
+        return this.budget;
+    }
+
+    public boolean isDeferred(String taskName) {
+        return this.deferredTasks.contains(getTaskPath(taskName));
+    }
+
+}
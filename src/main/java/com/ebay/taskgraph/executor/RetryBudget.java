@@ -0,0 +1,115 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits retries to a ratio of the calls made, so retries can't multiply the load on a dependency during an outage.
+ * Shared by all requests and usually by all the retry policies of a dependency.  Thread safe.
+ *
+ * Token bucket holding up to capacity retries, each call deposits the ratio and each retry withdraws one.
+ * A full bucket allows a burst of retries, e.g. when traffic is low, after which retries are limited to the ratio.
+ */
+public class RetryBudget {
+
+    // fixed point so tokens can be updated atomically
+    private static final long SCALE = 1000L;
+
+    private final double ratio;
+    private final int capacity;
+
+    private final long deposit;
+    private final long maxBalance;
+    private final AtomicLong balance;
+
+    private final AtomicLong calls = new AtomicLong(0);
+    private final AtomicLong retries = new AtomicLong(0);
+    private final AtomicLong exhausted = new AtomicLong(0);
+
+    /**
+     * @param ratio retries allowed per call, e.g. 0.1 allows at most one retry per ten calls
+     * @param capacity retries that can be made before the ratio applies
+     */
+    public RetryBudget(double ratio, int capacity) {
+        if (ratio < 0 || capacity < 0) {
+            throw new IllegalArgumentException("Retry budget ratio and capacity can't be negative");
+        }
+        this.ratio = ratio;
+        this.capacity = capacity;
+        this.deposit = Math.round(ratio * SCALE);
+        this.maxBalance = capacity * SCALE;
+        this.balance = new AtomicLong(this.maxBalance);
+    }
+
+    /**
+     * Called once per call, before the first attempt.
+     */
+    public void onCall() {
+        this.calls.incrementAndGet();
+        this.balance.accumulateAndGet(this.deposit, (current, deposit) -> Math.min(this.maxBalance, current + deposit));
+    }
+
+    /**
+     * @return true if a retry may be made, in which case it's withdrawn from the budget
+     */
+    public boolean tryRetry() {
+        long current = this.balance.get();
+        while (current >= SCALE) {
+            if (this.balance.compareAndSet(current, current - SCALE)) {
+                this.retries.incrementAndGet();
+                return true;
+            }
+            current = this.balance.get();
+        }
+        this.exhausted.incrementAndGet();
+        return false;
+    }
+
+    public double getRatio() {
+        return this.ratio;
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * @return retries that can currently be made
+     */
+    public double getBalance() {
+        return (double) this.balance.get() / SCALE;
+    }
+
+    public long getCallCount() {
+        return this.calls.get();
+    }
+
+    public long getRetryCount() {
+        return this.retries.get();
+    }
+
+    /**
+     * @return retries not made because the budget was exhausted
+     */
+    public long getExhaustedCount() {
+        return this.exhausted.get();
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import com.ebay.taskgraph.context.ResponseContext;
+
+/**
+ * Decorator that retries the task's call() according to the retry policy of its configuration.
+ * Applied inside the profile and timeout decorators so dependencies are only waited for once and the attempts are
+ * bounded by the task timeout.
+ */
+class RetryDecorator<T> implements ICallableTask<T> {
+
+    private final ICallableTask<T> task;
+    private final RequestScope scope;
+
+    RetryDecorator(ICallableTask<T> task, RequestScope scope) {
+        this.task = task;
+        this.scope = scope;
+    }
+
+    @Override
+    public T call() throws Exception {
+        long deadline = RetryPolicy.getDeadline(this.task.getTaskConfig().getTimeout(this.task.getName()), this.scope);
+        return this.task.getTaskConfig().retryPolicy.call(this.task.getContext().getProfiler(), deadline, this.task);
+    }
+
+    @Override
+    public String getName() {
+        return this.task.getName();
+    }
+
+    @Override
+    public ResponseContext getContext() {
+        return this.task.getContext();
+    }
+
+    @Override
+    public CallableTaskConfig getTaskConfig() {
+        return this.task.getTaskConfig();
+    }
+
+    @Override
+    public void waitForDependencies() {
+        this.task.waitForDependencies();
+    }
+
+    @Override
+    public ICallableTaskFuture<?>[] getDependencies() {
+        return this.task.getDependencies();
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.ebay.taskgraph.diagnostic.IProfiler;
+import com.ebay.taskgraph.diagnostic.IProfilerEntry;
+
+/**
+ * Declarative retries for tasks, see CallableTaskConfig.withRetryPolicy(), and service invokers,
+ * see ServiceInvokerRetryDecorator.  Immutable so may be shared.
+ *
+ * A failed attempt is retried after an exponential backoff with full jitter, i.e. a random delay up to
+ * min(maxBackoff, initialBackoff * 2^(attempt - 1)), so clients retrying after a common failure are spread out.
+ * ApplicationExceptions aren't retried since they abort the workflow.  No retry is made once the maximum attempts have
+ * been made, when the backoff would run past the task timeout or request deadline, or when the optional RetryBudget
+ * is exhausted, in which case the last failure is thrown.  Each attempt is recorded as an attempt_N profiler entry
+ * of the task.
+ */
+public class RetryPolicy {
+
+    public static final String ATTEMPT = "attempt_";
+    public static final String BACKOFF_MS = "backoff_ms";
+    public static final String EXCEPTION = "exception";
+    public static final String RETRY_STOPPED = "retry_stopped";
+
+    /**
+     * Reason a failed attempt wasn't retried, recorded as retry_stopped data of the attempt.
+     */
+    public enum Stopped {
+        ATTEMPTS,   // maximum attempts made
+        DEADLINE,   // backoff would run past the task timeout or request deadline
+        BUDGET,     // retry budget exhausted
+    }
+
+    private final int maxAttempts;
+    private final long initialBackoff;
+    private final long maxBackoff;
+    private final RetryBudget budget;
+
+    /**
+     * @param maxAttempts attempts including the first
+     * @param initialBackoff maximum milliseconds before the first retry
+     * @param maxBackoff maximum milliseconds before any retry
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoff, long maxBackoff) {
+        this(maxAttempts, initialBackoff, maxBackoff, null);
+    }
+
+    public RetryPolicy(int maxAttempts, long initialBackoff, long maxBackoff, RetryBudget budget) {
+        if (maxAttempts < 1 || initialBackoff < 0 || maxBackoff < initialBackoff) {
+            throw new IllegalArgumentException("Invalid retry policy: " + maxAttempts + " attempts, backoff " + initialBackoff + "-" + maxBackoff);
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.budget = budget;
+    }
+
+    /**
+     * Draw retries from a budget shared with other policies.
+     */
+    public RetryPolicy withBudget(RetryBudget budget) {
+        return new RetryPolicy(this.maxAttempts, this.initialBackoff, this.maxBackoff, budget);
+    }
+
+    /**
+     * Make attempts until one succeeds or no retry is allowed.
+     * @param profiler profiler of the task the attempts are recorded in
+     * @param deadline absolute time in milliseconds after which no retry is started
+     */
+    public <V> V call(IProfiler profiler, long deadline, Callable<V> attempt) throws Exception {
+        if (this.budget != null) {
+            this.budget.onCall();
+        }
+        for (int i = 1; ; ++i) {
+            IProfilerEntry entry = profiler.newEntry(ATTEMPT + i);
+            long backoff = 0;
+            try {
+                return attempt.call();
+            } catch (ApplicationException e) {
+                throw e;
+            } catch (Exception e) {
+                entry.addData(EXCEPTION, e.getClass().getSimpleName());
+                Stopped stopped = null;
+                if (i >= this.maxAttempts) {
+                    stopped = Stopped.ATTEMPTS;
+                } else {
+                    backoff = getBackoff(i);
+                    if (System.currentTimeMillis() + backoff >= deadline) {
+                        stopped = Stopped.DEADLINE;
+                    } else if (this.budget != null && !this.budget.tryRetry()) {
+                        stopped = Stopped.BUDGET;
+                    }
+                }
+                if (stopped != null) {
+                    entry.addData(RETRY_STOPPED, stopped.toString());
+                    throw e;
+                }
+                entry.addData(BACKOFF_MS, Long.toString(backoff));
+            } finally {
+                profiler.add(entry);
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                // e.g. the task was cancelled
+                Thread.currentThread().interrupt();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @return random backoff before the retry following the specified attempt
+     */
+    long getBackoff(int attempt) {
+        long cap = this.initialBackoff;
+        for (int i = 1; i < attempt && cap < this.maxBackoff; ++i) {
+            cap <<= 1;
+        }
+        cap = Math.min(cap, this.maxBackoff);
+        return cap > 0 ? ThreadLocalRandom.current().nextLong(cap + 1) : 0;
+    }
+
+    /**
+     * @return absolute time a task's retries must start by, the earlier of its timeout and the request deadline
+     */
+    public static long getDeadline(long timeout, RequestScope scope) {
+        long now = System.currentTimeMillis();
+        long deadline = timeout >= RequestScope.NO_DEADLINE - now ? RequestScope.NO_DEADLINE : now + timeout;
+        return Math.min(deadline, scope.getDeadline());
+    }
+
+    public int getMaxAttempts() {
+        return this.maxAttempts;
+    }
+
+    public long getInitialBackoff() {
+        return this.initialBackoff;
+    }
+
+    public long getMaxBackoff() {
+        return this.maxBackoff;
+    }
+
+    public RetryBudget getBudget() {
+        return this.budget;
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.concurrent.CancellationException;
+
+import com.ebay.taskgraph.context.ResponseContext;
+
+/**
+ * Decorator for streaming tasks that ends the task's stream however the task finishes, including when it fails
+ * waiting for its dependencies or is cancelled before it runs, so the subscriber is never left waiting for elements.
+ */
+class StreamingDecorator<T> implements ICallableTask<T>, ICancellationListener {
+
+    private final ICallableTask<T> task;
+    private final TaskStream<?> stream;
+
+    StreamingDecorator(ICallableTask<T> task, TaskStream<?> stream) {
+        this.task = task;
+        this.stream = stream;
+    }
+
+    @Override
+    public T call() throws Exception {
+        try {
+            return this.task.call();
+        } catch (Throwable t) {
+            this.stream.fail(t);
+            throw t;
+        } finally {
+            // no-op if produce() already closed the stream
+            this.stream.close();
+        }
+    }
+
+    /**
+     * Called when the task's future is cancelled or skipped, the task may never run.
+     */
+    @Override
+    public void cancelled() {
+        this.stream.fail(new CancellationException("Streaming task cancelled: " + this.task.getName()));
+    }
+
+    @Override
+    public String getName() {
+        return this.task.getName();
+    }
+
+    @Override
+    public ResponseContext getContext() {
+        return this.task.getContext();
+    }
+
+    @Override
+    public CallableTaskConfig getTaskConfig() {
+        return this.task.getTaskConfig();
+    }
+
+    @Override
+    public void waitForDependencies() {
+        try {
+            this.task.waitForDependencies();
+        } catch (RuntimeException e) {
+            this.stream.fail(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public ICallableTaskFuture<?>[] getDependencies() {
+        return this.task.getDependencies();
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import com.ebay.taskgraph.context.ResponseContext;
+
+/**
+ * Task that streams its output to a downstream task as it's produced rather than returning it as a whole.
+ *
+ * The downstream task is passed the stream and subscribes to it to process elements as they arrive, which records
+ * the dependency on this task.  The downstream task shouldn't declare this task's future as a dependency as that
+ * would wait for the whole stream.  The producer blocks while the stream's buffer is full.
+ * The result of the task is the number of elements produced.  Streaming tasks need to be ASYNC so they run concurrently
+ * with their consumer.
+ */
+public abstract class StreamingTask<T> extends Task implements ICallableTask<Integer> {
+
+    private final TaskStream<T> stream;
+
+    protected StreamingTask(String taskName, CallableTaskConfig config, int bufferSize, ICallableTaskFuture<?> ... dependencies) {
+        super(taskName, config, dependencies);
+        this.stream = new TaskStream<>(bufferSize);
+        this.stream.setProducer(this);
+    }
+
+    protected StreamingTask(String taskName, ResponseContext rc, CallableTaskConfig config, int bufferSize, ICallableTaskFuture<?> ... dependencies) {
+        super(taskName, rc, config, dependencies);
+        this.stream = new TaskStream<>(bufferSize);
+        this.stream.setProducer(this);
+    }
+
+    public TaskStream<T> getStream() {
+        return this.stream;
+    }
+
+    /**
+     * Put the output elements into the stream, return false from put() means the consumer has stopped.
+     */
+    protected abstract void produce(TaskStream<T> stream) throws Exception;
+
+    @Override
+    public Integer call() throws Exception {
+        try {
+            produce(this.stream);
+            this.stream.close();
+        } catch (Throwable t) {
+            // the consumer sees the exception once it reaches the end of the buffered elements
+            this.stream.fail(t);
+            throw t;
+        } finally {
+            this.stream.addProducerData(this);
+        }
+        return this.stream.getCount();
+    }
+
+}
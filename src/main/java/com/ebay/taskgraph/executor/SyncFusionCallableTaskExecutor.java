@@ -0,0 +1,83 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import com.ebay.taskgraph.executor.CallableTaskConfig.ExecType;
+
+/**
+ * Executor that fuses chains of synchronous tasks into a single unit of execution.
+ *
+ * Synchronous tasks normally pay for a profile decorator, a thread logging decorator, a synchronous future
+ * and a synchronized task future each, and a chain of them recurses through all of those layers.
+ * Eligible synchronous tasks added to this executor are instead wrapped in a single lightweight future
+ * that runs the chain of pending synchronous dependencies in order when the result is first requested.
+ *
+ * A synchronous task is eligible if it uses the default Task.waitForDependencies() implementation and needs none of
+ * the request scope's policies or the executor's optional decorators, see CallableTaskExecutorHelper.isSimple().
+ * Tasks with custom wait logic, e.g. only waiting on critical dependencies, and tasks that are critical, retried,
+ * optional under a load shedder, deferred or release their dependencies early are executed as usual.
+ */
+public class SyncFusionCallableTaskExecutor extends JavaCallableTaskExecutor {
+
+    /**
+     * Whether a task class can be fused, computed once per class.
+     */
+    private static final ClassValue<Boolean> FUSIBLE = new ClassValue<Boolean>() {
+
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            if (!Task.class.isAssignableFrom(type)) {
+                return Boolean.FALSE;
+            }
+            try {
+                return Task.class.equals(type.getMethod("waitForDependencies").getDeclaringClass());
+            } catch (NoSuchMethodException e) {
+                return Boolean.FALSE;
+            }
+        }
+
+    };
+
+    public SyncFusionCallableTaskExecutor() {
+        super();
+    }
+
+    public SyncFusionCallableTaskExecutor(RequestScope scope) {
+        super(scope);
+    }
+
+    @Override
+    public <T> ICallableTaskFuture<T> addTask(ICallableTask<T> task) {
+
+        if (!isFusible(getScope(), task)) {
+            return super.addTask(task);
+        }
+
+        FusedSyncTaskFuture<T> result = new FusedSyncTaskFuture<>(task);
+        register(result);
+        return result;
+    }
+
+    static boolean isFusible(RequestScope scope, ICallableTask<?> task) {
+        return ExecType.SYNC.equals(task.getTaskConfig().execType)
+                && CallableTaskExecutorHelper.isSimple(scope, task)
+                && FUSIBLE.get(task.getClass());
+    }
+
+}
@@ -42,9 +42,18 @@ public abstract class Task {
 
     public static final String DEPENDENCIES_META_DATA_KEY = "dependencies";
     public static final String DEPENDENCIES_SEPARATOR = ":";
+    public static final String DEFERRED = "deferred";
     public static final String EXEC_TYPE = "execType";
+    public static final String FAILED_FAST = "failed_fast";
+    public static final String FAILED_FAST_COUNT = "failed_fast_count";
+    public static final String FUSED = "fused";
+    public static final String LAZY_SKIPPED = "lazy_skipped";
+    public static final String LAZY_SKIPPED_COUNT = "lazy_skipped_count";
+    public static final String SHED = "shed";
+    public static final String SHED_COUNT = "shed_count";
     public static final String PARENT_TASK = "parent_task";
     public static final String TASK_THREAD = "task_thread";
+    public static final String ADAPTIVE_TIMEOUT = "adaptive_timeout";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Task.class);
   
@@ -192,18 +201,21 @@ public abstract class Task {
 
         // first block for any synchronous task dependencies
         // so any async ones can run in parallel
+        // lazy and deferred dependencies are started here so they also run in parallel
         for (ICallableTaskFuture<?> dep : dependencies) {
-            if (CallableTaskConfig.ExecType.ASYNC.equals(dep.getTask().getTaskConfig().execType)
+            if (CallableTaskConfig.ExecType.LAZY.equals(dep.getTask().getTaskConfig().execType)
+                    || CallableTaskConfig.ExecType.ASYNC.equals(dep.getTask().getTaskConfig().execType)
                     || CallableTaskConfig.ExecType.ASYNC_TIMEOUT.equals(dep.getTask().getTaskConfig().execType)) {
+                dep.prefetch();
                 asyncDependencies.add(dep);
             } else {
-                dep.getNoThrow((ICallableTask<?>) this);
+                dep.awaitResult((ICallableTask<?>) this);
             }
         }
 
-        // then block for async dependencies
+        // then block for async dependencies, the results aren't needed here so primitive results aren't boxed
         for (ICallableTaskFuture<?> dep : asyncDependencies) {
-            dep.getNoThrow((ICallableTask<?>) this);
+            dep.awaitResult((ICallableTask<?>) this);
         }
     }
 
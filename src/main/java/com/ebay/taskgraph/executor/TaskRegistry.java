@@ -0,0 +1,66 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import com.ebay.taskgraph.executor.workflow.WorkflowException;
+
+/**
+ * Lock free registry of the task futures added to an executor.
+ * Tasks may be added concurrently from any thread, e.g. nested workflow tasks, visitors and timeout decorators
+ * running on the executor's threads.
+ */
+final class TaskRegistry {
+
+    private final ConcurrentMap<String, ICallableTaskFuture<?>> tasks = new ConcurrentHashMap<>();
+
+    /**
+     * Futures in the order they were added, so snapshots don't need to copy the map.
+     */
+    private final Queue<ICallableTaskFuture<?>> ordered = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Atomically add a task future, throws if a task with the same name has already been added.
+     */
+    void add(ICallableTaskFuture<?> future) {
+        String name = future.getTask().getName();
+        if (this.tasks.putIfAbsent(name, future) != null) {
+            throw new WorkflowException("Attempted to add a duplicate key: " + name);
+        }
+        this.ordered.add(future);
+    }
+
+    ICallableTaskFuture<?> get(String name) {
+        return this.tasks.get(name);
+    }
+
+    /**
+     * @return copy of the futures added so far, in the order they were added
+     */
+    List<ICallableTaskFuture<?>> snapshot() {
+        return new ArrayList<>(this.ordered);
+    }
+
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import com.ebay.taskgraph.executor.workflow.WorkflowException;
+
+/**
+ * Bounded channel for elements streamed from a producer to a single consumer, so the consumer can process
+ * elements as they're produced rather than waiting for the whole result.
+ *
+ * The producer blocks in put() while the buffer is full so at most bufferSize elements are held at once.
+ * The producer must call close() once all the elements have been added, or fail() if they couldn't be produced.
+ * The stream is subscribed to once, the iterator blocks until the next element is available and ends once the stream
+ * is closed.  A consumer task waits no longer than its timeout for the stream, after which the stream is cancelled.
+ * The times of the first and last elements and the element count are recorded in the profiler data of
+ * the producer and consumer tasks.
+ */
+public class TaskStream<T> implements Iterable<T> {
+
+    public static final String STREAM_ELEMENTS = "stream_elements";
+    public static final String STREAM_FIRST_MS = "stream_first_ms";
+    public static final String STREAM_LAST_MS = "stream_last_ms";
+
+    private final int bufferSize;
+
+    // guarded by this
+    private final Deque<T> queue = new ArrayDeque<>();
+
+    private boolean closed = false;
+
+    private Throwable failure = null;
+
+    // set when the consumer stops early so a blocked producer doesn't wait forever
+    private boolean cancelled = false;
+
+    private boolean subscribed = false;
+
+    // task producing the stream, set by streaming tasks for dependency tracking
+    private volatile ICallableTask<?> producer = null;
+
+    // future of the producer, set by the executor so subscribing starts a lazy producer
+    private volatile ICallableTaskFuture<?> future = null;
+
+    // producer timings
+    private final long created = System.nanoTime();
+    private long firstPut = 0L;
+    private long lastPut = 0L;
+    private int count = 0;
+
+    public TaskStream(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Add an element, blocking while the buffer is full.
+     * @return false if the consumer has stopped and the element was dropped
+     */
+    public boolean put(T element) {
+        ConcurrencyBudget.Permit permit = null;
+        try {
+            synchronized (this) {
+                if (null == element) {
+                    throw new IllegalArgumentException("Null stream element");
+                }
+                if (this.closed && !this.cancelled) {
+                    throw new WorkflowException("Element added to closed stream");
+                }
+                try {
+                    while (this.queue.size() >= this.bufferSize && !this.cancelled) {
+                        permit = release(permit);
+                        this.wait();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new WorkflowException("Interrupted adding element to stream");
+                }
+                if (this.cancelled) {
+                    return false;
+                }
+                this.lastPut = System.nanoTime();
+                if (0 == this.count++) {
+                    this.firstPut = this.lastPut;
+                }
+                this.queue.addLast(element);
+                this.notifyAll();
+                return true;
+            }
+        } finally {
+            // get the permit back outside the lock so tasks holding permits can still use the stream
+            ConcurrencyBudget.reacquire(permit);
+        }
+    }
+
+    /**
+     * No more elements will be added.
+     */
+    public synchronized void close() {
+        this.closed = true;
+        this.notifyAll();
+    }
+
+    /**
+     * The elements couldn't be produced, the exception is thrown to the consumer once the buffered elements are consumed.
+     * Ignored if the stream has already been closed.
+     */
+    public synchronized void fail(Throwable t) {
+        if (!this.closed) {
+            this.failure = t;
+            close();
+        }
+    }
+
+    /**
+     * Called by the consumer if it stops before the end of the stream.
+     */
+    public synchronized void cancel() {
+        this.cancelled = true;
+        this.queue.clear();
+        this.notifyAll();
+    }
+
+    /**
+     * @return number of elements currently buffered
+     */
+    public synchronized int size() {
+        return this.queue.size();
+    }
+
+    void setProducer(ICallableTask<?> producer) {
+        this.producer = producer;
+    }
+
+    void setFuture(ICallableTaskFuture<?> future) {
+        this.future = future;
+    }
+
+    /**
+     * @return number of elements added to the stream
+     */
+    public synchronized int getCount() {
+        return this.count;
+    }
+
+    /**
+     * Record the producer's timings relative to the creation of the stream.
+     */
+    public void addProducerData(ICallableTask<?> producer) {
+        int elements;
+        long first;
+        long last;
+        synchronized (this) {
+            elements = this.count;
+            first = this.firstPut;
+            last = this.lastPut;
+        }
+        addData(producer, elements, this.created, first, last);
+    }
+
+    /**
+     * Subscribe to the stream without recording consumer timings.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return subscribe(null);
+    }
+
+    /**
+     * Subscribe a consumer task to the stream, the consumer's timings are recorded once it reaches the end of the stream.
+     * Waiting for elements throws once the consumer's timeout has elapsed since subscribing.
+     */
+    public Iterator<T> subscribe(final ICallableTask<?> consumer) {
+        synchronized (this) {
+            if (this.subscribed) {
+                throw new WorkflowException("Stream already has a subscriber");
+            }
+            this.subscribed = true;
+        }
+        ICallableTask<?> source = this.producer;
+        if (source != null && consumer != null) {
+            Task.addDependency(source, consumer);
+        }
+        ICallableTaskFuture<?> f = this.future;
+        if (f != null) {
+            // the consumer needs the elements now, e.g. a deferred producer
+            f.prefetch();
+        }
+        final long subscribedAt = System.nanoTime();
+        final long deadline = getDeadline(consumer, subscribedAt);
+        return new Iterator<T>() {
+
+            private T next = null;
+
+            private boolean done = false;
+
+            private int elements = 0;
+            private long first = 0L;
+            private long last = 0L;
+
+            @Override
+            public boolean hasNext() {
+                if (null == this.next && !this.done) {
+                    this.next = take(deadline);
+                    this.done = null == this.next;
+                    if (this.done && consumer != null) {
+                        addData(consumer, this.elements, subscribedAt, this.first, this.last);
+                    }
+                }
+                return this.next != null;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                this.last = System.nanoTime();
+                if (0 == this.elements++) {
+                    this.first = this.last;
+                }
+                T element = this.next;
+                this.next = null;
+                return element;
+            }
+
+        };
+    }
+
+    /**
+     * @return nano time the consumer stops waiting for the stream, 0 if it waits until the stream ends
+     */
+    private static long getDeadline(ICallableTask<?> consumer, long start) {
+        if (null == consumer) {
+            return 0L;
+        }
+        long timeout = consumer.getTaskConfig().getTimeout(consumer.getName());
+        if (timeout >= TimeUnit.NANOSECONDS.toMillis(Long.MAX_VALUE / 2)) {
+            return 0L;
+        }
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeout);
+        return deadline != 0L ? deadline : 1L;
+    }
+
+    /**
+     * @param deadline nano time to stop waiting, 0 for no deadline
+     * @return next element, null at the end of the stream
+     */
+    private T take(long deadline) {
+        ConcurrencyBudget.Permit permit = null;
+        try {
+            synchronized (this) {
+                try {
+                    while (this.queue.isEmpty() && !this.closed && !this.cancelled) {
+                        permit = release(permit);
+                        if (0L == deadline) {
+                            this.wait();
+                            continue;
+                        }
+                        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                        if (remaining <= 0L) {
+                            // stop a producer that's still running, it will never be consumed
+                            cancel();
+                            throw new WorkflowException("Timed out waiting for element from stream");
+                        }
+                        this.wait(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new WorkflowException("Interrupted waiting for element from stream");
+                }
+                T next = this.queue.pollFirst();
+                if (next != null) {
+                    // room for the producer
+                    this.notifyAll();
+                } else if (this.failure instanceof ApplicationException) {
+                    throw (ApplicationException) this.failure;
+                } else if (this.failure != null) {
+                    throw new WorkflowException("Stream failed", this.failure);
+                }
+                return next;
+            }
+        } finally {
+            // get the permit back outside the lock so tasks holding permits can still use the stream
+            ConcurrencyBudget.reacquire(permit);
+        }
+    }
+
+    /**
+     * Don't count against the request's concurrency budget while blocked.
+     */
+    private static ConcurrencyBudget.Permit release(ConcurrencyBudget.Permit permit) {
+        return permit != null ? permit : ConcurrencyBudget.release();
+    }
+
+    private static void addData(ICallableTask<?> task, int elements, long start, long first, long last) {
+        task.getContext().getProfiler().addData(STREAM_ELEMENTS, Integer.toString(elements));
+        if (elements > 0) {
+            task.getContext().getProfiler().addData(STREAM_FIRST_MS, Long.toString(TimeUnit.NANOSECONDS.toMillis(first - start)));
+            task.getContext().getProfiler().addData(STREAM_LAST_MS, Long.toString(TimeUnit.NANOSECONDS.toMillis(last - start)));
+        }
+    }
+
+}
@@ -87,14 +87,14 @@ public class TaskThreadLoggingDecorator<T> implements ICallableTask<T> {
     /**
      * @return current task executing on this thread
      */
-    private static String getCurrentTask() {
+    static String getCurrentTask() {
         return CURRENT_THREAD_TASK.get(Thread.currentThread().getName());
     }
     
     /**
      * Set task on current thread
      */
-    private static String setCurrentTask(String taskName) {
+    static String setCurrentTask(String taskName) {
         String rval = CURRENT_THREAD_TASK.get(Thread.currentThread().getName());
         CURRENT_THREAD_TASK.put(Thread.currentThread().getName(), taskName);
         return rval;
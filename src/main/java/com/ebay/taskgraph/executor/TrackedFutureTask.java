@@ -0,0 +1,88 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Asynchronous task that reports its submission, queue time and completion to the request's async task listeners.
+ * A lazy task is only reported once it's submitted to the executor service, not if it runs on the consumer's thread or is skipped.
+ */
+class TrackedFutureTask<T> extends FutureTask<T> {
+
+    private final List<IAsyncTaskListener> listeners;
+    private volatile long submitted;
+    private volatile boolean tracked = false;
+
+    TrackedFutureTask(Callable<T> task, List<IAsyncTaskListener> listeners) {
+        this(task, listeners, true);
+    }
+
+    /**
+     * @param submit false for a lazy task, which is only reported once submit() is called
+     */
+    TrackedFutureTask(Callable<T> task, List<IAsyncTaskListener> listeners, boolean submit) {
+        super(task);
+        this.listeners = listeners;
+        if (submit) {
+            submit();
+        }
+    }
+
+    /**
+     * Report the task as submitted, called before it's submitted to the executor service.
+     */
+    void submit() {
+        for (IAsyncTaskListener listener : this.listeners) {
+            listener.onSubmit();
+        }
+        this.submitted = System.nanoTime();
+        this.tracked = true;
+    }
+
+    /**
+     * Restart the queue time when the task is actually submitted to the executor service, e.g. after waiting for the budget.
+     */
+    void resubmit() {
+        this.submitted = System.nanoTime();
+    }
+
+    @Override
+    public void run() {
+        if (this.tracked) {
+            long queueTime = System.nanoTime() - this.submitted;
+            for (IAsyncTaskListener listener : this.listeners) {
+                listener.onStart(queueTime);
+            }
+        }
+        super.run();
+    }
+
+    @Override
+    protected void done() {
+        if (this.tracked) {
+            for (IAsyncTaskListener listener : this.listeners) {
+                listener.onComplete();
+            }
+        }
+    }
+
+}
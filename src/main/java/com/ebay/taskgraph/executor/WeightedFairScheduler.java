@@ -0,0 +1,381 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs asynchronous tasks of different request classes with weighted fair queuing, so a flood of requests of one
+ * class, e.g. bots or batch callers, can't inflate the latency of another.  Shared by all requests, thread safe.
+ *
+ * At most the given number of tasks run at once.  Further tasks are queued per request class and dequeued in order of
+ * their virtual finish time, so while classes are backlogged each gets a share of the task starts in proportion to its
+ * weight.  Tasks of the same class run in submission order.
+ *
+ * Tasks block waiting for their dependencies, which are normally added to the executor first so they are ahead in
+ * the queue.  In case a running task waits for a task queued behind it, a task gives up its slot while blocked waiting
+ * for another task, e.g. in getNoThrow(), and gets it back before continuing, as with ConcurrencyBudget, so the request
+ * can't deadlock.  Tasks getting their slot back take priority over queued tasks.
+ */
+public class WeightedFairScheduler {
+
+    public static final int DEFAULT_WEIGHT = 1;
+
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger(0);
+
+    // slot held by the task running on the current thread
+    private static final ThreadLocal<Entry> CURRENT = new ThreadLocal<>();
+
+    private final int concurrency;
+    private final Map<String, Integer> weights;
+    private final long created = System.nanoTime();
+
+    private final ExecutorService pool;
+
+    // guarded by lock
+    private final Object lock = new Object();
+    private final Map<String, ClassQueue> queues = new HashMap<>();
+    private double virtualTime = 0d;
+    private int running = 0;
+    private int reacquiring = 0;
+
+    /**
+     * @param concurrency maximum number of tasks run at once
+     * @param weights relative weight of each request class, classes not in the map have the default weight
+     */
+    public WeightedFairScheduler(int concurrency, Map<String, Integer> weights) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+        }
+        this.concurrency = concurrency;
+        this.weights = Collections.unmodifiableMap(new HashMap<>(weights));
+        this.pool = Executors.newCachedThreadPool(new NamedThreadFactory("WeightedFair-" + POOL_COUNT.incrementAndGet()));
+    }
+
+    /**
+     * @return executor that queues tasks under the given request class
+     */
+    public Executor forRequestClass(final String requestClass) {
+        return new Executor() {
+            @Override
+            public void execute(Runnable task) {
+                WeightedFairScheduler.this.execute(requestClass, task);
+            }
+        };
+    }
+
+    public void execute(String requestClass, Runnable task) {
+        synchronized (this.lock) {
+            ClassQueue queue = this.queues.get(requestClass);
+            if (null == queue) {
+                Integer weight = this.weights.get(requestClass);
+                queue = new ClassQueue(requestClass, weight != null ? weight : DEFAULT_WEIGHT);
+                this.queues.put(requestClass, queue);
+            }
+            // an idle class starts from the current virtual time so it can't save up credit
+            double start = Math.max(this.virtualTime, queue.lastFinish);
+            queue.lastFinish = start + 1d / queue.weight;
+            queue.entries.add(new Entry(task, queue, queue.lastFinish));
+            ++queue.submitted;
+        }
+        dispatch();
+    }
+
+    /**
+     * Start queued tasks up to the concurrency limit.
+     */
+    private void dispatch() {
+        List<Entry> started = new ArrayList<>();
+        synchronized (this.lock) {
+            // tasks that were already running take priority over queued tasks
+            while (this.running < this.concurrency && 0 == this.reacquiring) {
+                Entry entry = poll();
+                if (null == entry) {
+                    break;
+                }
+                start(entry);
+                started.add(entry);
+            }
+        }
+        for (Entry entry : started) {
+            this.pool.execute(entry);
+        }
+    }
+
+    /**
+     * Give up the slot of the task running on the current thread before it blocks waiting for other tasks,
+     * called by ConcurrencyBudget.release() so every wait that gives up a budget permit also gives up the slot.
+     * @return the slot to reacquire once unblocked, null if the thread isn't running a task of a scheduler
+     */
+    static Entry release() {
+        Entry entry = CURRENT.get();
+        if (null == entry || entry.released) {
+            return null;
+        }
+        entry.released = true;
+        entry.getScheduler().releaseSlot();
+        return entry;
+    }
+
+    /**
+     * Get back a slot given up by release(), a no-op for null.
+     */
+    static void reacquire(Entry entry) {
+        if (entry != null) {
+            entry.getScheduler().acquireSlot();
+            entry.released = false;
+        }
+    }
+
+    private void releaseSlot() {
+        synchronized (this.lock) {
+            --this.running;
+            this.lock.notifyAll();
+        }
+        dispatch();
+    }
+
+    private void acquireSlot() {
+        boolean interrupted = false;
+        synchronized (this.lock) {
+            ++this.reacquiring;
+            while (this.running >= this.concurrency) {
+                try {
+                    this.lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            --this.reacquiring;
+            ++this.running;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // caller must hold the lock
+    private Entry poll() {
+        ClassQueue next = null;
+        for (ClassQueue queue : this.queues.values()) {
+            if (!queue.entries.isEmpty() && (null == next || queue.entries.peek().finish < next.entries.peek().finish)) {
+                next = queue;
+            }
+        }
+        if (null == next) {
+            return null;
+        }
+        Entry entry = next.entries.poll();
+        this.virtualTime = entry.finish;
+        return entry;
+    }
+
+    // caller must hold the lock
+    private void start(Entry entry) {
+        ++this.running;
+        ++entry.queue.started;
+        entry.queue.queueTime += System.nanoTime() - entry.enqueued;
+    }
+
+    private void complete(Entry entry) {
+        synchronized (this.lock) {
+            if (!entry.released) {
+                --this.running;
+                this.lock.notifyAll();
+            }
+            ++entry.queue.completed;
+        }
+        dispatch();
+    }
+
+    /**
+     * @return snapshot of the metrics of each request class that has submitted tasks
+     */
+    public Map<String, ClassStats> getStats() {
+        long elapsed = System.nanoTime() - this.created;
+        Map<String, ClassStats> stats = new HashMap<>();
+        synchronized (this.lock) {
+            for (ClassQueue queue : this.queues.values()) {
+                stats.put(queue.requestClass, new ClassStats(queue, elapsed));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * @return number of tasks holding a slot
+     */
+    public int getRunning() {
+        synchronized (this.lock) {
+            return this.running;
+        }
+    }
+
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+
+    /**
+     * Metrics of a request class.
+     */
+    public static final class ClassStats {
+
+        private final String requestClass;
+        private final int weight;
+        private final int queued;
+        private final long submitted;
+        private final long completed;
+        private final double averageQueueTime;
+        private final double throughput;
+
+        ClassStats(ClassQueue queue, long elapsed) {
+            this.requestClass = queue.requestClass;
+            this.weight = queue.weight;
+            this.queued = queue.entries.size();
+            this.submitted = queue.submitted;
+            this.completed = queue.completed;
+            this.averageQueueTime = queue.started > 0 ? queue.queueTime / 1e6 / queue.started : 0d;
+            this.throughput = elapsed > 0 ? queue.completed * 1e9 / elapsed : 0d;
+        }
+
+        public String getRequestClass() {
+            return this.requestClass;
+        }
+
+        public int getWeight() {
+            return this.weight;
+        }
+
+        public int getQueued() {
+            return this.queued;
+        }
+
+        public long getSubmitted() {
+            return this.submitted;
+        }
+
+        public long getCompleted() {
+            return this.completed;
+        }
+
+        /**
+         * @return average milliseconds tasks of this class waited before they started
+         */
+        public double getAverageQueueTime() {
+            return this.averageQueueTime;
+        }
+
+        /**
+         * @return tasks of this class completed per second since the scheduler was created
+         */
+        public double getThroughput() {
+            return this.throughput;
+        }
+
+        @Override
+        public String toString() {
+            return this.requestClass + " weight=" + this.weight + " queued=" + this.queued + " completed=" + this.completed
+                    + " avgQueueMs=" + this.averageQueueTime + " throughput=" + this.throughput;
+        }
+
+    }
+
+    /**
+     * Queue and counters of a request class, guarded by the scheduler lock.
+     */
+    private static class ClassQueue {
+
+        private final String requestClass;
+        private final int weight;
+        private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+        private double lastFinish = 0d;
+        private long submitted = 0L;
+        private long started = 0L;
+        private long completed = 0L;
+        private long queueTime = 0L;
+
+        ClassQueue(String requestClass, int weight) {
+            this.requestClass = requestClass;
+            this.weight = weight;
+        }
+
+    }
+
+    final class Entry implements Runnable {
+
+        private final Runnable task;
+        private final ClassQueue queue;
+        private final double finish;
+        private final long enqueued = System.nanoTime();
+
+        // only accessed by the thread running the task
+        private boolean released = false;
+
+        Entry(Runnable task, ClassQueue queue, double finish) {
+            this.task = task;
+            this.queue = queue;
+            this.finish = finish;
+        }
+
+        private WeightedFairScheduler getScheduler() {
+            return WeightedFairScheduler.this;
+        }
+
+        @Override
+        public void run() {
+            CURRENT.set(this);
+            try {
+                this.task.run();
+            } finally {
+                CURRENT.remove();
+                complete(this);
+            }
+        }
+
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, this.name + "-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow;
+
+import com.ebay.taskgraph.executor.AdmissionController;
+import com.ebay.taskgraph.executor.ICallableTask;
+
+/**
+ * Workflow factory for the top level workflow of a request that only creates the workflow if the request is admitted.
+ * Throws AdmissionRejectedException before any task is added while the executor service is overloaded.
+ *
+ * Nested workflows are created by the factory the workflow was created with, so once a request is admitted
+ * its nested workflows aren't subject to admission control.
+ */
+public class AdmissionControlWorkflowFactory implements IWorkflowFactory {
+
+    private final AdmissionController admissionController;
+
+    private final IWorkflowFactory workflowFactory;
+
+    public AdmissionControlWorkflowFactory(AdmissionController admissionController, IWorkflowFactory workflowFactory) {
+        this.admissionController = admissionController;
+        this.workflowFactory = workflowFactory;
+    }
+
+    @Override
+    public <T> IWorkflow<T> create(ICallableTask<T> ownerTask) {
+        this.admissionController.admit(ownerTask);
+        return this.workflowFactory.create(ownerTask);
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow;
+
+import java.util.Collections;
+
+import com.ebay.taskgraph.context.ResponseContext;
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.ICallableTaskFuture;
+
+/**
+ * Visitor task that's passed the visitees in batches of up to the batch size.
+ * Streamed visitees are accumulated into batches too, a visitee visited on its own is visited as a batch of one.
+ */
+public abstract class BatchVisitorTask<T> extends VisitorTask<T> implements IBatchVisitor<T> {
+
+    public BatchVisitorTask(CallableTaskConfig config, ICallableTaskFuture<?> ... dependencies) {
+        super(config, dependencies);
+    }
+
+    public BatchVisitorTask(String name, CallableTaskConfig config, ICallableTaskFuture<?> ... dependencies) {
+        super(name, config, dependencies);
+    }
+
+    public BatchVisitorTask(String name, ResponseContext context, CallableTaskConfig config, ICallableTaskFuture<?> ... dependencies) {
+        super(name, context, config, dependencies);
+    }
+
+    @Override
+    public void visit(T visitee) {
+        visitBatch(Collections.singletonList(visitee));
+    }
+
+}
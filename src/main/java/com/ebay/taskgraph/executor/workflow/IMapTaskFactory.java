@@ -0,0 +1,30 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow;
+
+import com.ebay.taskgraph.executor.ICallableTask;
+
+/**
+ * Creates the task that maps a single input of a parallel map.
+ * Task names need to be unique, e.g. by including the index of the input.
+ */
+public interface IMapTaskFactory<I, O> {
+
+    ICallableTask<O> create(I input, int index);
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow;
+
+/**
+ * Receives the response of a progressive workflow as it becomes available, e.g. to write HTTP chunks or server sent events.
+ * All methods are called on the thread executing the workflow, in order.
+ *
+ * @param <T> type of the initial response
+ * @param <U> type of the updates
+ */
+public interface IProgressiveListener<T, U> {
+
+    /**
+     * Called once the critical tasks have completed, before any update.
+     */
+    void onInitial(T response);
+
+    /**
+     * Called as each optional task completes with a result.
+     * @param name name of the optional task
+     */
+    void onUpdate(String name, U update);
+
+    /**
+     * Called after the last update or when the deadline for updates passes.
+     * @param missed number of optional tasks that failed, returned null or didn't complete in time
+     */
+    void onComplete(int missed);
+
+}
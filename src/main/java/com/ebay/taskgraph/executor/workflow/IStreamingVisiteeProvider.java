@@ -0,0 +1,37 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow;
+
+import java.util.Iterator;
+
+/**
+ * Provides visitees one at a time as they're produced so visitors can start before all the visitees are available.
+ * The iterator may block waiting for the next visitee and is only iterated once.
+ */
+public interface IStreamingVisiteeProvider<T> extends Iterable<T> {
+
+    @Override
+    Iterator<T> iterator();
+
+    /**
+     * Called if the visitors stop before the end of the stream so producers can stop too.
+     */
+    default void cancel() {
+    }
+}
@@ -19,8 +19,15 @@
 package com.ebay.taskgraph.executor.workflow;
 
 import com.ebay.taskgraph.context.ResponseContext;
+import com.ebay.taskgraph.executor.BoxedCallableTaskFuture;
 import com.ebay.taskgraph.executor.ICallableTask;
 import com.ebay.taskgraph.executor.ICallableTaskFuture;
+import com.ebay.taskgraph.executor.IDoubleCallableTask;
+import com.ebay.taskgraph.executor.IDoubleCallableTaskFuture;
+import com.ebay.taskgraph.executor.IIntCallableTask;
+import com.ebay.taskgraph.executor.IIntCallableTaskFuture;
+import com.ebay.taskgraph.executor.ILongCallableTask;
+import com.ebay.taskgraph.executor.ILongCallableTaskFuture;
 
 /**
  * A workflow of tasks that results in a final response of type V
@@ -35,6 +42,30 @@ public interface IWorkflow<V> extends IWorkflowFactory {
 
     <T> ICallableTaskFuture<T> addTask(ICallableTask<T> task);
 
+    /**
+     * Add a task with a primitive result.
+     * Default implementation adds the task as a generic task and unboxes the result.
+     */
+    default IIntCallableTaskFuture addTask(IIntCallableTask task) {
+        return new BoxedCallableTaskFuture.IntFuture(addTask((ICallableTask<Integer>) task));
+    }
+
+    default ILongCallableTaskFuture addTask(ILongCallableTask task) {
+        return new BoxedCallableTaskFuture.LongFuture(addTask((ICallableTask<Long>) task));
+    }
+
+    default IDoubleCallableTaskFuture addTask(IDoubleCallableTask task) {
+        return new BoxedCallableTaskFuture.DoubleFuture(addTask((ICallableTask<Double>) task));
+    }
+
     ResponseContext collectResponseContext();
 
+    /**
+     * Called by workflow executors once all tasks consuming results of the workflow's tasks have been added.
+     * The library's workflow executors seal the workflow once they've added their tasks, custom executors should
+     * call it before blocking on results.  See ICallableTaskExecutor.seal().
+     */
+    default void seal() {
+    }
+
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow;
+
+import com.ebay.taskgraph.context.ResponseContext;
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.ICallableTask;
+import com.ebay.taskgraph.executor.ICallableTaskFuture;
+
+/**
+ * Runs a nested workflow task lazily, on the thread of the task that consumes its result if that thread asks for it
+ * before blocking on another task, see ICallableTaskFuture.prefetchOnBlock().
+ *
+ * The tasks of the nested workflow are still submitted to the shared executor service so they run in parallel as usual,
+ * only the thread that would otherwise block coordinating the nested workflow is saved.  As for other lazy tasks, the
+ * consumer's timeout doesn't apply to a nested workflow run on the consumer's thread.
+ */
+class InlineWorkflowTaskDecorator<T> implements ICallableTask<T> {
+
+    private final ICallableTask<T> task;
+
+    private final CallableTaskConfig taskConfig;
+
+    InlineWorkflowTaskDecorator(ICallableTask<T> task) {
+        this.task = task;
+        CallableTaskConfig config = task.getTaskConfig();
+        this.taskConfig = new CallableTaskConfig(config.diagnosticConfig, config.timeout, CallableTaskConfig.ExecType.LAZY,
+                config.priority, config.retryPolicy);
+        if (this.taskConfig.diagnosticConfig.profile || this.taskConfig.diagnosticConfig.showDiagnostics) {
+            task.getContext().getProfiler().addData(Workflow.FLATTENED, Boolean.TRUE.toString());
+        }
+    }
+
+    @Override
+    public T call() throws Exception {
+        return this.task.call();
+    }
+
+    @Override
+    public String getName() {
+        return this.task.getName();
+    }
+
+    @Override
+    public ResponseContext getContext() {
+        return this.task.getContext();
+    }
+
+    @Override
+    public CallableTaskConfig getTaskConfig() {
+        // lazy so the executor doesn't submit a thread to coordinate the nested workflow ahead of its consumer
+        return this.taskConfig;
+    }
+
+    @Override
+    public void waitForDependencies() {
+        this.task.waitForDependencies();
+    }
+
+    @Override
+    public ICallableTaskFuture<?>[] getDependencies() {
+        return this.task.getDependencies();
+    }
+
+}
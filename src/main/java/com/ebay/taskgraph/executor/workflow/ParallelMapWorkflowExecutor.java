@@ -0,0 +1,295 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.ebay.taskgraph.context.ResponseContext;
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.ConcurrencyBudget;
+import com.ebay.taskgraph.executor.ICallableTask;
+import com.ebay.taskgraph.executor.ICallableTaskFuture;
+import com.ebay.taskgraph.executor.ICancellationListener;
+
+/**
+ * Runs a task for each input in parallel and merges the results in input order.
+ *
+ * At most maxConcurrency of the tasks run at once, the remaining tasks are added to the workflow as earlier ones complete.
+ * Tasks must be ASYNC or ASYNC_TIMEOUT, the timeout of the task configuration limits each element.
+ * An element that hasn't completed within its timeout is cancelled so it no longer holds up the next element.
+ * Elements that fail or time out have a null result so the rest of the results are still returned.
+ * Each element is a child of the workflow task in the profiler.
+ */
+public class ParallelMapWorkflowExecutor<I, O> implements IWorkflowExecutor<List<O>> {
+
+    // number of elements without a result
+    public static final String MISSING_RESULTS = "missing_results";
+
+    private final IVisiteeProvider<I> inputProvider;
+    private final ICallableTaskFuture<List<I>> inputTask;
+    private final IMapTaskFactory<I, O> taskFactory;
+    private final int maxConcurrency;
+
+    public ParallelMapWorkflowExecutor(
+            IVisiteeProvider<I> inputProvider,
+            IMapTaskFactory<I, O> taskFactory,
+            int maxConcurrency) {
+        this(inputProvider, null, taskFactory, maxConcurrency);
+    }
+
+    public ParallelMapWorkflowExecutor(
+            ICallableTaskFuture<List<I>> inputTask,
+            IMapTaskFactory<I, O> taskFactory,
+            int maxConcurrency) {
+        this(null, inputTask, taskFactory, maxConcurrency);
+    }
+
+    private ParallelMapWorkflowExecutor(
+            IVisiteeProvider<I> inputProvider,
+            ICallableTaskFuture<List<I>> inputTask,
+            IMapTaskFactory<I, O> taskFactory,
+            int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Max concurrency must be positive: " + maxConcurrency);
+        }
+        this.inputProvider = inputProvider;
+        this.inputTask = inputTask;
+        this.taskFactory = taskFactory;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Factory method for mapping the inputs provided by the result of a task.
+     */
+    public static <I, O, V> ICallableTaskFuture<List<O>> create(
+            CallableTaskConfig syncTask,
+            IWorkflow<V> callerContext,
+            String name,
+            ICallableTaskFuture<List<I>> inputs,
+            IMapTaskFactory<I, O> taskFactory,
+            int maxConcurrency) {
+
+        IWorkflowExecutor<List<O>> executor = new ParallelMapWorkflowExecutor<I, O>(inputs, taskFactory, maxConcurrency);
+        WorkflowTask<List<O>> task = new WorkflowTask<>(name, syncTask, callerContext, executor);
+        return callerContext.addTask(task);
+    }
+
+    /**
+     * Factory method for mapping the inputs from a provider.
+     */
+    public static <I, O, V> ICallableTaskFuture<List<O>> create(
+            CallableTaskConfig syncTask,
+            IWorkflow<V> callerContext,
+            String name,
+            IVisiteeProvider<I> inputs,
+            IMapTaskFactory<I, O> taskFactory,
+            int maxConcurrency) {
+
+        IWorkflowExecutor<List<O>> executor = new ParallelMapWorkflowExecutor<I, O>(inputs, taskFactory, maxConcurrency);
+        WorkflowTask<List<O>> task = new WorkflowTask<>(name, syncTask, callerContext, executor);
+        return callerContext.addTask(task);
+    }
+
+    @Override
+    public List<O> execute(IWorkflow<List<O>> workflow) {
+        List<I> inputs = this.inputTask != null ? this.inputTask.getNoThrow(workflow.getTask()) : this.inputProvider.get();
+        if (null == inputs || inputs.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Semaphore permits = new Semaphore(this.maxConcurrency);
+        List<ICallableTaskFuture<O>> futures = new ArrayList<>(inputs.size());
+        List<PermitTask<O>> running = new ArrayList<>(this.maxConcurrency);
+        for (int i = 0; i < inputs.size(); ++i) {
+            ICallableTask<O> task = this.taskFactory.create(inputs.get(i), i);
+            CallableTaskConfig.ExecType execType = task.getTaskConfig().execType;
+            if (!CallableTaskConfig.ExecType.ASYNC.equals(execType) && !CallableTaskConfig.ExecType.ASYNC_TIMEOUT.equals(execType)) {
+                throw new WorkflowException("Parallel map task must be asynchronous: " + task.getName());
+            }
+            acquire(permits, running, task);
+            PermitTask<O> permitTask = new PermitTask<>(task, permits);
+            boolean added = false;
+            try {
+                ICallableTaskFuture<O> future = workflow.addTask(permitTask);
+                permitTask.future = future;
+                futures.add(future);
+                added = true;
+                // deferred elements only run on demand but every element is needed
+                future.prefetch();
+                if (future.isDone()) {
+                    // e.g. shed, the task is never called
+                    permitTask.release();
+                } else {
+                    running.add(permitTask);
+                }
+            } finally {
+                if (!added) {
+                    permitTask.release();
+                }
+            }
+        }
+
+        // every element has been added
+        workflow.seal();
+
+        // merge in input order
+        List<O> results = new ArrayList<>(futures.size());
+        int missing = 0;
+        for (ICallableTaskFuture<O> future : futures) {
+            O result = future.getNoThrow(workflow.getTask());
+            if (null == result) {
+                ++missing;
+                // no-op unless it timed out and is still running, don't leave it running once the map is complete
+                future.cancel(true);
+            }
+            results.add(result);
+        }
+        if (missing > 0) {
+            workflow.getTask().getContext().getProfiler().addData(MISSING_RESULTS, Integer.toString(missing));
+        }
+        return results;
+    }
+
+    /**
+     * Wait for a running element to complete, bounded by the timeout of the next element's task.
+     * Elements release their permits as they complete, fail waiting for their dependencies or are cancelled, e.g.
+     * failed fast, so waiting needs no polling.  If no element completes within the timeout, the longest running
+     * element is treated as timed out and cancelled, releasing its permit, so hung elements can't stall the map.
+     */
+    private static <O> void acquire(Semaphore permits, List<PermitTask<O>> running, ICallableTask<O> task) {
+        long timeout = task.getTaskConfig().getTimeout(task.getName());
+        ConcurrencyBudget.Permit permit = permits.availablePermits() > 0 ? null : ConcurrencyBudget.release();
+        try {
+            prune(running);
+            if (permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+            // timed out, the oldest element still holding a permit is the one that has run longest
+            for (PermitTask<O> element : running) {
+                if (!element.isReleased()) {
+                    // its permit is released as it's cancelled, or as it completes if it just has
+                    element.future.cancel(true);
+                    break;
+                }
+            }
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WorkflowException("Interrupted waiting to start parallel map task: " + task.getName());
+        } finally {
+            ConcurrencyBudget.reacquire(permit);
+        }
+    }
+
+    private static <O> void prune(List<PermitTask<O>> running) {
+        Iterator<PermitTask<O>> it = running.iterator();
+        while (it.hasNext()) {
+            if (it.next().isReleased()) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Releases the task's permit once it completes so the next element can start.
+     * The permit is released once only, whichever of completing, failing to wait for dependencies or being cancelled
+     * happens first.
+     */
+    private static class PermitTask<O> implements ICallableTask<O>, ICancellationListener {
+
+        private final ICallableTask<O> task;
+        private final Semaphore permits;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+        private volatile ICallableTaskFuture<O> future;
+
+        PermitTask(ICallableTask<O> task, Semaphore permits) {
+            this.task = task;
+            this.permits = permits;
+        }
+
+        void release() {
+            if (this.released.compareAndSet(false, true)) {
+                this.permits.release();
+            }
+        }
+
+        boolean isReleased() {
+            return this.released.get();
+        }
+
+        /**
+         * The task may never be called, or is still running after timing out, either way the next element can start.
+         */
+        @Override
+        public void cancelled() {
+            release();
+        }
+
+        @Override
+        public O call() throws Exception {
+            try {
+                return this.task.call();
+            } finally {
+                release();
+            }
+        }
+
+        @Override
+        public String getName() {
+            return this.task.getName();
+        }
+
+        @Override
+        public ResponseContext getContext() {
+            return this.task.getContext();
+        }
+
+        @Override
+        public CallableTaskConfig getTaskConfig() {
+            return this.task.getTaskConfig();
+        }
+
+        @Override
+        public void waitForDependencies() {
+            boolean done = false;
+            try {
+                this.task.waitForDependencies();
+                done = true;
+            } finally {
+                if (!done) {
+                    // the task won't be called so let the next element start
+                    release();
+                }
+            }
+        }
+
+        @Override
+        public ICallableTaskFuture<?>[] getDependencies() {
+            return this.task.getDependencies();
+        }
+
+    }
+
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.ebay.taskgraph.diagnostic.IProfilerEntry;
+import com.ebay.taskgraph.executor.ApplicationException;
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.ICallableTask;
+import com.ebay.taskgraph.executor.ICallableTaskFuture;
+import com.ebay.taskgraph.executor.Task;
+
+/**
+ * Visitor task that splits the visitees into chunks that are visited in parallel.
+ *
+ * Chunks are added as ASYNC tasks to the visitor's workflow, so they run on the request's executor within its
+ * concurrency budget, unless an executor is configured.  The first chunk is visited on the task's own thread, which then
+ * visits any chunks that haven't started yet rather than waiting for them to be scheduled.  The visit method must be
+ * thread safe with respect to the visitor's own state.  Each chunk is timed in the profiler and exceptions thrown by the
+ * visitor are logged to the task once all the chunks have completed, in visitee order.  Batch visitors are passed
+ * batches from within a chunk.
+ */
+public abstract class ParallelVisitorTask<T> extends VisitorTask<T> {
+
+    public static final int DEFAULT_MIN_CHUNK_SIZE = 16;
+
+    private static final String CHUNK = "chunk_";
+
+    /**
+     * Minimum number of visitees per chunk so the overhead of parallel execution isn't paid for small lists.
+     */
+    private final int minChunkSize;
+
+    /**
+     * Executor for the chunks, null to add them to the workflow.
+     */
+    private final Executor executor;
+
+    private final int parallelism;
+
+    public ParallelVisitorTask(CallableTaskConfig config, ICallableTaskFuture<?> ... dependencies) {
+        this(config, DEFAULT_MIN_CHUNK_SIZE, null, dependencies);
+    }
+
+    /**
+     * @param minChunkSize minimum number of visitees per chunk
+     * @param executor executor for the chunks, null to add them as tasks to the workflow
+     */
+    public ParallelVisitorTask(
+            CallableTaskConfig config,
+            int minChunkSize,
+            Executor executor,
+            ICallableTaskFuture<?> ... dependencies) {
+        super(config, dependencies);
+        this.minChunkSize = validate(minChunkSize);
+        this.executor = executor;
+        this.parallelism = getParallelism(executor);
+    }
+
+    public ParallelVisitorTask(
+            String name,
+            CallableTaskConfig config,
+            int minChunkSize,
+            Executor executor,
+            ICallableTaskFuture<?> ... dependencies) {
+        super(name, config, dependencies);
+        this.minChunkSize = validate(minChunkSize);
+        this.executor = executor;
+        this.parallelism = getParallelism(executor);
+    }
+
+    private static int validate(int minChunkSize) {
+        if (minChunkSize < 1) {
+            throw new IllegalArgumentException("Minimum chunk size must be positive: " + minChunkSize);
+        }
+        return minChunkSize;
+    }
+
+    /**
+     * The calling thread visits a chunk too so there's one more chunk than the parallelism of the pool.
+     * Unbounded pools, e.g. cached thread pools, and the workflow's executor are taken to be as parallel as the processors.
+     */
+    static int getParallelism(Executor executor) {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        if (executor instanceof ForkJoinPool) {
+            parallelism = ((ForkJoinPool) executor).getParallelism();
+        } else if (executor instanceof ThreadPoolExecutor && ((ThreadPoolExecutor) executor).getMaximumPoolSize() < Integer.MAX_VALUE) {
+            parallelism = ((ThreadPoolExecutor) executor).getMaximumPoolSize();
+        }
+        return parallelism < Integer.MAX_VALUE ? parallelism + 1 : parallelism;
+    }
+
+    @Override
+    protected void visitAll(final List<T> visitees) {
+
+        final int chunks = Math.min(this.parallelism, visitees.size() / this.minChunkSize);
+        if (chunks <= 1) {
+            super.visitAll(visitees);
+            return;
+        }
+
+        // exceptions are collected by visitee and logged once all the chunks are complete
+        final Throwable[] exceptions = new Throwable[visitees.size()];
+        // each chunk is visited by whichever of its own task and the calling thread claims it first
+        final AtomicIntegerArray claimed = new AtomicIntegerArray(chunks);
+
+        List<FutureTask<Void>> futures = new ArrayList<>(chunks - 1);
+        List<ICallableTaskFuture<Boolean>> tasks = new ArrayList<>(chunks - 1);
+        IWorkflow<?> workflow = getWorkflow();
+        for (int i = 1; i < chunks; ++i) {
+            final int chunk = i;
+            if (this.executor != null) {
+                FutureTask<Void> future = new FutureTask<Void>(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        visitChunk(chunk, chunks, visitees, exceptions, claimed);
+                    }
+
+                }, null);
+                futures.add(future);
+                this.executor.execute(future);
+            } else if (workflow != null) {
+                tasks.add(workflow.addTask(new ChunkTask(chunk, chunks, visitees, exceptions, claimed)));
+            }
+        }
+        for (int i = 0; i < chunks; ++i) {
+            visitChunk(i, chunks, visitees, exceptions, claimed);
+        }
+
+        List<Throwable> failures = new ArrayList<>();
+        for (FutureTask<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WorkflowException("Interrupted waiting for visitor chunk: " + getName());
+            } catch (ExecutionException e) {
+                failures.add(e.getCause());
+            }
+        }
+        for (ICallableTaskFuture<Boolean> task : tasks) {
+            // gives up the task's concurrency budget while it waits
+            task.getNoThrow(this);
+        }
+
+        for (Throwable t : exceptions) {
+            if (t != null) {
+                failures.add(t);
+            }
+        }
+        logExceptions(failures);
+    }
+
+    /**
+     * Log all the exceptions to the task before rethrowing the first ApplicationException, if any.
+     * Task.logTaskException() throws ApplicationExceptions, which would otherwise leave the rest unlogged.
+     */
+    private void logExceptions(List<Throwable> failures) {
+        ApplicationException first = null;
+        for (Throwable t : failures) {
+            try {
+                Task.logTaskException(this, t);
+            } catch (ApplicationException e) {
+                if (null == first) {
+                    first = e;
+                }
+            }
+        }
+        if (first != null) {
+            throw first;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void visitChunk(int chunk, int chunks, List<T> visitees, Throwable[] exceptions, AtomicIntegerArray claimed) {
+        if (!claimed.compareAndSet(chunk, 0, 1)) {
+            return;
+        }
+        int from = (int) ((long) chunk * visitees.size() / chunks);
+        int to = (int) ((long) (chunk + 1) * visitees.size() / chunks);
+        IProfilerEntry pe = this.context.getProfiler().newEntry(CHUNK + chunk);
+        try {
+            if (this instanceof IBatchVisitor) {
+                for (int i = from; i < to; i += getBatchSize()) {
+                    try {
+                        ((IBatchVisitor<T>) this).visitBatch(visitees.subList(i, Math.min(i + getBatchSize(), to)));
+                    } catch (Throwable t) {
+                        exceptions[i] = t;
+                    }
+                }
+                return;
+            }
+            for (int i = from; i < to; ++i) {
+                try {
+                    this.visit(visitees.get(i));
+                } catch (Throwable t) {
+                    exceptions[i] = t;
+                }
+            }
+        } finally {
+            this.context.getProfiler().add(pe);
+        }
+    }
+
+    /**
+     * Task visiting a chunk on the workflow's executor.
+     */
+    private class ChunkTask extends Task implements ICallableTask<Boolean> {
+
+        private final int chunk;
+        private final int chunks;
+        private final List<T> visitees;
+        private final Throwable[] exceptions;
+        private final AtomicIntegerArray claimed;
+
+        ChunkTask(int chunk, int chunks, List<T> visitees, Throwable[] exceptions, AtomicIntegerArray claimed) {
+            super(ParallelVisitorTask.this.getName() + "_" + CHUNK + chunk, new CallableTaskConfig(
+                    ParallelVisitorTask.this.getTaskConfig().diagnosticConfig,
+                    ParallelVisitorTask.this.getTaskConfig().timeout,
+                    CallableTaskConfig.ExecType.ASYNC,
+                    ParallelVisitorTask.this.getTaskConfig().priority));
+            this.chunk = chunk;
+            this.chunks = chunks;
+            this.visitees = visitees;
+            this.exceptions = exceptions;
+            this.claimed = claimed;
+        }
+
+        @Override
+        public Boolean call() {
+            visitChunk(this.chunk, this.chunks, this.visitees, this.exceptions, this.claimed);
+            return Boolean.TRUE;
+        }
+
+    }
+
+}
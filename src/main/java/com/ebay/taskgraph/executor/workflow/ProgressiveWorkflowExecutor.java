@@ -0,0 +1,172 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.ebay.taskgraph.executor.ApplicationException;
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.ConcurrencyBudget;
+import com.ebay.taskgraph.executor.ICallableTask;
+import com.ebay.taskgraph.executor.ICallableTaskFuture;
+import com.ebay.taskgraph.executor.Task;
+
+/**
+ * Emits an initial response as soon as the critical tasks of a workflow complete, then an update as each optional task completes.
+ *
+ * Subclasses build the workflow in executeInitial(), block only for the critical data and add the futures of the optional
+ * tasks to the list of updates.  The initial response is passed to the listener straight away so the time to the first
+ * response doesn't depend on the optional tasks.  Updates are passed to the listener in the order the optional tasks complete
+ * until they have all completed or the deadline for updates passes, when the remaining optional tasks are cancelled.
+ * Once the initial response has been sent the workflow can no longer fail, so an ApplicationException in an optional task
+ * is reported as a missed update to onComplete() rather than rethrown.
+ *
+ * @param <T> type of the initial response
+ * @param <U> type of the updates
+ */
+public abstract class ProgressiveWorkflowExecutor<T, U> implements IWorkflowExecutor<T> {
+
+    public static final String FIRST_RESPONSE_MS = "first_response_ms";
+    public static final String UPDATES = "updates";
+    public static final String MISSED_UPDATES = "missed_updates";
+    public static final String FAILED_UPDATES = "failed_updates";
+
+    private final IProgressiveListener<T, U> listener;
+    private final long timeout;
+
+    /**
+     * @param listener receives the initial response and updates
+     * @param timeout deadline in milliseconds from the initial response for optional tasks to complete
+     */
+    protected ProgressiveWorkflowExecutor(IProgressiveListener<T, U> listener, long timeout) {
+        this.listener = listener;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Build the workflow and wait for the critical tasks only.
+     * @param updates futures of the optional tasks whose results are sent as updates
+     * @return the initial response
+     */
+    protected abstract T executeInitial(IWorkflow<T> workflow, List<ICallableTaskFuture<? extends U>> updates);
+
+    @Override
+    public T execute(IWorkflow<T> workflow) {
+
+        final long start = System.currentTimeMillis();
+        List<ICallableTaskFuture<? extends U>> updates = new ArrayList<>();
+        T initial = executeInitial(workflow, updates);
+
+        // wait for each optional result on its own task so updates are delivered in completion order
+        CallableTaskConfig config = new CallableTaskConfig(workflow.getTask().getContext().getDiagnosticConfig(), this.timeout);
+        BlockingQueue<UpdateTask<U>> completed = new LinkedBlockingQueue<>();
+        List<ICallableTaskFuture<Void>> waiting = new ArrayList<>(updates.size());
+        for (ICallableTaskFuture<? extends U> update : updates) {
+            waiting.add(workflow.addTask(new UpdateTask<U>(config, update, completed)));
+        }
+        workflow.seal();
+
+        this.listener.onInitial(initial);
+        workflow.getTask().getContext().getProfiler().addData(FIRST_RESPONSE_MS, Long.toString(System.currentTimeMillis() - start));
+
+        int delivered = 0;
+        int failed = 0;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.timeout);
+        for (int received = 0; received < updates.size(); ++received) {
+            UpdateTask<U> task = poll(completed, deadline, workflow);
+            if (null == task) {
+                break;
+            }
+            if (task.exception != null) {
+                ++failed;
+            } else if (task.result != null) {
+                this.listener.onUpdate(task.update.getTask().getName(), task.result);
+                ++delivered;
+            }
+        }
+        // no effect on tasks that have already completed
+        for (ICallableTaskFuture<? extends U> update : updates) {
+            update.cancel(true);
+        }
+        for (ICallableTaskFuture<Void> future : waiting) {
+            future.cancel(true);
+        }
+
+        int missed = updates.size() - delivered;
+        workflow.getTask().getContext().getProfiler().addData(UPDATES, Integer.toString(delivered));
+        workflow.getTask().getContext().getProfiler().addData(MISSED_UPDATES, Integer.toString(missed));
+        if (failed > 0) {
+            workflow.getTask().getContext().getProfiler().addData(FAILED_UPDATES, Integer.toString(failed));
+        }
+        this.listener.onComplete(missed);
+        return initial;
+    }
+
+    private static <U> UpdateTask<U> poll(BlockingQueue<UpdateTask<U>> completed, long deadline, IWorkflow<?> workflow) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0L) {
+            return completed.poll();
+        }
+        ConcurrencyBudget.Permit permit = ConcurrencyBudget.release();
+        try {
+            return completed.poll(remaining, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WorkflowException("Interrupted waiting for updates: " + workflow.getTask().getName());
+        } finally {
+            ConcurrencyBudget.reacquire(permit);
+        }
+    }
+
+    /**
+     * Waits for the result of an optional task and queues itself once the result is available.
+     */
+    private static class UpdateTask<U> extends Task implements ICallableTask<Void> {
+
+        private final ICallableTaskFuture<? extends U> update;
+        private final BlockingQueue<UpdateTask<U>> completed;
+        private volatile U result = null;
+        private volatile ApplicationException exception = null;
+
+        UpdateTask(CallableTaskConfig config, ICallableTaskFuture<? extends U> update, BlockingQueue<UpdateTask<U>> completed) {
+            super("update_" + update.getTask().getName(), config);
+            this.update = update;
+            this.completed = completed;
+        }
+
+        @Override
+        public Void call() {
+            try {
+                this.result = this.update.getNoThrow(this);
+            } catch (ApplicationException e) {
+                // already logged by the optional task, reported as a missed update
+                this.exception = e;
+            } finally {
+                this.completed.add(this);
+            }
+            return null;
+        }
+
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow;
+
+import com.ebay.taskgraph.executor.ICallableTask;
+import com.ebay.taskgraph.executor.JavaCallableTaskExecutor;
+import com.ebay.taskgraph.executor.RequestScope;
+
+/**
+ * Workflow factory created per request so the workflow and all its nested workflows share the request scope.
+ * The top level workflow's executor gets the request scope, nested workflows created through their parent workflow get the
+ * scope with the path of the nested workflow, see RequestScope.getTaskPath().
+ */
+public class RequestScopeWorkflowFactory implements IWorkflowFactory {
+
+    private final RequestScope scope;
+
+    private final boolean flatten;
+
+    /**
+     * Creates workflows nested in a workflow of the request, whose owner tasks are part of the workflow path.
+     */
+    private final boolean nested;
+
+    public RequestScopeWorkflowFactory(RequestScope scope) {
+        this(scope, false);
+    }
+
+    /**
+     * @param flatten see Workflow
+     */
+    public RequestScopeWorkflowFactory(RequestScope scope, boolean flatten) {
+        this(scope, flatten, false);
+    }
+
+    private RequestScopeWorkflowFactory(RequestScope scope, boolean flatten, boolean nested) {
+        this.scope = scope;
+        this.flatten = flatten;
+        this.nested = nested;
+    }
+
+    @Override
+    public <T> IWorkflow<T> create(ICallableTask<T> ownerTask) {
+        // the owner of the top level workflow ran the request so isn't part of the path
+        RequestScope workflowScope = this.nested ? this.scope.withNestedWorkflow(ownerTask.getName()) : this.scope;
+        return new Workflow<T>(ownerTask, new RequestScopeWorkflowFactory(workflowScope, this.flatten, true),
+                new JavaCallableTaskExecutor(workflowScope), this.flatten);
+    }
+
+    public RequestScope getScope() {
+        return this.scope;
+    }
+
+}
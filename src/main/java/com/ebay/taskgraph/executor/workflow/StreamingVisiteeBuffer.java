@@ -0,0 +1,36 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow;
+
+import com.ebay.taskgraph.executor.TaskStream;
+
+/**
+ * Bounded buffer between upstream tasks producing visitees and the visitors consuming them.
+ *
+ * Producers block in put() while the buffer is full so at most bufferSize visitees are held at once.
+ * Producers must call close() once all the visitees have been added, or fail() if they couldn't be produced.
+ * The iterator is single use, blocks until the next visitee is available and ends once the buffer is closed.
+ */
+public class StreamingVisiteeBuffer<T> extends TaskStream<T> implements IStreamingVisiteeProvider<T> {
+
+    public StreamingVisiteeBuffer(int bufferSize) {
+        super(bufferSize);
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ebay.taskgraph.executor.ApplicationException;
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.ICallableTaskFuture;
+
+/**
+ * Visits each visitee with every visitor as soon as it's streamed from the provider.
+ *
+ * The visitors are split into stages, each started by the first visitor or an asynchronous visitor, which is added to
+ * the workflow as a task with its own config and dependencies and consumes the stream of its stage.  Synchronous
+ * visitors following it visit each visitee on the same thread, then the visitees are streamed to the next stage, so
+ * each visitee is still visited by the visitors in the order they're listed while the stages run concurrently.
+ * The streams between the stages hold at most a batch of the next stage's first visitor, and only the visitees
+ * currently buffered by the provider and the streams are held so memory doesn't grow with the number of visitees.
+ */
+class StreamingVisiteeVisitorWorkflowExecutor<T> implements IWorkflowExecutor<Integer> {
+
+    private final IStreamingVisiteeProvider<T> visiteeProvider;
+    private final List<VisitorTask<T>> visitors;
+
+    public StreamingVisiteeVisitorWorkflowExecutor(
+            IStreamingVisiteeProvider<T> visiteeProvider,
+            List<VisitorTask<T>> visitors) {
+        this.visiteeProvider = visiteeProvider;
+        this.visitors = visitors;
+    }
+
+    @Override
+    public Integer execute(IWorkflow<Integer> workflow) {
+        if (this.visitors.isEmpty()) {
+            int count = 0;
+            for (@SuppressWarnings("unused") T visitee : this.visiteeProvider) {
+                ++count;
+            }
+            return count;
+        }
+
+        List<VisitorTask<T>> stages = new ArrayList<>();
+        List<VisitorTask<T>> followers = new ArrayList<>();
+        VisitorTask<T> previous = null;
+        for (VisitorTask<T> visitor : this.visitors) {
+            if (previous != null && isSynchronous(visitor)) {
+                previous.setNext(visitor);
+                followers.add(visitor);
+            } else {
+                IStreamingVisiteeProvider<T> source = this.visiteeProvider;
+                if (previous != null) {
+                    StreamingVisiteeBuffer<T> stream = new StreamingVisiteeBuffer<>(visitor.getBatchSize());
+                    previous.setSink(stream);
+                    source = stream;
+                }
+                visitor.setStream(source, workflow);
+                stages.add(visitor);
+            }
+            previous = visitor;
+        }
+
+        List<ICallableTaskFuture<Boolean>> futures = new ArrayList<>(stages.size());
+        for (VisitorTask<T> stage : stages) {
+            ICallableTaskFuture<Boolean> future = workflow.addTask(stage);
+            // a lazy stage would leave the stage before it blocked on a full stream
+            future.prefetch();
+            futures.add(future);
+        }
+        workflow.seal();
+
+        // wait for all the stages, a synchronous first stage runs now, before reporting any failure
+        ApplicationException exception = null;
+        boolean failed = false;
+        try {
+            for (ICallableTaskFuture<Boolean> future : futures) {
+                try {
+                    failed |= null == future.getNoThrow(workflow.getTask());
+                } catch (ApplicationException e) {
+                    if (null == exception) {
+                        exception = e;
+                    }
+                }
+            }
+        } finally {
+            for (VisitorTask<T> follower : followers) {
+                workflow.getTask().getContext().add(follower.getContext());
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+        if (failed) {
+            throw new WorkflowException("Streaming visitor failed: " + workflow.getTask().getName());
+        }
+        return stages.get(0).getStreamed();
+    }
+
+    private static boolean isSynchronous(VisitorTask<?> visitor) {
+        CallableTaskConfig.ExecType execType = visitor.getTaskConfig().execType;
+        return CallableTaskConfig.ExecType.SYNC == execType || CallableTaskConfig.ExecType.SIMPLE == execType;
+    }
+
+}
@@ -18,31 +18,43 @@
 
 package com.ebay.taskgraph.executor.workflow;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import com.ebay.taskgraph.executor.ICallableTaskFuture;
 
 /**
  * Caches an instance of a particular task in a workflow.
  * This allows multiple downstream dependencies to reference a single instance.
  * Also enables transitive dependencies to be wired up recursively.
- * 
- * Not threaad safe.  Generally workflows should be created synchronously based
- * on application request and configuration.  If a particular task requires 
- * extra orchestration based on its execution time dependencies, it can create
- * its own workflow synchronously when its call() method is invoked.
+ *
+ * Thread safe.  The factory is invoked once only, by the first thread to ask for the instance.
+ * Other threads asking for the instance while it is being created block until it's available.
+ * This allows independent sub-graphs of a workflow to be wired up in parallel.
+ *
+ * Cyclic dependencies are detected both when a factory recursively asks for its own instance on the
+ * same thread and when factories recurse across threads, e.g. a factory on one thread waits for an
+ * instance being created on another thread that in turn is waiting for an instance owned by the first.
  */
-//@NotThreadSafe
 public class TaskInstance<V, S extends IWorkflowBuilder> {
 
+    /**
+     * Task instance each thread is currently blocked on.
+     * Used to walk the chain of waiting threads to detect cycles that span threads.
+     * Guarded by itself so checking for a cycle and registering the wait is atomic across instances.
+     */
+    private static final Map<Thread, TaskInstance<?, ?>> WAITING = new HashMap<>();
+
     /**
      * Use a separate flag for determining if the instance has been created or not.
      * This prevents the factory logic being repeated in the case where the instance should be null.
      */
-    private boolean initialized = false;
-    
+    private volatile boolean initialized = false;
+
     /**
-     * Another flag to detect cyclic dependencies.
+     * Thread currently running the factory, used to detect cyclic dependencies.
      */
-    private boolean initializing = false;
+    private volatile Thread owner = null;
 
     private ICallableTaskFuture<V> instance;
 
@@ -53,14 +65,89 @@ public class TaskInstance<V, S extends IWorkflowBuilder> {
     }
 
     public ICallableTaskFuture<V> get(S builder) {
-        if (!this.initialized) {
-            if (this.initializing) {
-                throw new WorkflowException("Cycle detected on task factory: " + this.factory.getClass().getCanonicalName());
+        if (this.initialized) {
+            return getInstance();
+        }
+        if (!acquire()) {
+            // another thread created the instance while we were waiting
+            return getInstance();
+        }
+        // invoke the factory outside the lock so recursive requests for other instances don't hold this monitor
+        ICallableTaskFuture<V> created = null;
+        boolean done = false;
+        try {
+            created = this.factory.create(builder);
+            done = true;
+        } finally {
+            release(created, done);
+        }
+        return created;
+    }
+
+    private synchronized ICallableTaskFuture<V> getInstance() {
+        return this.instance;
+    }
+
+    /**
+     * @return true if the current thread should invoke the factory, false if the instance is already available
+     */
+    private synchronized boolean acquire() {
+        Thread current = Thread.currentThread();
+        while (!this.initialized) {
+            if (null == this.owner) {
+                this.owner = current;
+                return true;
+            }
+            synchronized (WAITING) {
+                if (this.owner == current || isWaitingOn(this.owner, current)) {
+                    throw new WorkflowException("Cycle detected on task factory: " + this.factory.getClass().getCanonicalName());
+                }
+                WAITING.put(current, this);
             }
-            this.initializing = true;
-            this.instance = this.factory.create(builder);
+            try {
+                this.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WorkflowException("Interrupted waiting for task factory: " + this.factory.getClass().getCanonicalName());
+            } finally {
+                synchronized (WAITING) {
+                    WAITING.remove(current);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Publish the instance, or reset ownership if the factory failed so the exception isn't masked as a cycle.
+     */
+    private synchronized void release(ICallableTaskFuture<V> created, boolean done) {
+        if (done) {
+            this.instance = created;
             this.initialized = true;
         }
-        return this.instance;
+        this.owner = null;
+        this.notifyAll();
+    }
+
+    /**
+     * Follow the chain of threads waiting on task instances starting at the thread creating this instance.
+     * If the chain leads back to the current thread, waiting would deadlock.
+     * Caller must hold the WAITING lock.
+     */
+    private static boolean isWaitingOn(Thread start, Thread current) {
+        Thread thread = start;
+        // bound the walk in case the chain changes as factories complete
+        for (int i = 0; i <= WAITING.size() && thread != null; ++i) {
+            TaskInstance<?, ?> waitingOn = WAITING.get(thread);
+            if (null == waitingOn) {
+                return false;
+            }
+            thread = waitingOn.owner;
+            if (thread == current) {
+                return true;
+            }
+        }
+        return false;
     }
 }
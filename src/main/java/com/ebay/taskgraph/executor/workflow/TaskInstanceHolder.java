@@ -18,8 +18,8 @@
 
 package com.ebay.taskgraph.executor.workflow;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,31 +28,90 @@ import com.ebay.taskgraph.executor.ICallableTaskFuture;
 
 /**
  * collection of tasks that need to be shared as dependencies for other tasks in the workflow
+ *
+ * Thread safe.  Each factory class is assigned a fixed slot index the first time it's seen by any holder,
+ * so looking up a task instance is an array read rather than hashing the factory class name.
+ * Task instances are created once only, see {@link TaskInstance}, so factories can be invoked
+ * from multiple threads to wire independent sub-graphs in parallel.
  */
 public class TaskInstanceHolder<V extends IWorkflowBuilder> {
 
     static final Logger LOGGER = LoggerFactory.getLogger(TaskInstanceHolder.class);
 
-    private final Map<String, TaskInstance<?, V>> tasks = new HashMap<>();
+    private static final int INITIAL_SLOTS = 16;
+
+    private static final AtomicInteger SLOT_COUNT = new AtomicInteger();
+
+    /**
+     * Slot index assigned to each factory class.
+     */
+    private static final ClassValue<Integer> SLOTS = new ClassValue<Integer>() {
+
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            return SLOT_COUNT.getAndIncrement();
+        }
+
+    };
+
+    private volatile AtomicReferenceArray<TaskInstance<?, V>> tasks;
 
     private final V workflowBuilder;
 
     public TaskInstanceHolder(V workflowBuilder) {
         this.workflowBuilder = workflowBuilder;
+        this.tasks = new AtomicReferenceArray<>(Math.max(INITIAL_SLOTS, SLOT_COUNT.get()));
     }
 
     public <T> ICallableTaskFuture<T> get(ITaskFactory<V, T> factory) {
 
-        // type safe cast as the map key is defined with the specific type of the factory
+        int slot = SLOTS.get(factory.getClass());
+
+        // type safe cast as the slot is assigned to the specific class of the factory
         // this guarantees the task instance will return a future of that type
         @SuppressWarnings("unchecked")
-        TaskInstance<T, V> taskInstance = (TaskInstance<T, V>) this.tasks.get(factory.getClass().getCanonicalName());
+        TaskInstance<T, V> taskInstance = (TaskInstance<T, V>) getSlots(slot).get(slot);
 
         if (null == taskInstance) {
-            taskInstance = new TaskInstance<>(factory);
-            this.tasks.put(factory.getClass().getCanonicalName(), taskInstance);
+            taskInstance = newInstance(slot, factory);
         }
         return taskInstance.get(this.workflowBuilder);
     }
 
+    private AtomicReferenceArray<TaskInstance<?, V>> getSlots(int slot) {
+        AtomicReferenceArray<TaskInstance<?, V>> slots = this.tasks;
+        if (slot < slots.length()) {
+            return slots;
+        }
+        return grow(slot);
+    }
+
+    /**
+     * Copy the slots to a larger array when a factory class has been assigned a slot beyond the current size.
+     * Instances are only published under the lock, so nothing is lost in the copy.
+     */
+    private synchronized AtomicReferenceArray<TaskInstance<?, V>> grow(int slot) {
+        AtomicReferenceArray<TaskInstance<?, V>> slots = this.tasks;
+        if (slot >= slots.length()) {
+            AtomicReferenceArray<TaskInstance<?, V>> larger = new AtomicReferenceArray<>(Math.max(slot + 1, slots.length() * 2));
+            for (int i = 0; i < slots.length(); ++i) {
+                larger.set(i, slots.get(i));
+            }
+            this.tasks = larger;
+            slots = larger;
+        }
+        return slots;
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized <T> TaskInstance<T, V> newInstance(int slot, ITaskFactory<V, T> factory) {
+        AtomicReferenceArray<TaskInstance<?, V>> slots = getSlots(slot);
+        TaskInstance<T, V> taskInstance = (TaskInstance<T, V>) slots.get(slot);
+        if (null == taskInstance) {
+            taskInstance = new TaskInstance<>(factory);
+            slots.set(slot, taskInstance);
+        }
+        return taskInstance;
+    }
+
 }
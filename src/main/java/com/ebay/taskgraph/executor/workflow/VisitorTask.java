@@ -18,21 +18,72 @@
 
 package com.ebay.taskgraph.executor.workflow;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import com.ebay.taskgraph.context.ResponseContext;
 import com.ebay.taskgraph.executor.CallableTaskConfig;
 import com.ebay.taskgraph.executor.ICallableTask;
 import com.ebay.taskgraph.executor.ICallableTaskFuture;
 import com.ebay.taskgraph.executor.Task;
+import com.ebay.taskgraph.executor.TaskStream;
 
 /**
  * Wraps a visitor in a simple task to aid profiling.
+ *
+ * By default visitors of the same visitees run one after another in the order they're listed.
+ * Visitors that declare the parts of the visitee they read and write, or that are independent of all other visitors,
+ * are only ordered after earlier visitors they conflict with, so ASYNC visitors that don't conflict run concurrently.
+ *
+ * Visitors that implement IBatchVisitor are passed the visitees in batches of up to the batch size.
+ *
+ * Streamed visitees are visited in stages, see StreamingVisiteeVisitorWorkflowExecutor.  The first visitor of each stage
+ * runs as a task consuming the stream, and passes each visitee on to the synchronous visitors of its stage and then to
+ * the stream of the next stage.  Batch visitors accumulate streamed visitees into batches of up to the batch size.
  */
 public abstract class VisitorTask<T> extends Task implements ICallableTask<Boolean>, IVisitor<T> {
 
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
     private List<T> visitees = null;
 
+    /**
+     * Workflow the visitor was added to, for visitors that add tasks of their own.
+     */
+    private IWorkflow<?> workflow = null;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Visitees streamed to the first visitor of a stage, null if the visitees are a list or this visitor follows another.
+     */
+    private IStreamingVisiteeProvider<T> source = null;
+
+    /**
+     * Synchronous visitor of the same stage that visits the visitees next, on this visitor's thread.
+     */
+    private VisitorTask<T> next = null;
+
+    /**
+     * Stream of the visited visitees to the next stage, null for the last stage.
+     */
+    private TaskStream<T> sink = null;
+
+    /**
+     * Streamed visitees waiting for a full batch, only used by batch visitors.
+     */
+    private List<T> batch = null;
+
+    private int streamed = 0;
+
+    /**
+     * Earlier visitors of the same visitees that this visitor conflicts with and so must complete first.
+     */
+    private List<ICallableTaskFuture<Boolean>> predecessors = Collections.emptyList();
+
     public VisitorTask(CallableTaskConfig config, ICallableTaskFuture<?> ... dependencies) {
         super(config, dependencies);
     }
@@ -45,34 +96,315 @@ public abstract class VisitorTask<T> extends Task implements ICallableTask<Boole
         super(name, context, config, dependencies);
     }
 
-    private void setVisitees(List<T> visitees) {
+    private void setVisitees(List<T> visitees, IWorkflow<?> workflow) {
         this.visitees = visitees;
+        this.workflow = workflow;
+    }
+
+    /**
+     * Make this visitor the first of a stage of a streaming workflow.
+     */
+    void setStream(IStreamingVisiteeProvider<T> source, IWorkflow<?> workflow) {
+        this.source = source;
+        this.workflow = workflow;
+    }
+
+    /**
+     * @param next synchronous visitor visiting the visitees after this one on the same thread
+     */
+    void setNext(VisitorTask<T> next) {
+        this.next = next;
+    }
+
+    /**
+     * @param sink stream of the visited visitees to the next stage
+     */
+    void setSink(TaskStream<T> sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * @return number of visitees taken from the stream by the first visitor of a stage
+     */
+    int getStreamed() {
+        return this.streamed;
+    }
+
+    /**
+     * @return workflow the visitor was added to, null until it's visiting
+     */
+    protected IWorkflow<?> getWorkflow() {
+        return this.workflow;
+    }
+
+    /**
+     * @return maximum number of visitees passed to a batch visitor at once
+     */
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return names of the parts of the visitee this visitor reads, null if unknown
+     */
+    public Set<String> getReadSet() {
+        return null;
+    }
+
+    /**
+     * @return names of the parts of the visitee this visitor writes, null if unknown
+     */
+    public Set<String> getWriteSet() {
+        return null;
+    }
+
+    /**
+     * @return true if this visitor doesn't conflict with any other visitor of the same visitees
+     */
+    public boolean isIndependent() {
+        return false;
+    }
+
+    /**
+     * Block for earlier conflicting visitors before the task's own dependencies.
+     */
+    @Override
+    public void waitForDependencies() {
+        try {
+            for (ICallableTaskFuture<Boolean> predecessor : this.predecessors) {
+                predecessor.getNoThrow(this);
+            }
+            super.waitForDependencies();
+        } catch (RuntimeException e) {
+            if (this.source != null) {
+                // the stream won't be consumed, don't leave the stages either side waiting
+                this.source.cancel();
+                fail(e);
+            }
+            throw e;
+        }
     }
 
     @Override
     public Boolean call() {
+        if (this.source != null) {
+            visitStream();
+            return Boolean.TRUE;
+        }
         if (null == this.visitees) {
             throw new WorkflowException("Need to VisitorTask.visit() method so visitees are initialized.");
         }
-        for (T visitee : this.visitees) {
-            try {
-                this.visit(visitee);
-            } catch (Throwable t) {
-                Task.logTaskException(this, t);
+        visitAll(this.visitees);
+        return Boolean.TRUE;
+    }
+
+    /**
+     * Visit each of the visitees in order on the current thread, a batch at a time for batch visitors.
+     */
+    protected void visitAll(List<T> visitees) {
+        if (this instanceof IBatchVisitor) {
+            for (int i = 0; i < visitees.size(); i += this.batchSize) {
+                visitBatchLogged(visitees.subList(i, Math.min(i + this.batchSize, visitees.size())));
             }
+            return;
+        }
+        for (T visitee : visitees) {
+            visitLogged(visitee);
+        }
+    }
+
+    /**
+     * Visit the streamed visitees, and pass them on, until the end of the stream or the next stage stops.
+     * Exceptions are passed on to the next stage and the stream is cancelled so the previous stage stops too.
+     */
+    private void visitStream() {
+        Iterator<T> iterator = this.source instanceof TaskStream
+                ? ((TaskStream<T>) this.source).subscribe(this) : this.source.iterator();
+        try {
+            for (VisitorTask<T> follower = this.next; follower != null; follower = follower.next) {
+                follower.getContext().getProfiler().start();
+                follower.waitForDependencies();
+            }
+            boolean open = true;
+            while (open && iterator.hasNext()) {
+                ++this.streamed;
+                open = accept(iterator.next());
+            }
+            end();
+            if (!open) {
+                this.source.cancel();
+            }
+        } catch (RuntimeException | Error t) {
+            this.source.cancel();
+            fail(t);
+            throw t;
+        } finally {
+            for (VisitorTask<T> follower = this.next; follower != null; follower = follower.next) {
+                follower.getContext().getProfiler().stop();
+            }
+        }
+    }
+
+    /**
+     * Visit a streamed visitee, or add it to the batch, then pass it on.
+     * @return false if the next stage has stopped
+     */
+    private boolean accept(T visitee) {
+        if (this instanceof IBatchVisitor) {
+            if (null == this.batch) {
+                this.batch = new ArrayList<>(this.batchSize);
+            }
+            this.batch.add(visitee);
+            return this.batch.size() < this.batchSize || flush();
+        }
+        visitLogged(visitee);
+        return forward(visitee);
+    }
+
+    private boolean flush() {
+        if (null == this.batch || this.batch.isEmpty()) {
+            return true;
+        }
+        List<T> visited = this.batch;
+        this.batch = new ArrayList<>(this.batchSize);
+        visitBatchLogged(visited);
+        for (T visitee : visited) {
+            if (!forward(visitee)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean forward(T visitee) {
+        if (this.next != null) {
+            return this.next.accept(visitee);
+        }
+        return null == this.sink || this.sink.put(visitee);
+    }
+
+    /**
+     * Visit any partial batches and end the stream to the next stage.
+     */
+    private void end() {
+        flush();
+        if (this.next != null) {
+            this.next.end();
+        } else if (this.sink != null) {
+            this.sink.close();
+        }
+    }
+
+    private void fail(Throwable t) {
+        VisitorTask<T> last = this;
+        while (last.next != null) {
+            last = last.next;
+        }
+        if (last.sink != null) {
+            last.sink.fail(t);
+        }
+    }
+
+    /**
+     * Visit a batch of visitees logging any exception to the task, only called for batch visitors.
+     */
+    @SuppressWarnings("unchecked")
+    void visitBatchLogged(List<T> batch) {
+        try {
+            ((IBatchVisitor<T>) this).visitBatch(batch);
+        } catch (Throwable t) {
+            Task.logTaskException(this, t);
+        }
+    }
+
+    /**
+     * Visit a single visitee logging any exception to the task.
+     */
+    void visitLogged(T visitee) {
+        try {
+            this.visit(visitee);
+        } catch (Throwable t) {
+            Task.logTaskException(this, t);
         }
-        return Boolean.TRUE;
     }
 
     static <T, V> List<T> visit(IVisiteeProvider<T> provider, List<VisitorTask<T>> visitors, IWorkflow<V> workflow) {
         List<T> visitees = provider.get();
         if (visitees != null && visitees.size() > 0) {
-            for (VisitorTask<T> visitor : visitors) {
-                visitor.setVisitees(visitees);
-                workflow.addTask(visitor).getNoThrow(workflow.getTask());
+            if (!isConcurrent(visitors)) {
+                for (VisitorTask<T> visitor : visitors) {
+                    visitor.setVisitees(visitees, workflow);
+                    workflow.addTask(visitor).getNoThrow(workflow.getTask());
+                }
+                return visitees;
+            }
+            // add all the visitors before blocking so those that don't conflict can run concurrently
+            List<ICallableTaskFuture<Boolean>> futures = new ArrayList<>(visitors.size());
+            for (int i = 0; i < visitors.size(); ++i) {
+                VisitorTask<T> visitor = visitors.get(i);
+                visitor.setVisitees(visitees, workflow);
+                visitor.predecessors = getConflicts(visitors, futures, i);
+                futures.add(workflow.addTask(visitor));
+            }
+            workflow.seal();
+            for (ICallableTaskFuture<Boolean> future : futures) {
+                future.getNoThrow(workflow.getTask());
             }
         }
         return visitees;
     }
 
+    /**
+     * @return true if any visitor declares what it reads and writes or is independent
+     */
+    private static <T> boolean isConcurrent(List<VisitorTask<T>> visitors) {
+        for (VisitorTask<T> visitor : visitors) {
+            if (visitor.isIndependent() || isDeclared(visitor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isDeclared(VisitorTask<?> visitor) {
+        return visitor.getReadSet() != null && visitor.getWriteSet() != null;
+    }
+
+    private static <T> List<ICallableTaskFuture<Boolean>> getConflicts(
+            List<VisitorTask<T>> visitors,
+            List<ICallableTaskFuture<Boolean>> futures,
+            int index) {
+
+        List<ICallableTaskFuture<Boolean>> conflicts = new ArrayList<>();
+        for (int i = 0; i < index; ++i) {
+            if (conflicts(visitors.get(i), visitors.get(index))) {
+                conflicts.add(futures.get(i));
+            }
+        }
+        return conflicts;
+    }
+
+    /**
+     * Visitors conflict if either writes what the other reads or writes.
+     * Visitors that don't declare both their read and write sets conflict with all but independent visitors.
+     */
+    static boolean conflicts(VisitorTask<?> a, VisitorTask<?> b) {
+        if (a.isIndependent() || b.isIndependent()) {
+            return false;
+        }
+        if (!isDeclared(a) || !isDeclared(b)) {
+            return true;
+        }
+        return !Collections.disjoint(a.getWriteSet(), b.getReadSet())
+                || !Collections.disjoint(a.getWriteSet(), b.getWriteSet())
+                || !Collections.disjoint(b.getWriteSet(), a.getReadSet());
+    }
+
 }
@@ -60,6 +60,57 @@ public class VisitorWorkflowTaskFactory<T> {
         return callerContext.addTask(task);
     }
 
+    /**
+     * Factory method for multi visitee visitor with the batch size for batch visitors.
+     */
+    public static <T, V> ICallableTaskFuture<List<T>> createMultiVisitee(
+            CallableTaskConfig syncTask,
+            IWorkflow<V> callerContext,
+            String name,
+            IVisiteeProvider<T> visiteeProvider,
+            List<VisitorTask<T>> visitors,
+            int batchSize) {
+
+        setBatchSize(visitors, batchSize);
+        return createMultiVisitee(syncTask, callerContext, name, visiteeProvider, visitors);
+    }
+
+    /**
+     * Factory method for multi visitees provided by the result of a task with the batch size for batch visitors.
+     */
+    public static <T, V> ICallableTaskFuture<List<T>> createMultiVisitee(
+            CallableTaskConfig syncTask,
+            IWorkflow<V> callerContext,
+            String name,
+            ICallableTaskFuture<List<T>> visiteeProvider,
+            List<VisitorTask<T>> visitors,
+            int batchSize) {
+
+        setBatchSize(visitors, batchSize);
+        return createMultiVisitee(syncTask, callerContext, name, visiteeProvider, visitors);
+    }
+
+    private static <T> void setBatchSize(List<VisitorTask<T>> visitors, int batchSize) {
+        for (VisitorTask<T> visitor : visitors) {
+            visitor.setBatchSize(batchSize);
+        }
+    }
+
+    /**
+     * Factory method for visitees streamed from upstream tasks, the result is the number of visitees visited.
+     */
+    public static <T, V> ICallableTaskFuture<Integer> createStreaming(
+            CallableTaskConfig syncTask,
+            IWorkflow<V> callerContext,
+            String name,
+            IStreamingVisiteeProvider<T> visiteeProvider,
+            List<VisitorTask<T>> visitors) {
+
+        IWorkflowExecutor<Integer> executor = new StreamingVisiteeVisitorWorkflowExecutor<T>(visiteeProvider, visitors);
+        WorkflowTask<Integer> task = new WorkflowTask<>(name, syncTask, callerContext, executor);
+        return callerContext.addTask(task);
+    }
+
     /**
      * Factory method for single visitee and list of visitors.
      */
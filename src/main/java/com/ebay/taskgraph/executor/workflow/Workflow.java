@@ -19,12 +19,25 @@
 package com.ebay.taskgraph.executor.workflow;
 
 import com.ebay.taskgraph.context.ResponseContext;
+import com.ebay.taskgraph.executor.CallableTaskConfig.ExecType;
 import com.ebay.taskgraph.executor.ICallableTask;
 import com.ebay.taskgraph.executor.ICallableTaskExecutor;
 import com.ebay.taskgraph.executor.ICallableTaskFuture;
+import com.ebay.taskgraph.executor.IDoubleCallableTask;
+import com.ebay.taskgraph.executor.IDoubleCallableTaskFuture;
+import com.ebay.taskgraph.executor.IIntCallableTask;
+import com.ebay.taskgraph.executor.IIntCallableTaskFuture;
+import com.ebay.taskgraph.executor.ILongCallableTask;
+import com.ebay.taskgraph.executor.ILongCallableTaskFuture;
+import com.ebay.taskgraph.executor.LazyFuture;
 
 public class Workflow<V> implements IWorkflow<V> {
 
+    /**
+     * Profiler data added to nested workflow tasks run on the thread of their consumer rather than a coordinator thread.
+     */
+    public static final String FLATTENED = "flattened";
+
     /**
      * Task that owns the workflow.
      */
@@ -40,14 +53,32 @@ public class Workflow<V> implements IWorkflow<V> {
      */
     private final ICallableTaskExecutor executor;
 
+    /**
+     * Run asynchronous nested workflow tasks on the thread of their consumer instead of a dedicated coordinator thread.
+     */
+    private final boolean flatten;
+
     /**
      * Life cycle of a workflow should be managed by a task.
      * Once the owning task is complete, it should be safe to collect response contexts of all the tasks belonging to the workflow.
      */
     public Workflow(ICallableTask<V> task, IWorkflowFactory workflowFactory, ICallableTaskExecutor executor) {
+        this(task, workflowFactory, executor, false);
+    }
+
+    /**
+     * @param flatten if true, asynchronous nested workflow tasks added to this workflow don't block a thread of the
+     * executor service coordinating each level of nesting.  A nested workflow task runs on the thread of its consumer if
+     * the consumer asks for its result before the thread that added it blocks waiting for another task, and on the
+     * executor service otherwise, so sibling nested workflows still run concurrently and a nested workflow without a
+     * consumer still runs.  The tasks of nested workflows are still submitted to the executor service, each nested
+     * workflow keeps its own executor so task names are scoped by the workflow path and the profiler hierarchy is unchanged.
+     */
+    public Workflow(ICallableTask<V> task, IWorkflowFactory workflowFactory, ICallableTaskExecutor executor, boolean flatten) {
         this.task = task;
         this.workflowFactory = workflowFactory;
         this.executor = executor;
+        this.flatten = flatten;
         this.task.getContext().getProfiler().start();
     }
 
@@ -58,6 +89,27 @@ public class Workflow<V> implements IWorkflow<V> {
 
     @Override
     public <T> ICallableTaskFuture<T> addTask(ICallableTask<T> task) {
+        if (this.flatten && task instanceof WorkflowTask && ExecType.ASYNC.equals(task.getTaskConfig().execType)) {
+            // tasks with a timeout still need their own thread so the timeout can be enforced
+            ICallableTaskFuture<T> future = this.executor.addTask(new InlineWorkflowTaskDecorator<>(task));
+            future.prefetchOnBlock();
+            return future;
+        }
+        return this.executor.addTask(task);
+    }
+
+    @Override
+    public IIntCallableTaskFuture addTask(IIntCallableTask task) {
+        return this.executor.addTask(task);
+    }
+
+    @Override
+    public ILongCallableTaskFuture addTask(ILongCallableTask task) {
+        return this.executor.addTask(task);
+    }
+
+    @Override
+    public IDoubleCallableTaskFuture addTask(IDoubleCallableTask task) {
         return this.executor.addTask(task);
     }
 
@@ -66,12 +118,21 @@ public class Workflow<V> implements IWorkflow<V> {
      */
     @Override
     public ResponseContext collectResponseContext() {
+        if (this.flatten) {
+            // nested workflow tasks nobody asked for still run
+            LazyFuture.prefetchDeferred();
+        }
         this.executor.collectResponseContext(this.task);
         ResponseContext aggregateContext = this.task.getContext();
         aggregateContext.getProfiler().stop();
         return aggregateContext;
     }
 
+    @Override
+    public void seal() {
+        this.executor.seal();
+    }
+
     /**
      * Create a new instance of the same type of workflow.
      */
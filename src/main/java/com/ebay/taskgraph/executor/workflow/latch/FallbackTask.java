@@ -0,0 +1,224 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow.latch;
+
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.ConcurrencyBudget;
+import com.ebay.taskgraph.executor.ICallableTask;
+import com.ebay.taskgraph.executor.ICallableTaskFuture;
+import com.ebay.taskgraph.executor.Task;
+import com.ebay.taskgraph.executor.workflow.IWorkflowBuilder;
+import com.ebay.taskgraph.executor.workflow.WorkflowException;
+
+/**
+ * Uses the result of a primary task, or of a fallback task that's only started if the primary misses its soft deadline
+ * or fails.  The soft deadline runs from when the primary was added, i.e. when create() is called, rather than from
+ * when this task starts, which may be much later.
+ *
+ * Once the fallback has started, whichever of the two returns a non-null result first is used and the other is cancelled,
+ * so the primary is still preferred if it arrives before the fallback.  The fallback task should be LAZY so it's not
+ * started until it's needed, a fallback that's never started is skipped when the workflow completes.
+ * If neither has a result within the timeout both are cancelled.
+ * The path that served the request is recorded in the profiler data of the task.
+ * The timeout of the task configuration bounds the total wait.
+ */
+public class FallbackTask<T> extends Task implements ICallableTask<T> {
+
+    public static final String SERVED_BY = "served_by";
+    public static final String FALLBACK_STARTED = "fallback_started";
+
+    public static final String PRIMARY = "primary";
+    public static final String FALLBACK = "fallback";
+    public static final String NONE = "none";
+
+    private final long softDeadline;
+
+    // milliseconds the primary was started at, or earlier if it's waiting to run
+    private final long primaryStart;
+
+    private final Object lock = new Object();
+
+    // decorated primary and fallback tasks that report back to this task
+    // set before this task is added to the workflow
+    private ICallableTaskFuture<T> primary;
+    private ICallableTaskFuture<T> fallback;
+
+    // tasks being decorated, cancelled if they lose
+    private ICallableTaskFuture<T> primaryTask;
+    private ICallableTaskFuture<T> fallbackTask;
+
+    // guarded by lock
+    private boolean primaryDone = false;
+    private boolean fallbackStarted = false;
+    private boolean fallbackDone = false;
+    private String winner = null;
+
+    private FallbackTask(String name, CallableTaskConfig config, long softDeadline, long primaryStart) {
+        super(name, config);
+        this.softDeadline = softDeadline;
+        this.primaryStart = primaryStart;
+    }
+
+    /**
+     * Add a fallback task for the primary and fallback tasks to the workflow.
+     * @param softDeadline milliseconds to wait for the primary before starting the fallback, from when the primary was added
+     */
+    public static <T> ICallableTaskFuture<T> create(
+            IWorkflowBuilder builder,
+            String name,
+            CallableTaskConfig config,
+            long softDeadline,
+            ICallableTaskFuture<T> primary,
+            ICallableTaskFuture<T> fallback) {
+
+        // the primary has already been added to the workflow
+        FallbackTask<T> task = new FallbackTask<>(name, config, softDeadline, System.currentTimeMillis());
+        task.primaryTask = primary;
+        task.fallbackTask = fallback;
+        CallableTaskConfig primaryConfig = primary.getTask().getTaskConfig();
+        CallableTaskConfig fallbackConfig = fallback.getTask().getTaskConfig();
+        task.primary = builder.addTask(new ReportingTask<>(primary, task, PRIMARY,
+                new CallableTaskConfig(primaryConfig.diagnosticConfig, primaryConfig.timeout, CallableTaskConfig.ExecType.ASYNC)));
+        task.fallback = builder.addTask(new ReportingTask<>(fallback, task, FALLBACK,
+                new CallableTaskConfig(fallbackConfig.diagnosticConfig, fallbackConfig.timeout, CallableTaskConfig.ExecType.LAZY)));
+        return builder.addTask(task);
+    }
+
+    @Override
+    public T call() throws Exception {
+
+        long start = System.currentTimeMillis();
+        boolean startFallback;
+        String servedBy;
+        // mostly waiting so don't count against the request's concurrency budget, the permit is reacquired outside the lock
+        ConcurrencyBudget.Permit permit = ConcurrencyBudget.release();
+        try {
+            synchronized (this.lock) {
+                awaitUntil(this.primaryStart + this.softDeadline, false);
+                startFallback = null == this.winner;
+                this.fallbackStarted = startFallback;
+            }
+            if (startFallback) {
+                this.context.getProfiler().addData(FALLBACK_STARTED, Boolean.TRUE.toString());
+                this.fallback.prefetch();
+            }
+
+            synchronized (this.lock) {
+                // the default timeout of synchronous tasks would overflow
+                long timeout = getTaskConfig().timeout;
+                awaitUntil(timeout < Long.MAX_VALUE - start ? start + timeout : Long.MAX_VALUE, true);
+                servedBy = this.winner != null ? this.winner : NONE;
+            }
+        } finally {
+            ConcurrencyBudget.reacquire(permit);
+        }
+        this.context.getProfiler().addData(SERVED_BY, servedBy);
+
+        if (PRIMARY.equals(servedBy)) {
+            if (startFallback) {
+                cancel(this.fallback, this.fallbackTask);
+            }
+            return this.primary.getNoThrow(this);
+        } else if (FALLBACK.equals(servedBy)) {
+            cancel(this.primary, this.primaryTask);
+            return this.fallback.getNoThrow(this);
+        }
+        try {
+            // neither has a result, propagate any application exception from the primary
+            return this.primary.isDone() ? this.primary.getNoThrow(this) : null;
+        } finally {
+            // neither is used so don't leave them running
+            cancel(this.primary, this.primaryTask);
+            cancel(this.fallback, this.fallbackTask);
+        }
+    }
+
+    private static void cancel(ICallableTaskFuture<?> decorator, ICallableTaskFuture<?> task) {
+        task.cancel(true);
+        decorator.cancel(true);
+    }
+
+    /**
+     * Wait until there's a winner, the primary has failed, or the deadline passes.
+     * Caller must hold the lock.
+     * @param fallbackPhase wait for the fallback as well as the primary
+     */
+    private void awaitUntil(long deadline, boolean fallbackPhase) {
+        try {
+            while (null == this.winner && !isFailed(fallbackPhase)) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return;
+                }
+                this.lock.wait(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WorkflowException("Interrupted waiting for primary or fallback: " + getName());
+        }
+    }
+
+    private boolean isFailed(boolean fallbackPhase) {
+        return this.primaryDone && (!fallbackPhase || !this.fallbackStarted || this.fallbackDone);
+    }
+
+    void report(String source, T result) {
+        synchronized (this.lock) {
+            if (PRIMARY.equals(source)) {
+                this.primaryDone = true;
+            } else {
+                this.fallbackDone = true;
+            }
+            if (result != null && null == this.winner) {
+                this.winner = source;
+            }
+            this.lock.notifyAll();
+        }
+    }
+
+    /**
+     * Decorator task that reports the result of the primary or fallback task once it completes.
+     */
+    private static class ReportingTask<T> extends Task implements ICallableTask<T> {
+
+        private final ICallableTaskFuture<T> task;
+        private final FallbackTask<T> fallbackTask;
+        private final String source;
+
+        ReportingTask(ICallableTaskFuture<T> task, FallbackTask<T> fallbackTask, String source, CallableTaskConfig config) {
+            super(task.getTask().getName() + "_" + source, config);
+            this.task = task;
+            this.fallbackTask = fallbackTask;
+            this.source = source;
+        }
+
+        @Override
+        public T call() throws Exception {
+            T result = null;
+            try {
+                result = this.task.getNoThrow(this);
+            } finally {
+                this.fallbackTask.report(this.source, result);
+            }
+            return result;
+        }
+
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow.latch;
+
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.ICallableTaskFuture;
+import com.ebay.taskgraph.executor.workflow.ITaskFactory;
+import com.ebay.taskgraph.executor.workflow.IWorkflowBuilder;
+
+/**
+ * Create a task instance that uses a fallback task if the primary task misses its soft deadline, see FallbackTask.
+ */
+public class FallbackTaskFactory<V, S extends IWorkflowBuilder> implements ITaskFactory<S, V> {
+
+    private final String name;
+    private final CallableTaskConfig config;
+    private final long softDeadline;
+
+    private final ITaskFactory<S, V> primary;
+
+    // factory for the fallback task, which should be LAZY so it's only started when needed
+    private final ITaskFactory<S, V> fallback;
+
+    public FallbackTaskFactory(
+            String name,
+            CallableTaskConfig config,
+            long softDeadline,
+            ITaskFactory<S, V> primary,
+            ITaskFactory<S, V> fallback) {
+        this.name = name;
+        this.config = config;
+        this.softDeadline = softDeadline;
+        this.primary = primary;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public ICallableTaskFuture<V> create(S builder) {
+        return FallbackTask.create(builder, this.name, this.config, this.softDeadline,
+                this.primary.create(builder), this.fallback.create(builder));
+    }
+
+}
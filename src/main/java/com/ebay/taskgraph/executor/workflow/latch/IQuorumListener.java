@@ -0,0 +1,34 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow.latch;
+
+import java.util.List;
+
+/**
+ * Called once when a quorum latch completes, either on the thread of the producer that completed the quorum
+ * or the thread that expired the latch.  Shouldn't block.
+ */
+public interface IQuorumListener<T> {
+
+    /**
+     * @param results results reported before the latch completed, in the order they arrived
+     * @param quorum true if the quorum was reached
+     */
+    void onComplete(List<T> results, boolean quorum);
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow.latch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.ebay.taskgraph.executor.ApplicationException;
+import com.ebay.taskgraph.executor.ConcurrencyBudget;
+import com.ebay.taskgraph.executor.ICallableTask;
+import com.ebay.taskgraph.executor.Task;
+
+/**
+ * Latch that completes when a quorum of its producers report a non-null result, once a quorum can no longer be
+ * reached, or when its deadline passes.  Generalizes SingleCountDownLatch, which is a quorum of one.
+ *
+ * Producers that haven't reported when the latch completes are cancelled.
+ * Completion can be waited for with await(), or without blocking a thread by adding a listener and
+ * scheduling the deadline with expireAfter().
+ */
+public class QuorumLatch<T> {
+
+    private final int quorum;
+
+    // number of producers expected to register, zero if only known from the producers registered
+    private final int expected;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    // guarded by this
+    private final List<QuorumLatchTask<T>> producers = new ArrayList<>();
+    private final List<QuorumLatchTask<T>> winners = new ArrayList<>();
+    private final List<T> results = new ArrayList<>();
+    private final List<IQuorumListener<T>> listeners = new ArrayList<>();
+    private int failures = 0;
+    private boolean complete = false;
+    private ApplicationException applicationException = null;
+
+    public QuorumLatch(int quorum) {
+        this(quorum, 0);
+    }
+
+    /**
+     * @param quorum number of results needed
+     * @param producers number of producers, so the quorum isn't given up on before they've all been created
+     */
+    public QuorumLatch(int quorum, int producers) {
+        if (quorum < 1) {
+            throw new IllegalArgumentException("Quorum must be positive: " + quorum);
+        }
+        this.quorum = quorum;
+        this.expected = producers;
+    }
+
+    synchronized void register(QuorumLatchTask<T> producer) {
+        this.producers.add(producer);
+    }
+
+    void countDown(QuorumLatchTask<T> producer, T result) {
+        List<IQuorumListener<T>> notify;
+        synchronized (this) {
+            if (this.complete) {
+                return;
+            }
+            this.winners.add(producer);
+            this.results.add(result);
+            notify = completeIf(this.results.size() >= this.quorum);
+        }
+        notifyListeners(notify);
+    }
+
+    /**
+     * Producer completed without a result.
+     */
+    void fail(QuorumLatchTask<T> producer, ApplicationException e) {
+        List<IQuorumListener<T>> notify;
+        synchronized (this) {
+            if (this.complete) {
+                return;
+            }
+            ++this.failures;
+            if (e != null && null == this.applicationException) {
+                this.applicationException = e;
+            }
+            notify = completeIf(Math.max(this.expected, this.producers.size()) - this.failures < this.quorum);
+        }
+        notifyListeners(notify);
+    }
+
+    /**
+     * Complete the latch with whatever results have arrived.
+     */
+    public void expire() {
+        List<IQuorumListener<T>> notify;
+        synchronized (this) {
+            notify = completeIf(!this.complete);
+        }
+        notifyListeners(notify);
+    }
+
+    /**
+     * Schedule the deadline for callers that use a listener rather than blocking.
+     */
+    public void expireAfter(ScheduledExecutorService scheduler, long timeout) {
+        scheduler.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                expire();
+            }
+
+        }, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Add a listener that's called when the latch completes, or immediately if it already has.
+     */
+    public void addListener(IQuorumListener<T> listener) {
+        List<T> completed;
+        boolean quorum;
+        synchronized (this) {
+            if (!this.complete) {
+                this.listeners.add(listener);
+                return;
+            }
+            completed = new ArrayList<>(this.results);
+            quorum = completed.size() >= this.quorum;
+        }
+        listener.onComplete(completed, quorum);
+    }
+
+    /**
+     * Block until the latch completes or the timeout passes, in which case the latch is expired.
+     * @return results that arrived before the latch completed
+     */
+    List<T> await(long timeout, ICallableTask<?> caller) throws InterruptedException {
+        boolean completed;
+        ConcurrencyBudget.Permit permit = ConcurrencyBudget.release();
+        try {
+            completed = this.done.await(timeout, TimeUnit.MILLISECONDS);
+        } finally {
+            ConcurrencyBudget.reacquire(permit);
+        }
+        if (!completed) {
+            expire();
+        }
+        synchronized (this) {
+            // create a dependency from the caller to the winning tasks
+            for (QuorumLatchTask<T> winner : this.winners) {
+                Task.addDependency(winner, caller);
+            }
+            if (this.applicationException != null && this.results.size() < this.quorum) {
+                throw this.applicationException;
+            }
+            return new ArrayList<>(this.results);
+        }
+    }
+
+    public synchronized boolean isComplete() {
+        return this.complete;
+    }
+
+    /**
+     * Caller must hold the lock.
+     * @return listeners to notify outside the lock if the latch has just completed
+     */
+    private List<IQuorumListener<T>> completeIf(boolean condition) {
+        if (!condition || this.complete) {
+            return null;
+        }
+        this.complete = true;
+        this.done.countDown();
+        for (QuorumLatchTask<T> producer : this.producers) {
+            if (!this.winners.contains(producer)) {
+                producer.cancel();
+            }
+        }
+        List<IQuorumListener<T>> notify = new ArrayList<>(this.listeners);
+        this.listeners.clear();
+        return notify;
+    }
+
+    private void notifyListeners(List<IQuorumListener<T>> notify) {
+        if (notify != null && !notify.isEmpty()) {
+            List<T> completed;
+            boolean quorum;
+            synchronized (this) {
+                completed = new ArrayList<>(this.results);
+                quorum = completed.size() >= this.quorum;
+            }
+            for (IQuorumListener<T> listener : notify) {
+                listener.onComplete(completed, quorum);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow.latch;
+
+import com.ebay.taskgraph.executor.ApplicationException;
+import com.ebay.taskgraph.executor.ICallableTask;
+import com.ebay.taskgraph.executor.ICallableTaskFuture;
+import com.ebay.taskgraph.executor.Task;
+
+/**
+ * Decorator task to report the result of a task to a quorum latch when the task is done.
+ */
+public class QuorumLatchTask<T> extends Task implements ICallableTask<T> {
+
+    public static final String CANCELLED = "quorum_cancelled";
+
+    private final ICallableTaskFuture<T> task;
+
+    private final QuorumLatch<T> latch;
+
+    public QuorumLatchTask(ICallableTaskFuture<T> task, QuorumLatch<T> latch) {
+        super(task.getTask().getName() + "_quorum", task.getTask().getTaskConfig());
+        this.task = task;
+        this.latch = latch;
+        latch.register(this);
+    }
+
+    @Override
+    public T call() throws Exception {
+        T rval = null;
+        try {
+            rval = this.task.getNoThrow(this);
+        } catch (ApplicationException e) {
+            // release the latch if the quorum can't be reached and propagate the exception
+            this.latch.fail(this, e);
+            throw e;
+        } catch (RuntimeException e) {
+            // e.g. the task was cancelled after the latch completed
+            this.latch.fail(this, null);
+            throw e;
+        }
+        if (rval != null) {
+            this.latch.countDown(this, rval);
+        } else {
+            this.latch.fail(this, null);
+        }
+        return rval;
+    }
+
+    /**
+     * The latch completed without this task's result.
+     */
+    void cancel() {
+        if (!this.task.isDone() && this.task.cancel(true)) {
+            this.context.getProfiler().addData(CANCELLED, Boolean.TRUE.toString());
+        }
+    }
+
+    public ICallableTaskFuture<T> getTask() {
+        return this.task;
+    }
+
+}
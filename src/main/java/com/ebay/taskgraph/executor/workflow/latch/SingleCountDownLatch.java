@@ -21,6 +21,7 @@ package com.ebay.taskgraph.executor.workflow.latch;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import com.ebay.taskgraph.executor.ConcurrencyBudget;
 import com.ebay.taskgraph.executor.ICallableTask;
 import com.ebay.taskgraph.executor.Task;
 
@@ -40,7 +41,14 @@ public class SingleCountDownLatch<T> {
     }
 
     T await(long timeout, ICallableTask<?> caller) throws InterruptedException {
-        if (this.latch.await(timeout, TimeUnit.MILLISECONDS)) {
+        boolean completed;
+        ConcurrencyBudget.Permit permit = ConcurrencyBudget.release();
+        try {
+            completed = this.latch.await(timeout, TimeUnit.MILLISECONDS);
+        } finally {
+            ConcurrencyBudget.reacquire(permit);
+        }
+        if (completed) {
             // create a dependency from the caller to the latch task also
             Task.addDependency(this.countDownTask, caller);
             return this.countDownTask.getTask().getNoThrow(caller);
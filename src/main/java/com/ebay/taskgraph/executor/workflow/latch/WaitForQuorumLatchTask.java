@@ -0,0 +1,57 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow.latch;
+
+import java.util.List;
+
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.ICallableTask;
+import com.ebay.taskgraph.executor.Task;
+
+/**
+ * Task that blocks on a quorum latch, the timeout of the task configuration is the latch deadline.
+ *
+ * @param <T>
+ */
+public class WaitForQuorumLatchTask<T> extends Task implements ICallableTask<List<T>> {
+
+    private final QuorumLatch<T> latch;
+
+    public WaitForQuorumLatchTask(
+            CallableTaskConfig config,
+            QuorumLatch<T> latch) {
+        super(config);
+        this.latch = latch;
+    }
+
+    public WaitForQuorumLatchTask(
+            String taskName,
+            CallableTaskConfig config,
+            QuorumLatch<T> latch) {
+        super(taskName, config);
+        this.latch = latch;
+    }
+
+    @Override
+    public List<T> call() throws Exception {
+
+        return this.latch.await(this.getTaskConfig().timeout, this);
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow.scatter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Results gathered from the shards along with how many of the shards they cover.
+ */
+public class ScatterGatherResult<R> {
+
+    private final List<R> results;
+    private final int total;
+    private final int failed;
+    private final int timedOut;
+
+    ScatterGatherResult(List<R> results, int total, int failed, int timedOut) {
+        this.results = Collections.unmodifiableList(new ArrayList<>(results));
+        this.total = total;
+        this.failed = failed;
+        this.timedOut = timedOut;
+    }
+
+    /**
+     * @return results of the successful shards in shard order
+     */
+    public List<R> getResults() {
+        return this.results;
+    }
+
+    public int getTotal() {
+        return this.total;
+    }
+
+    public int getSuccessful() {
+        return this.results.size();
+    }
+
+    /**
+     * @return number of shards that threw an exception or had no result
+     */
+    public int getFailed() {
+        return this.failed;
+    }
+
+    /**
+     * @return number of shards that hadn't completed by the deadline and were cancelled
+     */
+    public int getTimedOut() {
+        return this.timedOut;
+    }
+
+    /**
+     * @return fraction of the shards that have a result
+     */
+    public double getCoverage() {
+        return this.total > 0 ? (double) getSuccessful() / this.total : 1.0;
+    }
+
+    public boolean isComplete() {
+        return getSuccessful() == this.total;
+    }
+
+    /**
+     * @return coverage without the results for logging to diagnostics
+     */
+    Map<String, Object> getCoverageData() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("total", this.total);
+        data.put("successful", getSuccessful());
+        data.put("failed", this.failed);
+        data.put("timedOut", this.timedOut);
+        data.put("coverage", getCoverage());
+        return data;
+    }
+
+    @Override
+    public String toString() {
+        return "ScatterGatherResult " + getCoverageData();
+    }
+
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow.scatter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import javax.ws.rs.core.Response.Status;
+
+import com.ebay.taskgraph.context.ResponseContext;
+import com.ebay.taskgraph.executor.ApplicationException;
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.ConcurrencyBudget;
+import com.ebay.taskgraph.executor.ICallableTask;
+import com.ebay.taskgraph.executor.ICallableTaskFuture;
+import com.ebay.taskgraph.executor.workflow.IMapTaskFactory;
+import com.ebay.taskgraph.executor.workflow.IWorkflow;
+import com.ebay.taskgraph.executor.workflow.IWorkflowExecutor;
+import com.ebay.taskgraph.executor.workflow.WorkflowException;
+import com.ebay.taskgraph.executor.workflow.WorkflowTask;
+
+/**
+ * Fans a request out to a task per shard and gathers whatever results have arrived by the deadline.
+ *
+ * Shards still running at the deadline are cancelled, as are shards still running once the timeout of their own task
+ * config, from the start of the scatter, passes.  Shards that are shed or fail waiting for their dependencies don't hold
+ * up the gather.  If fewer than the minimum number of shards have a result
+ * an ApplicationException with the coverage is thrown, otherwise the results of the successful shards are returned
+ * in shard order along with the coverage.  Coverage is recorded in the profiler data and diagnostics of the workflow task.
+ */
+public class ScatterGatherWorkflowExecutor<S, R> implements IWorkflowExecutor<ScatterGatherResult<R>> {
+
+    public static final String COVERAGE = "coverage";
+    public static final String FAILED_SHARDS = "failed_shards";
+    public static final String TIMED_OUT_SHARDS = "timed_out_shards";
+
+    private static final int RUNNING = 0;
+    private static final int SUCCEEDED = 1;
+    private static final int FAILED = 2;
+    private static final int TIMED_OUT = 3;
+
+    private final List<S> shards;
+    private final IMapTaskFactory<S, R> taskFactory;
+    private final int minSuccessful;
+    private final long timeout;
+
+    /**
+     * @param shards shards to fan out to
+     * @param taskFactory creates the task for each shard, tasks must be asynchronous
+     * @param minSuccessful minimum number of shards with a result for the gather to succeed
+     * @param timeout deadline in milliseconds from the start of the scatter for shards to complete
+     */
+    public ScatterGatherWorkflowExecutor(
+            List<S> shards,
+            IMapTaskFactory<S, R> taskFactory,
+            int minSuccessful,
+            long timeout) {
+        if (minSuccessful < 0 || minSuccessful > shards.size()) {
+            throw new IllegalArgumentException("Minimum successful shards out of range: " + minSuccessful);
+        }
+        this.shards = shards;
+        this.taskFactory = taskFactory;
+        this.minSuccessful = minSuccessful;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Factory method for a scatter gather grouped under its own workflow task.
+     */
+    public static <S, R, V> ICallableTaskFuture<ScatterGatherResult<R>> create(
+            CallableTaskConfig syncTask,
+            IWorkflow<V> callerContext,
+            String name,
+            List<S> shards,
+            IMapTaskFactory<S, R> taskFactory,
+            int minSuccessful,
+            long timeout) {
+
+        IWorkflowExecutor<ScatterGatherResult<R>> executor = new ScatterGatherWorkflowExecutor<>(shards, taskFactory, minSuccessful, timeout);
+        WorkflowTask<ScatterGatherResult<R>> task = new WorkflowTask<>(name, syncTask, callerContext, executor);
+        return callerContext.addTask(task);
+    }
+
+    @Override
+    public ScatterGatherResult<R> execute(IWorkflow<ScatterGatherResult<R>> workflow) {
+
+        CountDownLatch completed = new CountDownLatch(this.shards.size());
+        AtomicIntegerArray states = new AtomicIntegerArray(this.shards.size());
+        List<ICallableTaskFuture<R>> futures = new ArrayList<>(this.shards.size());
+        long start = System.currentTimeMillis();
+        long deadline = start + this.timeout;
+        long[] shardDeadlines = new long[this.shards.size()];
+        for (int i = 0; i < this.shards.size(); ++i) {
+            ICallableTask<R> task = this.taskFactory.create(this.shards.get(i), i);
+            CallableTaskConfig.ExecType execType = task.getTaskConfig().execType;
+            if (!CallableTaskConfig.ExecType.ASYNC.equals(execType) && !CallableTaskConfig.ExecType.ASYNC_TIMEOUT.equals(execType)) {
+                throw new WorkflowException("Shard task must be asynchronous: " + task.getName());
+            }
+            long shardTimeout = task.getTaskConfig().getTimeout(task.getName());
+            shardDeadlines[i] = shardTimeout < this.timeout ? start + shardTimeout : deadline;
+            ICallableTaskFuture<R> future = workflow.addTask(new ShardTask<>(task, i, states, completed));
+            futures.add(future);
+            // deferred shards only run on demand but every shard is gathered
+            future.prefetch();
+            if (future.isDone()) {
+                // e.g. shed, the task is never called, no-op if the shard already completed
+                complete(i, FAILED, states, completed);
+            }
+        }
+        workflow.seal();
+
+        ConcurrencyBudget.Permit permit = ConcurrencyBudget.release();
+        try {
+            gather(futures, shardDeadlines, deadline, states, completed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WorkflowException("Interrupted gathering shards: " + workflow.getTask().getName());
+        } finally {
+            ConcurrencyBudget.reacquire(permit);
+        }
+
+        List<R> results = new ArrayList<>(futures.size());
+        int failed = 0;
+        int timedOut = 0;
+        for (int i = 0; i < futures.size(); ++i) {
+            // stragglers still running at the deadline
+            timeOut(futures, i, states, completed);
+            if (TIMED_OUT == states.get(i)) {
+                ++timedOut;
+                continue;
+            }
+            R result = SUCCEEDED == states.get(i) ? getShardResult(futures.get(i), workflow.getTask()) : null;
+            if (result != null) {
+                results.add(result);
+            } else {
+                // the shard's exception, including an ApplicationException, has already been logged to its task
+                ++failed;
+            }
+        }
+
+        ScatterGatherResult<R> result = new ScatterGatherResult<>(results, futures.size(), failed, timedOut);
+        recordCoverage(workflow.getTask(), result);
+        if (result.getSuccessful() < this.minSuccessful) {
+            throw new ApplicationException(Status.SERVICE_UNAVAILABLE, result);
+        }
+        return result;
+    }
+
+    // a shard's failure only counts against the coverage, it doesn't fail the gather
+    private static <R> R getShardResult(ICallableTaskFuture<R> future, ICallableTask<?> caller) {
+        try {
+            return future.getNoThrow(caller);
+        } catch (ApplicationException e) {
+            return null;
+        }
+    }
+
+    // wait for the shards, timing out shards as their own deadlines pass
+    private static <R> void gather(List<ICallableTaskFuture<R>> futures, long[] shardDeadlines, long deadline,
+            AtomicIntegerArray states, CountDownLatch completed) throws InterruptedException {
+        while (true) {
+            long now = System.currentTimeMillis();
+            long next = deadline;
+            for (int i = 0; i < futures.size(); ++i) {
+                if (RUNNING == states.get(i)) {
+                    if (shardDeadlines[i] <= now) {
+                        timeOut(futures, i, states, completed);
+                    } else {
+                        next = Math.min(next, shardDeadlines[i]);
+                    }
+                }
+            }
+            if (now >= deadline || completed.await(next - now, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+    }
+
+    private static <R> void timeOut(List<ICallableTaskFuture<R>> futures, int index, AtomicIntegerArray states, CountDownLatch completed) {
+        if (complete(index, TIMED_OUT, states, completed)) {
+            ICallableTaskFuture<R> future = futures.get(index);
+            future.cancel(true);
+            // stop its profiler entry as the thread may not respond to the interrupt
+            future.getTask().getContext().getProfiler().stop();
+        }
+    }
+
+    // record the outcome of a shard once, returns false if it had already completed
+    private static boolean complete(int index, int state, AtomicIntegerArray states, CountDownLatch completed) {
+        if (states.compareAndSet(index, RUNNING, state)) {
+            completed.countDown();
+            return true;
+        }
+        return false;
+    }
+
+    private static void recordCoverage(ICallableTask<?> task, ScatterGatherResult<?> result) {
+        ResponseContext rc = task.getContext();
+        rc.getProfiler().addData(COVERAGE, result.getSuccessful() + "/" + result.getTotal());
+        if (result.getFailed() > 0) {
+            rc.getProfiler().addData(FAILED_SHARDS, Integer.toString(result.getFailed()));
+        }
+        if (result.getTimedOut() > 0) {
+            rc.getProfiler().addData(TIMED_OUT_SHARDS, Integer.toString(result.getTimedOut()));
+        }
+        rc.getDiagnostic().addJsonDiagnostic(task.getName(), COVERAGE, result.getCoverageData());
+    }
+
+    /**
+     * Records the outcome of the shard and counts down the gather latch once the shard completes.
+     */
+    private static class ShardTask<R> implements ICallableTask<R> {
+
+        private final ICallableTask<R> task;
+        private final int index;
+        private final AtomicIntegerArray states;
+        private final CountDownLatch completed;
+
+        ShardTask(ICallableTask<R> task, int index, AtomicIntegerArray states, CountDownLatch completed) {
+            this.task = task;
+            this.index = index;
+            this.states = states;
+            this.completed = completed;
+        }
+
+        @Override
+        public R call() throws Exception {
+            int state = FAILED;
+            try {
+                R result = this.task.call();
+                if (result != null) {
+                    state = SUCCEEDED;
+                }
+                return result;
+            } finally {
+                complete(this.index, state, this.states, this.completed);
+            }
+        }
+
+        @Override
+        public String getName() {
+            return this.task.getName();
+        }
+
+        @Override
+        public ResponseContext getContext() {
+            return this.task.getContext();
+        }
+
+        @Override
+        public CallableTaskConfig getTaskConfig() {
+            return this.task.getTaskConfig();
+        }
+
+        @Override
+        public void waitForDependencies() {
+            boolean done = false;
+            try {
+                this.task.waitForDependencies();
+                done = true;
+            } finally {
+                if (!done) {
+                    // the shard won't be called so don't make the gather wait for it
+                    complete(this.index, FAILED, this.states, this.completed);
+                }
+            }
+        }
+
+        @Override
+        public ICallableTaskFuture<?>[] getDependencies() {
+            return this.task.getDependencies();
+        }
+
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.service;
+
+import java.util.List;
+import javax.ws.rs.core.HttpHeaders;
+
+import com.ebay.taskgraph.executor.ICallableTask;
+import com.ebay.taskgraph.executor.RequestScope;
+import com.ebay.taskgraph.executor.RetryPolicy;
+import com.ebay.taskgraph.executor.workflow.WorkflowException;
+
+/**
+ * Retries service invocations according to a RetryPolicy, with each attempt recorded in the owning task's profiler.
+ * Wrap the client invoker before the ServiceInvokerDiagnosticDecorator so only the final failure is logged:
+ *
+ *   new ServiceInvokerDiagnosticDecorator<>(new ServiceInvokerRetryDecorator<>(client, task, policy, scope), task)
+ *
+ * Retries aren't started past the owning task's timeout, measured from the first attempt, or the request deadline.
+ *
+ * @param <T>
+ * @param <S>
+ */
+public class ServiceInvokerRetryDecorator<T, S> implements IServiceInvoker<T, S> {
+
+    private final IServiceInvoker<T, S> client;
+
+    /**
+     * Owning task where the attempts are recorded.
+     */
+    private final ICallableTask<?> parentTask;
+
+    private final RetryPolicy policy;
+
+    private final RequestScope scope;
+
+    public ServiceInvokerRetryDecorator(
+            IServiceInvoker<T, S> client,
+            ICallableTask<?> task,
+            RetryPolicy policy,
+            RequestScope scope) {
+
+        this.client = client;
+        this.parentTask = task;
+        this.policy = policy;
+        this.scope = scope;
+    }
+
+    public ServiceInvokerRetryDecorator(
+            IServiceInvoker<T, S> client,
+            ICallableTask<?> task,
+            RetryPolicy policy) {
+
+        this(client, task, policy, RequestScope.DEFAULT);
+    }
+
+    @Override
+    public S getResponse(T request, HttpHeaders headers) {
+        long deadline = RetryPolicy.getDeadline(this.parentTask.getTaskConfig().getTimeout(this.parentTask.getName()), this.scope);
+        try {
+            return this.policy.call(this.parentTask.getContext().getProfiler(), deadline, () -> this.client.getResponse(request, headers));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            // only interrupted while backing off since getResponse doesn't throw checked exceptions
+            throw new WorkflowException("Interrupted retrying service invocation: " + this.parentTask.getName(), e);
+        }
+    }
+
+    @Override
+    public String getRequestHeadersDiagnostic(HttpHeaders headers) {
+        return this.client.getRequestHeadersDiagnostic(headers);
+    }
+
+    @Override
+    public String getRequestDiagnostic(T request) {
+        return this.client.getRequestDiagnostic(request);
+    }
+
+    @Override
+    public String getResponseDiagnostic(S response) {
+        return this.client.getResponseDiagnostic(response);
+    }
+
+    @Override
+    public List<String> convertResponseDiagnostics(S response) {
+        return this.client.convertResponseDiagnostics(response);
+    }
+
+}
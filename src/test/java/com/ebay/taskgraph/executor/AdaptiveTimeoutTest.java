@@ -0,0 +1,224 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+
+public class AdaptiveTimeoutTest {
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+
+    private static final long CONFIGURED = 10000L;
+    private static final long FLOOR = 50L;
+
+    @Test
+    public void percentileTest() {
+        AdaptiveTimeout adaptiveTimeout = new AdaptiveTimeout(99.5, 2.0, 10L, 1000L, 100, 10);
+        Assert.assertEquals(CONFIGURED, adaptiveTimeout.getTimeout("task", CONFIGURED));
+
+        // configured timeout is used until the minimum samples have been observed
+        record(adaptiveTimeout, 9, 20L);
+        Assert.assertEquals(CONFIGURED, adaptiveTimeout.getTimeout("task", CONFIGURED));
+        record(adaptiveTimeout, 1, 20L);
+        Assert.assertEquals(40L, adaptiveTimeout.getTimeout("task", CONFIGURED));
+
+        // tracks the window as it's replaced
+        record(adaptiveTimeout, 100, 100L);
+        Assert.assertEquals(200L, adaptiveTimeout.getTimeout("task", CONFIGURED));
+
+        // bounded by the floor and ceiling
+        record(adaptiveTimeout, 100, 1L);
+        Assert.assertEquals(10L, adaptiveTimeout.getTimeout("task", CONFIGURED));
+        record(adaptiveTimeout, 100, 2000L);
+        Assert.assertEquals(1000L, adaptiveTimeout.getTimeout("task", CONFIGURED));
+
+        AdaptiveTimeout.TaskStats stats = adaptiveTimeout.getStats().get("task");
+        Assert.assertEquals(310L, stats.getSamples());
+        Assert.assertEquals(1000L, stats.getTimeout());
+        Assert.assertEquals(2000d, stats.getLatency(), 0.001d);
+        Assert.assertEquals(31L, stats.getUpdates());
+
+        // other tasks are tracked separately
+        Assert.assertEquals(CONFIGURED, adaptiveTimeout.getTimeout("other", CONFIGURED));
+    }
+
+    @Test
+    public void executorTest() {
+        AdaptiveTimeout adaptiveTimeout = new AdaptiveTimeout(99.5, 2.0, FLOOR, CONFIGURED, 10, 5);
+        CallableTaskConfig config = new CallableTaskConfig(DIAGNOSTIC_CONFIG, CONFIGURED, CallableTaskConfig.ExecType.ASYNC_TIMEOUT)
+                .withAdaptiveTimeout(adaptiveTimeout);
+
+        // fast calls of the task in previous requests bring its timeout down to the floor
+        for (int i = 0; i < 5; ++i) {
+            Assert.assertEquals("sleep", runRequest(new SleepTask(config, 1L)));
+        }
+        Assert.assertEquals(FLOOR, adaptiveTimeout.getTimeout(SleepTask.class.getSimpleName(), CONFIGURED));
+
+        // so a slow call now times out well before the configured timeout
+        SleepTask slow = new SleepTask(config, 1000L);
+        long start = System.nanoTime();
+        Assert.assertNull(runRequest(slow));
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500L);
+        Assert.assertEquals(Long.toString(FLOOR), slow.getContext().getProfiler().getData(Task.ADAPTIVE_TIMEOUT));
+    }
+
+    @Test
+    public void retryTest() {
+        AdaptiveTimeout adaptiveTimeout = new AdaptiveTimeout(99.5, 2.0, FLOOR, CONFIGURED, 10, 1);
+        CallableTaskConfig config = new CallableTaskConfig(DIAGNOSTIC_CONFIG, CONFIGURED, CallableTaskConfig.ExecType.ASYNC_TIMEOUT)
+                .withRetryPolicy(new RetryPolicy(2, 1L, 1L))
+                .withAdaptiveTimeout(adaptiveTimeout);
+
+        // each attempt is sampled separately, including the slow failed attempt
+        Assert.assertEquals("sleep", runRequest(new FlakyTask(config, 300L)));
+        AdaptiveTimeout.TaskStats stats = adaptiveTimeout.getStats().get(FlakyTask.class.getSimpleName());
+        Assert.assertEquals(2L, stats.getSamples());
+        Assert.assertTrue(stats.toString(), stats.getLatency() >= 300d);
+    }
+
+    @Test
+    public void noDriftTest() throws Exception {
+        AdaptiveTimeout adaptiveTimeout = new AdaptiveTimeout(90, 1.0, 1L, CONFIGURED, 20, 20);
+        CallableTaskConfig config = new CallableTaskConfig(DIAGNOSTIC_CONFIG, CONFIGURED, CallableTaskConfig.ExecType.ASYNC_TIMEOUT)
+                .withAdaptiveTimeout(adaptiveTimeout);
+
+        // the latency distribution stays the same, with a fifth of the calls failing slowly, e.g. on a client timeout
+        for (int window = 0; window < 3; ++window) {
+            for (int i = 0; i < 20; ++i) {
+                try {
+                    new AdaptiveTimeoutDecorator<String>(new SlowFailureTask(config, i % 5 == 0)).call();
+                } catch (IllegalStateException e) {
+                    // sampled all the same
+                }
+            }
+            // so the timeout keeps covering the slow tail instead of drifting down to the fast calls
+            long timeout = adaptiveTimeout.getTimeout(SlowFailureTask.class.getSimpleName(), CONFIGURED);
+            Assert.assertTrue(Long.toString(timeout), timeout >= SlowFailureTask.SLOW);
+        }
+    }
+
+    @Test
+    public void interruptedTest() throws Exception {
+        AdaptiveTimeout adaptiveTimeout = new AdaptiveTimeout(50, 1.0, 1L, CONFIGURED, 10, 1);
+        CallableTaskConfig config = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 500L, CallableTaskConfig.ExecType.ASYNC_TIMEOUT)
+                .withAdaptiveTimeout(adaptiveTimeout);
+
+        // a call interrupted early counts as taking at least the timeout applied to it
+        Thread.currentThread().interrupt();
+        try {
+            new AdaptiveTimeoutDecorator<String>(new SleepTask(config, 1000L)).call();
+            Assert.fail();
+        } catch (InterruptedException e) {
+            Assert.assertFalse(Thread.interrupted());
+        }
+        Assert.assertEquals(500L, adaptiveTimeout.getTimeout(SleepTask.class.getSimpleName(), CONFIGURED));
+    }
+
+    @Test
+    public void execTypeTest() {
+        AdaptiveTimeout adaptiveTimeout = new AdaptiveTimeout(99.5, 2.0, FLOOR, CONFIGURED);
+        try {
+            // the timeout of an ASYNC task includes the time waiting for dependencies, which isn't sampled
+            new CallableTaskConfig(DIAGNOSTIC_CONFIG, CONFIGURED).withAdaptiveTimeout(adaptiveTimeout);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("ASYNC_TIMEOUT"));
+        }
+    }
+
+    private static String runRequest(ICallableTask<String> task) {
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor();
+        String result = executor.addTask(task).getNoThrow(parent);
+        parent.collect(executor);
+        return result;
+    }
+
+    private static void record(AdaptiveTimeout adaptiveTimeout, int count, long millis) {
+        for (int i = 0; i < count; ++i) {
+            adaptiveTimeout.record("task", TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+    }
+
+    private static class SleepTask extends Task implements ICallableTask<String> {
+
+        private final long millis;
+
+        SleepTask(CallableTaskConfig config, long millis) {
+            super(config);
+            this.millis = millis;
+        }
+
+        @Override
+        public String call() throws InterruptedException {
+            Thread.sleep(this.millis);
+            return "sleep";
+        }
+
+    }
+
+    private static class SlowFailureTask extends Task implements ICallableTask<String> {
+
+        static final long SLOW = 30L;
+
+        private final boolean slow;
+
+        SlowFailureTask(CallableTaskConfig config, boolean slow) {
+            super(config);
+            this.slow = slow;
+        }
+
+        @Override
+        public String call() throws InterruptedException {
+            if (this.slow) {
+                Thread.sleep(SLOW);
+                throw new IllegalStateException("client timeout");
+            }
+            return "fast";
+        }
+
+    }
+
+    private static class FlakyTask extends Task implements ICallableTask<String> {
+
+        private final long millis;
+        private int attempts = 0;
+
+        FlakyTask(CallableTaskConfig config, long millis) {
+            super(config);
+            this.millis = millis;
+        }
+
+        @Override
+        public String call() throws InterruptedException {
+            if (1 == ++this.attempts) {
+                Thread.sleep(this.millis);
+                throw new IllegalStateException("first attempt");
+            }
+            return "sleep";
+        }
+
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+import com.ebay.taskgraph.diagnostic.ProfilerModel;
+
+public class ConcurrencyBudgetTest {
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+    private static final CallableTaskConfig ASYNC_CONFIG = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 10000L);
+
+    private static final int LIMIT = 2;
+    private static final int TASKS = 8;
+
+    @Test
+    public void limitTest() throws InterruptedException {
+        RequestScope scope = RequestScope.DEFAULT.withConcurrencyLimit(LIMIT);
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor(scope);
+        ParentTask parent = new ParentTask();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        List<ICallableTaskFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < TASKS; ++i) {
+            futures.add(executor.addTask(new SleepTask("sleep" + i, i, running, maxRunning)));
+        }
+        int waited = 0;
+        for (int i = 0; i < TASKS; ++i) {
+            Assert.assertEquals(Integer.valueOf(i), futures.get(i).getNoThrow(parent));
+            if (hasBudgetWait(futures.get(i).getTask())) {
+                ++waited;
+            }
+        }
+
+        Assert.assertTrue(maxRunning.get() <= LIMIT);
+        Assert.assertEquals(TASKS - LIMIT, scope.getBudget().getMaxQueued());
+        Assert.assertEquals(TASKS - LIMIT, waited);
+        Assert.assertTrue(awaitIdle(scope.getBudget()));
+        parent.collect(executor);
+    }
+
+    @Test
+    public void blockedTaskTest() throws InterruptedException {
+        // the only permit is given up while the consumer waits for a task queued behind it
+        RequestScope scope = RequestScope.DEFAULT.withConcurrencyLimit(1);
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor(scope);
+        ParentTask parent = new ParentTask();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        ConsumerTask consumer = new ConsumerTask();
+        ICallableTaskFuture<Integer> result = executor.addTask(consumer);
+        consumer.produced = executor.addTask(new SleepTask("producer", 5, running, maxRunning));
+        consumer.ready.countDown();
+
+        Assert.assertEquals(Integer.valueOf(6), result.getNoThrow(parent));
+        Assert.assertTrue(awaitIdle(scope.getBudget()));
+        parent.collect(executor);
+    }
+
+    /**
+     * Permits are released just after the task's future completes.
+     */
+    private static boolean awaitIdle(ConcurrencyBudget budget) throws InterruptedException {
+        for (int i = 0; i < 100 && budget.getRunning() > 0; ++i) {
+            Thread.sleep(10L);
+        }
+        return 0 == budget.getRunning();
+    }
+
+    private static boolean hasBudgetWait(ICallableTask<?> task) {
+        List<ProfilerModel> children = task.getContext().getProfiler().getModel(0L).getChildren();
+        if (children != null) {
+            for (ProfilerModel child : children) {
+                if (child.getName().endsWith(ConcurrencyBudget.WAIT_BUDGET)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static class SleepTask extends Task implements ICallableTask<Integer> {
+
+        private final int value;
+        private final AtomicInteger running;
+        private final AtomicInteger maxRunning;
+
+        SleepTask(String name, int value, AtomicInteger running, AtomicInteger maxRunning) {
+            super(name, ASYNC_CONFIG);
+            this.value = value;
+            this.running = running;
+            this.maxRunning = maxRunning;
+        }
+
+        @Override
+        public Integer call() throws InterruptedException {
+            int current = this.running.incrementAndGet();
+            this.maxRunning.accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(20L);
+            } finally {
+                this.running.decrementAndGet();
+            }
+            return this.value;
+        }
+
+    }
+
+    private static class ConsumerTask extends Task implements ICallableTask<Integer> {
+
+        private final CountDownLatch ready = new CountDownLatch(1);
+        private volatile ICallableTaskFuture<Integer> produced;
+
+        ConsumerTask() {
+            super("consumer", ASYNC_CONFIG);
+        }
+
+        @Override
+        public Integer call() throws InterruptedException {
+            this.ready.await();
+            return this.produced.getNoThrow(this) + 1;
+        }
+
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package com.ebay.taskgraph.executor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+
+/**
+ * Compares the peak heap of requests with and without early release of task results, not run as part of the unit tests.
+ *
+ * Each request is a pipeline of stages where every stage transforms the payload of the previous stage, so without early
+ * release every intermediate payload is reachable until the request completes.  Run with e.g.
+ * java -cp target/classes:target/test-classes:&lt;dependencies&gt; com.ebay.taskgraph.executor.EarlyReleaseBenchmark [stages] [payloadMB] [requests]
+ */
+public final class EarlyReleaseBenchmark {
+
+    private static final DiagnosticConfig NO_DIAGNOSTICS = new DiagnosticConfig(false, false, false);
+    private static final CallableTaskConfig ASYNC_CONFIG = new CallableTaskConfig(NO_DIAGNOSTICS, 60000L);
+
+    private EarlyReleaseBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int stages = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int payloadSize = (args.length > 1 ? Integer.parseInt(args[1]) : 4) << 20;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        // warm up both paths before measuring
+        run(RequestScope.DEFAULT, stages, payloadSize);
+        run(RequestScope.DEFAULT.withEarlyRelease(true), stages, payloadSize);
+
+        long retained = 0L;
+        long released = 0L;
+        for (int i = 0; i < requests; ++i) {
+            retained = Math.max(retained, run(RequestScope.DEFAULT, stages, payloadSize));
+            released = Math.max(released, run(RequestScope.DEFAULT.withEarlyRelease(true), stages, payloadSize));
+        }
+        System.out.println(String.format("%d stages of %dMB, peak heap over %d requests", stages, payloadSize >> 20, requests));
+        System.out.println(String.format("  without early release: %,dKB", retained >> 10));
+        System.out.println(String.format("  with early release:    %,dKB", released >> 10));
+        JavaCallableTaskExecutor.shutdown();
+    }
+
+    /**
+     * @return peak heap used while executing the request
+     */
+    private static long run(RequestScope scope, int stages, int payloadSize) {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (MemoryType.HEAP.equals(pool.getType())) {
+                pool.resetPeakUsage();
+            }
+        }
+
+        ParentTask parent = new ParentTask(NO_DIAGNOSTICS);
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor(scope);
+        ICallableTaskFuture<byte[]> stage = executor.addTask(new StageTask(0, payloadSize, null));
+        for (int i = 1; i < stages; ++i) {
+            stage = executor.addTask(new StageTask(i, payloadSize, stage));
+        }
+        executor.seal();
+        if (stage.getNoThrow(parent).length != payloadSize) {
+            throw new IllegalStateException("Unexpected payload");
+        }
+
+        long peak = 0L;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (MemoryType.HEAP.equals(pool.getType())) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static class StageTask extends Task implements ICallableTask<byte[]> {
+
+        private final int payloadSize;
+        private final ICallableTaskFuture<byte[]> previous;
+
+        StageTask(int index, int payloadSize, ICallableTaskFuture<byte[]> previous) {
+            super("Stage" + index, ASYNC_CONFIG, previous != null ? new ICallableTaskFuture<?>[] {previous} : new ICallableTaskFuture<?>[0]);
+            this.payloadSize = payloadSize;
+            this.previous = previous;
+        }
+
+        @Override
+        public byte[] call() {
+            byte[] payload = new byte[this.payloadSize];
+            if (this.previous != null) {
+                byte[] input = this.previous.getNoThrow(this);
+                payload[0] = (byte) (input[0] + 1);
+            }
+            return payload;
+        }
+
+    }
+
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+import com.ebay.taskgraph.executor.workflow.WorkflowException;
+
+// checks task results are only reachable until their last declared consumer completes, see EarlyReleaseBenchmark for heap usage
+public class EarlyReleaseTest {
+
+    private static final int PAYLOADS = 16;
+    private static final int PAYLOAD_SIZE = 1 << 20;
+
+    private static final DiagnosticConfig NO_DIAGNOSTICS = new DiagnosticConfig(false, false, false);
+    private static final CallableTaskConfig ASYNC_CONFIG = new CallableTaskConfig(NO_DIAGNOSTICS, 10000L);
+    private static final CallableTaskConfig SYNC_CONFIG = CallableTaskConfig.synch(NO_DIAGNOSTICS);
+
+    @Test
+    public void releasedTest() {
+        List<WeakReference<byte[]>> payloads = new ArrayList<>();
+        JavaCallableTaskExecutor executor = run(RequestScope.DEFAULT.withEarlyRelease(true), payloads, true);
+        Assert.assertTrue(collected(payloads));
+        Assert.assertNotNull(executor.getTask("Payload0"));
+    }
+
+    @Test
+    public void retainedTest() {
+        List<WeakReference<byte[]>> payloads = new ArrayList<>();
+        JavaCallableTaskExecutor executor = run(RequestScope.DEFAULT, payloads, true);
+        Assert.assertFalse(collected(payloads));
+        Assert.assertNotNull(executor.getTask("Payload0"));
+    }
+
+    // results are kept until the executor is sealed in case more consumers are added
+    @Test
+    public void notSealedTest() {
+        List<WeakReference<byte[]>> payloads = new ArrayList<>();
+        JavaCallableTaskExecutor executor = run(RequestScope.DEFAULT.withEarlyRelease(true), payloads, false);
+        Assert.assertFalse(collected(payloads));
+        executor.seal();
+        Assert.assertTrue(collected(payloads));
+    }
+
+    @Test
+    public void diagnosticsOptOutTest() {
+        RequestScope scope = RequestScope.DEFAULT.withEarlyRelease(true);
+        CallableTaskConfig profileConfig = new CallableTaskConfig(new DiagnosticConfig(false, false, true), 10000L);
+        Assert.assertTrue(CallableTaskExecutorHelper.isEarlyRelease(scope, new LengthTask(0, ASYNC_CONFIG, new CallableTaskResultNull<byte[]>())));
+        Assert.assertFalse(CallableTaskExecutorHelper.isEarlyRelease(scope, new LengthTask(1, profileConfig, new CallableTaskResultNull<byte[]>())));
+    }
+
+    @Test
+    public void readAfterReleaseTest() {
+        ParentTask parent = new ParentTask(NO_DIAGNOSTICS);
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor(RequestScope.DEFAULT.withEarlyRelease(true));
+        ICallableTaskFuture<byte[]> payload = executor.addTask(new PayloadTask(0, ASYNC_CONFIG, new ArrayList<WeakReference<byte[]>>()));
+        ICallableTaskFuture<Integer> length = executor.addTask(new LengthTask(0, SYNC_CONFIG, payload));
+        executor.seal();
+        Assert.assertEquals(Integer.valueOf(PAYLOAD_SIZE), length.getNoThrow(parent));
+        try {
+            // undeclared consumer
+            payload.getNoThrow(parent);
+            Assert.fail();
+        } catch (WorkflowException e) {
+            Assert.assertTrue(e.getMessage().contains("Payload0"));
+        }
+        try {
+            executor.addTask(new LengthTask(1, SYNC_CONFIG, payload));
+            Assert.fail();
+        } catch (WorkflowException e) {
+            Assert.assertTrue(e.getMessage().contains("Payload0"));
+        }
+        // the consumer was never added
+        Assert.assertNull(executor.getTask("Length1"));
+    }
+
+    @Test
+    public void partialRetainTest() {
+        ParentTask parent = new ParentTask(NO_DIAGNOSTICS);
+        List<WeakReference<byte[]>> payloads = new ArrayList<>();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor(RequestScope.DEFAULT.withEarlyRelease(true));
+        ICallableTaskFuture<byte[]> first = executor.addTask(new PayloadTask(0, ASYNC_CONFIG, payloads));
+        ICallableTaskFuture<byte[]> second = executor.addTask(new PayloadTask(1, ASYNC_CONFIG, new ArrayList<WeakReference<byte[]>>()));
+        ICallableTaskFuture<Integer> length = executor.addTask(new LengthTask(0, SYNC_CONFIG, second));
+        Assert.assertNotNull(first.getNoThrow(parent));
+        executor.seal();
+        Assert.assertEquals(Integer.valueOf(PAYLOAD_SIZE), length.getNoThrow(parent));
+
+        // the second dependency has already been released, the first is released again rather than held forever
+        try {
+            executor.addTask(new SumTask(SYNC_CONFIG, first, second));
+            Assert.fail();
+        } catch (WorkflowException e) {
+            Assert.assertTrue(e.getMessage().contains("Payload1"));
+        }
+        Assert.assertNull(executor.getTask(SumTask.class.getSimpleName()));
+        Assert.assertTrue(collected(payloads));
+    }
+
+    @Test
+    public void skippedConsumerTest() {
+        ParentTask parent = new ParentTask(NO_DIAGNOSTICS);
+        List<WeakReference<byte[]>> payloads = new ArrayList<>();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor(RequestScope.DEFAULT.withEarlyRelease(true));
+        ICallableTaskFuture<byte[]> payload = executor.addTask(new PayloadTask(0, ASYNC_CONFIG, payloads));
+        executor.addTask(new LengthTask(0, new CallableTaskConfig(NO_DIAGNOSTICS, 10000L, CallableTaskConfig.ExecType.LAZY), payload));
+        Assert.assertNotNull(payload.getNoThrow(parent));
+        executor.seal();
+        Assert.assertFalse(collected(payloads));
+
+        // the lazy consumer is never requested, skipping it releases its hold on the payload
+        parent.collect(executor);
+        Assert.assertTrue(collected(payloads));
+    }
+
+    @Test
+    public void cancelledConsumerTest() {
+        ParentTask parent = new ParentTask(NO_DIAGNOSTICS);
+        List<WeakReference<byte[]>> payloads = new ArrayList<>();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor(RequestScope.DEFAULT.withEarlyRelease(true));
+        ICallableTaskFuture<byte[]> payload = executor.addTask(new PayloadTask(0, ASYNC_CONFIG, payloads));
+        ICallableTaskFuture<Integer> length = executor.addTask(
+                new LengthTask(0, new CallableTaskConfig(NO_DIAGNOSTICS, 10000L, CallableTaskConfig.ExecType.LAZY), payload));
+        Assert.assertNotNull(payload.getNoThrow(parent));
+        executor.seal();
+
+        // a consumer cancelled before it runs releases its hold on the payload
+        Assert.assertTrue(length.cancel(true));
+        Assert.assertTrue(collected(payloads));
+    }
+
+    private static JavaCallableTaskExecutor run(RequestScope scope, List<WeakReference<byte[]>> payloads, boolean seal) {
+        ParentTask parent = new ParentTask(NO_DIAGNOSTICS);
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor(scope);
+        List<ICallableTaskFuture<Integer>> lengths = new ArrayList<>();
+        for (int i = 0; i < PAYLOADS; ++i) {
+            ICallableTaskFuture<byte[]> payload = executor.addTask(new PayloadTask(i, ASYNC_CONFIG, payloads));
+            // two consumers per payload so the result is only released after both complete
+            lengths.add(executor.addTask(new LengthTask(2 * i, ASYNC_CONFIG, payload)));
+            lengths.add(executor.addTask(new LengthTask(2 * i + 1, SYNC_CONFIG, payload)));
+        }
+        if (seal) {
+            // all consumers have been added
+            executor.seal();
+        }
+        for (ICallableTaskFuture<Integer> length : lengths) {
+            Assert.assertEquals(Integer.valueOf(PAYLOAD_SIZE), length.getNoThrow(parent));
+        }
+        return executor;
+    }
+
+    private static boolean collected(List<WeakReference<byte[]>> payloads) {
+        for (int attempt = 0; attempt < 10; ++attempt) {
+            System.gc();
+            boolean collected = true;
+            for (WeakReference<byte[]> payload : payloads) {
+                collected &= null == payload.get();
+            }
+            if (collected) {
+                return true;
+            }
+            try {
+                Thread.sleep(10L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return false;
+    }
+
+    private static class PayloadTask extends Task implements ICallableTask<byte[]> {
+
+        private final List<WeakReference<byte[]>> payloads;
+
+        PayloadTask(int index, CallableTaskConfig config, List<WeakReference<byte[]>> payloads) {
+            super("Payload" + index, config);
+            this.payloads = payloads;
+        }
+
+        @Override
+        public byte[] call() {
+            byte[] rval = new byte[PAYLOAD_SIZE];
+            synchronized (this.payloads) {
+                this.payloads.add(new WeakReference<>(rval));
+            }
+            return rval;
+        }
+
+    }
+
+    private static class SumTask extends Task implements ICallableTask<Integer> {
+
+        SumTask(CallableTaskConfig config, ICallableTaskFuture<?> ... payloads) {
+            super(config, payloads);
+        }
+
+        @Override
+        public Integer call() {
+            return 0;
+        }
+
+    }
+
+    private static class LengthTask extends Task implements ICallableTask<Integer> {
+
+        private final ICallableTaskFuture<byte[]> payload;
+
+        LengthTask(int index, CallableTaskConfig config, ICallableTaskFuture<byte[]> payload) {
+            super("Length" + index, config, payload);
+            this.payload = payload;
+        }
+
+        @Override
+        public Integer call() {
+            byte[] bytes = this.payload.getNoThrow(this);
+            return bytes != null ? bytes.length : null;
+        }
+
+    }
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.Response.Status;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+
+public class FailFastTest {
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+    private static final CallableTaskConfig ASYNC_CONFIG = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 10000L);
+    private static final CallableTaskConfig CRITICAL_CONFIG = ASYNC_CONFIG.withPriority(CallableTaskConfig.Priority.CRITICAL);
+
+    private static final long SLOW_MS = 10000L;
+
+    @Test
+    public void dependentsTest() {
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor();
+        ApplicationException failure = new ApplicationException(Status.BAD_REQUEST, "critical");
+        CountDownLatch release = new CountDownLatch(1);
+
+        // consumer blocks on the slow task first, so without fail fast it would wait for it
+        ICallableTaskFuture<String> slow = executor.addTask(new SlowTask(release));
+        ICallableTaskFuture<String> critical = executor.addTask(new FailingTask("critical", CRITICAL_CONFIG, failure));
+        ICallableTaskFuture<String> consumer = executor.addTask(new ValueTask("consumer", slow, critical));
+        ICallableTaskFuture<String> result = executor.addTask(new ValueTask("result", consumer));
+        ICallableTaskFuture<String> independent = executor.addTask(new ValueTask("independent"));
+
+        long start = System.currentTimeMillis();
+        try {
+            result.getNoThrow(parent);
+            Assert.fail("expected the critical task's failure");
+        } catch (ApplicationException e) {
+            Assert.assertSame(failure, e);
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start < SLOW_MS / 2);
+        try {
+            consumer.getNoThrow(parent);
+            Assert.fail("expected the critical task's failure");
+        } catch (ApplicationException e) {
+            Assert.assertSame(failure, e);
+        }
+        Assert.assertEquals("independent", independent.getNoThrow(parent));
+
+        // only dependents of the critical task are failed
+        Map<String, String> failedFast = executor.getFailedFast();
+        Assert.assertEquals("critical", failedFast.get("result"));
+        for (String name : failedFast.values()) {
+            Assert.assertEquals(critical.getTask().getName(), name);
+        }
+        Assert.assertFalse(failedFast.containsKey("SlowTask"));
+        Assert.assertFalse(failedFast.containsKey("independent"));
+
+        // the slow task isn't a dependent so keeps its result, as do consumers added later
+        ICallableTaskFuture<String> late = executor.addTask(new ValueTask("late", slow));
+        release.countDown();
+        Assert.assertEquals("slow", slow.getNoThrow(parent));
+        Assert.assertEquals("late", late.getNoThrow(parent));
+        Assert.assertFalse(executor.getFailedFast().containsKey("late"));
+
+        parent.collect(executor);
+        Assert.assertEquals(Integer.toString(failedFast.size()), parent.getContext().getProfiler().getData(Task.FAILED_FAST_COUNT));
+    }
+
+    @Test
+    public void addedAfterFailureTest() {
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor();
+        ApplicationException failure = new ApplicationException(Status.BAD_REQUEST, "critical");
+
+        ICallableTaskFuture<String> critical = executor.addTask(new FailingTask("critical", CRITICAL_CONFIG, failure));
+        try {
+            critical.getNoThrow(parent);
+            Assert.fail("expected the critical task's failure");
+        } catch (ApplicationException e) {
+            Assert.assertSame(failure, e);
+        }
+
+        // never runs since its dependency has already failed
+        AtomicInteger calls = new AtomicInteger(0);
+        ICallableTaskFuture<String> late = executor.addTask(new ValueTask("late", calls, critical));
+        try {
+            late.getNoThrow(parent);
+            Assert.fail("expected the critical task's failure");
+        } catch (ApplicationException e) {
+            Assert.assertSame(failure, e);
+        }
+        Assert.assertEquals(0, calls.get());
+        Assert.assertEquals("critical", executor.getFailedFast().get("late"));
+        parent.collect(executor);
+    }
+
+    @Test
+    public void notCriticalTest() {
+        // without the critical priority the failure only propagates when consumers get the result
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor();
+        ApplicationException failure = new ApplicationException(Status.BAD_REQUEST, "failure");
+
+        ICallableTaskFuture<String> failing = executor.addTask(new FailingTask("failing", ASYNC_CONFIG, failure));
+        ICallableTaskFuture<String> consumer = executor.addTask(new ValueTask("consumer", failing));
+        try {
+            consumer.getNoThrow(parent);
+            Assert.fail("expected the failure");
+        } catch (ApplicationException e) {
+            Assert.assertSame(failure, e);
+        }
+        Assert.assertTrue(executor.getFailedFast().isEmpty());
+        parent.collect(executor);
+    }
+
+    private static class SlowTask extends Task implements ICallableTask<String> {
+
+        private final CountDownLatch release;
+
+        SlowTask(CountDownLatch release) {
+            super(ASYNC_CONFIG);
+            this.release = release;
+        }
+
+        @Override
+        public String call() throws InterruptedException {
+            this.release.await(SLOW_MS, TimeUnit.MILLISECONDS);
+            return "slow";
+        }
+
+    }
+
+    private static class FailingTask extends Task implements ICallableTask<String> {
+
+        private final ApplicationException failure;
+
+        FailingTask(String name, CallableTaskConfig config, ApplicationException failure) {
+            super(name, config);
+            this.failure = failure;
+        }
+
+        @Override
+        public String call() throws InterruptedException {
+            Thread.sleep(20L);
+            throw this.failure;
+        }
+
+    }
+
+    private static class ValueTask extends Task implements ICallableTask<String> {
+
+        private final AtomicInteger calls;
+
+        ValueTask(String name, ICallableTaskFuture<?>... dependencies) {
+            this(name, new AtomicInteger(0), dependencies);
+        }
+
+        ValueTask(String name, AtomicInteger calls, ICallableTaskFuture<?>... dependencies) {
+            super(name, ASYNC_CONFIG, dependencies);
+            this.calls = calls;
+        }
+
+        @Override
+        public String call() {
+            this.calls.incrementAndGet();
+            return this.taskName;
+        }
+
+    }
+
+}
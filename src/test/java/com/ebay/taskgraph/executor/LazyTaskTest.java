@@ -0,0 +1,173 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+
+public class LazyTaskTest {
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+    private static final CallableTaskConfig LAZY_CONFIG = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 10000L, CallableTaskConfig.ExecType.LAZY);
+    private static final CallableTaskConfig ASYNC_CONFIG = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 10000L);
+
+    @Test
+    public void notConsumedTest() {
+        AtomicInteger calls = new AtomicInteger();
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor();
+
+        executor.addTask(new CountingTask("unused", calls));
+        ICallableTaskFuture<Integer> used = executor.addTask(new CountingTask("used", calls));
+        Assert.assertEquals(Integer.valueOf(1), used.getNoThrow(parent));
+
+        parent.collect(executor);
+        Assert.assertEquals(1, calls.get());
+        Assert.assertEquals("1", parent.getContext().getProfiler().getData(Task.LAZY_SKIPPED_COUNT));
+    }
+
+    @Test
+    public void consumedOnCallerThreadTest() {
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor();
+
+        ICallableTaskFuture<String> thread = executor.addTask(new ThreadTask());
+        Assert.assertEquals(Thread.currentThread().getName(), thread.getNoThrow(parent));
+
+        parent.collect(executor);
+        Assert.assertNull(parent.getContext().getProfiler().getData(Task.LAZY_SKIPPED_COUNT));
+    }
+
+    // lazy dependencies are prefetched by the consumer so they run in parallel
+    @Test
+    public void prefetchDependenciesTest() {
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor();
+
+        long time = System.currentTimeMillis();
+        ICallableTaskFuture<Integer> one = executor.addTask(new NumberTask(LAZY_CONFIG, -4));  // sleep 100 ms
+        ICallableTaskFuture<Integer> two = executor.addTask(new NumberTask(LAZY_CONFIG, -5));  // sleep 100 ms
+        ICallableTaskFuture<Integer> sum = executor.addTask(new SumTask(ASYNC_CONFIG, one, two));
+        Assert.assertEquals(Integer.valueOf(-9), sum.getNoThrow(parent));
+        time = System.currentTimeMillis() - time;
+
+        parent.collect(executor);
+        Assert.assertTrue(Long.toString(time), time < 190L);
+    }
+
+    @Test
+    public void prefetchTest() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor();
+
+        ICallableTaskFuture<Integer> task = executor.addTask(new CountingTask("prefetched", calls));
+        task.prefetch();
+        task.prefetch();
+        Assert.assertEquals(Integer.valueOf(1), task.getNoThrow(parent));
+
+        parent.collect(executor);
+        Assert.assertEquals(1, calls.get());
+        Assert.assertNull(parent.getContext().getProfiler().getData(Task.LAZY_SKIPPED_COUNT));
+    }
+
+    // prefetched lazy tasks are limited by the request's concurrency budget
+    @Test
+    public void budgetTest() {
+        RequestScope scope = RequestScope.DEFAULT.withConcurrencyLimit(1);
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor(scope);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        List<ICallableTaskFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; ++i) {
+            ICallableTaskFuture<Integer> future = executor.addTask(new SleepTask("sleep" + i, running, maxRunning));
+            future.prefetch();
+            futures.add(future);
+        }
+        for (ICallableTaskFuture<Integer> future : futures) {
+            Assert.assertEquals(Integer.valueOf(1), future.getNoThrow(parent));
+        }
+
+        parent.collect(executor);
+        Assert.assertEquals(1, maxRunning.get());
+        Assert.assertEquals(2, scope.getBudget().getMaxQueued());
+    }
+
+    private static class SleepTask extends Task implements ICallableTask<Integer> {
+
+        private final AtomicInteger running;
+        private final AtomicInteger maxRunning;
+
+        SleepTask(String name, AtomicInteger running, AtomicInteger maxRunning) {
+            super(name, LAZY_CONFIG);
+            this.running = running;
+            this.maxRunning = maxRunning;
+        }
+
+        @Override
+        public Integer call() throws InterruptedException {
+            this.maxRunning.accumulateAndGet(this.running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20L);
+            } finally {
+                this.running.decrementAndGet();
+            }
+            return 1;
+        }
+
+    }
+
+    private static class CountingTask extends Task implements ICallableTask<Integer> {
+
+        private final AtomicInteger calls;
+
+        CountingTask(String name, AtomicInteger calls) {
+            super(name, LAZY_CONFIG);
+            this.calls = calls;
+        }
+
+        @Override
+        public Integer call() {
+            return this.calls.incrementAndGet();
+        }
+
+    }
+
+    private static class ThreadTask extends Task implements ICallableTask<String> {
+
+        ThreadTask() {
+            super(LAZY_CONFIG);
+        }
+
+        @Override
+        public String call() {
+            return Thread.currentThread().getName();
+        }
+
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+
+public class LoadShedderTest {
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+    private static final CallableTaskConfig ASYNC_CONFIG = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 10000L);
+    private static final CallableTaskConfig OPTIONAL_CONFIG = ASYNC_CONFIG.withPriority(CallableTaskConfig.Priority.OPTIONAL);
+
+    @Test
+    public void budgetTest() {
+        // request is already past its deadline so only the critical task runs
+        LoadShedder loadShedder = new LoadShedder(LoadShedder.NO_IN_FLIGHT_LIMIT, LoadShedder.NO_QUEUE_TIME_LIMIT, 100L);
+        RequestScope scope = RequestScope.DEFAULT.withLoadShedder(loadShedder).withDeadline(System.currentTimeMillis() - 1L);
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor(scope);
+        AtomicInteger calls = new AtomicInteger(0);
+
+        ICallableTaskFuture<String> critical = executor.addTask(new DataTask("critical", ASYNC_CONFIG, calls, null));
+        ICallableTaskFuture<String> optional = executor.addTask(new DataTask("optional", OPTIONAL_CONFIG, calls, null));
+
+        Assert.assertEquals("critical", critical.getNoThrow(parent));
+        Assert.assertNull(optional.getNoThrow(parent));
+        Assert.assertEquals(1, calls.get());
+        Assert.assertEquals(LoadShedder.Reason.BUDGET.toString(), optional.getTask().getContext().getProfiler().getData(Task.SHED));
+        Assert.assertNull(critical.getTask().getContext().getProfiler().getData(Task.SHED));
+        Assert.assertEquals(1L, loadShedder.getShedCount(LoadShedder.Reason.BUDGET));
+        Assert.assertEquals(0L, loadShedder.getAdmittedCount());
+        parent.collect(executor);
+        Assert.assertEquals("1", parent.getContext().getProfiler().getData(Task.SHED_COUNT));
+    }
+
+    @Test
+    public void saturationTest() throws InterruptedException {
+        LoadShedder loadShedder = new LoadShedder(2, LoadShedder.NO_QUEUE_TIME_LIMIT, LoadShedder.NO_REMAINING_TIME_LIMIT);
+        RequestScope scope = RequestScope.DEFAULT.withLoadShedder(loadShedder);
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor(scope);
+        AtomicInteger calls = new AtomicInteger(0);
+        CountDownLatch blocked = new CountDownLatch(1);
+
+        ICallableTaskFuture<String> first = executor.addTask(new DataTask("first", ASYNC_CONFIG, calls, blocked));
+        ICallableTaskFuture<String> second = executor.addTask(new DataTask("second", ASYNC_CONFIG, calls, blocked));
+        ICallableTaskFuture<String> shed = executor.addTask(new DataTask("shed", OPTIONAL_CONFIG, calls, null));
+        Assert.assertNull(shed.getNoThrow(parent));
+        Assert.assertEquals(LoadShedder.Reason.SATURATED.toString(), shed.getTask().getContext().getProfiler().getData(Task.SHED));
+
+        blocked.countDown();
+        Assert.assertEquals("first", first.getNoThrow(parent));
+        Assert.assertEquals("second", second.getNoThrow(parent));
+        awaitIdle(loadShedder);
+
+        // pressure has gone so optional tasks run again
+        ICallableTaskFuture<String> admitted = executor.addTask(new DataTask("admitted", OPTIONAL_CONFIG, calls, null));
+        Assert.assertEquals("admitted", admitted.getNoThrow(parent));
+        Assert.assertEquals(3, calls.get());
+        Assert.assertEquals(1L, loadShedder.getShedCount());
+        Assert.assertEquals(1L, loadShedder.getAdmittedCount());
+        parent.collect(executor);
+    }
+
+    @Test
+    public void queueTimeTest() {
+        // any queue time crosses a zero limit
+        LoadShedder loadShedder = new LoadShedder(LoadShedder.NO_IN_FLIGHT_LIMIT, 0L, LoadShedder.NO_REMAINING_TIME_LIMIT);
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor(RequestScope.DEFAULT.withLoadShedder(loadShedder));
+        AtomicInteger calls = new AtomicInteger(0);
+
+        ICallableTaskFuture<String> optional = executor.addTask(new DataTask("optional", OPTIONAL_CONFIG, calls, null));
+        Assert.assertNull(optional.getNoThrow(parent));
+        Assert.assertEquals(1L, loadShedder.getShedCount(LoadShedder.Reason.QUEUE_TIME));
+        parent.collect(executor);
+    }
+
+    @Test
+    public void noLoadShedderTest() {
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor(RequestScope.DEFAULT.withDeadline(System.currentTimeMillis() - 1L));
+        AtomicInteger calls = new AtomicInteger(0);
+
+        ICallableTaskFuture<String> optional = executor.addTask(new DataTask("optional", OPTIONAL_CONFIG, calls, null));
+        Assert.assertEquals("optional", optional.getNoThrow(parent));
+        Assert.assertEquals(1, calls.get());
+        parent.collect(executor);
+    }
+
+    private static void awaitIdle(LoadShedder loadShedder) throws InterruptedException {
+        // tasks leave the in flight count just after their result is available
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (loadShedder.getInFlight() > 0 && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(1L);
+        }
+        Assert.assertEquals(0, loadShedder.getInFlight());
+    }
+
+    private static class DataTask extends Task implements ICallableTask<String> {
+
+        private final AtomicInteger calls;
+        private final CountDownLatch blocked;
+
+        DataTask(String name, CallableTaskConfig config, AtomicInteger calls, CountDownLatch blocked) {
+            super(name, config);
+            this.calls = calls;
+            this.blocked = blocked;
+        }
+
+        @Override
+        public String call() throws InterruptedException {
+            this.calls.incrementAndGet();
+            if (this.blocked != null) {
+                this.blocked.await();
+            }
+            return this.taskName;
+        }
+
+    }
+
+}
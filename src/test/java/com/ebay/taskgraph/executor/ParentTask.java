@@ -0,0 +1,53 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+
+/**
+ * Owns the tasks a test adds straight to an executor, profiling starts when the parent is created.
+ */
+public class ParentTask extends Task implements ICallableTask<Void> {
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+
+    public ParentTask() {
+        this(DIAGNOSTIC_CONFIG);
+    }
+
+    public ParentTask(DiagnosticConfig diagnosticConfig) {
+        super(CallableTaskConfig.simple(diagnosticConfig));
+        this.context.getProfiler().start();
+    }
+
+    /**
+     * Collect the response contexts of the executor's tasks, then print and validate the profiler data.
+     */
+    public void collect(ICallableTaskExecutor executor) {
+        executor.collectResponseContext(this);
+        this.context.getProfiler().stop();
+        ProfilerHelper.print(this.context);
+    }
+
+    @Override
+    public Void call() {
+        return null;
+    }
+
+}
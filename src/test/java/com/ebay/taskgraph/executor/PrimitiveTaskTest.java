@@ -0,0 +1,331 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package com.ebay.taskgraph.executor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.Response.Status;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+import com.ebay.taskgraph.service.Headers;
+
+public class PrimitiveTaskTest {
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+    private static final CallableTaskConfig SYNC_CONFIG = CallableTaskConfig.synch(DIAGNOSTIC_CONFIG);
+    private static final CallableTaskConfig ASYNC_CONFIG = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 10000L);
+
+    @Test
+    public void syncTest() {
+        Assert.assertEquals(6, new IntTest(new JavaCallableTaskExecutor(), SYNC_CONFIG).call().intValue());
+    }
+
+    @Test
+    public void asyncTest() {
+        Assert.assertEquals(6, new IntTest(new JavaCallableTaskExecutor(), ASYNC_CONFIG).call().intValue());
+    }
+
+    @Test
+    public void fusedTest() {
+        Assert.assertEquals(6, new IntTest(new SyncFusionCallableTaskExecutor(), SYNC_CONFIG).call().intValue());
+    }
+
+    @Test
+    public void timeoutTest() {
+        // tasks with a timeout are executed through the generic decorators and unboxed
+        CallableTaskConfig timeoutConfig = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 100L, CallableTaskConfig.ExecType.ASYNC_TIMEOUT);
+        Assert.assertEquals(6, new IntTest(new JavaCallableTaskExecutor(), timeoutConfig).call().intValue());
+    }
+
+    @Test
+    public void mockTest() {
+        Headers headers = new Headers();
+        headers.add("taskmocks", Arrays.asList("[{\"name\":\"Int1\",\"value\":4}]"));
+        CallableTaskConfig taskConfig = new CallableTaskConfig(new DiagnosticConfig(headers), 10000L);
+        Assert.assertEquals(9, new IntTest(new JavaCallableTaskExecutor(), taskConfig).call().intValue());
+    }
+
+    @Test
+    public void mockValueTest() {
+        Map<String, Object> mocks = new HashMap<>();
+        mocks.put("Int2", Integer.valueOf(5));
+        DiagnosticConfig diagConfig = new DiagnosticConfig(false, false, false, Collections.<String>emptySet(), mocks);
+        Assert.assertEquals(9, new IntTest(new JavaCallableTaskExecutor(), CallableTaskConfig.synch(diagConfig)).call().intValue());
+    }
+
+    @Test
+    public void unboxedDependenciesTest() {
+        // values outside the Integer cache, waiting for the dependencies must not box them
+        for (CallableTaskConfig config : Arrays.asList(SYNC_CONFIG, ASYNC_CONFIG)) {
+            ParentTask parent = new ParentTask();
+            JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor();
+            IIntCallableTaskFuture[] values = new IIntCallableTaskFuture[3];
+            for (int i = 0; i < values.length; ++i) {
+                values[i] = new UnboxedFuture(executor.addTask(new IntTask(1000 * (i + 1), config)));
+            }
+            IIntCallableTaskFuture sum = executor.addTask(new IntSumTask(config, values));
+            Assert.assertEquals(6000, sum.getIntNoThrow(parent, -1));
+            parent.collect(executor);
+        }
+    }
+
+    @Test
+    public void listenerTest() {
+        // unboxed asynchronous tasks are reported to the request's async task listeners
+        CountingListener listener = new CountingListener();
+        RequestScope scope = RequestScope.DEFAULT.withAsyncTaskListener(listener);
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor(scope);
+        IIntCallableTaskFuture future = executor.addTask(new IntTask(1000, ASYNC_CONFIG));
+        Assert.assertTrue(future instanceof IntCallableTaskFuture);
+        Assert.assertEquals(1000, future.getIntNoThrow(parent));
+        Assert.assertEquals(1, listener.submitted.get());
+        Assert.assertEquals(1, listener.started.get());
+        parent.collect(executor);
+    }
+
+    @Test
+    public void exceptionTest() {
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor();
+        IIntCallableTaskFuture failed = executor.addTask(new IntTask(-2, ASYNC_CONFIG));
+        Assert.assertEquals(-1, failed.getIntNoThrow(parent, -1));
+        Assert.assertNull(failed.getNoThrow(parent));
+
+        IIntCallableTaskFuture application = executor.addTask(new IntTask(-1, SYNC_CONFIG));
+        for (int i = 0; i < 2; ++i) {
+            try {
+                application.getIntNoThrow(parent);
+                Assert.fail();
+            } catch (ApplicationException e) {
+                Assert.assertTrue(true);
+            }
+        }
+        parent.collect(executor);
+    }
+
+    @Test
+    public void longAndDoubleTest() {
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor();
+        ILongCallableTaskFuture longFuture = executor.addTask(new LongTask(ASYNC_CONFIG));
+        IDoubleCallableTaskFuture doubleFuture = executor.addTask(new DoubleTask(SYNC_CONFIG));
+        Assert.assertEquals(Long.MAX_VALUE, longFuture.getLongNoThrow(parent));
+        Assert.assertEquals(Long.valueOf(Long.MAX_VALUE), longFuture.getNoThrow(parent));
+        Assert.assertEquals(0.5d, doubleFuture.getDoubleNoThrow(parent), 0d);
+        Assert.assertTrue(longFuture.isDone());
+        try {
+            doubleFuture.get();
+            Assert.fail();
+        } catch (UnsupportedOperationException | InterruptedException | java.util.concurrent.ExecutionException e) {
+            Assert.assertTrue(e instanceof UnsupportedOperationException);
+        }
+        parent.collect(executor);
+    }
+
+    private static class IntTest extends Task implements ICallableTask<Integer> {
+
+        private final ICallableTaskExecutor executor;
+        private final CallableTaskConfig taskConfig;
+
+        IntTest(ICallableTaskExecutor executor, CallableTaskConfig taskConfig) {
+            super(CallableTaskConfig.simple(DIAGNOSTIC_CONFIG));
+            this.executor = executor;
+            this.taskConfig = taskConfig;
+        }
+
+        @Override
+        public Integer call() {
+            try {
+                this.context.getProfiler().start();
+                IIntCallableTaskFuture one = this.executor.addTask(new IntTask(1, this.taskConfig));
+                IIntCallableTaskFuture two = this.executor.addTask(new IntTask(2, this.taskConfig));
+                IIntCallableTaskFuture three = this.executor.addTask(new IntTask(3, this.taskConfig));
+                IIntCallableTaskFuture sum = this.executor.addTask(new IntSumTask(this.taskConfig, one, two, three));
+                return sum.getIntNoThrow(this);
+            } finally {
+                this.executor.collectResponseContext(this);
+                this.context.getProfiler().stop();
+                ProfilerHelper.print(this.context);
+            }
+        }
+
+    }
+
+    private static class IntTask extends Task implements IIntCallableTask {
+
+        private final int value;
+
+        IntTask(int value, CallableTaskConfig config) {
+            super("Int" + value, config);
+            this.value = value;
+        }
+
+        @Override
+        public int callInt() {
+            switch (this.value) {
+            case -1:
+                throw new ApplicationException(Status.BAD_REQUEST, null);
+
+            case -2:
+                throw new IllegalStateException();
+
+            default:
+                return this.value;
+            }
+        }
+
+    }
+
+    private static class IntSumTask extends Task implements IIntCallableTask {
+
+        private final IIntCallableTaskFuture[] values;
+
+        IntSumTask(CallableTaskConfig config, IIntCallableTaskFuture ... values) {
+            super(config, values);
+            this.values = values;
+        }
+
+        @Override
+        public int callInt() {
+            int sum = 0;
+            for (IIntCallableTaskFuture value : this.values) {
+                sum += value.getIntNoThrow(this);
+            }
+            return sum;
+        }
+
+    }
+
+    /**
+     * Fails if the result is boxed.
+     */
+    private static class UnboxedFuture implements IIntCallableTaskFuture {
+
+        private final IIntCallableTaskFuture future;
+
+        UnboxedFuture(IIntCallableTaskFuture future) {
+            this.future = future;
+        }
+
+        @Override
+        public ICallableTask<Integer> getTask() {
+            return this.future.getTask();
+        }
+
+        @Override
+        public Integer getNoThrow(ICallableTask<?> caller) {
+            throw new IllegalStateException("Boxed result of " + getTask().getName());
+        }
+
+        @Override
+        public void awaitResult(ICallableTask<?> caller) {
+            this.future.awaitResult(caller);
+        }
+
+        @Override
+        public int getIntNoThrow(ICallableTask<?> caller, int defaultValue) {
+            return this.future.getIntNoThrow(caller, defaultValue);
+        }
+
+        @Override
+        public Integer get() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Integer get(long timeout, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return this.future.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.future.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return this.future.isDone();
+        }
+
+    }
+
+    private static class CountingListener implements IAsyncTaskListener {
+
+        private final AtomicInteger submitted = new AtomicInteger();
+        private final AtomicInteger started = new AtomicInteger();
+
+        @Override
+        public void onSubmit() {
+            this.submitted.incrementAndGet();
+        }
+
+        @Override
+        public void onStart(long queueTime) {
+            this.started.incrementAndGet();
+        }
+
+        @Override
+        public void onComplete() {
+            // completion isn't counted as it may be reported after the result
+        }
+
+    }
+
+    private static class LongTask extends Task implements ILongCallableTask {
+
+        LongTask(CallableTaskConfig config) {
+            super(config);
+        }
+
+        @Override
+        public long callLong() {
+            return Long.MAX_VALUE;
+        }
+
+    }
+
+    private static class DoubleTask extends Task implements IDoubleCallableTask {
+
+        DoubleTask(CallableTaskConfig config) {
+            super(config);
+        }
+
+        @Override
+        public double callDouble() {
+            return 0.5d;
+        }
+
+    }
+
+}
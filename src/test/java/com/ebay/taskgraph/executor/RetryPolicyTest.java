@@ -0,0 +1,166 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.Response.Status;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+import com.ebay.taskgraph.diagnostic.ProfilerModel;
+
+public class RetryPolicyTest {
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+    private static final CallableTaskConfig ASYNC_CONFIG = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 10000L);
+
+    @Test
+    public void retryTest() {
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor();
+        CallableTaskConfig config = ASYNC_CONFIG.withRetryPolicy(new RetryPolicy(3, 5L, 20L));
+
+        // fails twice then succeeds on the last attempt
+        FlakyTask flaky = new FlakyTask("flaky", config, 2);
+        ICallableTaskFuture<String> future = executor.addTask(flaky);
+        Assert.assertEquals("flaky", future.getNoThrow(parent));
+        Assert.assertEquals(3, flaky.calls.get());
+        Assert.assertEquals(3, getAttempts(future.getTask()).size());
+        parent.collect(executor);
+    }
+
+    @Test
+    public void attemptsTest() {
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor();
+        CallableTaskConfig config = ASYNC_CONFIG.withRetryPolicy(new RetryPolicy(2, 1L, 1L));
+
+        // the last failure is logged as usual once the attempts are used up
+        FlakyTask flaky = new FlakyTask("flaky", config, 5);
+        ICallableTaskFuture<String> future = executor.addTask(flaky);
+        Assert.assertNull(future.getNoThrow(parent));
+        Assert.assertEquals(2, flaky.calls.get());
+        List<ProfilerModel> attempts = getAttempts(future.getTask());
+        Assert.assertEquals(2, attempts.size());
+        parent.collect(executor);
+    }
+
+    @Test
+    public void deadlineTest() {
+        // request deadline has passed so no retry is made
+        RequestScope scope = RequestScope.DEFAULT.withDeadline(System.currentTimeMillis() - 1L);
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor(scope);
+        CallableTaskConfig config = ASYNC_CONFIG.withRetryPolicy(new RetryPolicy(3, 1L, 1L));
+
+        FlakyTask flaky = new FlakyTask("flaky", config, 1);
+        ICallableTaskFuture<String> future = executor.addTask(flaky);
+        Assert.assertNull(future.getNoThrow(parent));
+        Assert.assertEquals(1, flaky.calls.get());
+        parent.collect(executor);
+    }
+
+    @Test
+    public void budgetTest() {
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor();
+        // a single retry is available and the ratio never adds up to another
+        RetryBudget budget = new RetryBudget(0.1, 1);
+        CallableTaskConfig config = ASYNC_CONFIG.withRetryPolicy(new RetryPolicy(3, 1L, 1L).withBudget(budget));
+
+        FlakyTask first = new FlakyTask("first", config, 1);
+        FlakyTask second = new FlakyTask("second", config, 1);
+        Assert.assertEquals("first", executor.addTask(first).getNoThrow(parent));
+        Assert.assertNull(executor.addTask(second).getNoThrow(parent));
+        Assert.assertEquals(2, first.calls.get());
+        Assert.assertEquals(1, second.calls.get());
+        Assert.assertEquals(2L, budget.getCallCount());
+        Assert.assertEquals(1L, budget.getRetryCount());
+        Assert.assertEquals(1L, budget.getExhaustedCount());
+        parent.collect(executor);
+    }
+
+    @Test
+    public void applicationExceptionTest() {
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor();
+        CallableTaskConfig config = ASYNC_CONFIG.withRetryPolicy(new RetryPolicy(3, 1L, 1L));
+
+        FlakyTask flaky = new FlakyTask("flaky", config, 1);
+        flaky.failure = new ApplicationException(Status.BAD_REQUEST, "invalid");
+        try {
+            executor.addTask(flaky).getNoThrow(parent);
+            Assert.fail("expected application exception");
+        } catch (ApplicationException e) {
+            Assert.assertSame(flaky.failure, e);
+        }
+        Assert.assertEquals(1, flaky.calls.get());
+        parent.collect(executor);
+    }
+
+    @Test
+    public void backoffTest() {
+        RetryPolicy policy = new RetryPolicy(10, 10L, 50L);
+        for (int i = 0; i < 100; ++i) {
+            Assert.assertTrue(policy.getBackoff(1) <= 10L);
+            Assert.assertTrue(policy.getBackoff(2) <= 20L);
+            Assert.assertTrue(policy.getBackoff(9) <= 50L);
+        }
+    }
+
+    private static List<ProfilerModel> getAttempts(ICallableTask<?> task) {
+        List<ProfilerModel> attempts = new ArrayList<>();
+        List<ProfilerModel> children = task.getContext().getProfiler().getModel(0L).getChildren();
+        if (children != null) {
+            for (ProfilerModel child : children) {
+                if (child.getName().contains(RetryPolicy.ATTEMPT)) {
+                    attempts.add(child);
+                }
+            }
+        }
+        return attempts;
+    }
+
+    private static class FlakyTask extends Task implements ICallableTask<String> {
+
+        private final AtomicInteger calls = new AtomicInteger(0);
+        private final int failures;
+        private RuntimeException failure = new IllegalStateException("unavailable");
+
+        FlakyTask(String name, CallableTaskConfig config, int failures) {
+            super(name, config);
+            this.failures = failures;
+        }
+
+        @Override
+        public String call() {
+            if (this.calls.incrementAndGet() <= this.failures) {
+                throw this.failure;
+            }
+            return this.taskName;
+        }
+
+    }
+
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+
+public class StreamingTaskTest {
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+    private static final CallableTaskConfig ASYNC_CONFIG = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 10000L);
+    private static final CallableTaskConfig LAZY_CONFIG = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 10000L, CallableTaskConfig.ExecType.LAZY);
+    private static final CallableTaskConfig TIMEOUT_CONFIG = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 50L);
+
+    private static final int ELEMENTS = 50;
+    private static final int BUFFER_SIZE = 4;
+
+    @Test
+    public void pipelineTest() {
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor();
+
+        // fetch, enrich and score overlap rather than each waiting for the whole result of the previous stage
+        Fetch fetch = new Fetch(-1);
+        Enrich enrich = new Enrich(fetch.getStream());
+        Score score = new Score(enrich.getStream(), fetch.getStream());
+        ICallableTaskFuture<Integer> fetched = executor.addTask(fetch);
+        ICallableTaskFuture<Integer> enriched = executor.addTask(enrich);
+        ICallableTaskFuture<Integer> scored = executor.addTask(score);
+
+        Assert.assertEquals(Integer.valueOf(ELEMENTS * (ELEMENTS - 1)), scored.getNoThrow(parent));
+        Assert.assertEquals(Integer.valueOf(ELEMENTS), fetched.getNoThrow(parent));
+        Assert.assertEquals(Integer.valueOf(ELEMENTS), enriched.getNoThrow(parent));
+        Assert.assertTrue(score.fetchedAtFirst < ELEMENTS);
+
+        Assert.assertEquals(Integer.toString(ELEMENTS), fetch.getContext().getProfiler().getData(TaskStream.STREAM_ELEMENTS));
+        Assert.assertEquals(Integer.toString(ELEMENTS), score.getContext().getProfiler().getData(TaskStream.STREAM_ELEMENTS));
+        Assert.assertNotNull(score.getContext().getProfiler().getData(TaskStream.STREAM_FIRST_MS));
+        Assert.assertNotNull(score.getContext().getProfiler().getData(TaskStream.STREAM_LAST_MS));
+        parent.collect(executor);
+    }
+
+    @Test
+    public void failureTest() {
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor();
+
+        // fetch failure propagates down the pipeline once the buffered elements are consumed
+        Fetch fetch = new Fetch(10);
+        Enrich enrich = new Enrich(fetch.getStream());
+        Score score = new Score(enrich.getStream(), fetch.getStream());
+        executor.addTask(fetch);
+        executor.addTask(enrich);
+        ICallableTaskFuture<Integer> scored = executor.addTask(score);
+
+        Assert.assertNull(scored.getNoThrow(parent));
+        Assert.assertEquals(10, score.consumed);
+        parent.collect(executor);
+    }
+
+    @Test
+    public void dependencyFailureTest() throws InterruptedException {
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor();
+
+        // the producer never runs because its dependency failed, the consumer still sees the end of the stream
+        ICallableTaskFuture<Integer> failed = executor.addTask(new Failed());
+        Fetch fetch = new Fetch(-1, ASYNC_CONFIG, failed);
+        Score score = new Score(fetch.getStream(), fetch.getStream(), ASYNC_CONFIG);
+        executor.addTask(fetch);
+        ICallableTaskFuture<Integer> scored = executor.addTask(score);
+
+        try {
+            scored.getNoThrow(parent);
+            Assert.fail();
+        } catch (ApplicationException e) {
+            Assert.assertEquals(0, score.consumed);
+        }
+        Assert.assertTrue(score.finished.await(1L, TimeUnit.SECONDS));
+        parent.collect(executor);
+    }
+
+    @Test
+    public void lazyProducerTest() {
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor();
+
+        // nothing asks for the lazy producer's result, subscribing to its stream starts it
+        Fetch fetch = new Fetch(-1, LAZY_CONFIG);
+        Score score = new Score(fetch.getStream(), fetch.getStream(), ASYNC_CONFIG);
+        executor.addTask(fetch);
+        ICallableTaskFuture<Integer> scored = executor.addTask(score);
+
+        Assert.assertEquals(Integer.valueOf(ELEMENTS * (ELEMENTS - 1) / 2), scored.getNoThrow(parent));
+        parent.collect(executor);
+    }
+
+    @Test
+    public void cancelledProducerTest() throws InterruptedException {
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor();
+
+        // the producer is cancelled before it starts so its stream fails
+        Fetch fetch = new Fetch(-1, LAZY_CONFIG);
+        ICallableTaskFuture<Integer> fetched = executor.addTask(fetch);
+        Assert.assertTrue(fetched.cancel(true));
+        Score score = new Score(fetch.getStream(), fetch.getStream(), ASYNC_CONFIG);
+        ICallableTaskFuture<Integer> scored = executor.addTask(score);
+
+        Assert.assertNull(scored.getNoThrow(parent));
+        Assert.assertEquals(0, score.consumed);
+        Assert.assertTrue(score.finished.await(1L, TimeUnit.SECONDS));
+        parent.collect(executor);
+    }
+
+    @Test
+    public void consumerTimeoutTest() throws InterruptedException {
+        ParentTask parent = new ParentTask();
+        JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor();
+
+        // the producer stalls, the consumer gives up after its timeout and the stream is cancelled
+        Stall stall = new Stall();
+        Score score = new Score(stall.getStream(), stall.getStream(), TIMEOUT_CONFIG);
+        ICallableTaskFuture<Integer> stalled = executor.addTask(stall);
+        ICallableTaskFuture<Integer> scored = executor.addTask(score);
+
+        Assert.assertNull(scored.getNoThrow(parent));
+        Assert.assertTrue(score.finished.await(1L, TimeUnit.SECONDS));
+        Assert.assertEquals(1, score.consumed);
+        stall.release.countDown();
+        Assert.assertEquals(Integer.valueOf(1), stalled.getNoThrow(parent));
+        parent.collect(executor);
+    }
+
+    @Test
+    public void singleSubscriberTest() {
+        TaskStream<String> stream = new TaskStream<>(1);
+        stream.iterator();
+        try {
+            stream.iterator();
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("subscriber"));
+        }
+    }
+
+    private static class Fetch extends StreamingTask<Integer> {
+
+        private final int failAt;
+
+        Fetch(int failAt) {
+            this(failAt, ASYNC_CONFIG);
+        }
+
+        Fetch(int failAt, CallableTaskConfig config, ICallableTaskFuture<?> ... dependencies) {
+            super("Fetch", config, BUFFER_SIZE, dependencies);
+            this.failAt = failAt;
+        }
+
+        @Override
+        protected void produce(TaskStream<Integer> stream) throws InterruptedException {
+            for (int i = 0; i < ELEMENTS; ++i) {
+                if (i == this.failAt) {
+                    throw new IllegalStateException("page unavailable");
+                }
+                Thread.sleep(1L);
+                stream.put(i);
+            }
+        }
+
+    }
+
+    private static class Stall extends StreamingTask<Integer> {
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        Stall() {
+            super("Stall", ASYNC_CONFIG, BUFFER_SIZE);
+        }
+
+        @Override
+        protected void produce(TaskStream<Integer> stream) throws InterruptedException {
+            stream.put(0);
+            this.release.await();
+            // the consumer has stopped
+            Assert.assertFalse(stream.put(1));
+        }
+
+    }
+
+    private static class Failed extends Task implements ICallableTask<Integer> {
+
+        Failed() {
+            super("Failed", ASYNC_CONFIG);
+        }
+
+        @Override
+        public Integer call() {
+            throw new ApplicationException(new IllegalStateException("backend unavailable"));
+        }
+
+    }
+
+    private static class Enrich extends StreamingTask<Integer> {
+
+        private final TaskStream<Integer> input;
+
+        Enrich(TaskStream<Integer> input) {
+            super("Enrich", ASYNC_CONFIG, BUFFER_SIZE);
+            this.input = input;
+        }
+
+        @Override
+        protected void produce(TaskStream<Integer> stream) {
+            Iterator<Integer> elements = this.input.subscribe(this);
+            while (elements.hasNext()) {
+                stream.put(elements.next() * 2);
+            }
+        }
+
+    }
+
+    private static class Score extends Task implements ICallableTask<Integer> {
+
+        private final TaskStream<Integer> input;
+        private final TaskStream<Integer> fetched;
+        private volatile int fetchedAtFirst = -1;
+        private volatile int consumed = 0;
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        Score(TaskStream<Integer> input, TaskStream<Integer> fetched) {
+            this(input, fetched, ASYNC_CONFIG);
+        }
+
+        Score(TaskStream<Integer> input, TaskStream<Integer> fetched, CallableTaskConfig config) {
+            super("Score", config);
+            this.input = input;
+            this.fetched = fetched;
+        }
+
+        @Override
+        public Integer call() {
+            try {
+                int sum = 0;
+                Iterator<Integer> elements = this.input.subscribe(this);
+                while (elements.hasNext()) {
+                    if (this.fetchedAtFirst < 0) {
+                        this.fetchedAtFirst = this.fetched.getCount();
+                    }
+                    sum += elements.next();
+                    ++this.consumed;
+                }
+                return sum;
+            } finally {
+                this.finished.countDown();
+            }
+        }
+
+    }
+
+}
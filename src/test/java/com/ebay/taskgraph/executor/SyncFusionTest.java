@@ -0,0 +1,160 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+
+// run the standard executor tests against the fusing executor and check long synchronous chains
+public class SyncFusionTest {
+
+    private static final int CHAIN_LENGTH = 5000;
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+    private static final CallableTaskConfig SYNC_TASK_CONFIG = CallableTaskConfig.synch(DIAGNOSTIC_CONFIG);
+
+    @Test
+    public void testSyncCallable() {
+        ExecutorTest.test(new SyncFusionCallableTaskExecutor(), SYNC_TASK_CONFIG);
+    }
+
+    @Test
+    public void testCallable() {
+        ExecutorTest.test(new SyncFusionCallableTaskExecutor());
+    }
+
+    @Test
+    public void testTaskDiag() {
+        ExecutorTest.testTaskDiag(new SyncFusionCallableTaskExecutor());
+    }
+
+    @Test
+    public void testSyncApplicationException() {
+        ExecutorTest.testSyncApplicationException(new SyncFusionCallableTaskExecutor());
+    }
+
+    @Test
+    public void testSyncException() {
+        ExecutorTest.testSyncException(new SyncFusionCallableTaskExecutor());
+    }
+
+    @Test
+    public void testAsyncDependency() {
+        ExecutorTest.testAsyncDependency(new SyncFusionCallableTaskExecutor());
+    }
+
+    @Test
+    public void isFusibleTest() {
+        RequestScope scope = RequestScope.DEFAULT;
+        Assert.assertTrue(SyncFusionCallableTaskExecutor.isFusible(scope, new NumberTask(SYNC_TASK_CONFIG, 1)));
+        Assert.assertFalse(SyncFusionCallableTaskExecutor.isFusible(scope, new NumberTask(new CallableTaskConfig(DIAGNOSTIC_CONFIG, 100L), 1)));
+        Assert.assertFalse(SyncFusionCallableTaskExecutor.isFusible(scope, new CustomWaitTask(SYNC_TASK_CONFIG)));
+
+        // tasks that need the executor's decorators or the scope's policies
+        Assert.assertFalse(SyncFusionCallableTaskExecutor.isFusible(scope,
+                new NumberTask(SYNC_TASK_CONFIG.withPriority(CallableTaskConfig.Priority.CRITICAL), 1)));
+        Assert.assertFalse(SyncFusionCallableTaskExecutor.isFusible(scope, new NumberTask(SYNC_TASK_CONFIG.withRetryPolicy(new RetryPolicy(2, 1L, 1L)), 1)));
+        CallableTaskConfig optional = SYNC_TASK_CONFIG.withPriority(CallableTaskConfig.Priority.OPTIONAL);
+        Assert.assertTrue(SyncFusionCallableTaskExecutor.isFusible(scope, new NumberTask(optional, 1)));
+        Assert.assertFalse(SyncFusionCallableTaskExecutor.isFusible(scope.withLoadShedder(new LoadShedder(1, 1L, 1L)), new NumberTask(optional, 1)));
+    }
+
+    @Test
+    public void shedTest() {
+        // an optional synchronous task is still shed by the fusing executor
+        LoadShedder loadShedder = new LoadShedder(LoadShedder.NO_IN_FLIGHT_LIMIT, LoadShedder.NO_QUEUE_TIME_LIMIT, 100L);
+        RequestScope scope = RequestScope.DEFAULT.withLoadShedder(loadShedder).withDeadline(System.currentTimeMillis() - 1L);
+        SyncFusionCallableTaskExecutor executor = new SyncFusionCallableTaskExecutor(scope);
+        ICallableTaskFuture<Integer> optional = executor.addTask(new NumberTask(SYNC_TASK_CONFIG.withPriority(CallableTaskConfig.Priority.OPTIONAL), 1));
+
+        Assert.assertNull(optional.getNoThrow(new NumberTask(SYNC_TASK_CONFIG, 0)));
+        Assert.assertEquals(1L, loadShedder.getShedCount(LoadShedder.Reason.BUDGET));
+    }
+
+    // a chain this long would overflow the stack recursing through the decorators of every task
+    @Test
+    public void longChainTest() {
+        ChainTest task = new ChainTest(new SyncFusionCallableTaskExecutor());
+        Assert.assertEquals(Integer.valueOf(CHAIN_LENGTH), task.call());
+    }
+
+    private static class ChainTest extends Task implements ICallableTask<Integer> {
+
+        private final ICallableTaskExecutor executor;
+
+        protected ChainTest(ICallableTaskExecutor executor) {
+            super(CallableTaskConfig.simple(DIAGNOSTIC_CONFIG));
+            this.executor = executor;
+        }
+
+        @Override
+        public Integer call() {
+            try {
+                this.context.getProfiler().start();
+                ICallableTaskFuture<Integer> link = executor.addTask(new NumberTask(SYNC_TASK_CONFIG, 0));
+                for (int i = 1; i <= CHAIN_LENGTH; ++i) {
+                    link = executor.addTask(new IncrementTask(i, link));
+                }
+                return link.getNoThrow(this);
+            } finally {
+                executor.collectResponseContext(this);
+                this.context.getProfiler().stop();
+                ProfilerHelper.print(this.context);
+            }
+        }
+
+    }
+
+    private static class IncrementTask extends Task implements ICallableTask<Integer> {
+
+        private final ICallableTaskFuture<Integer> previous;
+
+        IncrementTask(int index, ICallableTaskFuture<Integer> previous) {
+            super(IncrementTask.class.getSimpleName() + index, SYNC_TASK_CONFIG, previous);
+            this.previous = previous;
+        }
+
+        @Override
+        public Integer call() {
+            return this.previous.getNoThrow(this) + 1;
+        }
+
+    }
+
+    private static class CustomWaitTask extends Task implements ICallableTask<Integer> {
+
+        CustomWaitTask(CallableTaskConfig config) {
+            super(config);
+        }
+
+        @Override
+        public void waitForDependencies() {
+            // no dependencies to wait for
+        }
+
+        @Override
+        public Integer call() {
+            return 0;
+        }
+
+    }
+
+}
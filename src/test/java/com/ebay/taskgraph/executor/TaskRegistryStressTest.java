@@ -0,0 +1,129 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+import com.ebay.taskgraph.diagnostic.ProfilerModel;
+import com.ebay.taskgraph.executor.workflow.WorkflowException;
+
+// stress test concurrent adds to the same executor from many threads
+public class TaskRegistryStressTest {
+
+    private static final int THREADS = 16;
+    private static final int TASKS_PER_THREAD = 500;
+    private static final int SHARED_TASKS = 100;
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(false, false, true);
+    private static final CallableTaskConfig SYNC_CONFIG = CallableTaskConfig.synch(DIAGNOSTIC_CONFIG);
+    private static final CallableTaskConfig ASYNC_CONFIG = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 10000L);
+
+    @Test
+    public void concurrentAddTest() throws Exception {
+
+        final JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor();
+        final AtomicInteger duplicates = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; ++t) {
+                final int thread = t;
+                results.add(pool.submit(new Callable<Integer>() {
+
+                    @Override
+                    public Integer call() throws Exception {
+                        start.await();
+                        int added = 0;
+                        for (int i = 0; i < TASKS_PER_THREAD; ++i) {
+                            CallableTaskConfig config = i % 10 == 0 ? ASYNC_CONFIG : SYNC_CONFIG;
+                            executor.addTask(new NamedTask("task_" + thread + "_" + i, config));
+                            ++added;
+
+                            // every thread races to add the same shared tasks, only one add should win
+                            if (i < SHARED_TASKS) {
+                                try {
+                                    executor.addTask(new NamedTask("shared_" + i, SYNC_CONFIG));
+                                    ++added;
+                                } catch (WorkflowException e) {
+                                    duplicates.incrementAndGet();
+                                }
+                            }
+                        }
+                        return added;
+                    }
+
+                }));
+            }
+            start.countDown();
+
+            int added = 0;
+            for (Future<Integer> result : results) {
+                added += result.get(60, TimeUnit.SECONDS);
+            }
+            Assert.assertEquals(THREADS * TASKS_PER_THREAD + SHARED_TASKS, added);
+            Assert.assertEquals((THREADS - 1) * SHARED_TASKS, duplicates.get());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // every task can be found and returns its own name
+        NamedTask caller = new NamedTask("caller", CallableTaskConfig.simple(DIAGNOSTIC_CONFIG));
+        for (int t = 0; t < THREADS; ++t) {
+            for (int i = 0; i < TASKS_PER_THREAD; ++i) {
+                String name = "task_" + t + "_" + i;
+                ICallableTaskFuture<String> future = executor.getTask(name);
+                Assert.assertEquals(name, future.getNoThrow(caller));
+            }
+        }
+
+        // snapshot collects every task context exactly once
+        caller.getContext().getProfiler().start();
+        executor.collectResponseContext(caller);
+        ProfilerModel model = caller.getContext().getProfiler().getModel(0L);
+        Assert.assertEquals(THREADS * TASKS_PER_THREAD + SHARED_TASKS, model.getChildren().size());
+    }
+
+    private static class NamedTask extends Task implements ICallableTask<String> {
+
+        NamedTask(String name, CallableTaskConfig config) {
+            super(name, config);
+        }
+
+        @Override
+        public String call() {
+            return this.taskName;
+        }
+
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+
+public class WeightedFairSchedulerTest {
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+    private static final CallableTaskConfig ASYNC_CONFIG = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 10000L);
+
+    private static final String USERS = "users";
+    private static final String BOTS = "bots";
+
+    @Test
+    public void weightedOrderTest() throws InterruptedException {
+        WeightedFairScheduler scheduler = new WeightedFairScheduler(1, weights());
+        try {
+            CountDownLatch gate = new CountDownLatch(1);
+            List<String> order = Collections.synchronizedList(new ArrayList<String>());
+            CountDownLatch done = new CountDownLatch(26);
+
+            // hold the only slot while a flood of bot tasks queues up ahead of the user tasks
+            scheduler.execute(USERS, new Await(gate));
+            for (int i = 0; i < 20; ++i) {
+                scheduler.execute(BOTS, new Record(BOTS, order, done));
+            }
+            for (int i = 0; i < 6; ++i) {
+                scheduler.execute(USERS, new Record(USERS, order, done));
+            }
+            gate.countDown();
+            Assert.assertTrue(done.await(5L, TimeUnit.SECONDS));
+
+            // users get 3 starts for every bot start so they aren't stuck behind the flood
+            Assert.assertTrue(order.toString(), order.lastIndexOf(USERS) < 10);
+            Assert.assertEquals(order.toString(), BOTS, order.get(order.size() - 1));
+
+            Map<String, WeightedFairScheduler.ClassStats> stats = scheduler.getStats();
+            Assert.assertEquals(20L, stats.get(BOTS).getSubmitted());
+            Assert.assertEquals(7L, stats.get(USERS).getSubmitted());
+            Assert.assertEquals(3, stats.get(USERS).getWeight());
+            Assert.assertTrue(stats.get(BOTS).getAverageQueueTime() > 0d);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void blockedTaskTest() {
+        // the only running task waits for a task queued behind it, so gives up its slot while blocked
+        WeightedFairScheduler scheduler = new WeightedFairScheduler(1, weights());
+        try {
+            RequestScope scope = RequestScope.DEFAULT.withScheduler(scheduler).withRequestClass(USERS);
+            JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor(scope);
+            ParentTask parent = new ParentTask();
+            ICallableTaskFuture<Integer> outer = executor.addTask(new OuterTask(executor));
+            Assert.assertEquals(Integer.valueOf(2), outer.getNoThrow(parent));
+            Assert.assertEquals(2L, scheduler.getStats().get(USERS).getSubmitted());
+            parent.collect(executor);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void executorTest() {
+        WeightedFairScheduler scheduler = new WeightedFairScheduler(2, weights());
+        try {
+            RequestScope scope = RequestScope.DEFAULT.withScheduler(scheduler).withRequestClass(BOTS);
+            JavaCallableTaskExecutor executor = new JavaCallableTaskExecutor(scope);
+            ParentTask parent = new ParentTask();
+            List<ICallableTaskFuture<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 5; ++i) {
+                futures.add(executor.addTask(new ValueTask("value" + i, i)));
+            }
+            int sum = 0;
+            for (ICallableTaskFuture<Integer> future : futures) {
+                sum += future.getNoThrow(parent);
+            }
+            Assert.assertEquals(10, sum);
+            Assert.assertEquals(5L, scheduler.getStats().get(BOTS).getSubmitted());
+            parent.collect(executor);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    private static Map<String, Integer> weights() {
+        Map<String, Integer> weights = new HashMap<>();
+        weights.put(USERS, 3);
+        weights.put(BOTS, 1);
+        return weights;
+    }
+
+    private static class ValueTask extends Task implements ICallableTask<Integer> {
+
+        private final int value;
+
+        ValueTask(String name, int value) {
+            super(name, ASYNC_CONFIG);
+            this.value = value;
+        }
+
+        @Override
+        public Integer call() {
+            return this.value;
+        }
+
+    }
+
+    private static class Await implements Runnable {
+
+        private final CountDownLatch gate;
+
+        Await(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+    }
+
+    private static class OuterTask extends Task implements ICallableTask<Integer> {
+
+        private final ICallableTaskExecutor executor;
+
+        OuterTask(ICallableTaskExecutor executor) {
+            super("outer", ASYNC_CONFIG);
+            this.executor = executor;
+        }
+
+        @Override
+        public Integer call() {
+            // queued behind this task, which holds the only slot
+            return this.executor.addTask(new ValueTask("inner", 1)).getNoThrow(this) + 1;
+        }
+
+    }
+
+    private static class Record implements Runnable {
+
+        private final String requestClass;
+        private final List<String> order;
+        private final CountDownLatch done;
+
+        Record(String requestClass, List<String> order, CountDownLatch done) {
+            this.requestClass = requestClass;
+            this.order = order;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            this.order.add(this.requestClass);
+            this.done.countDown();
+        }
+
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.ws.rs.core.Response.Status;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+import com.ebay.taskgraph.executor.AdmissionController;
+import com.ebay.taskgraph.executor.AdmissionRejectedException;
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.IAsyncTaskListener;
+import com.ebay.taskgraph.executor.ICallableTask;
+import com.ebay.taskgraph.executor.ICallableTaskFuture;
+import com.ebay.taskgraph.executor.ProfilerHelper;
+import com.ebay.taskgraph.executor.RequestScope;
+import com.ebay.taskgraph.executor.Task;
+
+public class AdmissionControlTest {
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+
+    private static final long TARGET = 5L;
+    private static final long INTERVAL = 20L;
+
+    @Test
+    public void overloadTest() throws InterruptedException {
+        AdmissionController controller = new AdmissionController(TARGET, INTERVAL);
+        overload(controller);
+
+        WorkflowTask<String> task = workflowTask(controller, RequestScope.DEFAULT);
+        try {
+            task.call();
+            Assert.fail("Expected admission to be rejected");
+        } catch (AdmissionRejectedException e) {
+            Assert.assertEquals(Status.SERVICE_UNAVAILABLE, e.status);
+            Assert.assertEquals(2 * TARGET, e.queueDelay);
+        }
+        Assert.assertEquals(Boolean.TRUE.toString(), task.getContext().getProfiler().getData(AdmissionController.ADMISSION_REJECTED));
+
+        // a task starting within the target ends the overload
+        controller.onStart(TimeUnit.MILLISECONDS.toNanos(1L));
+        Assert.assertEquals("done", workflowTask(controller, RequestScope.DEFAULT).call());
+        Assert.assertEquals(1L, controller.getRejectedCount());
+        Assert.assertEquals(1L, controller.getAdmittedCount());
+    }
+
+    @Test
+    public void burstTest() {
+        // a delay above the target that doesn't last an interval is tolerated
+        AdmissionController controller = new AdmissionController(TARGET, INTERVAL);
+        controller.onStart(TimeUnit.MILLISECONDS.toNanos(2 * TARGET));
+        controller.onStart(TimeUnit.MILLISECONDS.toNanos(2 * TARGET));
+        Assert.assertFalse(controller.isOverloaded());
+        Assert.assertEquals("done", workflowTask(controller, RequestScope.DEFAULT).call());
+    }
+
+    @Test
+    public void idleTest() throws InterruptedException {
+        // no task has started for an interval, still overloaded until a probe request's task starts within the target
+        AdmissionController controller = new AdmissionController(TARGET, INTERVAL);
+        overload(controller);
+        TimeUnit.MILLISECONDS.sleep(2 * INTERVAL);
+        Assert.assertTrue(controller.isOverloaded());
+        Assert.assertEquals("done", workflowTask(controller, RequestScope.DEFAULT.withAsyncTaskListener(controller)).call());
+        Assert.assertFalse(controller.isOverloaded());
+    }
+
+    @Test
+    public void probeTest() throws InterruptedException {
+        // a single request per interval is admitted to measure the queueing delay again
+        AdmissionController controller = new AdmissionController(TARGET, INTERVAL);
+        overload(controller);
+        TimeUnit.MILLISECONDS.sleep(2 * INTERVAL);
+        Assert.assertEquals("done", workflowTask(controller, RequestScope.DEFAULT).call());
+        try {
+            workflowTask(controller, RequestScope.DEFAULT).call();
+            Assert.fail("Expected admission to be rejected");
+        } catch (AdmissionRejectedException e) {
+            Assert.assertTrue(controller.isOverloaded());
+        }
+        Assert.assertEquals(1L, controller.getAdmittedCount());
+        Assert.assertEquals(1L, controller.getRejectedCount());
+    }
+
+    @Test
+    public void lazyTaskTest() {
+        // lazy tasks are measured once submitted to the executor service, not when run on the consumer's thread
+        CountingListener listener = new CountingListener();
+        RequestScope scope = RequestScope.DEFAULT.withAsyncTaskListener(listener);
+        IWorkflowExecutor<String> executor = new IWorkflowExecutor<String>() {
+
+            @Override
+            public String execute(IWorkflow<String> workflow) {
+                CallableTaskConfig lazy = new CallableTaskConfig(DIAGNOSTIC_CONFIG, CallableTaskConfig.ExecType.LAZY);
+                ICallableTaskFuture<String> prefetched = workflow.addTask(new AsyncTask("Prefetched", lazy));
+                prefetched.prefetch();
+                ICallableTaskFuture<String> inline = workflow.addTask(new AsyncTask("Inline", lazy));
+                return prefetched.getNoThrow(workflow.getTask()) + inline.getNoThrow(workflow.getTask());
+            }
+
+        };
+        WorkflowTask<String> task = new WorkflowTask<>("request", CallableTaskConfig.simple(DIAGNOSTIC_CONFIG),
+                new RequestScopeWorkflowFactory(scope), executor);
+        Assert.assertEquals("donedone", task.call());
+        Assert.assertEquals(1, listener.submitted.get());
+        Assert.assertEquals(1, listener.started.get());
+    }
+
+    @Test
+    public void queueDelayTest() {
+        // asynchronous tasks of admitted requests are measured
+        AdmissionController controller = new AdmissionController(TARGET, INTERVAL);
+        RequestScope scope = RequestScope.DEFAULT.withAsyncTaskListener(controller);
+        WorkflowTask<String> task = workflowTask(controller, scope);
+        Assert.assertEquals("done", task.call());
+        ProfilerHelper.print(task.getContext());
+        Assert.assertEquals(1L, controller.getAdmittedCount());
+        Assert.assertEquals(1, scope.getAsyncTaskListeners().size());
+    }
+
+    private static void overload(AdmissionController controller) throws InterruptedException {
+        controller.onStart(TimeUnit.MILLISECONDS.toNanos(2 * TARGET));
+        TimeUnit.MILLISECONDS.sleep(INTERVAL + 5L);
+        controller.onStart(TimeUnit.MILLISECONDS.toNanos(2 * TARGET));
+        Assert.assertTrue(controller.isOverloaded());
+    }
+
+    private static WorkflowTask<String> workflowTask(AdmissionController controller, RequestScope scope) {
+        IWorkflowFactory factory = new AdmissionControlWorkflowFactory(controller, new RequestScopeWorkflowFactory(scope));
+        return new WorkflowTask<>("request", CallableTaskConfig.simple(DIAGNOSTIC_CONFIG), factory, new AsyncExecutor());
+    }
+
+    private static class AsyncExecutor implements IWorkflowExecutor<String> {
+
+        @Override
+        public String execute(IWorkflow<String> workflow) {
+            CallableTaskConfig async = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 10000L);
+            return workflow.addTask(new AsyncTask("AsyncTask", async)).getNoThrow(workflow.getTask());
+        }
+
+    }
+
+    private static class AsyncTask extends Task implements ICallableTask<String> {
+
+        AsyncTask(String name, CallableTaskConfig config) {
+            super(name, config);
+        }
+
+        @Override
+        public String call() {
+            return "done";
+        }
+
+    }
+
+    private static class CountingListener implements IAsyncTaskListener {
+
+        private final AtomicInteger submitted = new AtomicInteger();
+        private final AtomicInteger started = new AtomicInteger();
+
+        @Override
+        public void onSubmit() {
+            this.submitted.incrementAndGet();
+        }
+
+        @Override
+        public void onStart(long queueTime) {
+            this.started.incrementAndGet();
+        }
+
+        @Override
+        public void onComplete() {
+            // completion isn't counted as it may be reported after the result
+        }
+
+    }
+
+}
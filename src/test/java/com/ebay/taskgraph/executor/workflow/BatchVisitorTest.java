@@ -0,0 +1,135 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.CallableTaskFutureValue;
+import com.ebay.taskgraph.executor.ProfilerHelper;
+
+public class BatchVisitorTest {
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+    private static final CallableTaskConfig SYNC_TASK = CallableTaskConfig.synch(DIAGNOSTIC_CONFIG);
+
+    private static final int VISITEES = 150;
+    private static final int BATCH_SIZE = 64;
+
+    @Test
+    public void batchVisitorTest() {
+        LookupVisitor batch = new LookupVisitor(-1);
+        CountingVisitor single = new CountingVisitor();
+
+        run(Arrays.<VisitorTask<Integer>>asList(batch, single), BATCH_SIZE);
+
+        // one lookup per batch for the batch visitor, single item visitor still sees every visitee
+        Assert.assertEquals(Arrays.asList(BATCH_SIZE, BATCH_SIZE, VISITEES - 2 * BATCH_SIZE), batch.batches);
+        Assert.assertEquals(VISITEES, single.visited.get());
+    }
+
+    @Test
+    public void defaultBatchSizeTest() {
+        LookupVisitor batch = new LookupVisitor(-1);
+        run(Collections.<VisitorTask<Integer>>singletonList(batch), VisitorTask.DEFAULT_BATCH_SIZE);
+        Assert.assertEquals(3, batch.batches.size());
+    }
+
+    @Test
+    public void batchFailureTest() {
+        // failure of one batch is logged to the task and the remaining batches are still visited
+        LookupVisitor batch = new LookupVisitor(0);
+        run(Collections.<VisitorTask<Integer>>singletonList(batch), BATCH_SIZE);
+        Assert.assertEquals(3, batch.batches.size());
+        Assert.assertEquals(IllegalStateException.class.getSimpleName(), batch.getContext().getProfiler().getData("exception"));
+    }
+
+    @Test
+    public void singleVisiteeTest() {
+        LookupVisitor batch = new LookupVisitor(-1);
+        batch.visit(1);
+        Assert.assertEquals(Collections.singletonList(1), batch.batches);
+    }
+
+    private static void run(final List<VisitorTask<Integer>> visitors, final int batchSize) {
+        final List<Integer> visitees = new ArrayList<>(VISITEES);
+        for (int i = 0; i < VISITEES; ++i) {
+            visitees.add(i);
+        }
+        IWorkflowExecutor<List<Integer>> executor = new IWorkflowExecutor<List<Integer>>() {
+
+            @Override
+            public List<Integer> execute(IWorkflow<List<Integer>> workflow) {
+                return VisitorWorkflowTaskFactory.createMultiVisitee(
+                        SYNC_TASK, workflow, "BatchVisitors", new CallableTaskFutureValue<>(visitees), visitors, batchSize).getNoThrow(workflow.getTask());
+            }
+
+        };
+        WorkflowTask<List<Integer>> task = new WorkflowTask<>(CallableTaskConfig.simple(DIAGNOSTIC_CONFIG), TestWorkflowFactory.INSTANCE, executor);
+        task.call();
+        ProfilerHelper.print(task.getContext());
+    }
+
+    /**
+     * Records the size of each batch as a stand in for a backend lookup per batch.
+     */
+    private static class LookupVisitor extends BatchVisitorTask<Integer> {
+
+        private final List<Integer> batches = new ArrayList<>();
+        private final int failOn;
+
+        LookupVisitor(int failOn) {
+            super("Lookup", SYNC_TASK);
+            this.failOn = failOn;
+        }
+
+        @Override
+        public void visitBatch(List<Integer> visitees) {
+            this.batches.add(visitees.size());
+            if (visitees.contains(this.failOn)) {
+                throw new IllegalStateException("lookup failed");
+            }
+        }
+
+    }
+
+    private static class CountingVisitor extends VisitorTask<Integer> {
+
+        private final AtomicInteger visited = new AtomicInteger();
+
+        CountingVisitor() {
+            super("Counting", SYNC_TASK);
+        }
+
+        @Override
+        public void visit(Integer visitee) {
+            this.visited.incrementAndGet();
+        }
+
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.ProfilerHelper;
+
+public class ConcurrentVisitorsTest {
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+    private static final CallableTaskConfig SYNC_TASK = CallableTaskConfig.synch(DIAGNOSTIC_CONFIG);
+    private static final CallableTaskConfig ASYNC_TASK = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 10000L);
+
+    private static final long LATCH_TIMEOUT_MS = 5000L;
+
+    @Test
+    public void nonConflictingVisitorsTest() throws Exception {
+
+        // title and price visitors only complete if they run at the same time
+        CountDownLatch latch = new CountDownLatch(2);
+        List<VisitorTask<Map<String, String>>> visitors = new ArrayList<>();
+        visitors.add(new FieldVisitor("Title", latch, Collections.<String>emptySet(), "title"));
+        visitors.add(new FieldVisitor("Price", latch, Collections.<String>emptySet(), "price"));
+        // summary reads the title so is ordered after the title visitor
+        visitors.add(new FieldVisitor("Summary", null, Collections.singleton("title"), "summary"));
+
+        Map<String, String> visitee = run(visitors);
+        Assert.assertEquals("Title", visitee.get("title"));
+        Assert.assertEquals("Price", visitee.get("price"));
+        Assert.assertEquals("Summary:Title", visitee.get("summary"));
+    }
+
+    @Test
+    public void undeclaredVisitorsTest() throws Exception {
+
+        // visitors that don't declare read and write sets keep their order
+        List<VisitorTask<Map<String, String>>> visitors = new ArrayList<>();
+        visitors.add(new FieldVisitor("Title", null, null, "title"));
+        visitors.add(new FieldVisitor("Summary", null, null, "summary"));
+
+        Map<String, String> visitee = run(visitors);
+        Assert.assertEquals("Summary:Title", visitee.get("summary"));
+    }
+
+    @Test
+    public void conflictsTest() {
+        Set<String> none = Collections.emptySet();
+        Set<String> title = Collections.singleton("title");
+        FieldVisitor writesTitle = new FieldVisitor("A", null, none, "title");
+        FieldVisitor readsTitle = new FieldVisitor("B", null, title, "summary");
+        FieldVisitor writesPrice = new FieldVisitor("C", null, none, "price");
+        FieldVisitor undeclared = new FieldVisitor("D", null, null, "price");
+        FieldVisitor independent = new FieldVisitor("E", null, null, "other") {
+
+            @Override
+            public boolean isIndependent() {
+                return true;
+            }
+
+        };
+        Assert.assertTrue(VisitorTask.conflicts(writesTitle, readsTitle));
+        Assert.assertTrue(VisitorTask.conflicts(readsTitle, writesTitle));
+        Assert.assertTrue(VisitorTask.conflicts(writesTitle, writesTitle));
+        Assert.assertFalse(VisitorTask.conflicts(writesTitle, writesPrice));
+        Assert.assertFalse(VisitorTask.conflicts(readsTitle, writesPrice));
+        Assert.assertTrue(VisitorTask.conflicts(writesPrice, undeclared));
+        Assert.assertFalse(VisitorTask.conflicts(undeclared, independent));
+    }
+
+    private static Map<String, String> run(final List<VisitorTask<Map<String, String>>> visitors) throws Exception {
+        final Map<String, String> visitee = new ConcurrentHashMap<>();
+        IWorkflowExecutor<Map<String, String>> executor = new IWorkflowExecutor<Map<String, String>>() {
+
+            @Override
+            public Map<String, String> execute(IWorkflow<Map<String, String>> workflow) {
+                return VisitorWorkflowTaskFactory.create(SYNC_TASK, workflow, "Visitors", visitee, visitors).getNoThrow(workflow.getTask());
+            }
+
+        };
+        WorkflowTask<Map<String, String>> task = new WorkflowTask<>(CallableTaskConfig.simple(DIAGNOSTIC_CONFIG), TestWorkflowFactory.INSTANCE, executor);
+        task.call();
+        ProfilerHelper.print(task.getContext());
+        return visitee;
+    }
+
+    /**
+     * Writes its name to a single field of the visitee, prefixed with any fields it reads.
+     */
+    private static class FieldVisitor extends VisitorTask<Map<String, String>> {
+
+        private final CountDownLatch latch;
+        private final Set<String> reads;
+        private final String write;
+
+        FieldVisitor(String name, CountDownLatch latch, Set<String> reads, String write) {
+            super(name, ASYNC_TASK);
+            this.latch = latch;
+            this.reads = reads;
+            this.write = write;
+        }
+
+        @Override
+        public Set<String> getReadSet() {
+            return this.reads;
+        }
+
+        @Override
+        public Set<String> getWriteSet() {
+            return this.reads != null ? Collections.singleton(this.write) : null;
+        }
+
+        @Override
+        public void visit(Map<String, String> visitee) {
+            if (this.latch != null) {
+                this.latch.countDown();
+                try {
+                    Assert.assertTrue(this.latch.await(LATCH_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            StringBuilder value = new StringBuilder(getName());
+            for (String read : this.reads != null ? this.reads : Collections.<String>emptySet()) {
+                value.append(':').append(visitee.get(read));
+            }
+            if (null == this.reads && "summary".equals(this.write)) {
+                value.append(':').append(visitee.get("title"));
+            }
+            visitee.put(this.write, value.toString());
+        }
+
+    }
+
+}
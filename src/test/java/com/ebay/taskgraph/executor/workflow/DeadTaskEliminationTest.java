@@ -0,0 +1,205 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DeadTaskAnalyzer;
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.ICallableTask;
+import com.ebay.taskgraph.executor.ICallableTaskFuture;
+import com.ebay.taskgraph.executor.ProfilerHelper;
+import com.ebay.taskgraph.executor.RequestScope;
+import com.ebay.taskgraph.executor.Task;
+
+public class DeadTaskEliminationTest {
+
+    private static final String REQUEST_CLASS = "search";
+    private static final int SAMPLES = 3;
+    private static final long AWAIT_MS = 5000L;
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+    private static final CallableTaskConfig ASYNC_CONFIG = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 10000L);
+
+    @Test
+    public void deadTaskTest() throws InterruptedException {
+
+        AtomicInteger orphanCalls = new AtomicInteger();
+        RequestScope scope = RequestScope.DEFAULT.withRequestClass(REQUEST_CLASS);
+
+        // sample requests to find the orphan task
+        DeadTaskAnalyzer analyzer = new DeadTaskAnalyzer();
+        for (int i = 0; i < SAMPLES; ++i) {
+            WorkflowTask<Integer> task = run(scope, orphanCalls, new AtomicInteger());
+            analyzer.add(scope.getRequestClass(), task.getContext().getProfiler().getModel(0L));
+        }
+        // the orphan isn't waited for so may still be running once the request completes
+        awaitCalls(orphanCalls, SAMPLES);
+        Assert.assertEquals(SAMPLES, analyzer.getSamples(REQUEST_CLASS, "Orphan"));
+
+        Set<String> dead = analyzer.getDeadTasks(REQUEST_CLASS, SAMPLES);
+        Assert.assertEquals(Collections.singleton("Orphan"), dead);
+        Assert.assertTrue(analyzer.getDeadTasks(REQUEST_CLASS, SAMPLES + 1).isEmpty());
+        Assert.assertTrue(analyzer.getDeadTasks("other", 0).isEmpty());
+
+        // deferred orphan never runs, the consumed tasks are unaffected
+        WorkflowTask<Integer> task = run(scope.withDeferredTasks(dead), orphanCalls, new AtomicInteger());
+        Assert.assertEquals(SAMPLES, orphanCalls.get());
+        Assert.assertEquals("1", task.getContext().getProfiler().getData(Task.LAZY_SKIPPED_COUNT));
+    }
+
+    @Test
+    public void deferredConsumedTest() {
+
+        // deferring a task that turns out to be consumed only delays it
+        AtomicInteger consumedCalls = new AtomicInteger();
+        RequestScope scope = RequestScope.DEFAULT.withDeferredTasks(Collections.singleton("Consumed"));
+        WorkflowTask<Integer> task = run(scope, new AtomicInteger(), consumedCalls);
+        Assert.assertEquals(1, consumedCalls.get());
+        Assert.assertNull(task.getContext().getProfiler().getData(Task.LAZY_SKIPPED_COUNT));
+    }
+
+    @Test
+    public void nestedWorkflowTest() throws InterruptedException {
+
+        AtomicInteger fetchCalls = new AtomicInteger();
+        RequestScope scope = RequestScope.DEFAULT.withRequestClass(REQUEST_CLASS);
+
+        DeadTaskAnalyzer analyzer = new DeadTaskAnalyzer();
+        for (int i = 0; i < SAMPLES; ++i) {
+            WorkflowTask<Integer> task = runNested(scope, fetchCalls);
+            analyzer.add(scope.getRequestClass(), task.getContext().getProfiler().getModel(0L));
+        }
+        awaitCalls(fetchCalls, 2 * SAMPLES);
+
+        // the task of the same name is only dead in one of the nested workflows
+        Assert.assertEquals(SAMPLES, analyzer.getSamples(REQUEST_CLASS, "Consumer/Fetch"));
+        Assert.assertEquals(0, analyzer.getSamples(REQUEST_CLASS, "Fetch"));
+        Set<String> dead = analyzer.getDeadTasks(REQUEST_CLASS, SAMPLES);
+        Assert.assertEquals(Collections.singleton("Speculative/Fetch"), dead);
+
+        // only the unconsumed fetch is deferred
+        runNested(scope.withDeferredTasks(dead), fetchCalls);
+        Assert.assertEquals(2 * SAMPLES + 1, fetchCalls.get());
+    }
+
+    private static void awaitCalls(AtomicInteger calls, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + AWAIT_MS;
+        while (calls.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1L);
+        }
+        Assert.assertEquals(expected, calls.get());
+    }
+
+    private static WorkflowTask<Integer> run(RequestScope scope, AtomicInteger orphanCalls, AtomicInteger consumedCalls) {
+        WorkflowTask<Integer> task = new WorkflowTask<>("Request", CallableTaskConfig.simple(DIAGNOSTIC_CONFIG),
+                new RequestScopeWorkflowFactory(scope), new OrphanExecutor(orphanCalls, consumedCalls));
+        Assert.assertEquals(Integer.valueOf(1), task.call());
+        ProfilerHelper.print(task.getContext());
+        return task;
+    }
+
+    private static WorkflowTask<Integer> runNested(RequestScope scope, AtomicInteger fetchCalls) {
+        WorkflowTask<Integer> task = new WorkflowTask<>("Request", CallableTaskConfig.simple(DIAGNOSTIC_CONFIG),
+                new RequestScopeWorkflowFactory(scope), new NestedExecutor(fetchCalls));
+        // not validated, the profiler validator requires unique task names
+        Assert.assertEquals(Integer.valueOf(1), task.call());
+        return task;
+    }
+
+    private static class NestedExecutor implements IWorkflowExecutor<Integer> {
+
+        private final AtomicInteger fetchCalls;
+
+        NestedExecutor(AtomicInteger fetchCalls) {
+            this.fetchCalls = fetchCalls;
+        }
+
+        @Override
+        public Integer execute(IWorkflow<Integer> workflow) {
+            ICallableTaskFuture<Integer> consumer = workflow.addTask(new WorkflowTask<>("Consumer", ASYNC_CONFIG, workflow,
+                    new FetchExecutor(this.fetchCalls, true)));
+            ICallableTaskFuture<Integer> speculative = workflow.addTask(new WorkflowTask<>("Speculative", ASYNC_CONFIG, workflow,
+                    new FetchExecutor(this.fetchCalls, false)));
+            return consumer.getNoThrow(workflow.getTask()) + speculative.getNoThrow(workflow.getTask());
+        }
+
+    }
+
+    private static class FetchExecutor implements IWorkflowExecutor<Integer> {
+
+        private final AtomicInteger fetchCalls;
+        private final boolean consume;
+
+        FetchExecutor(AtomicInteger fetchCalls, boolean consume) {
+            this.fetchCalls = fetchCalls;
+            this.consume = consume;
+        }
+
+        @Override
+        public Integer execute(IWorkflow<Integer> workflow) {
+            ICallableTaskFuture<Integer> fetch = workflow.addTask(new CountingTask("Fetch", this.fetchCalls));
+            return this.consume && fetch.getNoThrow(workflow.getTask()) > 0 ? 1 : 0;
+        }
+
+    }
+
+    private static class OrphanExecutor implements IWorkflowExecutor<Integer> {
+
+        private final AtomicInteger orphanCalls;
+        private final AtomicInteger consumedCalls;
+
+        OrphanExecutor(AtomicInteger orphanCalls, AtomicInteger consumedCalls) {
+            this.orphanCalls = orphanCalls;
+            this.consumedCalls = consumedCalls;
+        }
+
+        @Override
+        public Integer execute(IWorkflow<Integer> workflow) {
+            // added speculatively but never consumed
+            workflow.addTask(new CountingTask("Orphan", this.orphanCalls));
+            ICallableTaskFuture<Integer> consumed = workflow.addTask(new CountingTask("Consumed", this.consumedCalls));
+            return consumed.getNoThrow(workflow.getTask());
+        }
+
+    }
+
+    private static class CountingTask extends Task implements ICallableTask<Integer> {
+
+        private final AtomicInteger calls;
+
+        CountingTask(String name, AtomicInteger calls) {
+            super(name, ASYNC_CONFIG);
+            this.calls = calls;
+        }
+
+        @Override
+        public Integer call() {
+            return this.calls.incrementAndGet();
+        }
+
+    }
+
+}
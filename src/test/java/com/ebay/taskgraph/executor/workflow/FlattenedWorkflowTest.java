@@ -0,0 +1,284 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+import com.ebay.taskgraph.diagnostic.ProfilerModel;
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.ICallableTask;
+import com.ebay.taskgraph.executor.ICallableTaskFuture;
+import com.ebay.taskgraph.executor.JavaCallableTaskExecutor;
+import com.ebay.taskgraph.executor.NumberTask;
+import com.ebay.taskgraph.executor.ProfilerHelper;
+import com.ebay.taskgraph.executor.Task;
+
+public class FlattenedWorkflowTest {
+
+    private static final int DEPTH = 10;
+    private static final long SLEEP_MS = 200L;
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+    private static final CallableTaskConfig ASYNC_CONFIG = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 10000L);
+    private static final CallableTaskConfig TIMEOUT_CONFIG =
+            new CallableTaskConfig(DIAGNOSTIC_CONFIG, 50L, CallableTaskConfig.ExecType.ASYNC_TIMEOUT);
+
+    @Test
+    public void flattenedTest() {
+        // every nested workflow is coordinated by the thread consuming it
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        WorkflowTask<Integer> task = run(new CountingWorkflowFactory(true), new NestedRoot(threads));
+        Assert.assertEquals(Integer.valueOf(DEPTH), task.call());
+        Assert.assertEquals(Collections.singleton(Thread.currentThread()), threads);
+
+        // the tasks of each nested workflow are still collected under its workflow task
+        ProfilerModel model = task.getContext().getProfiler().getModel(0L);
+        for (int i = 0; i < DEPTH; ++i) {
+            model = getChild(model, NestedExecutor.class.getSimpleName());
+            Assert.assertNotNull(model);
+        }
+        Assert.assertNotNull(getChild(model, NumberTask.class.getSimpleName()));
+    }
+
+    @Test
+    public void nestedTest() {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        CountingWorkflowFactory factory = new CountingWorkflowFactory(false);
+        Assert.assertEquals(Integer.valueOf(DEPTH), run(factory, new NestedRoot(threads)).call());
+        Assert.assertEquals(DEPTH + 1, factory.executors.get());
+        Assert.assertFalse(threads.contains(Thread.currentThread()));
+    }
+
+    @Test
+    public void namesTest() {
+        // task names only need to be unique within their nested workflow
+        Assert.assertEquals(Integer.valueOf(2), run(new CountingWorkflowFactory(true), new SiblingsRoot("Sleep", "Sleep")).call());
+    }
+
+    @Test
+    public void siblingsTest() {
+        // sibling nested workflows still run concurrently
+        long start = System.nanoTime();
+        Assert.assertEquals(Integer.valueOf(2), run(new CountingWorkflowFactory(true), new SiblingsRoot("ASleep", "BSleep")).call());
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2 * SLEEP_MS);
+    }
+
+    @Test
+    public void noConsumerTest() throws InterruptedException {
+        // a nested workflow nobody asks for still runs
+        CountDownLatch ran = new CountDownLatch(1);
+        run(new CountingWorkflowFactory(true), new NoConsumerRoot(ran)).call();
+        Assert.assertTrue(ran.await(1L, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void timeoutTest() {
+        // the nested workflow task's timeout is still enforced
+        long start = System.nanoTime();
+        Assert.assertNull(run(new CountingWorkflowFactory(true), new TimeoutRoot()).call());
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5 * SLEEP_MS);
+    }
+
+    private static WorkflowTask<Integer> run(IWorkflowFactory workflowFactory, IWorkflowExecutor<Integer> root) {
+        return new WorkflowTask<Integer>("Root", CallableTaskConfig.simple(DIAGNOSTIC_CONFIG), workflowFactory, root) {
+
+            @Override
+            public Integer call() {
+                Integer result = super.call();
+                ProfilerHelper.print(getContext());
+                return result;
+            }
+
+        };
+    }
+
+    private static ProfilerModel getChild(ProfilerModel model, String name) {
+        if (model.getChildren() != null) {
+            for (ProfilerModel child : model.getChildren()) {
+                if (child.getName().equals(name)) {
+                    return child;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static class NestedRoot implements IWorkflowExecutor<Integer> {
+
+        private final Set<Thread> threads;
+
+        NestedRoot(Set<Thread> threads) {
+            this.threads = threads;
+        }
+
+        @Override
+        public Integer execute(IWorkflow<Integer> workflow) {
+            ICallableTaskFuture<Integer> nested = workflow.addTask(
+                    new WorkflowTask<>("Nested" + DEPTH, ASYNC_CONFIG, workflow, new NestedExecutor(DEPTH, this.threads)));
+            return nested.getNoThrow(workflow.getTask());
+        }
+
+    }
+
+    private static class NestedExecutor implements IWorkflowExecutor<Integer> {
+
+        private final int depth;
+        private final Set<Thread> threads;
+
+        NestedExecutor(int depth, Set<Thread> threads) {
+            this.depth = depth;
+            this.threads = threads;
+        }
+
+        @Override
+        public Integer execute(IWorkflow<Integer> workflow) {
+            this.threads.add(Thread.currentThread());
+            ICallableTaskFuture<Integer> result;
+            if (this.depth > 1) {
+                result = workflow.addTask(new WorkflowTask<>("Nested" + (this.depth - 1), ASYNC_CONFIG, workflow,
+                        new NestedExecutor(this.depth - 1, this.threads)));
+            } else {
+                result = workflow.addTask(new NumberTask(ASYNC_CONFIG, 0));
+            }
+            return result.getNoThrow(workflow.getTask()) + 1;
+        }
+
+    }
+
+    private static class SiblingsRoot implements IWorkflowExecutor<Integer> {
+
+        private final String a;
+        private final String b;
+
+        SiblingsRoot(String a, String b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        public Integer execute(IWorkflow<Integer> workflow) {
+            ICallableTaskFuture<Integer> a = workflow.addTask(new WorkflowTask<>("A", ASYNC_CONFIG, workflow, new SleepExecutor(this.a)));
+            ICallableTaskFuture<Integer> b = workflow.addTask(new WorkflowTask<>("B", ASYNC_CONFIG, workflow, new SleepExecutor(this.b)));
+            return a.getNoThrow(workflow.getTask()) + b.getNoThrow(workflow.getTask());
+        }
+
+    }
+
+    private static class NoConsumerRoot implements IWorkflowExecutor<Integer> {
+
+        private final CountDownLatch ran;
+
+        NoConsumerRoot(CountDownLatch ran) {
+            this.ran = ran;
+        }
+
+        @Override
+        public Integer execute(IWorkflow<Integer> workflow) {
+            workflow.addTask(new WorkflowTask<>("Unconsumed", ASYNC_CONFIG, workflow, new IWorkflowExecutor<Integer>() {
+
+                @Override
+                public Integer execute(IWorkflow<Integer> nested) {
+                    NoConsumerRoot.this.ran.countDown();
+                    return 0;
+                }
+
+            }));
+            return 0;
+        }
+
+    }
+
+    private static class TimeoutRoot implements IWorkflowExecutor<Integer> {
+
+        @Override
+        public Integer execute(IWorkflow<Integer> workflow) {
+            WorkflowTask<Integer> task = new WorkflowTask<Integer>("Slow", TIMEOUT_CONFIG, workflow, new SleepExecutor("SlowSleep")) {
+
+                @Override
+                public Integer call() {
+                    try {
+                        Thread.sleep(5 * SLEEP_MS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return super.call();
+                }
+
+            };
+            return workflow.addTask(task).getNoThrow(workflow.getTask());
+        }
+
+    }
+
+    private static class SleepExecutor implements IWorkflowExecutor<Integer> {
+
+        private final String name;
+
+        SleepExecutor(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Integer execute(IWorkflow<Integer> workflow) {
+            return workflow.addTask(new SleepTask(this.name)).getNoThrow(workflow.getTask());
+        }
+
+    }
+
+    private static class SleepTask extends Task implements ICallableTask<Integer> {
+
+        SleepTask(String name) {
+            super(name, ASYNC_CONFIG);
+        }
+
+        @Override
+        public Integer call() throws InterruptedException {
+            Thread.sleep(SLEEP_MS);
+            return 1;
+        }
+
+    }
+
+    private static class CountingWorkflowFactory implements IWorkflowFactory {
+
+        private final boolean flatten;
+        private final AtomicInteger executors = new AtomicInteger();
+
+        CountingWorkflowFactory(boolean flatten) {
+            this.flatten = flatten;
+        }
+
+        @Override
+        public <T> IWorkflow<T> create(ICallableTask<T> task) {
+            this.executors.incrementAndGet();
+            return new Workflow<T>(task, this, new JavaCallableTaskExecutor(), this.flatten);
+        }
+
+    }
+
+}
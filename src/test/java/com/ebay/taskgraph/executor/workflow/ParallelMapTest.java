@@ -0,0 +1,217 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.CallableTaskFutureValue;
+import com.ebay.taskgraph.executor.ICallableTask;
+import com.ebay.taskgraph.executor.ICallableTaskFuture;
+import com.ebay.taskgraph.executor.ProfilerHelper;
+import com.ebay.taskgraph.executor.Task;
+
+public class ParallelMapTest {
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+    private static final CallableTaskConfig SYNC_TASK = CallableTaskConfig.synch(DIAGNOSTIC_CONFIG);
+    private static final CallableTaskConfig ASYNC_TASK = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 10000L);
+    private static final CallableTaskConfig TIMEOUT_TASK = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 50L);
+
+    private static final int INPUTS = 20;
+    private static final int MAX_CONCURRENCY = 3;
+    private static final long ELEMENT_MS = 10L;
+    private static final long SLOW_ELEMENT_MS = 500L;
+    private static final long HUNG_ELEMENT_MS = 2000L;
+
+    @Test
+    public void orderedMergeTest() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<ICallableTaskFuture<List<Integer>>> map = new ArrayList<>();
+        WorkflowTask<List<Integer>> task = run(new DoubleFactory(running, maxRunning, -1, i -> false, i -> false), map);
+        List<Integer> results = task.call();
+
+        Assert.assertEquals(INPUTS, results.size());
+        for (int i = 0; i < INPUTS; ++i) {
+            Assert.assertEquals(Integer.valueOf(i * 2), results.get(i));
+        }
+        Assert.assertTrue(maxRunning.get() <= MAX_CONCURRENCY);
+        Assert.assertNull(getMissingResults(map));
+        ProfilerHelper.print(task.getContext());
+    }
+
+    @Test
+    public void partialResultsTest() {
+        // one element fails and another times out, the rest are still merged in order
+        List<ICallableTaskFuture<List<Integer>>> map = new ArrayList<>();
+        WorkflowTask<List<Integer>> task = run(new DoubleFactory(new AtomicInteger(), new AtomicInteger(), 3, i -> i == 7, i -> false), map);
+        List<Integer> results = task.call();
+
+        Assert.assertEquals(INPUTS, results.size());
+        Assert.assertNull(results.get(3));
+        Assert.assertNull(results.get(7));
+        Assert.assertEquals(Integer.valueOf(8), results.get(4));
+        Assert.assertEquals("2", getMissingResults(map));
+        ProfilerHelper.print(task.getContext());
+    }
+
+    @Test
+    public void failedDependenciesTest() {
+        // more elements than permits fail waiting for their dependencies, none of them may keep its permit
+        List<ICallableTaskFuture<List<Integer>>> map = new ArrayList<>();
+        WorkflowTask<List<Integer>> task = run(new DoubleFactory(
+                new AtomicInteger(), new AtomicInteger(), -1, i -> false, i -> i <= MAX_CONCURRENCY), map);
+        List<Integer> results = task.call();
+
+        Assert.assertEquals(INPUTS, results.size());
+        for (int i = 0; i < INPUTS; ++i) {
+            Assert.assertEquals(i <= MAX_CONCURRENCY ? null : Integer.valueOf(i * 2), results.get(i));
+        }
+        Assert.assertEquals(String.valueOf(MAX_CONCURRENCY + 1), getMissingResults(map));
+        ProfilerHelper.print(task.getContext());
+    }
+
+    @Test
+    public void hungElementsTest() throws InterruptedException {
+        // every permit is held by an element that never finishes, the rest wait no longer than their timeout
+        List<ICallableTaskFuture<List<Integer>>> map = new ArrayList<>();
+        DoubleFactory factory = new DoubleFactory(
+                new AtomicInteger(), new AtomicInteger(), -1, i -> i < MAX_CONCURRENCY, i -> false, HUNG_ELEMENT_MS) {
+
+            @Override
+            public ICallableTask<Integer> create(Integer input, int index) {
+                return new DoubleTask(this, input, TIMEOUT_TASK);
+            }
+
+        };
+        WorkflowTask<List<Integer>> task = run(factory, map);
+        long start = System.currentTimeMillis();
+        List<Integer> results = task.call();
+
+        Assert.assertTrue(System.currentTimeMillis() - start < HUNG_ELEMENT_MS / 2);
+        Assert.assertNull(results.get(0));
+        // the timed out elements were cancelled rather than left running
+        for (int i = 0; i < 100 && factory.interrupted.get() < MAX_CONCURRENCY; ++i) {
+            Thread.sleep(10L);
+        }
+        Assert.assertEquals(MAX_CONCURRENCY, factory.interrupted.get());
+        Assert.assertEquals(Integer.valueOf(MAX_CONCURRENCY * 2), results.get(MAX_CONCURRENCY));
+        ProfilerHelper.print(task.getContext());
+    }
+
+    private static String getMissingResults(List<ICallableTaskFuture<List<Integer>>> map) {
+        return map.get(0).getTask().getContext().getProfiler().getData(ParallelMapWorkflowExecutor.MISSING_RESULTS);
+    }
+
+    private static WorkflowTask<List<Integer>> run(final DoubleFactory factory, final List<ICallableTaskFuture<List<Integer>>> map) {
+        final List<Integer> inputs = new ArrayList<>(INPUTS);
+        for (int i = 0; i < INPUTS; ++i) {
+            inputs.add(i);
+        }
+        IWorkflowExecutor<List<Integer>> executor = new IWorkflowExecutor<List<Integer>>() {
+
+            @Override
+            public List<Integer> execute(IWorkflow<List<Integer>> workflow) {
+                map.add(ParallelMapWorkflowExecutor.create(
+                        SYNC_TASK, workflow, "ParallelMap", new CallableTaskFutureValue<>(inputs), factory, MAX_CONCURRENCY));
+                return map.get(0).getNoThrow(workflow.getTask());
+            }
+
+        };
+        return new WorkflowTask<>(CallableTaskConfig.simple(DIAGNOSTIC_CONFIG), TestWorkflowFactory.INSTANCE, executor);
+    }
+
+    private static class DoubleFactory implements IMapTaskFactory<Integer, Integer> {
+
+        private final AtomicInteger running;
+        private final AtomicInteger maxRunning;
+        private final int failAt;
+        private final IntPredicate slow;
+        private final IntPredicate broken;
+        private final long slowMs;
+        private final AtomicInteger interrupted = new AtomicInteger();
+
+        DoubleFactory(AtomicInteger running, AtomicInteger maxRunning, int failAt, IntPredicate slow, IntPredicate broken) {
+            this(running, maxRunning, failAt, slow, broken, SLOW_ELEMENT_MS);
+        }
+
+        DoubleFactory(AtomicInteger running, AtomicInteger maxRunning, int failAt, IntPredicate slow, IntPredicate broken, long slowMs) {
+            this.running = running;
+            this.maxRunning = maxRunning;
+            this.failAt = failAt;
+            this.slow = slow;
+            this.broken = broken;
+            this.slowMs = slowMs;
+        }
+
+        @Override
+        public ICallableTask<Integer> create(Integer input, int index) {
+            return new DoubleTask(this, input, this.slow.test(index) ? TIMEOUT_TASK : ASYNC_TASK);
+        }
+
+    }
+
+    private static class DoubleTask extends Task implements ICallableTask<Integer> {
+
+        private final DoubleFactory factory;
+        private final int input;
+
+        DoubleTask(DoubleFactory factory, int input, CallableTaskConfig config) {
+            super("Double" + input, config);
+            this.factory = factory;
+            this.input = input;
+        }
+
+        @Override
+        public void waitForDependencies() {
+            if (this.factory.broken.test(this.input)) {
+                throw new IllegalStateException("dependency of element " + this.input);
+            }
+            super.waitForDependencies();
+        }
+
+        @Override
+        public Integer call() throws InterruptedException {
+            int running = this.factory.running.incrementAndGet();
+            try {
+                this.factory.maxRunning.accumulateAndGet(running, Math::max);
+                if (this.input == this.factory.failAt) {
+                    throw new IllegalStateException("element " + this.input);
+                }
+                Thread.sleep(this.factory.slow.test(this.input) ? this.factory.slowMs : ELEMENT_MS);
+                return this.input * 2;
+            } catch (InterruptedException e) {
+                this.factory.interrupted.incrementAndGet();
+                throw e;
+            } finally {
+                this.factory.running.decrementAndGet();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.ws.rs.core.Response.Status;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.Diagnostic;
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+import com.ebay.taskgraph.diagnostic.ProfilerModel;
+import com.ebay.taskgraph.executor.ApplicationException;
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.CallableTaskFutureValue;
+import com.ebay.taskgraph.executor.ProfilerHelper;
+
+public class ParallelVisitorTest {
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+    private static final CallableTaskConfig SYNC_TASK = CallableTaskConfig.synch(DIAGNOSTIC_CONFIG);
+
+    private static final int VISITEES = 500;
+    private static final int MIN_CHUNK_SIZE = 50;
+    private static final int THREADS = 3;
+    private static final int FAIL_EVERY = 100;
+
+    @Test
+    public void parallelVisitorTest() throws Exception {
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountingVisitor visitor = new CountingVisitor(MIN_CHUNK_SIZE, pool);
+            WorkflowTask<List<Integer>> task = run(visitor, VISITEES);
+
+            // every visitee visited once, failures don't stop the rest of the chunk
+            Assert.assertEquals(VISITEES, visitor.visited.size());
+            Assert.assertTrue(visitor.threads.size() > 1);
+            Assert.assertEquals(IllegalStateException.class.getSimpleName(), visitor.getContext().getProfiler().getData("exception"));
+
+            // chunks are the pool size plus the calling thread
+            Assert.assertEquals(THREADS + 1, getChunks(visitor));
+            ProfilerHelper.print(task.getContext());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void cachedPoolTest() throws Exception {
+
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try {
+            // an unbounded pool is as parallel as the processors rather than overflowing the chunk count
+            CountingVisitor visitor = new CountingVisitor(MIN_CHUNK_SIZE, pool);
+            run(visitor, VISITEES);
+            Assert.assertEquals(VISITEES, visitor.visited.size());
+            Assert.assertEquals(Math.min(Runtime.getRuntime().availableProcessors() + 1, VISITEES / MIN_CHUNK_SIZE), getChunks(visitor));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void workflowExecutorTest() throws Exception {
+
+        // without an executor the chunks are tasks of the visitor's workflow
+        CountingVisitor visitor = new CountingVisitor(MIN_CHUNK_SIZE, null);
+        WorkflowTask<List<Integer>> task = run(visitor, VISITEES);
+        Assert.assertEquals(VISITEES, visitor.visited.size());
+        int chunks = Math.min(Runtime.getRuntime().availableProcessors() + 1, VISITEES / MIN_CHUNK_SIZE);
+        Assert.assertEquals(chunks, getChunks(visitor));
+        Assert.assertTrue(contains(task.getContext().getProfiler().getModel(0L), "ChunkTask"));
+    }
+
+    @Test
+    public void applicationExceptionTest() throws Exception {
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountingVisitor visitor = new CountingVisitor(MIN_CHUNK_SIZE, pool);
+            visitor.applicationException = true;
+            List<Integer> visitees = new ArrayList<>(VISITEES);
+            for (int i = 0; i < VISITEES; ++i) {
+                visitees.add(i);
+            }
+            try {
+                visitor.visitAll(visitees);
+                Assert.fail();
+            } catch (ApplicationException e) {
+                Assert.assertEquals(Status.BAD_GATEWAY, e.status);
+            }
+
+            // the exceptions after the ApplicationException are still logged
+            List<String> logged = new ArrayList<>();
+            for (Diagnostic diagnostic : visitor.getContext().getDiagnostic().getDiagnostics()) {
+                logged.addAll(diagnostic.getValue());
+            }
+            for (int i = 2 * FAIL_EVERY; i < VISITEES; i += FAIL_EVERY) {
+                Assert.assertTrue(logged.contains("visitee " + i));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void smallListTest() throws Exception {
+
+        // too few visitees to be worth splitting, visited on the task thread
+        CountingVisitor visitor = new CountingVisitor(MIN_CHUNK_SIZE, null);
+        run(visitor, MIN_CHUNK_SIZE);
+        Assert.assertEquals(MIN_CHUNK_SIZE, visitor.visited.size());
+        Assert.assertEquals(1, visitor.threads.size());
+        Assert.assertEquals(0, getChunks(visitor));
+    }
+
+    private static WorkflowTask<List<Integer>> run(final CountingVisitor visitor, int count) throws Exception {
+        final List<Integer> visitees = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            visitees.add(i);
+        }
+        IWorkflowExecutor<List<Integer>> executor = new IWorkflowExecutor<List<Integer>>() {
+
+            @Override
+            public List<Integer> execute(IWorkflow<List<Integer>> workflow) {
+                List<VisitorTask<Integer>> visitors = new ArrayList<>();
+                visitors.add(visitor);
+                return VisitorWorkflowTaskFactory.createMultiVisitee(
+                        SYNC_TASK, workflow, "ParallelVisitor", new CallableTaskFutureValue<>(visitees), visitors).getNoThrow(workflow.getTask());
+            }
+
+        };
+        WorkflowTask<List<Integer>> task = new WorkflowTask<>(CallableTaskConfig.simple(DIAGNOSTIC_CONFIG), TestWorkflowFactory.INSTANCE, executor);
+        task.call();
+        return task;
+    }
+
+    private static int getChunks(CountingVisitor visitor) {
+        ProfilerModel model = visitor.getContext().getProfiler().getModel(0L);
+        int chunks = 0;
+        if (model.getChildren() != null) {
+            for (ProfilerModel child : model.getChildren()) {
+                if (child.getName().contains("chunk_")) {
+                    ++chunks;
+                }
+            }
+        }
+        return chunks;
+    }
+
+    private static boolean contains(ProfilerModel model, String name) {
+        if (model.getName().contains(name)) {
+            return true;
+        }
+        if (model.getChildren() != null) {
+            for (ProfilerModel child : model.getChildren()) {
+                if (contains(child, name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static class CountingVisitor extends ParallelVisitorTask<Integer> {
+
+        private final Set<Integer> visited = ConcurrentHashMap.newKeySet();
+        private final Set<String> threads = ConcurrentHashMap.newKeySet();
+        private boolean applicationException = false;
+
+        CountingVisitor(int minChunkSize, ExecutorService pool) {
+            super(SYNC_TASK, minChunkSize, pool);
+        }
+
+        @Override
+        public void visit(Integer visitee) {
+            this.visited.add(visitee);
+            this.threads.add(Thread.currentThread().getName());
+            if (this.applicationException && FAIL_EVERY == visitee) {
+                throw new ApplicationException(Status.BAD_GATEWAY, "visitee " + visitee);
+            }
+            if (visitee > 0 && 0 == visitee % FAIL_EVERY) {
+                throw new IllegalStateException("visitee " + visitee);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.ICallableTaskFuture;
+import com.ebay.taskgraph.executor.ProfilerHelper;
+
+/**
+ * Same workflow as WaitForCriticalDataOnlyTest except the optional data is sent as an update instead of being dropped.
+ */
+public class ProgressiveWorkflowTest {
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+
+    private static final long UPDATE_TIMEOUT = 300L;
+
+    @Test
+    public void optionalUpdateTest() {
+        RecordingListener listener = new RecordingListener();
+        WorkflowTask<SampleOrchestrationResponse> task = run(new SampleOrchestrationRequest(50L, 150L), listener);
+        SampleOrchestrationResponse response = task.call();
+        ProfilerHelper.print(task.getContext());
+
+        Assert.assertEquals("critical", response.getCriticalData());
+        Assert.assertEquals(Arrays.asList("initial:critical", "optional:optional", "complete:0"), listener.events);
+        // the initial response doesn't wait for the optional task
+        Assert.assertTrue(listener.times.get(1) - listener.times.get(0) >= 50L);
+        Assert.assertNotNull(task.getContext().getProfiler().getData(ProgressiveWorkflowExecutor.FIRST_RESPONSE_MS));
+        Assert.assertEquals("1", task.getContext().getProfiler().getData(ProgressiveWorkflowExecutor.UPDATES));
+        Assert.assertEquals("0", task.getContext().getProfiler().getData(ProgressiveWorkflowExecutor.MISSED_UPDATES));
+    }
+
+    @Test
+    public void optionalOverTimeoutTest() {
+        RecordingListener listener = new RecordingListener();
+        long start = System.currentTimeMillis();
+        ProgressiveExecutor executor = new ProgressiveExecutor(new SampleOrchestrationRequest(50L, 5000L), listener);
+        WorkflowTask<SampleOrchestrationResponse> task = run(executor);
+        task.call();
+        ProfilerHelper.print(task.getContext());
+
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000L);
+        // the optional task itself is cancelled, not just the wait for it
+        Assert.assertTrue(executor.optional.isDone());
+        Assert.assertEquals(Arrays.asList("initial:critical", "complete:1"), listener.events);
+        Assert.assertEquals("1", task.getContext().getProfiler().getData(ProgressiveWorkflowExecutor.MISSED_UPDATES));
+    }
+
+    @Test
+    public void optionalExceptionTest() {
+        RecordingListener listener = new RecordingListener();
+        WorkflowTask<SampleOrchestrationResponse> task = run(new SampleOrchestrationRequest(50L, -1L), listener);
+        task.call();
+        ProfilerHelper.print(task.getContext());
+
+        Assert.assertEquals(Arrays.asList("initial:critical", "complete:1"), listener.events);
+    }
+
+    @Test
+    public void optionalFatalExceptionTest() {
+        // the initial response was already sent so the failure is reported as a missed update
+        RecordingListener listener = new RecordingListener();
+        WorkflowTask<SampleOrchestrationResponse> task = run(new SampleOrchestrationRequest(50L, -2L), listener);
+        SampleOrchestrationResponse response = task.call();
+        ProfilerHelper.print(task.getContext());
+
+        Assert.assertEquals("critical", response.getCriticalData());
+        Assert.assertEquals(Arrays.asList("initial:critical", "complete:1"), listener.events);
+        Assert.assertEquals("1", task.getContext().getProfiler().getData(ProgressiveWorkflowExecutor.FAILED_UPDATES));
+    }
+
+    private static WorkflowTask<SampleOrchestrationResponse> run(SampleOrchestrationRequest request, RecordingListener listener) {
+        return run(new ProgressiveExecutor(request, listener));
+    }
+
+    private static WorkflowTask<SampleOrchestrationResponse> run(ProgressiveExecutor executor) {
+        return new WorkflowTask<>(
+                CallableTaskConfig.simple(DIAGNOSTIC_CONFIG),
+                TestWorkflowFactory.INSTANCE,
+                executor);
+    }
+
+    private static class ProgressiveExecutor extends ProgressiveWorkflowExecutor<SampleOrchestrationResponse, String> {
+
+        private final SampleOrchestrationRequest request;
+        private volatile ICallableTaskFuture<String> optional = null;
+
+        ProgressiveExecutor(SampleOrchestrationRequest request, IProgressiveListener<SampleOrchestrationResponse, String> listener) {
+            super(listener, UPDATE_TIMEOUT);
+            this.request = request;
+        }
+
+        @Override
+        protected SampleOrchestrationResponse executeInitial(
+                IWorkflow<SampleOrchestrationResponse> workflow,
+                List<ICallableTaskFuture<? extends String>> updates) {
+
+            WaitForCriticalDataOnlyBuilder builder = new WaitForCriticalDataOnlyBuilder(workflow, this.request);
+            ICallableTaskFuture<String> critical = builder.getTask(DataSourceFactory.Factory1.INSTANCE);
+            this.optional = builder.getTask(DataSourceFactory.Factory2.INSTANCE);
+            updates.add(this.optional);
+
+            SampleOrchestrationResponse response = new SampleOrchestrationResponse();
+            response.setCriticalData(critical.getNoThrow(workflow.getTask()));
+            return response;
+        }
+
+    }
+
+    private static class RecordingListener implements IProgressiveListener<SampleOrchestrationResponse, String> {
+
+        private final List<String> events = new ArrayList<>();
+        private final List<Long> times = new ArrayList<>();
+
+        @Override
+        public void onInitial(SampleOrchestrationResponse response) {
+            record("initial:" + response.getCriticalData());
+        }
+
+        @Override
+        public void onUpdate(String name, String update) {
+            record(name + ":" + update);
+        }
+
+        @Override
+        public void onComplete(int missed) {
+            record("complete:" + missed);
+        }
+
+        private void record(String event) {
+            this.events.add(event);
+            this.times.add(System.currentTimeMillis());
+        }
+
+    }
+
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.Response.Status;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+import com.ebay.taskgraph.executor.ApplicationException;
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.ICallableTask;
+import com.ebay.taskgraph.executor.ICallableTaskFuture;
+import com.ebay.taskgraph.executor.ProfilerHelper;
+import com.ebay.taskgraph.executor.Task;
+
+public class StreamingVisitorTest {
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+    private static final CallableTaskConfig SYNC_TASK = CallableTaskConfig.synch(DIAGNOSTIC_CONFIG);
+    private static final CallableTaskConfig ASYNC_TASK = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 10000L);
+
+    private static final int VISITEES = 200;
+    private static final int BUFFER_SIZE = 8;
+
+    @Test
+    public void streamingTest() {
+        StreamingVisiteeBuffer<Integer> buffer = new StreamingVisiteeBuffer<>(BUFFER_SIZE);
+        Producer producer = new Producer(buffer, VISITEES, -1);
+        CountingVisitor visitor = new CountingVisitor(buffer, producer, -1);
+
+        Integer visited = run(buffer, producer, visitor);
+        Assert.assertEquals(Integer.valueOf(VISITEES), visited);
+        Assert.assertEquals(VISITEES, visitor.visited.get());
+        // visiting started before the producer finished and the buffer never grew past its size
+        Assert.assertTrue(visitor.producedAtFirstVisit < VISITEES);
+        Assert.assertTrue(visitor.maxBuffered <= BUFFER_SIZE);
+    }
+
+    @Test
+    public void producerFailureTest() {
+        StreamingVisiteeBuffer<Integer> buffer = new StreamingVisiteeBuffer<>(BUFFER_SIZE);
+        Producer producer = new Producer(buffer, VISITEES, BUFFER_SIZE * 2);
+        CountingVisitor visitor = new CountingVisitor(buffer, producer, -1);
+
+        // buffered visitees are still visited before the failure is reported
+        Assert.assertNull(run(buffer, producer, visitor));
+        Assert.assertEquals(BUFFER_SIZE * 2, visitor.visited.get());
+    }
+
+    @Test
+    public void visitorFailureTest() {
+        StreamingVisiteeBuffer<Integer> buffer = new StreamingVisiteeBuffer<>(BUFFER_SIZE);
+        Producer producer = new Producer(buffer, VISITEES, -1);
+        CountingVisitor visitor = new CountingVisitor(buffer, producer, BUFFER_SIZE);
+
+        // application exception stops the stream and the blocked producer gives up
+        try {
+            run(buffer, producer, visitor);
+            Assert.fail("Expected application exception");
+        } catch (ApplicationException e) {
+            Assert.assertEquals(Status.SERVICE_UNAVAILABLE, e.status);
+        }
+        Assert.assertTrue(producer.produced.get() < VISITEES);
+    }
+
+    @Test
+    public void stagesTest() {
+        StreamingVisiteeBuffer<Integer> buffer = new StreamingVisiteeBuffer<>(BUFFER_SIZE);
+        Producer producer = new Producer(buffer, VISITEES, -1);
+        CountingVisitor first = new CountingVisitor(buffer, producer, -1);
+        OrderedVisitor second = new OrderedVisitor("Second", ASYNC_TASK, first.seen);
+        OrderedVisitor third = new OrderedVisitor("Third", SYNC_TASK, second.seen);
+
+        // the asynchronous visitor runs as its own task, with the synchronous visitor after it on the same thread
+        Assert.assertEquals(Integer.valueOf(VISITEES), run(buffer, producer, Arrays.<VisitorTask<Integer>>asList(first, second, third)));
+        Assert.assertEquals(VISITEES, first.visited.get());
+        Assert.assertEquals(VISITEES, second.seen.size());
+        Assert.assertEquals(VISITEES, third.seen.size());
+        // each visitee is still visited in the order the visitors are listed
+        Assert.assertEquals(0, second.outOfOrder.get() + third.outOfOrder.get());
+        Assert.assertNotEquals(first.thread, second.thread);
+        Assert.assertEquals(second.thread, third.thread);
+    }
+
+    @Test
+    public void batchTest() {
+        StreamingVisiteeBuffer<Integer> buffer = new StreamingVisiteeBuffer<>(BUFFER_SIZE);
+        Producer producer = new Producer(buffer, VISITEES, -1);
+        BatchingVisitor visitor = new BatchingVisitor();
+        visitor.setBatchSize(BUFFER_SIZE * 2);
+
+        // streamed visitees are accumulated up to the batch size rather than visited in batches of one
+        Assert.assertEquals(Integer.valueOf(VISITEES), run(buffer, producer, Collections.<VisitorTask<Integer>>singletonList(visitor)));
+        int visited = 0;
+        for (int i = 0; i < visitor.batches.size(); ++i) {
+            int size = visitor.batches.get(i);
+            visited += size;
+            Assert.assertEquals(i < visitor.batches.size() - 1 ? BUFFER_SIZE * 2 : VISITEES % (BUFFER_SIZE * 2), size);
+        }
+        Assert.assertEquals(VISITEES, visited);
+    }
+
+    @Test
+    public void bufferTest() {
+        StreamingVisiteeBuffer<String> buffer = new StreamingVisiteeBuffer<>(2);
+        Assert.assertTrue(buffer.put("a"));
+        Assert.assertTrue(buffer.put("b"));
+        Assert.assertEquals(2, buffer.size());
+        buffer.close();
+        int count = 0;
+        for (String s : buffer) {
+            Assert.assertNotNull(s);
+            ++count;
+        }
+        Assert.assertEquals(2, count);
+        buffer.cancel();
+        Assert.assertFalse(buffer.put("c"));
+    }
+
+    private static Integer run(StreamingVisiteeBuffer<Integer> buffer, Producer producer, CountingVisitor visitor) {
+        return run(buffer, producer, Collections.<VisitorTask<Integer>>singletonList(visitor));
+    }
+
+    private static Integer run(final StreamingVisiteeBuffer<Integer> buffer, final Producer producer, final List<VisitorTask<Integer>> visitors) {
+        IWorkflowExecutor<Integer> executor = new IWorkflowExecutor<Integer>() {
+
+            @Override
+            public Integer execute(IWorkflow<Integer> workflow) {
+                ICallableTaskFuture<Integer> produced = workflow.addTask(producer);
+                try {
+                    return VisitorWorkflowTaskFactory.createStreaming(SYNC_TASK, workflow, "StreamingVisitor", buffer, visitors).getNoThrow(workflow.getTask());
+                } finally {
+                    // join the producer so it's complete before the request is
+                    produced.getNoThrow(workflow.getTask());
+                }
+            }
+
+        };
+        WorkflowTask<Integer> task = new WorkflowTask<>(CallableTaskConfig.simple(DIAGNOSTIC_CONFIG), TestWorkflowFactory.INSTANCE, executor);
+        try {
+            return task.call();
+        } finally {
+            ProfilerHelper.print(task.getContext());
+        }
+    }
+
+    private static class Producer extends Task implements ICallableTask<Integer> {
+
+        private final StreamingVisiteeBuffer<Integer> buffer;
+        private final int count;
+        private final int failAt;
+        private final AtomicInteger produced = new AtomicInteger();
+
+        Producer(StreamingVisiteeBuffer<Integer> buffer, int count, int failAt) {
+            super("Producer", ASYNC_TASK);
+            this.buffer = buffer;
+            this.count = count;
+            this.failAt = failAt;
+        }
+
+        @Override
+        public Integer call() {
+            try {
+                for (int i = 0; i < this.count; ++i) {
+                    if (i == this.failAt) {
+                        throw new IllegalStateException("page " + i);
+                    }
+                    if (!this.buffer.put(i)) {
+                        break;
+                    }
+                    this.produced.incrementAndGet();
+                }
+                this.buffer.close();
+            } catch (RuntimeException e) {
+                this.buffer.fail(e);
+            }
+            return this.produced.get();
+        }
+
+    }
+
+    private static class CountingVisitor extends VisitorTask<Integer> {
+
+        private final StreamingVisiteeBuffer<Integer> buffer;
+        private final Producer producer;
+        private final int failAt;
+        private final AtomicInteger visited = new AtomicInteger();
+        private volatile int producedAtFirstVisit = -1;
+        private volatile int maxBuffered = 0;
+        private final Set<Integer> seen = ConcurrentHashMap.newKeySet();
+        private volatile String thread = null;
+
+        CountingVisitor(StreamingVisiteeBuffer<Integer> buffer, Producer producer, int failAt) {
+            super("Counting", SYNC_TASK);
+            this.buffer = buffer;
+            this.producer = producer;
+            this.failAt = failAt;
+        }
+
+        @Override
+        public void visit(Integer visitee) {
+            if (visitee == this.failAt) {
+                throw new ApplicationException(Status.SERVICE_UNAVAILABLE, null);
+            }
+            if (this.producedAtFirstVisit < 0) {
+                this.producedAtFirstVisit = this.producer.produced.get();
+            }
+            this.maxBuffered = Math.max(this.maxBuffered, this.buffer.size());
+            this.visited.incrementAndGet();
+            this.seen.add(visitee);
+            this.thread = Thread.currentThread().getName();
+        }
+
+    }
+
+    private static class OrderedVisitor extends VisitorTask<Integer> {
+
+        private final Set<Integer> previous;
+        private final Set<Integer> seen = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger outOfOrder = new AtomicInteger();
+        private volatile String thread = null;
+
+        OrderedVisitor(String name, CallableTaskConfig config, Set<Integer> previous) {
+            super(name, config);
+            this.previous = previous;
+        }
+
+        @Override
+        public void visit(Integer visitee) {
+            if (!this.previous.contains(visitee)) {
+                this.outOfOrder.incrementAndGet();
+            }
+            this.seen.add(visitee);
+            this.thread = Thread.currentThread().getName();
+        }
+
+    }
+
+    private static class BatchingVisitor extends BatchVisitorTask<Integer> {
+
+        private final List<Integer> batches = new ArrayList<>();
+
+        BatchingVisitor() {
+            super("Batching", SYNC_TASK);
+        }
+
+        @Override
+        public void visitBatch(List<Integer> visitees) {
+            this.batches.add(visitees.size());
+        }
+
+    }
+
+}
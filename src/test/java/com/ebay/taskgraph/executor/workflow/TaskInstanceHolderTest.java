@@ -0,0 +1,247 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.CallableTaskFuture;
+import com.ebay.taskgraph.executor.CallableTaskValue;
+import com.ebay.taskgraph.executor.ICallableTask;
+import com.ebay.taskgraph.executor.ICallableTaskFuture;
+import com.ebay.taskgraph.executor.SynchronousFuture;
+import com.ebay.taskgraph.executor.Task;
+
+// test task instances are created once only when factories are invoked from multiple threads
+public class TaskInstanceHolderTest {
+
+    private static final int THREADS = 16;
+
+    private static final CallableTaskConfig SYNC = CallableTaskConfig.synch(DiagnosticConfig.NONE);
+
+    @Test
+    public void concurrentGetTest() throws Exception {
+
+        final Builder builder = new Builder();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<ICallableTaskFuture<String>>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; ++i) {
+                results.add(pool.submit(new Callable<ICallableTaskFuture<String>>() {
+
+                    @Override
+                    public ICallableTaskFuture<String> call() throws Exception {
+                        start.await();
+                        return builder.tasks.get(SlowFactory.INSTANCE);
+                    }
+
+                }));
+            }
+            start.countDown();
+            ICallableTaskFuture<String> first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<ICallableTaskFuture<String>> result : results) {
+                Assert.assertSame(first, result.get(10, TimeUnit.SECONDS));
+            }
+            Assert.assertEquals(1, builder.created.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void parallelSubGraphTest() throws Exception {
+
+        // two independent sub-graphs share a common dependency
+        final Builder builder = new Builder();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<ICallableTaskFuture<String>> left = pool.submit(new GetTask(builder, LeftFactory.INSTANCE));
+            Future<ICallableTaskFuture<String>> right = pool.submit(new GetTask(builder, RightFactory.INSTANCE));
+            Assert.assertEquals("left_slow", left.get(10, TimeUnit.SECONDS).getNoThrow(builder.caller));
+            Assert.assertEquals("right_slow", right.get(10, TimeUnit.SECONDS).getNoThrow(builder.caller));
+            Assert.assertEquals(3, builder.created.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void crossThreadCycleTest() throws Exception {
+
+        // factory A waits for B on another thread, which in turn asks for A
+        final Builder builder = new Builder();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<ICallableTaskFuture<String>> a = pool.submit(new GetTask(builder, CycleFactoryA.INSTANCE));
+            Future<ICallableTaskFuture<String>> b = pool.submit(new GetTask(builder, CycleFactoryB.INSTANCE));
+            assertCycle(a);
+            assertCycle(b);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void assertCycle(Future<ICallableTaskFuture<String>> future) throws Exception {
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("expected cycle to be detected");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof WorkflowException);
+        }
+    }
+
+    private static class GetTask implements Callable<ICallableTaskFuture<String>> {
+
+        private final Builder builder;
+        private final ITaskFactory<Builder, String> factory;
+
+        GetTask(Builder builder, ITaskFactory<Builder, String> factory) {
+            this.builder = builder;
+            this.factory = factory;
+        }
+
+        @Override
+        public ICallableTaskFuture<String> call() {
+            return this.builder.tasks.get(this.factory);
+        }
+
+    }
+
+    private static class Builder implements IWorkflowBuilder {
+
+        final TaskInstanceHolder<Builder> tasks = new TaskInstanceHolder<>(this);
+        final AtomicInteger created = new AtomicInteger();
+        final CountDownLatch cycleA = new CountDownLatch(1);
+        final CountDownLatch cycleB = new CountDownLatch(1);
+        final ICallableTask<String> caller = new CallableTaskValue<>("caller");
+
+        @Override
+        public <T> ICallableTaskFuture<T> addTask(ICallableTask<T> task) {
+            this.created.incrementAndGet();
+            return new CallableTaskFuture<>(new SynchronousFuture<>(task), task);
+        }
+
+    }
+
+    private static class ConcatTask extends Task implements ICallableTask<String> {
+
+        private final ICallableTaskFuture<String> dependency;
+        private final String value;
+
+        ConcatTask(String value, ICallableTaskFuture<String> dependency) {
+            super(value, SYNC, dependency);
+            this.value = value;
+            this.dependency = dependency;
+        }
+
+        @Override
+        public String call() {
+            return this.value + "_" + this.dependency.getNoThrow(this);
+        }
+
+    }
+
+    private static class SlowFactory implements ITaskFactory<Builder, String> {
+
+        static final SlowFactory INSTANCE = new SlowFactory();
+
+        @Override
+        public ICallableTaskFuture<String> create(Builder builder) {
+            try {
+                // give other threads a chance to ask for the instance while it's being created
+                Thread.sleep(50L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return builder.addTask(new CallableTaskValue<>("slow"));
+        }
+
+    }
+
+    private static class LeftFactory implements ITaskFactory<Builder, String> {
+
+        static final LeftFactory INSTANCE = new LeftFactory();
+
+        @Override
+        public ICallableTaskFuture<String> create(Builder builder) {
+            return builder.addTask(new ConcatTask("left", builder.tasks.get(SlowFactory.INSTANCE)));
+        }
+
+    }
+
+    private static class RightFactory implements ITaskFactory<Builder, String> {
+
+        static final RightFactory INSTANCE = new RightFactory();
+
+        @Override
+        public ICallableTaskFuture<String> create(Builder builder) {
+            return builder.addTask(new ConcatTask("right", builder.tasks.get(SlowFactory.INSTANCE)));
+        }
+
+    }
+
+    private static class CycleFactoryA implements ITaskFactory<Builder, String> {
+
+        static final CycleFactoryA INSTANCE = new CycleFactoryA();
+
+        @Override
+        public ICallableTaskFuture<String> create(Builder builder) {
+            builder.cycleA.countDown();
+            await(builder.cycleB);
+            return builder.addTask(new ConcatTask("a", builder.tasks.get(CycleFactoryB.INSTANCE)));
+        }
+
+    }
+
+    private static class CycleFactoryB implements ITaskFactory<Builder, String> {
+
+        static final CycleFactoryB INSTANCE = new CycleFactoryB();
+
+        @Override
+        public ICallableTaskFuture<String> create(Builder builder) {
+            builder.cycleB.countDown();
+            await(builder.cycleA);
+            return builder.addTask(new ConcatTask("b", builder.tasks.get(CycleFactoryA.INSTANCE)));
+        }
+
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow.latch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.ICallableTask;
+import com.ebay.taskgraph.executor.ICallableTaskFuture;
+import com.ebay.taskgraph.executor.ProfilerHelper;
+import com.ebay.taskgraph.executor.Task;
+import com.ebay.taskgraph.executor.workflow.IWorkflow;
+import com.ebay.taskgraph.executor.workflow.IWorkflowBuilder;
+import com.ebay.taskgraph.executor.workflow.IWorkflowExecutor;
+import com.ebay.taskgraph.executor.workflow.TestWorkflowFactory;
+import com.ebay.taskgraph.executor.workflow.WorkflowTask;
+
+/**
+ * Test a primary source with a cheaper fallback that's only used if the primary is slow.
+ */
+public class FallbackTaskTest {
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+    private static final CallableTaskConfig ASYNC_TASK = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 10000L);
+    private static final CallableTaskConfig LAZY_TASK = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 10000L, CallableTaskConfig.ExecType.LAZY);
+    private static final CallableTaskConfig FALLBACK_CONFIG = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 5000L, CallableTaskConfig.ExecType.SYNC);
+    private static final CallableTaskConfig SHORT_CONFIG = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 200L, CallableTaskConfig.ExecType.SYNC);
+
+    private static final long SOFT_DEADLINE_MS = 50L;
+    private static final long FAIL = -1L;
+
+    @Test
+    public void primaryInTimeTest() {
+        Result result = run(10L, 10L);
+        Assert.assertEquals("primary", result.value);
+        Assert.assertEquals(FallbackTask.PRIMARY, result.getData(FallbackTask.SERVED_BY));
+        Assert.assertNull(result.getData(FallbackTask.FALLBACK_STARTED));
+        Assert.assertEquals(0, result.fallbackCalls);
+    }
+
+    @Test
+    public void primarySlowTest() {
+        Result result = run(2000L, 10L);
+        Assert.assertEquals("fallback", result.value);
+        Assert.assertEquals(FallbackTask.FALLBACK, result.getData(FallbackTask.SERVED_BY));
+        Assert.assertEquals("true", result.getData(FallbackTask.FALLBACK_STARTED));
+        Assert.assertTrue(result.elapsed < 2000L);
+    }
+
+    @Test
+    public void primaryPreferredTest() {
+        // primary misses the soft deadline but still beats the fallback
+        Result result = run(100L, 2000L);
+        Assert.assertEquals("primary", result.value);
+        Assert.assertEquals(FallbackTask.PRIMARY, result.getData(FallbackTask.SERVED_BY));
+        Assert.assertEquals("true", result.getData(FallbackTask.FALLBACK_STARTED));
+        Assert.assertTrue(result.elapsed < 2000L);
+    }
+
+    @Test
+    public void primaryFailsTest() {
+        // fallback is started as soon as the primary fails without waiting for the soft deadline
+        Result result = run(FAIL, 10L);
+        Assert.assertEquals("fallback", result.value);
+        Assert.assertEquals(FallbackTask.FALLBACK, result.getData(FallbackTask.SERVED_BY));
+    }
+
+    @Test
+    public void bothFailTest() {
+        Result result = run(FAIL, FAIL);
+        Assert.assertNull(result.value);
+        Assert.assertEquals(FallbackTask.NONE, result.getData(FallbackTask.SERVED_BY));
+    }
+
+    @Test
+    public void lateStartTest() {
+        // the soft deadline has already passed by the time the task runs so the fallback is started straight away
+        Result result = run(2000L, 10L, FALLBACK_CONFIG, SOFT_DEADLINE_MS * 2);
+        Assert.assertEquals("fallback", result.value);
+        Assert.assertTrue(Long.toString(result.waited), result.waited < SOFT_DEADLINE_MS);
+    }
+
+    @Test
+    public void neitherInTimeTest() throws InterruptedException {
+        // neither has a result within the timeout, both are cancelled rather than left running
+        Result result = run(2000L, 2000L, SHORT_CONFIG, 0L);
+        Assert.assertNull(result.value);
+        Assert.assertEquals(FallbackTask.NONE, result.getData(FallbackTask.SERVED_BY));
+        for (int i = 0; i < 100 && !(result.primarySource.interrupted && result.fallbackSource.interrupted); ++i) {
+            Thread.sleep(10L);
+        }
+        Assert.assertTrue(result.primarySource.interrupted);
+        Assert.assertTrue(result.fallbackSource.interrupted);
+    }
+
+    private static Result run(long primaryMs, long fallbackMs) {
+        return run(primaryMs, fallbackMs, FALLBACK_CONFIG, 0L);
+    }
+
+    /**
+     * @param delayMs milliseconds between adding the tasks and requesting the result
+     */
+    private static Result run(final long primaryMs, final long fallbackMs, final CallableTaskConfig config, final long delayMs) {
+        final Result result = new Result();
+        final SourceTask primarySource = new SourceTask("Primary", "primary", primaryMs, ASYNC_TASK);
+        final SourceTask fallbackSource = new SourceTask("Fallback", "fallback", fallbackMs, LAZY_TASK);
+        IWorkflowExecutor<String> executor = new IWorkflowExecutor<String>() {
+
+            @Override
+            public String execute(final IWorkflow<String> workflow) {
+                IWorkflowBuilder builder = new IWorkflowBuilder() {
+
+                    @Override
+                    public <T> ICallableTaskFuture<T> addTask(ICallableTask<T> task) {
+                        return workflow.addTask(task);
+                    }
+
+                };
+                ICallableTaskFuture<String> primary = builder.addTask(primarySource);
+                ICallableTaskFuture<String> fallback = builder.addTask(fallbackSource);
+                result.future = FallbackTask.create(builder, "PrimaryWithFallback", config, SOFT_DEADLINE_MS, primary, fallback);
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                long start = System.currentTimeMillis();
+                try {
+                    return result.future.getNoThrow(workflow.getTask());
+                } finally {
+                    result.waited = System.currentTimeMillis() - start;
+                }
+            }
+
+        };
+        WorkflowTask<String> task = new WorkflowTask<>(CallableTaskConfig.simple(DIAGNOSTIC_CONFIG), TestWorkflowFactory.INSTANCE, executor);
+        long start = System.currentTimeMillis();
+        result.value = task.call();
+        result.elapsed = System.currentTimeMillis() - start;
+        result.fallbackCalls = fallbackSource.calls;
+        result.primarySource = primarySource;
+        result.fallbackSource = fallbackSource;
+        ProfilerHelper.print(task.getContext());
+        return result;
+    }
+
+    private static class Result {
+
+        private ICallableTaskFuture<String> future;
+        private String value;
+        private long elapsed;
+        private long waited;
+        private int fallbackCalls;
+        private SourceTask primarySource;
+        private SourceTask fallbackSource;
+
+        String getData(String key) {
+            return this.future.getTask().getContext().getProfiler().getData(key);
+        }
+
+    }
+
+    private static class SourceTask extends Task implements ICallableTask<String> {
+
+        private final String value;
+        private final long delay;
+        private volatile int calls = 0;
+        private volatile boolean interrupted = false;
+
+        SourceTask(String name, String value, long delay, CallableTaskConfig config) {
+            super(name, config);
+            this.value = value;
+            this.delay = delay;
+        }
+
+        @Override
+        public String call() throws InterruptedException {
+            ++this.calls;
+            if (FAIL == this.delay) {
+                throw new IllegalStateException(getName() + " unavailable");
+            }
+            try {
+                Thread.sleep(this.delay);
+            } catch (InterruptedException e) {
+                this.interrupted = true;
+                throw e;
+            }
+            return this.value;
+        }
+
+    }
+
+}
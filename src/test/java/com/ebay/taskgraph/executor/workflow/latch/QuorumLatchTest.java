@@ -0,0 +1,153 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow.latch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.ICallableTask;
+import com.ebay.taskgraph.executor.ICallableTaskFuture;
+import com.ebay.taskgraph.executor.ProfilerHelper;
+import com.ebay.taskgraph.executor.Task;
+import com.ebay.taskgraph.executor.workflow.IWorkflow;
+import com.ebay.taskgraph.executor.workflow.IWorkflowExecutor;
+import com.ebay.taskgraph.executor.workflow.TestWorkflowFactory;
+import com.ebay.taskgraph.executor.workflow.WorkflowTask;
+
+/**
+ * Test redundant calls to replicas where the first k responses are used.
+ */
+public class QuorumLatchTest {
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+    private static final CallableTaskConfig ASYNC_TASK = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 10000L);
+
+    private static final long[] DELAYS = {20L, 60L, 5000L};
+    private static final long DEADLINE_MS = 500L;
+
+    @Test
+    public void quorumTest() {
+        final AtomicReference<List<String>> notified = new AtomicReference<>();
+        final AtomicBoolean quorum = new AtomicBoolean();
+        QuorumLatch<String> latch = new QuorumLatch<>(2, DELAYS.length);
+        latch.addListener(new IQuorumListener<String>() {
+
+            @Override
+            public void onComplete(List<String> results, boolean reached) {
+                notified.set(results);
+                quorum.set(reached);
+            }
+
+        });
+        List<ICallableTaskFuture<String>> producers = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        List<String> results = run(latch, producers);
+
+        // two fastest replicas win and the slowest is cancelled
+        Assert.assertTrue(System.currentTimeMillis() - start < DELAYS[2]);
+        Assert.assertEquals(Arrays.asList("replica0", "replica1"), results);
+        Assert.assertEquals(results, notified.get());
+        Assert.assertTrue(quorum.get());
+        Assert.assertEquals("true", producers.get(2).getTask().getContext().getProfiler().getData(QuorumLatchTask.CANCELLED));
+    }
+
+    @Test
+    public void deadlineTest() {
+        // quorum of all three can't be reached before the deadline
+        QuorumLatch<String> latch = new QuorumLatch<>(DELAYS.length, DELAYS.length);
+        List<String> results = run(latch, new ArrayList<ICallableTaskFuture<String>>());
+        Assert.assertEquals(Arrays.asList("replica0", "replica1"), results);
+        Assert.assertTrue(latch.isComplete());
+    }
+
+    @Test
+    public void nonBlockingTest() throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            final CountDownLatch notified = new CountDownLatch(1);
+            final AtomicBoolean quorum = new AtomicBoolean(true);
+            QuorumLatch<String> latch = new QuorumLatch<>(1, 1);
+            latch.addListener(new IQuorumListener<String>() {
+
+                @Override
+                public void onComplete(List<String> results, boolean reached) {
+                    quorum.set(reached);
+                    notified.countDown();
+                }
+
+            });
+            // no producer reports so the scheduled deadline completes the latch
+            latch.expireAfter(scheduler, 10L);
+            Assert.assertTrue(notified.await(DEADLINE_MS, TimeUnit.MILLISECONDS));
+            Assert.assertFalse(quorum.get());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    private static List<String> run(final QuorumLatch<String> latch, final List<ICallableTaskFuture<String>> producers) {
+        IWorkflowExecutor<List<String>> executor = new IWorkflowExecutor<List<String>>() {
+
+            @Override
+            public List<String> execute(IWorkflow<List<String>> workflow) {
+                for (int i = 0; i < DELAYS.length; ++i) {
+                    ICallableTaskFuture<String> replica = workflow.addTask(new ReplicaTask(i));
+                    producers.add(workflow.addTask(new QuorumLatchTask<>(replica, latch)));
+                }
+                CallableTaskConfig waitConfig = new CallableTaskConfig(DIAGNOSTIC_CONFIG, DEADLINE_MS, CallableTaskConfig.ExecType.SYNC);
+                return workflow.addTask(new WaitForQuorumLatchTask<>("WaitForQuorum", waitConfig, latch)).getNoThrow(workflow.getTask());
+            }
+
+        };
+        WorkflowTask<List<String>> task = new WorkflowTask<>(CallableTaskConfig.simple(DIAGNOSTIC_CONFIG), TestWorkflowFactory.INSTANCE, executor);
+        List<String> results = task.call();
+        ProfilerHelper.print(task.getContext());
+        return results;
+    }
+
+    private static class ReplicaTask extends Task implements ICallableTask<String> {
+
+        private final int replica;
+
+        ReplicaTask(int replica) {
+            super("Replica" + replica, ASYNC_TASK);
+            this.replica = replica;
+        }
+
+        @Override
+        public String call() throws InterruptedException {
+            Thread.sleep(DELAYS[this.replica]);
+            return "replica" + this.replica;
+        }
+
+    }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.executor.workflow.scatter;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import javax.ws.rs.core.Response.Status;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+import com.ebay.taskgraph.executor.ApplicationException;
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.ICallableTask;
+import com.ebay.taskgraph.executor.ICallableTaskFuture;
+import com.ebay.taskgraph.executor.LoadShedder;
+import com.ebay.taskgraph.executor.ProfilerHelper;
+import com.ebay.taskgraph.executor.RequestScope;
+import com.ebay.taskgraph.executor.Task;
+import com.ebay.taskgraph.executor.workflow.IMapTaskFactory;
+import com.ebay.taskgraph.executor.workflow.IWorkflow;
+import com.ebay.taskgraph.executor.workflow.IWorkflowExecutor;
+import com.ebay.taskgraph.executor.workflow.IWorkflowFactory;
+import com.ebay.taskgraph.executor.workflow.RequestScopeWorkflowFactory;
+import com.ebay.taskgraph.executor.workflow.TestWorkflowFactory;
+import com.ebay.taskgraph.executor.workflow.WorkflowTask;
+
+public class ScatterGatherTest {
+
+    private static final DiagnosticConfig DIAGNOSTIC_CONFIG = new DiagnosticConfig(true, true, true);
+    private static final CallableTaskConfig SYNC_TASK = CallableTaskConfig.synch(DIAGNOSTIC_CONFIG);
+    private static final CallableTaskConfig ASYNC_TASK = new CallableTaskConfig(DIAGNOSTIC_CONFIG, 10000L);
+
+    private static final List<String> SHARDS = Arrays.asList("s0", "s1", "s2", "s3", "s4");
+    private static final long DEADLINE_MS = 200L;
+    private static final long STRAGGLER_MS = 5000L;
+    private static final String APPLICATION_ERROR_SHARD = "s5";
+
+    @Test
+    public void partialResultsTest() {
+        // s1 fails and s3 is a straggler that's cancelled at the deadline
+        final ICallableTaskFuture<?>[] gather = new ICallableTaskFuture<?>[1];
+        long start = System.currentTimeMillis();
+        WorkflowTask<ScatterGatherResult<String>> task = run(3, gather);
+        ScatterGatherResult<String> result = task.call();
+        Assert.assertTrue(System.currentTimeMillis() - start < STRAGGLER_MS);
+
+        Assert.assertEquals(Arrays.asList("s0:hits", "s2:hits", "s4:hits"), result.getResults());
+        Assert.assertEquals(5, result.getTotal());
+        Assert.assertEquals(1, result.getFailed());
+        Assert.assertEquals(1, result.getTimedOut());
+        Assert.assertEquals(0.6, result.getCoverage(), 0.001);
+        Assert.assertFalse(result.isComplete());
+
+        ICallableTask<?> gatherTask = gather[0].getTask();
+        Assert.assertEquals("3/5", gatherTask.getContext().getProfiler().getData(ScatterGatherWorkflowExecutor.COVERAGE));
+        Assert.assertEquals("1", gatherTask.getContext().getProfiler().getData(ScatterGatherWorkflowExecutor.TIMED_OUT_SHARDS));
+        ProfilerHelper.print(task.getContext());
+    }
+
+    @Test
+    public void insufficientCoverageTest() {
+        try {
+            run(4, new ICallableTaskFuture<?>[1]).call();
+            Assert.fail("Expected application exception");
+        } catch (ApplicationException e) {
+            Assert.assertEquals(Status.SERVICE_UNAVAILABLE, e.status);
+            Assert.assertEquals(3, ((ScatterGatherResult<?>) e.entity).getSuccessful());
+        }
+    }
+
+    @Test
+    public void applicationExceptionTest() {
+        // an application error in one shard only counts against the coverage
+        List<String> shards = Arrays.asList("s0", "s1", "s2", APPLICATION_ERROR_SHARD);
+        IWorkflowExecutor<ScatterGatherResult<String>> executor = new IWorkflowExecutor<ScatterGatherResult<String>>() {
+
+            @Override
+            public ScatterGatherResult<String> execute(IWorkflow<ScatterGatherResult<String>> workflow) {
+                return ScatterGatherWorkflowExecutor.create(SYNC_TASK, workflow, "Search", shards,
+                        new ShardFactory(null, ASYNC_TASK), 2, DEADLINE_MS).getNoThrow(workflow.getTask());
+            }
+
+        };
+        WorkflowTask<ScatterGatherResult<String>> task = new WorkflowTask<>(CallableTaskConfig.simple(DIAGNOSTIC_CONFIG),
+                TestWorkflowFactory.INSTANCE, executor);
+        ScatterGatherResult<String> result = task.call();
+        ProfilerHelper.print(task.getContext());
+        Assert.assertEquals(Arrays.asList("s0:hits", "s2:hits"), result.getResults());
+        Assert.assertEquals(2, result.getFailed());
+        Assert.assertEquals(0, result.getTimedOut());
+    }
+
+    @Test
+    public void shardTimeoutTest() {
+        // the straggler's own timeout is shorter than the scatter's
+        CallableTaskConfig shortTimeout = new CallableTaskConfig(DIAGNOSTIC_CONFIG, DEADLINE_MS);
+        long start = System.currentTimeMillis();
+        ScatterGatherResult<String> result = run(TestWorkflowFactory.INSTANCE, 3, new ICallableTaskFuture<?>[1],
+                new ShardFactory("s3", shortTimeout), STRAGGLER_MS).call();
+        Assert.assertTrue(System.currentTimeMillis() - start < STRAGGLER_MS);
+        Assert.assertEquals(Arrays.asList("s0:hits", "s2:hits", "s4:hits"), result.getResults());
+        Assert.assertEquals(1, result.getFailed());
+        Assert.assertEquals(1, result.getTimedOut());
+    }
+
+    @Test
+    public void shedShardTest() {
+        // the optional shard is shed as the request is close to its deadline, the gather doesn't wait for it
+        LoadShedder loadShedder = new LoadShedder(LoadShedder.NO_IN_FLIGHT_LIMIT, LoadShedder.NO_QUEUE_TIME_LIMIT, STRAGGLER_MS);
+        RequestScope scope = RequestScope.DEFAULT.withLoadShedder(loadShedder).withDeadline(System.currentTimeMillis() + DEADLINE_MS);
+        CallableTaskConfig optional = ASYNC_TASK.withPriority(CallableTaskConfig.Priority.OPTIONAL);
+        long start = System.currentTimeMillis();
+        ScatterGatherResult<String> result = run(new RequestScopeWorkflowFactory(scope), 2, new ICallableTaskFuture<?>[1],
+                new ShardFactory("s3", optional), STRAGGLER_MS).call();
+        Assert.assertTrue(System.currentTimeMillis() - start < STRAGGLER_MS);
+        Assert.assertEquals(Arrays.asList("s0:hits", "s2:hits", "s4:hits"), result.getResults());
+        Assert.assertEquals(2, result.getFailed());
+        Assert.assertEquals(0, result.getTimedOut());
+    }
+
+    @Test
+    public void deferredShardTest() {
+        // deferred shards are started by the scatter
+        RequestScope scope = RequestScope.DEFAULT.withDeferredTasks(new HashSet<>(Arrays.asList("Search/Shard_s0", "Search/Shard_s2")));
+        ScatterGatherResult<String> result = run(new RequestScopeWorkflowFactory(scope), 3, new ICallableTaskFuture<?>[1],
+                new ShardFactory(null, ASYNC_TASK), DEADLINE_MS).call();
+        Assert.assertEquals(Arrays.asList("s0:hits", "s2:hits", "s4:hits"), result.getResults());
+        Assert.assertEquals(1, result.getTimedOut());
+    }
+
+    private static WorkflowTask<ScatterGatherResult<String>> run(final int minSuccessful, final ICallableTaskFuture<?>[] gather) {
+        return run(TestWorkflowFactory.INSTANCE, minSuccessful, gather, new ShardFactory(null, ASYNC_TASK), DEADLINE_MS);
+    }
+
+    private static WorkflowTask<ScatterGatherResult<String>> run(IWorkflowFactory workflowFactory, final int minSuccessful,
+            final ICallableTaskFuture<?>[] gather, final ShardFactory shardFactory, final long timeout) {
+        IWorkflowExecutor<ScatterGatherResult<String>> executor = new IWorkflowExecutor<ScatterGatherResult<String>>() {
+
+            @Override
+            public ScatterGatherResult<String> execute(IWorkflow<ScatterGatherResult<String>> workflow) {
+                ICallableTaskFuture<ScatterGatherResult<String>> future = ScatterGatherWorkflowExecutor.create(
+                        SYNC_TASK, workflow, "Search", SHARDS, shardFactory, minSuccessful, timeout);
+                gather[0] = future;
+                return future.getNoThrow(workflow.getTask());
+            }
+
+        };
+        return new WorkflowTask<>(CallableTaskConfig.simple(DIAGNOSTIC_CONFIG), workflowFactory, executor);
+    }
+
+    private static class ShardFactory implements IMapTaskFactory<String, String> {
+
+        // shard whose task has its own config
+        private final String shard;
+        private final CallableTaskConfig config;
+
+        ShardFactory(String shard, CallableTaskConfig config) {
+            this.shard = shard;
+            this.config = config;
+        }
+
+        @Override
+        public ICallableTask<String> create(String shard, int index) {
+            return new ShardTask(shard, shard.equals(this.shard) ? this.config : ASYNC_TASK);
+        }
+
+    }
+
+    private static class ShardTask extends Task implements ICallableTask<String> {
+
+        private final String shard;
+
+        ShardTask(String shard, CallableTaskConfig config) {
+            super("Shard_" + shard, config);
+            this.shard = shard;
+        }
+
+        @Override
+        public String call() throws InterruptedException {
+            if ("s1".equals(this.shard)) {
+                throw new IllegalStateException("shard unavailable");
+            }
+            if (this.shard.equals(APPLICATION_ERROR_SHARD)) {
+                throw new ApplicationException(Status.BAD_GATEWAY, "backend error");
+            }
+            if ("s3".equals(this.shard)) {
+                Thread.sleep(STRAGGLER_MS);
+            }
+            return this.shard + ":hits";
+        }
+
+    }
+
+}
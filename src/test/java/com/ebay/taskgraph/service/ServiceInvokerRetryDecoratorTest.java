@@ -0,0 +1,81 @@
+/*
+ * Copyright 2022 eBay Inc.
+ *  Author/Developer: Damian Dolan
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.ebay.taskgraph.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.ws.rs.core.HttpHeaders;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ebay.taskgraph.diagnostic.DiagnosticConfig;
+import com.ebay.taskgraph.executor.CallableTaskConfig;
+import com.ebay.taskgraph.executor.ICallableTask;
+import com.ebay.taskgraph.executor.NumberTask;
+import com.ebay.taskgraph.executor.RetryPolicy;
+import com.ebay.taskgraph.util.JacksonJsonHelperTest;
+
+public class ServiceInvokerRetryDecoratorTest {
+
+    static {
+        JacksonJsonHelperTest.INSTANCE.getClass();
+    }
+
+    @Test
+    public void test() {
+        FlakyInvoker invoker = new FlakyInvoker(2);
+        ICallableTask<Integer> task = new NumberTask(new CallableTaskConfig(DiagnosticConfig.NONE, 1000), 0);
+        IServiceInvoker<Integer, Integer> decorator = new ServiceInvokerDiagnosticDecorator<>(
+                new ServiceInvokerRetryDecorator<>(invoker, task, new RetryPolicy(3, 1L, 5L)), task);
+        Assert.assertEquals(Integer.valueOf(5), decorator.getResponse(5, null));
+        Assert.assertEquals(3, invoker.calls.get());
+        Assert.assertEquals("4", decorator.getRequestDiagnostic(4));
+    }
+
+    @Test
+    public void testException() {
+        // the diagnostic decorator logs the last failure once the attempts are used up
+        FlakyInvoker invoker = new FlakyInvoker(5);
+        ICallableTask<Integer> task = new NumberTask(new CallableTaskConfig(DiagnosticConfig.NONE, 1000), 0);
+        IServiceInvoker<Integer, Integer> decorator = new ServiceInvokerDiagnosticDecorator<>(
+                new ServiceInvokerRetryDecorator<>(invoker, task, new RetryPolicy(2, 1L, 5L)), task);
+        Assert.assertNull(decorator.getResponse(5, null));
+        Assert.assertEquals(2, invoker.calls.get());
+    }
+
+    private static class FlakyInvoker extends ServiceInvoker<Integer, Integer> {
+
+        private final AtomicInteger calls = new AtomicInteger(0);
+        private final int failures;
+
+        FlakyInvoker(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        public Integer getResponse(Integer request, HttpHeaders headers) {
+            if (this.calls.incrementAndGet() <= this.failures) {
+                throw new IllegalStateException("unavailable");
+            }
+            return request;
+        }
+
+    }
+
+}